@@ -2,8 +2,10 @@ package pt.uminho.di.chalktyk;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class ChalkTykApplication {
 
     public static void main(String[] args) {
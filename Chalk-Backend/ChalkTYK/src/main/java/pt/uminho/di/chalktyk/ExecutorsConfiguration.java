@@ -0,0 +1,58 @@
+package pt.uminho.di.chalktyk;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+@Configuration
+public class ExecutorsConfiguration {
+
+    /**
+     * Bounded executor used to correct resolutions in parallel.
+     * When the queue is full, the submitting thread corrects the chunk itself,
+     * which limits the number of chunks waiting in memory.
+     */
+    @Bean(name = "correctionExecutor")
+    public ThreadPoolTaskExecutor correctionExecutor(@Value("${chalktyk.corrections.threads:4}") int threads) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(threads * 2);
+        executor.setThreadNamePrefix("correction-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        return executor;
+    }
+
+    /**
+     * Corrects the resolutions of tests graded on submission. Unlike the correction executor,
+     * it never runs a correction on the submitting thread: when the queue is full, the correction is rejected
+     * and left pending, to be queued again by {@link pt.uminho.di.chalktyk.services.PendingCorrectionsRecovery}.
+     */
+    @Bean(name = "submissionsCorrectionExecutor")
+    public ThreadPoolTaskExecutor submissionsCorrectionExecutor(@Value("${chalktyk.corrections.submissions.threads:2}") int threads,
+                                                                @Value("${chalktyk.corrections.submissions.queue-capacity:1000}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("submission-correction-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        return executor;
+    }
+
+    /**
+     * Workers that run the correction jobs.
+     */
+    @Bean(name = "correctionJobsExecutor")
+    public ThreadPoolTaskExecutor correctionJobsExecutor(@Value("${chalktyk.corrections.jobs.threads:2}") int threads) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setThreadNamePrefix("correction-job-");
+        return executor;
+    }
+}
@@ -0,0 +1,51 @@
+package pt.uminho.di.chalktyk.apis;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.enums.ParameterIn;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.CookieValue;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import pt.uminho.di.chalktyk.models.corrections.CorrectionJob;
+
+/**
+ * CorrectionJobsApi
+ */
+public interface CorrectionJobsApi {
+
+    @Operation(summary = "Get the state and progress of a correction job.", description = "", tags = {"corrections"})
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Success.",
+                    content = @Content(mediaType = "application/json", schema = @Schema(implementation = CorrectionJob.class))),
+            @ApiResponse(responseCode = "401", description = "Unauthorized operation."),
+            @ApiResponse(responseCode = "403", description = "Forbidden operation."),
+            @ApiResponse(responseCode = "404", description = "Correction job not found.")
+    })
+    @RequestMapping(value = "/{jobId}",
+            produces = {"application/json"},
+            method = RequestMethod.GET)
+    ResponseEntity<CorrectionJob> getCorrectionJob(
+            @Parameter(in = ParameterIn.PATH, description = "Correction job identifier", required = true, schema = @Schema()) @PathVariable("jobId") String jobId,
+            @CookieValue("chalkauthtoken") String jwt);
+
+    @Operation(summary = "Cancel a correction job.",
+            description = "Resolutions that were already corrected keep their correction.", tags = {"corrections"})
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Success."),
+            @ApiResponse(responseCode = "400", description = "The correction job has already finished."),
+            @ApiResponse(responseCode = "401", description = "Unauthorized operation."),
+            @ApiResponse(responseCode = "403", description = "Forbidden operation."),
+            @ApiResponse(responseCode = "404", description = "Correction job not found.")
+    })
+    @RequestMapping(value = "/{jobId}/cancel",
+            method = RequestMethod.PUT)
+    ResponseEntity<Void> cancelCorrectionJob(
+            @Parameter(in = ParameterIn.PATH, description = "Correction job identifier", required = true, schema = @Schema()) @PathVariable("jobId") String jobId,
+            @CookieValue("chalkauthtoken") String jwt);
+}
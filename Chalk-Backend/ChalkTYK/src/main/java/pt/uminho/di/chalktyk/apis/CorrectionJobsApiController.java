@@ -0,0 +1,65 @@
+package pt.uminho.di.chalktyk.apis;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import pt.uminho.di.chalktyk.apis.utility.ExceptionResponseEntity;
+import pt.uminho.di.chalktyk.apis.utility.JWT;
+import pt.uminho.di.chalktyk.models.corrections.CorrectionJob;
+import pt.uminho.di.chalktyk.services.ICorrectionJobsService;
+import pt.uminho.di.chalktyk.services.ISecurityService;
+import pt.uminho.di.chalktyk.services.exceptions.ServiceException;
+
+@RestController
+@RequestMapping("/corrections")
+@CrossOrigin(originPatterns = "*", allowCredentials = "true")
+public class CorrectionJobsApiController implements CorrectionJobsApi {
+    private final ICorrectionJobsService correctionJobsService;
+    private final ISecurityService securityService;
+
+    @Autowired
+    public CorrectionJobsApiController(ICorrectionJobsService correctionJobsService, ISecurityService securityService) {
+        this.correctionJobsService = correctionJobsService;
+        this.securityService = securityService;
+    }
+
+    @Override
+    public ResponseEntity<CorrectionJob> getCorrectionJob(String jobId, String jwt) {
+        try {
+            JWT token = securityService.validateJWT(jwt);
+            String userId = token.getUserId();
+
+            CorrectionJob job = correctionJobsService.getJob(jobId);
+            if (!userId.equals(job.getRequesterId()))
+                return new ExceptionResponseEntity<CorrectionJob>().createRequest(
+                        HttpStatus.FORBIDDEN.value(),
+                        "User does not have permission to get the correction job.");
+
+            return ResponseEntity.ok(job);
+        } catch (ServiceException e) {
+            return new ExceptionResponseEntity<CorrectionJob>().createRequest(e);
+        }
+    }
+
+    @Override
+    public ResponseEntity<Void> cancelCorrectionJob(String jobId, String jwt) {
+        try {
+            JWT token = securityService.validateJWT(jwt);
+            String userId = token.getUserId();
+
+            CorrectionJob job = correctionJobsService.getJob(jobId);
+            if (!userId.equals(job.getRequesterId()))
+                return new ExceptionResponseEntity<Void>().createRequest(
+                        HttpStatus.FORBIDDEN.value(),
+                        "User does not have permission to cancel the correction job.");
+
+            correctionJobsService.cancelJob(jobId);
+            return new ResponseEntity<>(HttpStatus.OK);
+        } catch (ServiceException e) {
+            return new ExceptionResponseEntity<Void>().createRequest(e);
+        }
+    }
+}
@@ -301,13 +301,15 @@ public interface ExercisesApi {
                     "For a given exercise, it may support either, both, or none of the correction types.", 
             tags={ "exercise" })
     @ApiResponses(value = {
-            @ApiResponse(responseCode = "200", description = "Success."),
+            @ApiResponse(responseCode = "200", description = "Success. Returns the identifier of the correction job, " +
+                    "which can be used to follow the progress of the correction.",
+                    content = @Content(mediaType = "application/json", schema = @Schema(implementation = String.class))),
             @ApiResponse(responseCode = "400", description = "The requested type of correction is not supported for the given exercise."),
             @ApiResponse(responseCode = "401", description = "Unauthorized operation."),
             @ApiResponse(responseCode = "404", description = "Exercise not found.") })
     @RequestMapping(value = "/{exerciseId}/resolutions/correction",
             method = RequestMethod.PUT)
-    ResponseEntity<Void> issueExerciseResolutionsCorrection(
+    ResponseEntity<String> issueExerciseResolutionsCorrection(
             @Parameter(in = ParameterIn.HEADER, required = true, description = "authentication token") @CookieValue("chalkauthtoken") String jwtToken,
             @Parameter(in = ParameterIn.PATH, required = true) @PathVariable("exerciseId") String exerciseId,
             @Parameter(in = ParameterIn.QUERY, description = "Type of correction. The correction can either " +
@@ -368,10 +370,12 @@ public interface ExercisesApi {
     ResponseEntity<CustomPage<Pair<Student, ExerciseResolution>>> getExerciseResolutions(
             @Parameter(in = ParameterIn.HEADER, required = true, description = "authentication token") @CookieValue("chalkauthtoken") String jwtToken,
             @Parameter(in = ParameterIn.PATH, required = true) @PathVariable("exerciseId") String exerciseId,
-            @Parameter(in = ParameterIn.QUERY, required=true) @RequestParam("page") int page,
+            @Parameter(in = ParameterIn.QUERY, description = "Index of the page, starting at 0. Optional since cursor pages were added: it defaults to 0, and is ignored when a cursor is given.", schema = @Schema(defaultValue = "0")) @RequestParam(value = "page", defaultValue = "0") int page,
             @Parameter(in = ParameterIn.QUERY, required=true) @RequestParam("itemsPerPage") int itemsPerPage,
             @Parameter(in = ParameterIn.QUERY, schema = @Schema(defaultValue = "true")) @RequestParam(value = "latest", defaultValue = "true") Boolean latest,
-            @Parameter(in = ParameterIn.QUERY, schema = @Schema(defaultValue = "false")) @RequestParam(value = "onlyNotRevised", defaultValue = "false") Boolean onlyNotRevised);
+            @Parameter(in = ParameterIn.QUERY, schema = @Schema(defaultValue = "false")) @RequestParam(value = "onlyNotRevised", defaultValue = "false") Boolean onlyNotRevised,
+            @Parameter(in = ParameterIn.QUERY, description = "Cursor returned with the previous page, or empty for the first page. When given, the page is requested with the cursor, instead of the page index, and is not counted.") @RequestParam(value = "cursor", required = false) String cursor,
+            @Parameter(in = ParameterIn.QUERY, description = "Only for pages requested with a cursor. If 'true' an estimate of the total number of items is returned.", schema = @Schema(defaultValue = "false")) @RequestParam(value = "estimateTotal", required = false, defaultValue = "false") Boolean estimateTotal);
 
     @Operation(summary = "Creates the resolution of an exercise.",
             description = "",
@@ -450,7 +454,7 @@ public interface ExercisesApi {
             method = RequestMethod.GET)
     ResponseEntity<CustomPage<Exercise>> getExercises(
             @Parameter(in = ParameterIn.HEADER, required = true, description = "authentication token") @CookieValue("chalkauthtoken") String jwtToken,
-            @Parameter(in = ParameterIn.QUERY, required=true) @RequestParam("page") Integer page,
+            @Parameter(in = ParameterIn.QUERY, description = "Index of the page, starting at 0. Optional since cursor pages were added: it defaults to 0, and is ignored when a cursor is given.", schema = @Schema(defaultValue = "0")) @RequestParam(value = "page", defaultValue = "0") Integer page,
             @Parameter(in = ParameterIn.QUERY, required=true) @RequestParam("itemsPerPage") Integer itemsPerPage,
             @Parameter(in = ParameterIn.QUERY, description = "Array of identifiers of the tags that will be used to filter the exercises." , schema=@Schema(defaultValue="[]")) @Valid
             @RequestParam(value = "tags", required = false) List<String> tags,
@@ -462,7 +466,11 @@ public interface ExercisesApi {
             @Parameter(in = ParameterIn.QUERY, description = "Institution identifier.") @RequestParam(value = "institutionId", required = false) String institutionId,
             @Parameter(in = ParameterIn.QUERY, description = "Specialist identifier.") @RequestParam(value = "specialistId", required = false) String specialistId,
             @Parameter(in = ParameterIn.QUERY, description = "Exercise title alike.") @RequestParam(value = "title", required = false) String title,
-            @Parameter(in = ParameterIn.QUERY, description = "Exercise type.", schema = @Schema(allowableValues = {"MC", "OA", "FTB", "FTBO", "CHAT"})) @RequestParam(value = "exerciseType", required = false) String exerciseType);
+            @Parameter(in = ParameterIn.QUERY, description = "Exercise type.", schema = @Schema(allowableValues = {"MC", "OA", "FTB", "FTBO", "CHAT"})) @RequestParam(value = "exerciseType", required = false) String exerciseType,
+            @Parameter(in = ParameterIn.QUERY, description = "Words, or a fragment, to search for in the title and statement of the exercises. " +
+                    "When given, the exercises are ordered by relevance.") @RequestParam(value = "search", required = false) String search,
+            @Parameter(in = ParameterIn.QUERY, description = "Cursor returned with the previous page, or empty for the first page. When given, the page is requested with the cursor, instead of the page index, and is not counted. Cannot be combined with a search.") @RequestParam(value = "cursor", required = false) String cursor,
+            @Parameter(in = ParameterIn.QUERY, description = "Only for pages requested with a cursor. If 'true' an estimate of the total number of items is returned.", schema = @Schema(defaultValue = "false")) @RequestParam(value = "estimateTotal", required = false, defaultValue = "false") Boolean estimateTotal);
 
     @Operation(summary = "Add comment to a resolution",
             description = "Adds a comment to an exercise resolution. " +
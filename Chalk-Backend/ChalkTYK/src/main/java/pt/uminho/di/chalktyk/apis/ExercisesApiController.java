@@ -34,11 +34,14 @@ public class ExercisesApiController implements ExercisesApi {
     private final ISecurityService securityService;
     private final IExercisesService exercisesService;
     private final IExercisesTestsAuthorization exercisesTestsAuthorization;
+    private final ICorrectionJobsService correctionJobsService;
     @Autowired
-    public ExercisesApiController(ISecurityService securityService, IExercisesService exercisesService, IExercisesTestsAuthorization exercisesTestsAuthorization) {
+    public ExercisesApiController(ISecurityService securityService, IExercisesService exercisesService, IExercisesTestsAuthorization exercisesTestsAuthorization,
+                                  ICorrectionJobsService correctionJobsService) {
         this.securityService = securityService;
         this.exercisesService = exercisesService;
         this.exercisesTestsAuthorization = exercisesTestsAuthorization;
+        this.correctionJobsService = correctionJobsService;
     }
 
     /**
@@ -440,7 +443,7 @@ public class ExercisesApiController implements ExercisesApi {
     }
 
     @Override
-    public ResponseEntity<Void> issueExerciseResolutionsCorrection(String jwtToken, String exerciseId, String correctionType) {
+    public ResponseEntity<String> issueExerciseResolutionsCorrection(String jwtToken, String exerciseId, String correctionType) {
         try {
             // validate jwt token and get user id and role
             JWT jwt = securityService.validateJWT(jwtToken);
@@ -448,17 +451,15 @@ public class ExercisesApiController implements ExercisesApi {
                     role = jwt.getUserRole();
 
             if(role.equals("SPECIALIST")) {
-                if(exercisesTestsAuthorization.canSpecialistAccessExercise(userId, exerciseId)) {
-                    exercisesService.issueExerciseResolutionsCorrection(exerciseId, correctionType);
-                    return new ResponseEntity<>(HttpStatus.OK);
-                }
+                if(exercisesTestsAuthorization.canSpecialistAccessExercise(userId, exerciseId))
+                    return ResponseEntity.ok(correctionJobsService.submitExerciseCorrection(exerciseId, correctionType, userId));
             }
 
-            return new ExceptionResponseEntity<Void>().createRequest(
+            return new ExceptionResponseEntity<String>().createRequest(
                     HttpStatus.FORBIDDEN.value(),
-                    "User does not have permission to delete the exercise's rubric.");
+                    "User does not have permission to issue the correction of the exercise resolutions.");
         } catch (ServiceException e) {
-            return new ExceptionResponseEntity<Void>().createRequest(e);
+            return new ExceptionResponseEntity<String>().createRequest(e);
         }
     }
 
@@ -515,7 +516,7 @@ public class ExercisesApiController implements ExercisesApi {
     }
 
     @Override
-    public ResponseEntity<CustomPage<Pair<Student, ExerciseResolution>>> getExerciseResolutions(String jwtToken, String exerciseId, int page, int itemsPerPage, Boolean latest, Boolean onlyNotRevised) {
+    public ResponseEntity<CustomPage<Pair<Student, ExerciseResolution>>> getExerciseResolutions(String jwtToken, String exerciseId, int page, int itemsPerPage, Boolean latest, Boolean onlyNotRevised, String cursor, Boolean estimateTotal) {
         try {
             latest = latest == null || latest; // default value is 'true'
             onlyNotRevised = onlyNotRevised != null && onlyNotRevised; // default value is 'false'
@@ -527,6 +528,10 @@ public class ExercisesApiController implements ExercisesApi {
 
             if(role.equals("SPECIALIST")) {
                 if(exercisesTestsAuthorization.canSpecialistAccessExercise(userId, exerciseId)) {
+                    if (cursor != null) {
+                        var c = exercisesService.getExerciseResolutions(exerciseId, cursor, itemsPerPage, latest, onlyNotRevised, Boolean.TRUE.equals(estimateTotal));
+                        return ResponseEntity.ok(new CustomPage<>(new ListPairStudentExerciseResolution(c.getItems()), c.getNextCursor(), c.getEstimatedTotal()));
+                    }
                     var p = exercisesService.getExerciseResolutions(exerciseId, page, itemsPerPage, latest, onlyNotRevised);
                     return ResponseEntity.ok(new CustomPage<>(new ListPairStudentExerciseResolution(p.getContent()), p.getTotalPages()));
                 }
@@ -639,8 +644,11 @@ public class ExercisesApiController implements ExercisesApi {
     }
 
     @Override
-    public ResponseEntity<CustomPage<Exercise>> getExercises(String jwtToken, Integer page, Integer itemsPerPage, List<String> tags, Boolean matchAllTags, String visibility, String courseId, String institutionId, String specialistId, String title, String exerciseType) {
+    public ResponseEntity<CustomPage<Exercise>> getExercises(String jwtToken, Integer page, Integer itemsPerPage, List<String> tags, Boolean matchAllTags, String visibility, String courseId, String institutionId, String specialistId, String title, String exerciseType, String search, String cursor, Boolean estimateTotal) {
         try {
+            if (cursor != null && search != null)
+                throw new BadInputException("Search results cannot be paginated with a cursor.");
+
             // validate jwt token and get user id and role
             JWT jwt = securityService.validateJWT(jwtToken);
             String userId = jwt.getUserId(),
@@ -667,6 +675,18 @@ public class ExercisesApiController implements ExercisesApi {
             }
 
             if(perm) {
+                if (cursor != null)
+                    return ResponseEntity.ok(new CustomPage<>(
+                            exercisesService.getExercises(
+                                    cursor, itemsPerPage, Boolean.TRUE.equals(estimateTotal), tags, matchAllTags,
+                                    vis, courseId, institutionId,
+                                    specialistId, title, exerciseType, false)));
+                if (search != null)
+                    return ResponseEntity.ok(new CustomPage<>(
+                            exercisesService.searchExercises(
+                                    search, page, itemsPerPage, tags, matchAllTags,
+                                    vis, courseId, institutionId,
+                                    specialistId, title, exerciseType, false)));
                 return ResponseEntity.ok(new CustomPage<>(
                         exercisesService.getExercises(
                                 page, itemsPerPage, tags, matchAllTags,
@@ -6,8 +6,11 @@ import org.springframework.web.bind.annotation.*;
 import pt.uminho.di.chalktyk.apis.utility.CustomPage;
 import pt.uminho.di.chalktyk.dtos.CreateTestExerciseDTO;
 import pt.uminho.di.chalktyk.dtos.DuplicateTestDTO;
+import pt.uminho.di.chalktyk.dtos.DuplicateTestIntoCoursesDTO;
 import pt.uminho.di.chalktyk.dtos.ISODateTimeDTO;
+import pt.uminho.di.chalktyk.dtos.LiveTestClockDTO;
 import pt.uminho.di.chalktyk.dtos.ManualExerciseCorrectionDTO;
+import pt.uminho.di.chalktyk.dtos.TestStatisticsDTO;
 import pt.uminho.di.chalktyk.models.exercises.ExerciseResolution;
 import pt.uminho.di.chalktyk.models.miscellaneous.Visibility;
 import pt.uminho.di.chalktyk.models.tests.Test;
@@ -24,6 +27,8 @@ import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import jakarta.validation.Valid;
 import jakarta.validation.constraints.*;
@@ -42,7 +47,7 @@ public interface TestsApi {
     @RequestMapping(value = "",
             produces = {"application/json"},
             method = RequestMethod.GET)
-    ResponseEntity<CustomPage<Test>> getTests(@NotNull @Parameter(in = ParameterIn.QUERY, description = "", required = true, schema = @Schema()) @Valid @RequestParam(value = "page", required = true) Integer page,
+    ResponseEntity<CustomPage<Test>> getTests(@Parameter(in = ParameterIn.QUERY, description = "Index of the page, starting at 0. Optional since cursor pages were added: it defaults to 0, and is ignored when a cursor is given.", schema = @Schema(defaultValue = "0")) @Valid @RequestParam(value = "page", required = false, defaultValue = "0") Integer page,
                                         @NotNull @Min(1) @Max(50) @Parameter(in = ParameterIn.QUERY, description = "", required = true, schema = @Schema(allowableValues = {"1", "50"}, minimum = "1", maximum = "50"
                                         )) @Valid @RequestParam(value = "itemsPerPage", required = true) Integer itemsPerPage,
                                         @Parameter(in = ParameterIn.QUERY, description = "Array of identifiers from the tags that will be used to filter the tests.", schema = @Schema(defaultValue = "[]")) @Valid @RequestParam(value = "tags", required = false) List<String> tags,
@@ -52,6 +57,9 @@ public interface TestsApi {
                                         @Parameter(in = ParameterIn.QUERY, description = "", schema = @Schema()) @Valid @RequestParam(value = "specialistId", required = false) String specialistId,
                                         @Parameter(in = ParameterIn.QUERY, description = "", schema = @Schema()) @Valid @RequestParam(value = "courseId", required = false) String courseId,
                                         @Parameter(in = ParameterIn.QUERY, description = "", schema = @Schema()) @Valid @RequestParam(value = "institutionId", required = false) String institutionId,
+                                        @Parameter(in = ParameterIn.QUERY, description = "Words, or a fragment, to search for in the title of the tests. When given, the tests are ordered by relevance.", schema = @Schema()) @Valid @RequestParam(value = "search", required = false) String search,
+                                        @Parameter(in = ParameterIn.QUERY, description = "Cursor returned with the previous page, or empty for the first page. When given, the page is requested with the cursor, instead of the page index, and is not counted. Cannot be combined with a search.") @RequestParam(value = "cursor", required = false) String cursor,
+                                        @Parameter(in = ParameterIn.QUERY, description = "Only for pages requested with a cursor. If 'true' an estimate of the total number of items is returned.", schema = @Schema(defaultValue = "false")) @RequestParam(value = "estimateTotal", required = false, defaultValue = "false") Boolean estimateTotal,
                                         @CookieValue("chalkauthtoken") String jwt);
 
     @Operation(summary = "Retrieves tags present in a test", description = "", tags={ "tests" })
@@ -149,6 +157,7 @@ public interface TestsApi {
     @RequestMapping(value = "/{testId}",
             method = RequestMethod.DELETE)
     ResponseEntity<Void> deleteTestById(@Parameter(in = ParameterIn.PATH, description = "Test identifier", required = true, schema = @Schema()) @PathVariable("testId") String testId,
+                                        @Parameter(in = ParameterIn.QUERY, description = "If true, the test is hidden right away, and its resolutions and exercises are deleted in the background.", schema = @Schema(defaultValue = "false")) @Valid @RequestParam(value = "background", required = false, defaultValue = "false") Boolean background,
                                         @CookieValue("chalkauthtoken") String jwt);
 
     @Operation(summary = "Get test by its id.", description = "", tags = {"tests"})
@@ -179,6 +188,23 @@ public interface TestsApi {
                                              @CookieValue("chalkauthtoken") String jwt,
                                              @Parameter(in = ParameterIn.DEFAULT, required = true) @RequestBody DuplicateTestDTO duplicateTestDTO);
 
+    @Operation(summary = "Duplicates the test into several courses.", description = "Creates a copy of the test, and of its exercises, for each of the given courses. Returns the identifiers of the copies, in the order of the given courses.", tags = {"tests"})
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successful duplication.",
+                    content = @Content(mediaType = "application/json", array = @ArraySchema(schema = @Schema(implementation = String.class)))),
+            @ApiResponse(responseCode = "400", description = "Bad input."),
+            @ApiResponse(responseCode = "401", description = "Unauthorized operation."),
+            @ApiResponse(responseCode = "403", description = "Forbidden operation."),
+            @ApiResponse(responseCode = "404", description = "Test with the given id does not exist.")
+    })
+    @RequestMapping(value = "/{testId}/duplicate/courses",
+            produces = {"application/json"},
+            consumes = {"application/json"},
+            method = RequestMethod.POST)
+    ResponseEntity<List<String>> duplicateTestIntoCourses(@Parameter(in = ParameterIn.PATH, description = "Test identifier", required = true, schema = @Schema()) @PathVariable("testId") String testId,
+                                                          @CookieValue("chalkauthtoken") String jwt,
+                                                          @Parameter(in = ParameterIn.DEFAULT, required = true) @RequestBody DuplicateTestIntoCoursesDTO duplicateTestDTO);
+
 
 
     @Operation(summary = "Update the basic properties of a test.", description = "Updates test basic properties: title, conclusion, globalInstructions, publishDate and visibility.", tags = {"tests"})
@@ -213,16 +239,19 @@ public interface TestsApi {
             @Parameter(in = ParameterIn.QUERY, description = "Points", required = true, schema = @Schema()) @RequestParam("points") float points,
             @CookieValue("chalkauthtoken") String jwt);
 
-    @Operation(summary = "Issue the automatic correction of the test resolutions.", description = "", tags = {"tests"})
+    @Operation(summary = "Issue the automatic correction of the test resolutions.",
+            description = "The correction is done asynchronously. Returns the identifier of the correction job, " +
+                    "which can be used to follow the progress of the correction.", tags = {"tests"})
     @ApiResponses(value = {
-            @ApiResponse(responseCode = "200", description = "Success."),
+            @ApiResponse(responseCode = "200", description = "Success. Returns the identifier of the correction job.",
+                    content = @Content(mediaType = "application/json", schema = @Schema(implementation = String.class))),
             @ApiResponse(responseCode = "401", description = "Unauthorized operation."),             
             @ApiResponse(responseCode = "403", description = "Forbidden operation."),
             @ApiResponse(responseCode = "404", description = "Test not found.")
     })
     @RequestMapping(value = "/{testId}/resolutions/correction",
             method = RequestMethod.PUT)
-    ResponseEntity<Void> automaticCorrection(@Parameter(in = ParameterIn.PATH, description = "Test identifier", required = true, schema = @Schema()) @PathVariable("testId") String testId,
+    ResponseEntity<String> automaticCorrection(@Parameter(in = ParameterIn.PATH, description = "Test identifier", required = true, schema = @Schema()) @PathVariable("testId") String testId,
                                              @Parameter(in = ParameterIn.QUERY, description = "Type of correction. The correction can either be automatic or done by AI. When using AI correction, the AI will only be used to correct questions that cannot be corrected automatically, i.e., by using the solution. ", schema = @Schema(allowableValues = {"auto", "ai"}
                                              )) @Valid @RequestParam(value = "correctionType", required = false) String correctionType,
                                              @CookieValue("chalkauthtoken") String jwt);
@@ -242,6 +271,37 @@ public interface TestsApi {
                                                          @CookieValue("chalkauthtoken") String jwt);
 
 
+    @Operation(summary = "Retrieves the statistics of the resolutions of a test.", description = "- Retrieves the number of corrected resolutions, the average, standard deviation and distribution of the points, for the test and for each of its exercises. ", tags = {"tests"})
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successful retrieval.",
+                    content = @Content(mediaType = "application/json", schema = @Schema(implementation = TestStatisticsDTO.class))),
+            @ApiResponse(responseCode = "401", description = "Unauthorized operation."),
+            @ApiResponse(responseCode = "403", description = "Forbidden operation."),
+            @ApiResponse(responseCode = "404", description = "Test not found.")
+    })
+    @RequestMapping(value = "/{testId}/statistics",
+            produces = {"application/json"},
+            method = RequestMethod.GET)
+    ResponseEntity<TestStatisticsDTO> getTestStatistics(@Parameter(in = ParameterIn.PATH, description = "Test identifier", required = true, schema = @Schema()) @PathVariable("testId") String testId,
+                                                        @CookieValue("chalkauthtoken") String jwt);
+
+
+    @Operation(summary = "Follows the clock of a live test.", description = "- Opens a stream of server-sent events with the state of the test: 'status' when connecting and when the dates of the test change, 'started', 'tolerance-closed' and 'forced-submit' when the phase of the test changes, and 'remaining' periodically. The stream is closed once the test ends. ", tags = {"tests"})
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Stream opened.",
+                    content = @Content(mediaType = "text/event-stream", schema = @Schema(implementation = LiveTestClockDTO.class))),
+            @ApiResponse(responseCode = "400", description = "The test is not a live test."),
+            @ApiResponse(responseCode = "401", description = "Unauthorized operation."),
+            @ApiResponse(responseCode = "403", description = "Forbidden operation."),
+            @ApiResponse(responseCode = "404", description = "Test not found.")
+    })
+    @RequestMapping(value = "/{testId}/clock",
+            produces = {"text/event-stream"},
+            method = RequestMethod.GET)
+    ResponseEntity<SseEmitter> followLiveTestClock(@Parameter(in = ParameterIn.PATH, description = "Test identifier", required = true, schema = @Schema()) @PathVariable("testId") String testId,
+                                                   @CookieValue("chalkauthtoken") String jwt);
+
+
     @Operation(summary = "Get all test resolutions.", description = "", tags = {"tests"})
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Successful retrieval.",
@@ -254,9 +314,11 @@ public interface TestsApi {
             produces = {"application/json"},
             method = RequestMethod.GET)
     ResponseEntity<CustomPage<TestResolution>> getTestResolutions(@Parameter(in = ParameterIn.PATH, description = "Test identifier", required = true, schema = @Schema()) @PathVariable("testId") String testId,
-                                                            @NotNull @Parameter(in = ParameterIn.QUERY, description = "", required = true, schema = @Schema()) @Valid @RequestParam(value = "page", required = true) Integer page,
+                                                            @Parameter(in = ParameterIn.QUERY, description = "Index of the page, starting at 0. Optional since cursor pages were added: it defaults to 0, and is ignored when a cursor is given.", schema = @Schema(defaultValue = "0")) @Valid @RequestParam(value = "page", required = false, defaultValue = "0") Integer page,
                                                             @NotNull @Min(1) @Max(50) @Parameter(in = ParameterIn.QUERY, description = "", required = true, schema = @Schema(allowableValues = {"1", "50"}, minimum = "1", maximum = "50"
                                                             )) @Valid @RequestParam(value = "itemsPerPage", required = true) Integer itemsPerPage,
+                                                            @Parameter(in = ParameterIn.QUERY, description = "Cursor returned with the previous page, or empty for the first page. When given, the page is requested with the cursor, instead of the page index, and is not counted.") @RequestParam(value = "cursor", required = false) String cursor,
+                                                            @Parameter(in = ParameterIn.QUERY, description = "Only for pages requested with a cursor. If 'true' an estimate of the total number of items is returned.", schema = @Schema(defaultValue = "false")) @RequestParam(value = "estimateTotal", required = false, defaultValue = "false") Boolean estimateTotal,
                                                             @CookieValue("chalkauthtoken") String jwt);
 
 /*
@@ -342,6 +404,22 @@ public interface TestsApi {
     ResponseEntity<List<TestResolution>> getStudentLastResolutionsWithEmails(@Parameter(in = ParameterIn.PATH, description = "", required=true, schema=@Schema()) @PathVariable("testId") String testId,
                                                             @CookieValue("chalkauthtoken") String jwt);
 
+    @Operation(summary = "Export the results of every resolution of the test.",
+            description = "The results are streamed, one resolution per line, as CSV or as newline delimited JSON. " +
+                    "Each line contains the email of the student, the submission number, and the points of every group and exercise.", tags={ "tests" })
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Success."),
+        @ApiResponse(responseCode = "400", description = "Format not supported."),
+        @ApiResponse(responseCode = "401", description = "Unauthorized operation."),
+        @ApiResponse(responseCode = "403", description = "Forbidden operation."),
+        @ApiResponse(responseCode = "404", description = "Test not found.") })
+    @RequestMapping(value = "/{testId}/resolutions/export",
+        produces = { "text/csv", "application/x-ndjson" },
+        method = RequestMethod.GET)
+    ResponseEntity<StreamingResponseBody> exportTestResults(@Parameter(in = ParameterIn.PATH, description = "Test identifier", required=true, schema=@Schema()) @PathVariable("testId") String testId,
+                                                            @Parameter(in = ParameterIn.QUERY, description = "Format of the export. Can be 'csv' or 'ndjson'.", schema=@Schema(defaultValue = "csv")) @RequestParam(value = "format", required = false, defaultValue = "csv") String format,
+                                                            @CookieValue("chalkauthtoken") String jwt);
+
 
     @Operation(summary = "Get latest test resolution made by the student.", description = "", tags={ "tests" })
     @ApiResponses(value = { 
@@ -371,6 +449,21 @@ public interface TestsApi {
             @Parameter(in = ParameterIn.PATH, required = true) @PathVariable("testId") String testId,
             @Parameter(in = ParameterIn.DEFAULT, required = true) @RequestBody String title);
 
+    @Operation(summary = "Updates whether a test's resolutions are graded on submit.", description = "- When enabled, each submitted resolution is queued to be corrected automatically in the background, instead of being corrected during the submission. ", tags={ "tests" })
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Test updated Successfully."),
+            @ApiResponse(responseCode = "401", description = "Unauthorized operation."),
+            @ApiResponse(responseCode = "403", description = "Forbidden operation."),
+            @ApiResponse(responseCode = "404", description = "Not found.") })
+    @RequestMapping(
+            consumes = { "application/json" },
+            value = "/{testId}/gradeOnSubmit",
+            method = RequestMethod.PUT)
+    ResponseEntity<Void> updateTestGradeOnSubmit(
+            @Parameter(in = ParameterIn.HEADER, required = true, description = "authentication token") @CookieValue("chalkauthtoken") String jwtToken,
+            @Parameter(in = ParameterIn.PATH, required = true) @PathVariable("testId") String testId,
+            @Parameter(in = ParameterIn.DEFAULT, required = true) @RequestBody Boolean gradeOnSubmit);
+
     @Operation(summary = "Updates a test's global instructions.", description = "", tags={ "tests" })
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Test updated Successfully."),
@@ -538,7 +631,9 @@ public interface TestsApi {
             @Parameter(in = ParameterIn.PATH, required = true) @PathVariable("testId") String testId,
             @Parameter(in = ParameterIn.DEFAULT, required = true) @RequestBody long startTolerance);
 
-    @Operation(summary = "Uploads a resolution for a specific exercise on a given test", description = "", tags={ "tests" })
+    @Operation(summary = "Uploads a resolution for a specific exercise on a given test",
+            description = "Autosaves should set 'autosave' to true. Autosaves are buffered and written shortly after, " +
+                    "and always before the test resolution is submitted.", tags={ "tests" })
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Operation successful."),
             @ApiResponse(responseCode = "401", description = "Unauthorized operation."),             
@@ -551,6 +646,7 @@ public interface TestsApi {
     ResponseEntity<Void> updateTestExerciseResolution(
             @Parameter(in = ParameterIn.HEADER, required = true, description = "authentication token") @CookieValue("chalkauthtoken") String jwtToken,
             @Parameter(in = ParameterIn.PATH, required = true) @PathVariable("resolutionId") String testResolutionId,
+            @Parameter(in = ParameterIn.QUERY, description = "Whether the upload is an autosave", schema = @Schema(defaultValue = "false")) @RequestParam(value = "autosave", required = false, defaultValue = "false") boolean autosave,
             @Parameter(in = ParameterIn.DEFAULT, required = true) @RequestBody ExerciseResolution exerciseResolution);
 
 
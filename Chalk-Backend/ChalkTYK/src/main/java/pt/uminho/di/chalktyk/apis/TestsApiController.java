@@ -1,14 +1,19 @@
 package pt.uminho.di.chalktyk.apis;
 
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
 import pt.uminho.di.chalktyk.apis.utility.CustomPage;
 import pt.uminho.di.chalktyk.apis.utility.ExceptionResponseEntity;
 import pt.uminho.di.chalktyk.apis.utility.JWT;
 import pt.uminho.di.chalktyk.dtos.CreateTestExerciseDTO;
 import pt.uminho.di.chalktyk.dtos.DuplicateTestDTO;
+import pt.uminho.di.chalktyk.dtos.DuplicateTestIntoCoursesDTO;
 import pt.uminho.di.chalktyk.dtos.ISODateTimeDTO;
 import pt.uminho.di.chalktyk.dtos.ManualExerciseCorrectionDTO;
+import pt.uminho.di.chalktyk.dtos.TestListingDTO;
+import pt.uminho.di.chalktyk.dtos.TestStatisticsDTO;
 import pt.uminho.di.chalktyk.models.exercises.ExerciseResolution;
 import pt.uminho.di.chalktyk.models.miscellaneous.Visibility;
 import pt.uminho.di.chalktyk.models.tests.Test;
@@ -16,16 +21,21 @@ import pt.uminho.di.chalktyk.models.tests.TestGroup;
 import pt.uminho.di.chalktyk.models.tests.TestResolution;
 import pt.uminho.di.chalktyk.models.tests.TestTag;
 import pt.uminho.di.chalktyk.models.users.Specialist;
+import pt.uminho.di.chalktyk.services.ICorrectionJobsService;
 import pt.uminho.di.chalktyk.services.IExercisesTestsAuthorization;
 import pt.uminho.di.chalktyk.services.ISecurityService;
 import pt.uminho.di.chalktyk.services.ITestsService;
+import pt.uminho.di.chalktyk.services.LiveTestClock;
 import pt.uminho.di.chalktyk.services.exceptions.BadInputException;
 import pt.uminho.di.chalktyk.services.exceptions.NotFoundException;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import pt.uminho.di.chalktyk.services.exceptions.ServiceException;
 
+import java.io.IOException;
 import java.util.List;
 
 @RestController
@@ -35,12 +45,17 @@ public class TestsApiController implements TestsApi {
     private final ITestsService testsService;
     private final ISecurityService securityService;
     private final IExercisesTestsAuthorization exercisesTestsAuthorization;
+    private final ICorrectionJobsService correctionJobsService;
+    private final LiveTestClock liveTestClock;
 
     @Autowired
-    public TestsApiController(ITestsService testsService, ISecurityService securityService, IExercisesTestsAuthorization exercisesTestsAuthorization){
+    public TestsApiController(ITestsService testsService, ISecurityService securityService, IExercisesTestsAuthorization exercisesTestsAuthorization,
+                              ICorrectionJobsService correctionJobsService, LiveTestClock liveTestClock){
         this.testsService = testsService;
         this.securityService = securityService;
         this.exercisesTestsAuthorization = exercisesTestsAuthorization;
+        this.correctionJobsService = correctionJobsService;
+        this.liveTestClock = liveTestClock;
     }
 
     private Test canGetTest(String userId, String userRole, String testId) throws NotFoundException {
@@ -61,7 +76,8 @@ public class TestsApiController implements TestsApi {
     }
 
     public ResponseEntity<CustomPage<Test>> getTests(Integer page, Integer itemsPerPage, List<String> tags, Boolean matchAllTags, String visibilityType,
-                                                     String title, String specialistId, String courseId, String institutionId, String jwt) {
+                                                     String title, String specialistId, String courseId, String institutionId, String search,
+                                                     String cursor, Boolean estimateTotal, String jwt) {
         try {
             JWT token = securityService.validateJWT(jwt);
             String userId = token.getUserId(),
@@ -77,13 +93,28 @@ public class TestsApiController implements TestsApi {
                     throw new BadInputException("Visibility type not found");
             }
 
+            if (cursor != null && search != null)
+                throw new BadInputException("Search results cannot be paginated with a cursor.");
+
             if(role.equals("STUDENT"))
                 perm = exercisesTestsAuthorization.canStudentListTest(userId, visibility, courseId, institutionId);
             else if (role.equals("SPECIALIST")) {
                 perm = exercisesTestsAuthorization.canSpecialistListTest(userId, specialistId, visibility, courseId, institutionId);
             }
 
-            if(perm)
+            if(perm && cursor != null)
+                return ResponseEntity.ok(new CustomPage<>(
+                        testsService.getTests(
+                                cursor, itemsPerPage, Boolean.TRUE.equals(estimateTotal), tags, matchAllTags,
+                                visibility, specialistId, courseId, institutionId,
+                                title, false)));
+            else if(perm && search != null)
+                return ResponseEntity.ok(new CustomPage<>(
+                        testsService.searchTests(
+                                search, page, itemsPerPage, tags, matchAllTags,
+                                visibility, specialistId, courseId, institutionId,
+                                title, false)));
+            else if(perm)
                 return ResponseEntity.ok(new CustomPage<>(
                         testsService.getTests(
                                 page, itemsPerPage, tags, matchAllTags,
@@ -145,7 +176,7 @@ public class TestsApiController implements TestsApi {
         }
     }
 
-    public ResponseEntity<Void> deleteTestById(String testId, String jwt) {
+    public ResponseEntity<Void> deleteTestById(String testId, Boolean background, String jwt) {
         try {
             // validate jwt token and get user id and role
             JWT token = securityService.validateJWT(jwt);
@@ -154,7 +185,7 @@ public class TestsApiController implements TestsApi {
 
             if(role.equals("SPECIALIST")) {
                 if(exercisesTestsAuthorization.canSpecialistAccessTest(userId, testId)) {
-                    testsService.deleteTestById(testId);
+                    testsService.deleteTestById(testId, Boolean.TRUE.equals(background));
                     return new ResponseEntity<>(HttpStatus.OK);
                 }
             }
@@ -208,6 +239,7 @@ public class TestsApiController implements TestsApi {
             String userId = token.getUserId(),
                     role = token.getUserRole();
 
+            Visibility visibility = parseVisibility(duplicateTestDTO.getVisibility());
             Test test = testsService.getTestById(testId);
             Visibility exVisibility = test.getVisibility();
             String exCourseId = test.getCourseId();
@@ -218,7 +250,7 @@ public class TestsApiController implements TestsApi {
             if(perm && duplicateTestDTO.getCourseId()!=null)
                 perm = exercisesTestsAuthorization.specialistBelongsToCourse(userId,duplicateTestDTO.getCourseId());
             if(perm)
-                return ResponseEntity.ok(testsService.duplicateTestById(userId, testId, Visibility.valueOf(duplicateTestDTO.getVisibility()), duplicateTestDTO.getCourseId()));
+                return ResponseEntity.ok(testsService.duplicateTestById(userId, testId, visibility, duplicateTestDTO.getCourseId()));
             else
                 return new ExceptionResponseEntity<String>().createRequest(
                         HttpStatus.FORBIDDEN.value(),
@@ -228,6 +260,44 @@ public class TestsApiController implements TestsApi {
         }
     }
 
+    public ResponseEntity<List<String>> duplicateTestIntoCourses(String testId, String jwt, DuplicateTestIntoCoursesDTO duplicateTestDTO) {
+        try {
+            // validate jwt token and get user id and role
+            JWT token = securityService.validateJWT(jwt);
+            String userId = token.getUserId(),
+                    role = token.getUserRole();
+
+            Visibility visibility = parseVisibility(duplicateTestDTO.getVisibility());
+            TestListingDTO test = testsService.getTestListing(testId);
+            boolean perm = role.equals("SPECIALIST")
+                    && exercisesTestsAuthorization.canSpecialistGetTest(userId, test.getSpecialistId(), test.getVisibility(), test.getCourseId(), test.getInstitutionId());
+            if(perm && duplicateTestDTO.getCoursesIds() != null) {
+                for (String courseId : duplicateTestDTO.getCoursesIds()) {
+                    if (courseId != null && !exercisesTestsAuthorization.specialistBelongsToCourse(userId, courseId)) {
+                        perm = false;
+                        break;
+                    }
+                }
+            }
+            if(perm)
+                return ResponseEntity.ok(testsService.duplicateTestIntoCourses(userId, testId, visibility, duplicateTestDTO.getCoursesIds()));
+            else
+                return new ExceptionResponseEntity<List<String>>().createRequest(
+                        HttpStatus.FORBIDDEN.value(),
+                        "User does not have permission to duplicate the test.");
+        } catch (ServiceException e) {
+            return new ExceptionResponseEntity<List<String>>().createRequest(e);
+        }
+    }
+
+    private static Visibility parseVisibility(String visibility) throws BadInputException {
+        try {
+            return Visibility.fromValue(visibility);
+        } catch (IllegalArgumentException e) {
+            throw new BadInputException("Visibility type not found");
+        }
+    }
+
 
     /**
      * Updates test basic properties: title, conclusion, globalInstructions, publishDate and visibility.
@@ -279,7 +349,7 @@ public class TestsApiController implements TestsApi {
         }
     }
 
-    public ResponseEntity<Void> automaticCorrection(String testId, String correctionType, String jwt) {
+    public ResponseEntity<String> automaticCorrection(String testId, String correctionType, String jwt) {
         try {
             // validate jwt token and get user id and role
             JWT token = securityService.validateJWT(jwt);
@@ -294,16 +364,14 @@ public class TestsApiController implements TestsApi {
                 perm = exercisesTestsAuthorization.canSpecialistAccessTestResolution(userId, testId);
 
             // if he has permission, execute the request
-            if(perm) {
-                testsService.automaticCorrection(testId,correctionType);
-                return new ResponseEntity<>(HttpStatus.OK);
-            }
+            if(perm)
+                return ResponseEntity.ok(correctionJobsService.submitTestCorrection(testId, correctionType, userId));
 
-            return new ExceptionResponseEntity<Void>().createRequest(
+            return new ExceptionResponseEntity<String>().createRequest(
                     HttpStatus.FORBIDDEN.value(),
                     "User does not have permission to issue the correction of the test resolution.");
         } catch (ServiceException e) {
-            return new ExceptionResponseEntity<Void>().createRequest(e);
+            return new ExceptionResponseEntity<String>().createRequest(e);
         }
     }
 
@@ -332,7 +400,8 @@ public class TestsApiController implements TestsApi {
         }
     }
 
-    public ResponseEntity<CustomPage<TestResolution>> getTestResolutions(String testId, Integer page, Integer itemsPerPage, String jwt) {
+    @Override
+    public ResponseEntity<TestStatisticsDTO> getTestStatistics(String testId, String jwt) {
         try {
             // validate jwt token and get user id and role
             JWT token = securityService.validateJWT(jwt);
@@ -346,6 +415,52 @@ public class TestsApiController implements TestsApi {
 
             // if he has permission, execute the request
             if(perm) {
+                return ResponseEntity.ok(testsService.getTestStatistics(testId));
+            }
+
+            return new ExceptionResponseEntity<TestStatisticsDTO>().createRequest(
+                    HttpStatus.FORBIDDEN.value(),
+                    "User does not have permission to get the test statistics.");
+        } catch (ServiceException e) {
+            return new ExceptionResponseEntity<TestStatisticsDTO>().createRequest(e);
+        }
+    }
+
+    public ResponseEntity<SseEmitter> followLiveTestClock(String testId, String jwt) {
+        try {
+            // validate jwt token and get user id and role
+            JWT token = securityService.validateJWT(jwt);
+            String userId = token.getUserId(),
+                    role = token.getUserRole();
+
+            // checks if the user has permission. The snapshot of the test is usually cached.
+            if (canGetTest(userId, role, testId) == null)
+                return new ExceptionResponseEntity<SseEmitter>().createRequest(
+                        HttpStatus.FORBIDDEN.value(),
+                        "User does not have permission to follow the test.");
+
+            return ResponseEntity.ok(liveTestClock.subscribe(testId));
+        } catch (ServiceException e) {
+            return new ExceptionResponseEntity<SseEmitter>().createRequest(e);
+        }
+    }
+
+    public ResponseEntity<CustomPage<TestResolution>> getTestResolutions(String testId, Integer page, Integer itemsPerPage, String cursor, Boolean estimateTotal, String jwt) {
+        try {
+            // validate jwt token and get user id and role
+            JWT token = securityService.validateJWT(jwt);
+            String userId = token.getUserId(),
+                    role = token.getUserRole();
+
+            // checks if the user has permission
+            boolean perm = false;
+            if(role.equals("SPECIALIST"))
+                perm = exercisesTestsAuthorization.canSpecialistAccessTest(userId, testId);
+
+            // if he has permission, execute the request
+            if(perm) {
+                if (cursor != null)
+                    return ResponseEntity.ok(new CustomPage<>(testsService.getTestResolutions(testId, cursor, itemsPerPage, Boolean.TRUE.equals(estimateTotal))));
                 return ResponseEntity.ok(new CustomPage<>(testsService.getTestResolutions(testId,page,itemsPerPage)));
             }
 
@@ -482,6 +597,41 @@ public class TestsApiController implements TestsApi {
         }
     }
 
+    public ResponseEntity<StreamingResponseBody> exportTestResults(String testId, String format, String jwt) {
+        try {
+            // validate jwt token and get user id and role
+            JWT token = securityService.validateJWT(jwt);
+            String userId = token.getUserId(),
+                    role = token.getUserRole();
+
+            if (!"csv".equals(format) && !"ndjson".equals(format))
+                throw new BadInputException("Cannot export test results: format '" + format + "' is not supported.");
+
+            if(role.equals("SPECIALIST") && exercisesTestsAuthorization.canSpecialistAccessTest(userId, testId)){
+                // the results are written after the response starts being sent
+                StreamingResponseBody body = outputStream -> {
+                    try {
+                        testsService.exportTestResults(testId, format, outputStream);
+                    } catch (ServiceException e) {
+                        throw new IOException(e);
+                    }
+                };
+                boolean csv = "csv".equals(format);
+                return ResponseEntity.ok()
+                        .contentType(csv ? new MediaType("text", "csv") : new MediaType("application", "x-ndjson"))
+                        .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + testId + (csv ? ".csv" : ".ndjson") + "\"")
+                        .body(body);
+            }
+            else {
+                return new ExceptionResponseEntity<StreamingResponseBody>().createRequest(
+                        HttpStatus.FORBIDDEN.value(),
+                        "User does not have permission to export the results of the test.");
+            }
+        } catch (ServiceException e) {
+            return new ExceptionResponseEntity<StreamingResponseBody>().createRequest(e);
+        }
+    }
+
     public ResponseEntity<TestResolution> getStudentLastResolution(String testId, String studentId, String jwt) {
         try {
             // validate jwt token and get user id and role
@@ -525,6 +675,29 @@ public class TestsApiController implements TestsApi {
         }
     }
 
+    @Override
+    public ResponseEntity<Void> updateTestGradeOnSubmit(String jwtToken, String testId, Boolean gradeOnSubmit) {
+        try {
+            // validate jwt token and get user id and role
+            JWT token = securityService.validateJWT(jwtToken);
+            String userId = token.getUserId(),
+                    role = token.getUserRole();
+
+            if(role.equals("SPECIALIST")) {
+                if(exercisesTestsAuthorization.canSpecialistAccessTest(userId, testId)) {
+                    testsService.updateTestGradeOnSubmit(testId, Boolean.TRUE.equals(gradeOnSubmit));
+                    return new ResponseEntity<>(HttpStatus.OK);
+                }
+            }
+
+            return new ExceptionResponseEntity<Void>().createRequest(
+                    HttpStatus.FORBIDDEN.value(),
+                    "User does not have permission to update the test grading mode.");
+        } catch (ServiceException e) {
+            return new ExceptionResponseEntity<Void>().createRequest(e);
+        }
+    }
+
     @Override
     public ResponseEntity<Void> updateTestGlobalInstructions(String jwtToken, String testId, String globalInstructions) {
         try {
@@ -779,7 +952,7 @@ public class TestsApiController implements TestsApi {
     }
 
     @Override
-    public ResponseEntity<Void> updateTestExerciseResolution(String jwtToken, String testResolutionId, ExerciseResolution exerciseResolution) {
+    public ResponseEntity<Void> updateTestExerciseResolution(String jwtToken, String testResolutionId, boolean autosave, ExerciseResolution exerciseResolution) {
         try {
             // validate jwt token and get user id and role
             JWT token = securityService.validateJWT(jwtToken);
@@ -788,7 +961,10 @@ public class TestsApiController implements TestsApi {
 
             if(role.equals("STUDENT")) {
                 if(exercisesTestsAuthorization.canStudentAccessTestResolution(userId, testResolutionId)) {
-                    testsService.uploadResolution(testResolutionId,exerciseResolution.getExerciseId(),exerciseResolution);
+                    if (autosave)
+                        testsService.autosaveResolution(testResolutionId,exerciseResolution.getExerciseId(),exerciseResolution);
+                    else
+                        testsService.uploadResolution(testResolutionId,exerciseResolution.getExerciseId(),exerciseResolution);
                     return new ResponseEntity<>(HttpStatus.OK);
                 }
             }
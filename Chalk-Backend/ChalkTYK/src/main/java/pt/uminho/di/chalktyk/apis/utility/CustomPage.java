@@ -1,8 +1,10 @@
 package pt.uminho.di.chalktyk.apis.utility;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.Getter;
 import lombok.ToString;
 import org.springframework.data.domain.Page;
+import pt.uminho.di.chalktyk.dtos.CursorPageDTO;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -11,7 +13,11 @@ import java.util.List;
 @ToString
 public class CustomPage<T>{
     private final List<T> items;
-    private final int totalPages; // total number of pages
+    private final int totalPages; // total number of pages. Not known, i.e. 0, for pages requested with a cursor
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private final String nextCursor; // only for pages requested with a cursor
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private final Long estimatedTotal; // only for pages requested with a cursor
     public CustomPage(Page<T> page){
         if(page == null){
             items = new ArrayList<>();
@@ -20,9 +26,22 @@ public class CustomPage<T>{
             items = page.getContent();
             totalPages = page.getTotalPages();
         }
+        nextCursor = null;
+        estimatedTotal = null;
     }
     public CustomPage(List<T> items, int totalPages){
         this.items = items != null ? items : new ArrayList<>();
         this.totalPages = Integer.max(0, totalPages);
+        nextCursor = null;
+        estimatedTotal = null;
     }
-}
\ No newline at end of file
+    public CustomPage(CursorPageDTO<T> page){
+        this(page.getItems(), page.getNextCursor(), page.getEstimatedTotal());
+    }
+    public CustomPage(List<T> items, String nextCursor, Long estimatedTotal){
+        this.items = items != null ? items : new ArrayList<>();
+        this.totalPages = 0;
+        this.nextCursor = nextCursor;
+        this.estimatedTotal = estimatedTotal;
+    }
+}
@@ -0,0 +1,20 @@
+package pt.uminho.di.chalktyk.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.List;
+
+/**
+ * Page of a keyset paginated listing.
+ * The items are not counted, so only an estimate of the total is given, and only if requested.
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class CursorPageDTO<T> {
+    private final List<T> items;
+    private final String nextCursor; // cursor of the next page, or 'null' if this is the last page
+    private final Long estimatedTotal; // estimated number of items of the listing, or 'null' if not requested
+}
@@ -0,0 +1,19 @@
+package pt.uminho.di.chalktyk.dtos;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Getter
+@NoArgsConstructor
+@AllArgsConstructor
+public class DuplicateTestIntoCoursesDTO {
+    @Schema(required = true)
+    List<String> coursesIds;
+
+    @Schema(required = true,allowableValues = {"public", "institution", "course", "not_listed", "private"})
+    String visibility;
+}
@@ -0,0 +1,34 @@
+package pt.uminho.di.chalktyk.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * State of the clock of a live test, as sent to the clients following the test.
+ * The remaining seconds count until the start of the test, if it has not started, or else until its end.
+ */
+@Getter
+@NoArgsConstructor
+@AllArgsConstructor
+public class LiveTestClockDTO {
+    private String testId;
+    private Phase phase;
+    private LocalDateTime serverTime;
+    private LocalDateTime startDate;
+    // date after which students can no longer start the test
+    private LocalDateTime toleranceEndDate;
+    private LocalDateTime endDate;
+    private long remainingSeconds;
+
+    public enum Phase {
+        NOT_STARTED,
+        // students can start the test
+        STARTED,
+        // the start tolerance is over, so students can no longer start the test
+        ONGOING,
+        ENDED
+    }
+}
@@ -0,0 +1,26 @@
+package pt.uminho.di.chalktyk.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import pt.uminho.di.chalktyk.models.miscellaneous.Visibility;
+
+import java.time.LocalDateTime;
+
+/**
+ * Columns of a test needed to list it. Does not include the groups of the test.
+ */
+@Getter
+@AllArgsConstructor
+public class TestListingDTO {
+    private String id;
+    private String title;
+    private String globalInstructions;
+    private Float globalPoints;
+    private String conclusion;
+    private LocalDateTime creationDate;
+    private LocalDateTime publishDate;
+    private String specialistId;
+    private Visibility visibility;
+    private String courseId;
+    private String institutionId;
+}
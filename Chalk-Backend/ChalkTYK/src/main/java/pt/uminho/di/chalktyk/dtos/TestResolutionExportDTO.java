@@ -0,0 +1,33 @@
+package pt.uminho.di.chalktyk.dtos;
+
+import lombok.Getter;
+import pt.uminho.di.chalktyk.models.tests.TestResolutionGroup;
+import pt.uminho.di.chalktyk.models.tests.TestResolutionStatus;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Columns of a test resolution needed to export the results of a test.
+ * The student is identified by its email.
+ */
+@Getter
+public class TestResolutionExportDTO {
+    private String studentEmail;
+    private int submissionNr;
+    private TestResolutionStatus status;
+    private LocalDateTime submissionDate;
+    private Float totalPoints;
+    private List<TestResolutionGroup> groups;
+
+    // the groups are received as an Object, since it is the type hibernate gives to jsonb columns in query results
+    @SuppressWarnings("unchecked")
+    public TestResolutionExportDTO(String studentEmail, int submissionNr, TestResolutionStatus status, LocalDateTime submissionDate, Float totalPoints, Object groups) {
+        this.studentEmail = studentEmail;
+        this.submissionNr = submissionNr;
+        this.status = status;
+        this.submissionDate = submissionDate;
+        this.totalPoints = totalPoints;
+        this.groups = (List<TestResolutionGroup>) groups;
+    }
+}
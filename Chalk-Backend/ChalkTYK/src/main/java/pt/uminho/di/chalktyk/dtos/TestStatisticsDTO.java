@@ -0,0 +1,39 @@
+package pt.uminho.di.chalktyk.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Statistics of the corrected resolutions of a test. Each bin of a histogram
+ * counts the resolutions whose points fall in an equal share of the maximum points,
+ * from the lowest to the highest.
+ */
+@Getter
+@NoArgsConstructor
+@AllArgsConstructor
+public class TestStatisticsDTO {
+    private String testId;
+    private float maxPoints;
+    private long count;
+    private double average;
+    private double standardDeviation;
+    private int[] histogram;
+    private List<ExerciseStatisticsDTO> exercises;
+
+    @Getter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class ExerciseStatisticsDTO {
+        private String exerciseId;
+        private float maxPoints;
+        private long count;
+        private double average;
+        private double standardDeviation;
+        // average points, as a fraction of the maximum points
+        private double successRate;
+        private int[] histogram;
+    }
+}
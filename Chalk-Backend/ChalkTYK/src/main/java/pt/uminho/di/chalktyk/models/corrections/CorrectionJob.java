@@ -0,0 +1,107 @@
+package pt.uminho.di.chalktyk.models.corrections;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import io.hypersistence.utils.hibernate.type.json.JsonBinaryType;
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.hibernate.annotations.Type;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Asynchronous correction of the resolutions of a test or of an exercise.
+ */
+@Entity
+@Getter
+@Setter
+@NoArgsConstructor
+@Table(name = "CorrectionJob")
+public class CorrectionJob {
+	@Id
+	@Column(name = "ID")
+	@GeneratedValue(strategy = GenerationType.UUID)
+	private String id;
+
+	@Enumerated(EnumType.STRING)
+	@Column(name = "Target")
+	private CorrectionJobTarget target;
+
+	// identifier of the test or of the exercise
+	@Column(name = "TargetID")
+	private String targetId;
+
+	@Column(name = "CorrectionType")
+	private String correctionType;
+
+	// identifier of the user that requested the correction
+	@Column(name = "RequesterID")
+	private String requesterId;
+
+	@Enumerated(EnumType.STRING)
+	@Column(name = "Status")
+	private CorrectionJobStatus status;
+
+	@Column(name = "CreationDate")
+	private LocalDateTime creationDate;
+
+	@Column(name = "StartDate")
+	private LocalDateTime startDate;
+
+	@Column(name = "EndDate")
+	private LocalDateTime endDate;
+
+	// number of resolutions that need to be corrected, known when the job starts
+	@Column(name = "TotalResolutions")
+	private Long totalResolutions;
+
+	@Column(name = "CorrectedResolutions")
+	private long correctedResolutions;
+
+	// number of resolutions that could not be corrected, per exercise type
+	@Type(JsonBinaryType.class)
+	@Column(name = "Failures", columnDefinition = "jsonb")
+	private Map<String, Long> failures = new HashMap<>();
+
+	@Column(name = "ErrorMessage", columnDefinition = "text")
+	private String errorMessage;
+
+	// identifier of the instance of the application that runs the job
+	@JsonIgnore
+	@Column(name = "OwnerID")
+	private String ownerId;
+
+	// last time the owner reported that the job is still running.
+	// A running job without a recent heartbeat is resumed by another instance
+	@JsonIgnore
+	@Column(name = "HeartbeatDate")
+	private LocalDateTime heartbeatDate;
+
+	// set when the job is cancelled on an instance that does not run it
+	@Column(name = "CancelRequested", columnDefinition = "boolean not null default false")
+	private boolean cancelRequested;
+
+	public CorrectionJob(CorrectionJobTarget target, String targetId, String correctionType, String requesterId) {
+		this.target = target;
+		this.targetId = targetId;
+		this.correctionType = correctionType;
+		this.requesterId = requesterId;
+		this.status = CorrectionJobStatus.QUEUED;
+		this.creationDate = LocalDateTime.now();
+	}
+
+	/**
+	 * @return number of resolutions corrected per second, or 'null' if the job has not started yet.
+	 */
+	public Double getThroughput() {
+		if (startDate == null)
+			return null;
+		LocalDateTime end = endDate != null ? endDate : LocalDateTime.now();
+		long millis = Math.max(Duration.between(startDate, end).toMillis(), 1);
+		return correctedResolutions * 1000.0 / millis;
+	}
+}
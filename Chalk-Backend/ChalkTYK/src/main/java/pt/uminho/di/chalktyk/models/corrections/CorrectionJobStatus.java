@@ -0,0 +1,19 @@
+package pt.uminho.di.chalktyk.models.corrections;
+
+public enum CorrectionJobStatus {
+	QUEUED("queued"),
+	RUNNING("running"),
+	COMPLETED("completed"),
+	FAILED("failed"),
+	CANCELLED("cancelled");
+
+	private String value;
+
+	CorrectionJobStatus(String value) {
+		this.value = value;
+	}
+
+	public String toString() {
+		return String.valueOf(value);
+	}
+}
@@ -0,0 +1,16 @@
+package pt.uminho.di.chalktyk.models.corrections;
+
+public enum CorrectionJobTarget {
+	TEST("test"),
+	EXERCISE("exercise");
+
+	private String value;
+
+	CorrectionJobTarget(String value) {
+		this.value = value;
+	}
+
+	public String toString() {
+		return String.valueOf(value);
+	}
+}
@@ -45,6 +45,14 @@ import pt.uminho.di.chalktyk.services.exceptions.ForbiddenException;
 		}
 )
 @Inheritance(strategy = InheritanceType.JOINED)
+@Table(indexes = {
+		// supports the lookup of the test exercises of a specialist with a given content,
+		// and the listing of the exercises of a specialist
+		@Index(name = "exercise_specialist_content_hash_idx", columnList = "SpecialistID, ContentHash"),
+		// support the listing of the exercises of a course or institution
+		@Index(name = "exercise_course_idx", columnList = "CourseID"),
+		@Index(name = "exercise_institution_idx", columnList = "InstitutionID")
+})
 public abstract class Exercise {
 	@Id
 	@Column(name = "ID")
@@ -94,7 +102,8 @@ public abstract class Exercise {
 	private String institutionId;
 
 	@ManyToMany(targetEntity= Tag.class, fetch = FetchType.LAZY)
-	@JoinTable(name="Exercise_Tag", joinColumns={ @JoinColumn(name="ExerciseID") }, inverseJoinColumns={ @JoinColumn(name="TagID") })
+	@JoinTable(name="Exercise_Tag", joinColumns={ @JoinColumn(name="ExerciseID") }, inverseJoinColumns={ @JoinColumn(name="TagID") },
+			   indexes = { @Index(name = "exercise_tag_tag_idx", columnList = "TagID") })
 	private Set<Tag> tags;
 
 	@OneToOne(fetch = FetchType.LAZY, targetEntity = ExerciseSolution.class, orphanRemoval = true)
@@ -113,6 +122,13 @@ public abstract class Exercise {
 	@Setter(AccessLevel.NONE)
 	private String rubricId;
 
+	// Hash of the content of a test exercise (statement, data of the exercise type, rubric, solution and tags).
+	// Test exercises with a hash may be shared by several tests, and are not changed in place while shared.
+	// 'null' if the exercise cannot be shared.
+	@JsonIgnore
+	@Column(name = "ContentHash")
+	private String contentHash;
+
 	public Exercise(String id, String title, Visibility visibility, ExerciseStatement statement, Course course, Specialist specialist, Institution institution, Set<Tag> tags, ExerciseSolution solution, ExerciseRubric rubric) {
 		this.id = id;
 		this.title = title;
@@ -192,6 +208,18 @@ public abstract class Exercise {
 	 */
 	public abstract ExerciseResolution automaticEvaluation(ExerciseResolution resolution, ExerciseSolution solution, ExerciseRubric rubric) throws ForbiddenException;
 
+	/**
+	 * Prepares the automatic evaluation of many resolutions against the same solution and rubric.
+	 * By default, each resolution is evaluated with {@link #automaticEvaluation(ExerciseResolution, ExerciseSolution, ExerciseRubric)}.
+	 *
+	 * @param solution solution of the exercise
+	 * @param rubric   rubric of the exercise
+	 * @return grader that evaluates resolutions as the automatic evaluation does
+	 */
+	public ResolutionGrader compileAutomaticEvaluation(ExerciseSolution solution, ExerciseRubric rubric) {
+		return resolution -> automaticEvaluation(resolution, solution, rubric);
+	}
+
 	public abstract void verifyResolutionProperties(ExerciseResolutionData exerciseResolutionData) throws BadInputException;
 
 	public abstract void verifyRubricProperties(ExerciseRubric rubric) throws BadInputException;
@@ -0,0 +1,27 @@
+package pt.uminho.di.chalktyk.models.exercises;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Last submission number given to the resolutions of a student for an exercise.
+ * Its primary key is the unique constraint that allows the next number to be allocated
+ * with a single upsert (see {@link pt.uminho.di.chalktyk.repositories.ExerciseAttemptCounterDAO}).
+ * The identifiers are not foreign keys, so that deleting an exercise or a student is not blocked by its counters.
+ */
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+@Setter
+@Entity
+@Table(name="ExerciseAttemptCounter")
+public class ExerciseAttemptCounter {
+	@EmbeddedId
+	private ExerciseAttemptCounterPK exerciseAttemptCounterPK;
+
+	@Column(name="LastSubmissionNr", nullable=false)
+	private int lastSubmissionNr;
+}
@@ -0,0 +1,25 @@
+package pt.uminho.di.chalktyk.models.exercises;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Embeddable;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.io.Serializable;
+
+@Getter
+@Setter
+@Embeddable
+@EqualsAndHashCode
+@AllArgsConstructor
+@NoArgsConstructor
+public class ExerciseAttemptCounterPK implements Serializable {
+	@Column(name="StudentID", nullable=false)
+	private String studentId;
+
+	@Column(name="ExerciseID", nullable=false)
+	private String exerciseId;
+}
@@ -10,6 +10,12 @@ import pt.uminho.di.chalktyk.models.users.Student;
 import pt.uminho.di.chalktyk.services.exceptions.BadInputException;
 
 @Entity
+@Table(indexes = {
+		// supports the lookup of the last resolution of a student, and the keyset pagination of the resolutions
+		@Index(name = "exercise_resolution_exercise_student_nr_idx", columnList = "ExerciseID, StudentID, SubmissionNr"),
+		// supports the automatic correction, which walks the not revised resolutions of an exercise by identifier
+		@Index(name = "exercise_resolution_exercise_status_id_idx", columnList = "ExerciseID, Status, ID")
+})
 @Getter
 @Setter
 @NoArgsConstructor
@@ -0,0 +1,19 @@
+package pt.uminho.di.chalktyk.models.exercises;
+
+import pt.uminho.di.chalktyk.services.exceptions.ForbiddenException;
+
+/**
+ * Automatic evaluation of resolutions against a fixed solution and rubric of an exercise.
+ * Obtained with {@link Exercise#compileAutomaticEvaluation(ExerciseSolution, ExerciseRubric)},
+ * so that the solution and the rubric are prepared once for many resolutions.
+ */
+@FunctionalInterface
+public interface ResolutionGrader {
+	/**
+	 * Evaluates a resolution. Updates resolution status, points and resolution data.
+	 * @param resolution resolution that will be evaluated
+	 * @return updated resolution
+	 * @throws ForbiddenException if the resolution cannot be evaluated automatically.
+	 */
+	ExerciseResolution grade(ExerciseResolution resolution) throws ForbiddenException;
+}
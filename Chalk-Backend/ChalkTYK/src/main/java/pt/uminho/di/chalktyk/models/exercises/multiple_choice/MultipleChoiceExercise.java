@@ -128,6 +128,24 @@ public class MultipleChoiceExercise extends Exercise {
 		return resolution;
 	}
 
+	/**
+	 * Compiles the solution and the rubric into a grader that produces the same points as
+	 * {@link #automaticEvaluation(ExerciseResolution, ExerciseSolution, ExerciseRubric)}.
+	 * If they cannot be compiled, each resolution is evaluated, and rejected, by the automatic evaluation.
+	 *
+	 * @param solution solution of the exercise
+	 * @param rubric   rubric of the exercise
+	 * @return grader of the resolutions of the exercise
+	 */
+	@Override
+	public ResolutionGrader compileAutomaticEvaluation(ExerciseSolution solution, ExerciseRubric rubric) {
+		if(solution == null || !(solution.getData() instanceof MultipleChoiceData solutionData) || solutionData.getItems() == null
+				|| !(rubric instanceof MultipleChoiceRubric mcRubric)
+				|| (mctype != Mctype.MULTIPLE_CHOICE_NO_JUSTIFICATION && mctype != Mctype.TRUE_FALSE_NO_JUSTIFICATION))
+			return super.compileAutomaticEvaluation(solution, rubric);
+		return new MultipleChoiceGrader(solutionData, getPointsPerQuestion(), mcRubric.getPenalty());
+	}
+
 	@Override
 	public void verifyInsertProperties() throws BadInputException {
 		super.verifyInsertProperties();
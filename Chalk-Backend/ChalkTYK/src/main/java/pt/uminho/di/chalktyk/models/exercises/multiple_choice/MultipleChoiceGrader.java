@@ -0,0 +1,87 @@
+package pt.uminho.di.chalktyk.models.exercises.multiple_choice;
+
+import pt.uminho.di.chalktyk.models.exercises.ExerciseResolution;
+import pt.uminho.di.chalktyk.models.exercises.ExerciseResolutionStatus;
+import pt.uminho.di.chalktyk.models.exercises.ResolutionGrader;
+import pt.uminho.di.chalktyk.services.exceptions.ForbiddenException;
+
+import java.util.BitSet;
+import java.util.Map;
+
+/**
+ * Multiple choice solution and rubric compiled for the evaluation of many resolutions.
+ * <p>
+ * The items of the solution are indexed in the order they are iterated, so points are summed in the same order
+ * as {@link MultipleChoiceExercise#automaticEvaluation}, and the scores are identical. The expected values are kept
+ * in bitsets and the points of a right and of a wrong answer are computed once, so only the solution is prepared:
+ * the items of each resolution are still looked up by identifier, since the resolution data is a map,
+ * and each unanswered item still gets a new item, as in the automatic evaluation.
+ */
+final class MultipleChoiceGrader implements ResolutionGrader {
+	private final String[] ids; // identifiers of the items, by index
+	private final BitSet expectedTrue = new BitSet(); // items whose expected value is 'true'
+	private final BitSet expectedNull = new BitSet(); // items without an expected value
+	private final float rightPoints, wrongPoints;
+	// the same boxed points are set on every item
+	private final Float rightItemPoints, wrongItemPoints;
+
+	/**
+	 * @param solutionData data of the solution
+	 * @param pointsPerQuestion points of each question of the exercise
+	 * @param penalty penalty of the rubric, i.e. fraction of the points of a question lost for a wrong answer
+	 */
+	MultipleChoiceGrader(MultipleChoiceData solutionData, float pointsPerQuestion, float penalty) {
+		Map<String, MultipleChoiceResolutionItem> items = solutionData.getItems();
+		ids = new String[items.size()];
+		int i = 0;
+		for (Map.Entry<String, MultipleChoiceResolutionItem> entry : items.entrySet()) {
+			ids[i] = entry.getKey();
+			Boolean value = entry.getValue().getValue();
+			if (value == null)
+				expectedNull.set(i);
+			else if (value)
+				expectedTrue.set(i);
+			i++;
+		}
+		rightPoints = pointsPerQuestion;
+		wrongPoints = -pointsPerQuestion * penalty;
+		rightItemPoints = rightPoints;
+		wrongItemPoints = wrongPoints;
+	}
+
+	@Override
+	public ExerciseResolution grade(ExerciseResolution resolution) throws ForbiddenException {
+		if (resolution == null || resolution.getData() == null)
+			throw new ForbiddenException("Cannot evaluate a null resolution.");
+		if (!(resolution.getData() instanceof MultipleChoiceData resolutionData))
+			throw new ForbiddenException("Cannot evaluate the resolution: it is not a multiple choice resolution.");
+
+		float points = 0.0f;
+		for (int i = 0; i < ids.length; i++) {
+			MultipleChoiceResolutionItem resolutionItem = resolutionData.getItemById(ids[i]);
+
+			// no answer was given by the student, so there is no penalty
+			if (resolutionItem == null)
+				resolutionData.putItem(ids[i], new MultipleChoiceResolutionItem(0f, null, null));
+			else if (isExpected(i, resolutionItem.getValue())) {
+				points += rightPoints;
+				resolutionItem.setPoints(rightItemPoints);
+			}
+			else {
+				points += wrongPoints;
+				resolutionItem.setPoints(wrongItemPoints);
+			}
+		}
+
+		// points should not be a negative number
+		resolution.setStatus(ExerciseResolutionStatus.REVISED);
+		resolution.setPoints(Math.max(points, 0.0f));
+		return resolution;
+	}
+
+	private boolean isExpected(int i, Boolean value) {
+		if (value == null)
+			return expectedNull.get(i);
+		return !expectedNull.get(i) && value == expectedTrue.get(i);
+	}
+}
@@ -3,6 +3,7 @@ package pt.uminho.di.chalktyk.models.tests;
 import java.time.LocalDateTime;
 import java.util.List;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonTypeName;
 import jakarta.persistence.Column;
 import jakarta.persistence.DiscriminatorValue;
@@ -45,4 +46,10 @@ public class DeliverDateTest extends Test {
 		if (super.getPublishDate().isAfter(getDeliverDate()))
 			throw new BadInputException("Cannot create test: Deliver date is invalid - occurs before publish date");
 	}
+
+	@JsonIgnore
+	@Override
+	public LocalDateTime getResolutionDeadline() {
+		return deliverDate;
+	}
 }
\ No newline at end of file
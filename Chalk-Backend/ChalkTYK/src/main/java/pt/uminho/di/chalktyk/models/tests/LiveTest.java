@@ -3,6 +3,7 @@ package pt.uminho.di.chalktyk.models.tests;
 import java.time.LocalDateTime;
 import java.util.List;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonTypeName;
 
 import jakarta.persistence.Column;
@@ -62,4 +63,10 @@ public class LiveTest extends Test {
 		if (getStartTolerance() <= 0 || getStartTolerance() > getDuration())
 			throw new BadInputException("Cannot create test: Test start tolerance is invalid. The test start tolerance is represented in seconds and must be a positive number that is equal or less than the the test duration.");
 	}
+
+	@JsonIgnore
+	@Override
+	public LocalDateTime getResolutionDeadline() {
+		return startDate != null ? startDate.plusSeconds(duration) : null;
+	}
 }
\ No newline at end of file
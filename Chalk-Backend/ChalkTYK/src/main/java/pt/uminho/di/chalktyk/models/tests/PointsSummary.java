@@ -0,0 +1,63 @@
+package pt.uminho.di.chalktyk.models.tests;
+
+import io.hypersistence.utils.hibernate.type.array.IntArrayType;
+import jakarta.persistence.Column;
+import jakarta.persistence.MappedSuperclass;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.hibernate.annotations.Type;
+
+/**
+ * Summary of the points of the corrected resolutions, from which the average, the standard deviation
+ * and the distribution of the points are obtained without reading the resolutions.
+ * The summaries are updated incrementally, whenever the points of a resolution change.
+ */
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+@Setter
+@MappedSuperclass
+public abstract class PointsSummary {
+	// number of bins of the histogram. Each bin covers 1/NR_BINS of the maximum points.
+	public static final int NR_BINS = 10;
+
+	@Column(name="Count", nullable=false)
+	private long count;
+
+	@Column(name="Sum", nullable=false)
+	private double sum;
+
+	@Column(name="SumSquares", nullable=false)
+	private double sumSquares;
+
+	// number of resolutions in each bin, from the lowest to the highest points
+	@Type(IntArrayType.class)
+	@Column(name="Histogram", columnDefinition="integer[]", nullable=false)
+	private int[] histogram;
+
+	/**
+	 * @param points points of a resolution
+	 * @param maxPoints maximum points of the test or exercise
+	 * @return index of the bin of the histogram where the points are counted
+	 */
+	public static int getBin(float points, float maxPoints) {
+		if (maxPoints <= 0)
+			return NR_BINS - 1;
+		int bin = (int) Math.floor(points / maxPoints * NR_BINS);
+		return Math.max(0, Math.min(NR_BINS - 1, bin));
+	}
+
+	public double getAverage() {
+		return count > 0 ? sum / count : 0;
+	}
+
+	public double getStandardDeviation() {
+		if (count == 0)
+			return 0;
+		double average = getAverage();
+		// rounding errors may make the variance slightly negative
+		return Math.sqrt(Math.max(0, sumSquares / count - average * average));
+	}
+}
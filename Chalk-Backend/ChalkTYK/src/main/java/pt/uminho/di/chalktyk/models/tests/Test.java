@@ -6,6 +6,7 @@ import io.hypersistence.utils.hibernate.type.json.JsonBinaryType;
 
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.SQLRestriction;
 import org.hibernate.annotations.Type;
 import pt.uminho.di.chalktyk.models.institutions.Institution;
 import pt.uminho.di.chalktyk.models.miscellaneous.Tag;
@@ -24,11 +25,17 @@ import java.util.*;
 @Getter
 @Setter
 @Entity
-@Table(name="Test")
+@Table(name="Test", indexes = {
+		// support the listing of the tests of a specialist, course or institution
+		@Index(name = "test_specialist_idx", columnList = "SpecialistID"),
+		@Index(name = "test_course_idx", columnList = "CourseID"),
+		@Index(name = "test_institution_idx", columnList = "InstitutionID")
+})
 @Inheritance(strategy = InheritanceType.JOINED)
 @DiscriminatorColumn(name = "Type", discriminatorType = DiscriminatorType.STRING)
 @DiscriminatorValue("basic")
 @JsonTypeName("basic")
+@SQLRestriction("deletion_date is null") // deleted tests are hidden until they are purged
 public class Test implements Serializable {
 	@Column(name="ID")
 	@Id	
@@ -93,6 +100,17 @@ public class Test implements Serializable {
 	@Transient
 	private List<Tag> tags = new ArrayList<>();
 
+	// If 'true', each resolution is queued to be corrected automatically as soon as it is submitted,
+	// instead of being corrected during the submission.
+	@Column(name = "GradeOnSubmit", nullable = false, columnDefinition = "boolean default false")
+	private boolean gradeOnSubmit = false;
+
+	// Date when the test was deleted. The resolutions and exercises of a deleted test are purged
+	// in the background, after which the test itself is removed.
+	@JsonIgnore
+	@Column(name = "DeletionDate")
+	private LocalDateTime deletionDate;
+
 	public void setCourse(Course course) {
 		this.course = course;
 		this.courseId = course != null ? course.getId() : null;
@@ -200,6 +218,14 @@ public class Test implements Serializable {
 		return resolutionGroups;
 	}
 
+	/**
+	 * @return date after which the resolutions of the test are submitted automatically, or 'null' if there is none
+	 */
+	@JsonIgnore
+	public LocalDateTime getResolutionDeadline(){
+		return null;
+	}
+
 	/**
 	 * Copies all data which is not the groups (globalPoints refer to the groups, so it is not copied),
 	 * the visibility and the associations.
@@ -216,5 +242,6 @@ public class Test implements Serializable {
 		dest.setPublishDate(publishDate);
 		dest.setCreationDate(creationDate);
 		dest.setVisibility(visibility);
+		dest.setGradeOnSubmit(gradeOnSubmit);
 	}
 }
\ No newline at end of file
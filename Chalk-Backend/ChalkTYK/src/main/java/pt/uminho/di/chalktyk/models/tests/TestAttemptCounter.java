@@ -0,0 +1,27 @@
+package pt.uminho.di.chalktyk.models.tests;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Last submission number given to the resolutions of a student for a test.
+ * Its primary key is the unique constraint that allows the next number to be allocated
+ * with a single upsert (see {@link pt.uminho.di.chalktyk.repositories.TestAttemptCounterDAO}).
+ * The identifiers are not foreign keys, so that deleting a test or a student is not blocked by its counters.
+ */
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+@Setter
+@Entity
+@Table(name="TestAttemptCounter")
+public class TestAttemptCounter {
+	@EmbeddedId
+	private TestAttemptCounterPK testAttemptCounterPK;
+
+	@Column(name="LastSubmissionNr", nullable=false)
+	private int lastSubmissionNr;
+}
@@ -0,0 +1,25 @@
+package pt.uminho.di.chalktyk.models.tests;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Embeddable;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.io.Serializable;
+
+@Getter
+@Setter
+@Embeddable
+@EqualsAndHashCode
+@AllArgsConstructor
+@NoArgsConstructor
+public class TestAttemptCounterPK implements Serializable {
+	@Column(name="StudentID", nullable=false)
+	private String studentId;
+
+	@Column(name="TestID", nullable=false)
+	private String testId;
+}
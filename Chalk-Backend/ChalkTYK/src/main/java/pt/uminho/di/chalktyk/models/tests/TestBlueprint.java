@@ -0,0 +1,110 @@
+package pt.uminho.di.chalktyk.models.tests;
+
+import pt.uminho.di.chalktyk.models.tests.TestExercise.TestExercise;
+
+import java.util.*;
+
+/**
+ * Immutable structure of a test: the group and points of each exercise, and the template
+ * of the groups of an empty resolution. Computed once per version of a test, and cached
+ * (see {@link pt.uminho.di.chalktyk.services.caches.TestSnapshotCache}), so that the paths
+ * that only need the structure of a test do not walk its groups.
+ */
+public final class TestBlueprint {
+	/**
+	 * Position and points of an exercise in a test.
+	 * @param groupIndex index of the group of the exercise
+	 * @param points points of the exercise
+	 */
+	public record ExerciseEntry(int groupIndex, float points) {}
+
+	private final String testId;
+	private final Map<String, ExerciseEntry> exercises;
+	private final Map<String, Float> exercisesPoints;
+	private final float totalPoints;
+	// entries of each group of an empty resolution. Copied, never given away.
+	private final List<Map<String, TestExerciseResolutionBasic>> resolutionTemplate;
+
+	private TestBlueprint(String testId, Map<String, ExerciseEntry> exercises, Map<String, Float> exercisesPoints,
+						  float totalPoints, List<Map<String, TestExerciseResolutionBasic>> resolutionTemplate) {
+		this.testId = testId;
+		this.exercises = exercises;
+		this.exercisesPoints = exercisesPoints;
+		this.totalPoints = totalPoints;
+		this.resolutionTemplate = resolutionTemplate;
+	}
+
+	/**
+	 * Builds the blueprint of a test. If an exercise appears in more than one group, the first group is used.
+	 * @param test test, whose groups may hold references or concrete exercises
+	 * @return blueprint of the test
+	 */
+	public static TestBlueprint of(Test test) {
+		Map<String, ExerciseEntry> exercises = new HashMap<>();
+		Map<String, Float> exercisesPoints = new HashMap<>();
+		List<Map<String, TestExerciseResolutionBasic>> template = new ArrayList<>();
+		float totalPoints = 0;
+
+		List<TestGroup> groups = test.getGroups() != null ? test.getGroups() : List.of();
+		for (int i = 0; i < groups.size(); i++) {
+			Map<String, TestExerciseResolutionBasic> entries = new HashMap<>();
+			for (TestExercise exercise : groups.get(i).getExercises()) {
+				if (exercises.putIfAbsent(exercise.getId(), new ExerciseEntry(i, exercise.getPoints())) == null) {
+					exercisesPoints.put(exercise.getId(), exercise.getPoints());
+					totalPoints += exercise.getPoints();
+				}
+				entries.put(exercise.getId(), null);
+			}
+			template.add(entries);
+		}
+
+		return new TestBlueprint(test.getId(), Collections.unmodifiableMap(exercises), Collections.unmodifiableMap(exercisesPoints),
+				totalPoints, Collections.unmodifiableList(template));
+	}
+
+	public String getTestId() {
+		return testId;
+	}
+
+	/**
+	 * @param exerciseId identifier of the exercise
+	 * @return position and points of the exercise, or 'null' if the exercise is not in the test
+	 */
+	public ExerciseEntry getExercise(String exerciseId) {
+		return exercises.get(exerciseId);
+	}
+
+	/**
+	 * @param exerciseId identifier of the exercise
+	 * @return index of the group of the exercise, or 'null' if the exercise is not in the test
+	 */
+	public Integer getGroupIndex(String exerciseId) {
+		ExerciseEntry entry = exercises.get(exerciseId);
+		return entry != null ? entry.groupIndex() : null;
+	}
+
+	public boolean containsExercise(String exerciseId) {
+		return exercises.containsKey(exerciseId);
+	}
+
+	/**
+	 * @return unmodifiable map from the identifier of each exercise to its points
+	 */
+	public Map<String, Float> getExercisesPoints() {
+		return exercisesPoints;
+	}
+
+	public float getTotalPoints() {
+		return totalPoints;
+	}
+
+	/**
+	 * @return groups of a new, empty resolution of the test
+	 */
+	public List<TestResolutionGroup> createEmptyResolutionGroups() {
+		List<TestResolutionGroup> resolutionGroups = new ArrayList<>(resolutionTemplate.size());
+		for (Map<String, TestExerciseResolutionBasic> entries : resolutionTemplate)
+			resolutionGroups.add(new TestResolutionGroup(null, new HashMap<>(entries)));
+		return resolutionGroups;
+	}
+}
@@ -0,0 +1,20 @@
+package pt.uminho.di.chalktyk.models.tests;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Summary of the points of the corrected resolutions of an exercise of a test.
+ * Updated with upserts (see {@link pt.uminho.di.chalktyk.repositories.TestStatisticsDAO}).
+ */
+@NoArgsConstructor
+@Getter
+@Setter
+@Entity
+@Table(name="TestExerciseStatistics")
+public class TestExerciseStatistics extends PointsSummary {
+	@EmbeddedId
+	private TestExerciseStatisticsPK testExerciseStatisticsPK;
+}
@@ -0,0 +1,25 @@
+package pt.uminho.di.chalktyk.models.tests;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Embeddable;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.io.Serializable;
+
+@Getter
+@Setter
+@Embeddable
+@EqualsAndHashCode
+@AllArgsConstructor
+@NoArgsConstructor
+public class TestExerciseStatisticsPK implements Serializable {
+	@Column(name="TestID", nullable=false)
+	private String testId;
+
+	@Column(name="ExerciseID", nullable=false)
+	private String exerciseId;
+}
@@ -12,14 +12,19 @@ import java.util.List;
 import java.util.Objects;
 
 import jakarta.persistence.Column;
+import jakarta.persistence.ColumnResult;
 import jakarta.persistence.Entity;
+import jakarta.persistence.EntityResult;
 import jakarta.persistence.FetchType;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.JoinColumns;
 import jakarta.persistence.ManyToOne;
+import jakarta.persistence.NamedNativeQuery;
+import jakarta.persistence.SqlResultSetMapping;
 import jakarta.persistence.Table;
 
 @Getter
@@ -27,7 +32,23 @@ import jakarta.persistence.Table;
 @AllArgsConstructor
 @NoArgsConstructor
 @Entity
-@Table(name="TestResolution")
+@Table(name="TestResolution", indexes = {
+		// supports the lookup of the last resolution of each student
+		@Index(name = "test_resolution_test_student_nr_idx", columnList = "TestID, StudentID, SubmissionNr"),
+		// supports the search for ongoing resolutions whose deadline has passed
+		@Index(name = "test_resolution_status_deadline_idx", columnList = "Status, Deadline"),
+		// supports the keyset pagination of the resolutions of a test
+		@Index(name = "test_resolution_test_start_idx", columnList = "TestID, StartDate, ID"),
+		// supports the search for submitted resolutions whose correction was lost
+		@Index(name = "test_resolution_correction_pending_idx", columnList = "CorrectionPending, SubmissionDate")
+})
+@SqlResultSetMapping(name = "TestResolution.WithStudentEmail",
+		entities = @EntityResult(entityClass = TestResolution.class),
+		columns = @ColumnResult(name = "student_email", type = String.class))
+@NamedNativeQuery(name = "TestResolution.getStudentsLastResolutionsWithEmails",
+		query = "SELECT DISTINCT ON (tr.studentid) tr.*, s.email AS student_email FROM test_resolution tr " +
+				"JOIN student s ON s.id = tr.studentid WHERE tr.testid = :testId ORDER BY tr.studentid, tr.submission_nr DESC",
+		resultSetMapping = "TestResolution.WithStudentEmail")
 public class TestResolution {
 	@Column(name="ID")
 	@Id	
@@ -71,6 +92,31 @@ public class TestResolution {
     @Column(columnDefinition = "jsonb", name = "Groups")
 	private List<TestResolutionGroup> groups;
 
+	// Deadline of the test when the resolution was created, kept up to date while the resolution is ongoing.
+	// Copied from the test, so that expired resolutions can be found without joining the tests.
+	@JsonIgnore
+	@Column(name="Deadline")
+	private LocalDateTime deadline;
+
+	// Number of exercise resolutions that were revised, and that were not, kept up to date as they are
+	// created and corrected, so that the status of the resolution is known without reading them.
+	// 'null' if unknown (e.g. for resolutions created along with their exercise resolutions).
+	// Only valid once the resolution is submitted: while it is ongoing, an upload resets a corrected exercise
+	// resolution to not revised without updating them, so they are reset to 'null' on submission.
+	@JsonIgnore
+	@Column(name="RevisedCount")
+	private Integer revisedCount;
+
+	@JsonIgnore
+	@Column(name="NotRevisedCount")
+	private Integer notRevisedCount;
+
+	// Set while the resolution waits to be corrected after its submission, and cleared by the correction,
+	// so that the corrections lost, e.g. on a restart, are found and queued again.
+	@JsonIgnore
+	@Column(name="CorrectionPending", columnDefinition = "boolean not null default false")
+	private boolean correctionPending;
+
 	public TestResolution(String id, LocalDateTime startDate, LocalDateTime submissionDate, int submissionNr, Float totalPoints, Student student, Test test, TestResolutionStatus status, List<TestResolutionGroup> groups) {
 		this.id = id;
 		this.startDate = startDate;
@@ -0,0 +1,22 @@
+package pt.uminho.di.chalktyk.models.tests;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Summary of the total points of the corrected resolutions of a test.
+ * Updated with upserts (see {@link pt.uminho.di.chalktyk.repositories.TestStatisticsDAO}).
+ * The test identifier is not a foreign key, for the same reason as in {@link TestAttemptCounter}.
+ */
+@NoArgsConstructor
+@Getter
+@Setter
+@Entity
+@Table(name="TestStatistics")
+public class TestStatistics extends PointsSummary {
+	@Id
+	@Column(name="TestID", nullable=false)
+	private String testId;
+}
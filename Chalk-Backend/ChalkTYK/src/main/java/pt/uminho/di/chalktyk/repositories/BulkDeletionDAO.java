@@ -0,0 +1,149 @@
+package pt.uminho.di.chalktyk.repositories;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Array;
+import java.util.List;
+
+/**
+ * Set-based deletion of tests, with their resolutions and exercises.
+ * Rows are deleted with one statement per table, in dependency order,
+ * instead of loading and deleting each entity.
+ * <p>
+ * Like {@link BulkDuplicationDAO}, the tables are listed here,
+ * so new test, exercise or rubric types must be added to the lists below.
+ */
+@Repository
+public class BulkDeletionDAO {
+    // subclass tables of the tests
+    private static final List<String> TEST_SUBCLASS_TABLES =
+            List.of("live_test", "deliver_date_test", "auto_evaluation_test");
+
+    // subclass tables of the exercises
+    private static final List<String> EXERCISE_SUBCLASS_TABLES =
+            List.of("multiple_choice_exercise", "open_answer_exercise", "fill_the_blanks_exercise", "chat_exercise");
+
+    // subclass tables of the exercise rubrics, children before parents
+    private static final List<String> RUBRIC_SUBCLASS_TABLES =
+            List.of("multiple_choice_rubric", "chat_exercise_rubric", "open_answer_rubric", "fill_the_blanks_rubric");
+
+    // exercises of a test that can be deleted with it, i.e. that are not shared with other tests
+    private static final String SELECT_TEST_EXERCISES =
+            "SELECT DISTINCT ex->>'id' FROM test t, jsonb_array_elements(t.groups) g, jsonb_array_elements(g->'exercises') ex " +
+            "WHERE t.id = ? AND NOT EXISTS (SELECT 1 FROM test o WHERE o.id <> t.id " +
+            "AND o.groups @> jsonb_build_array(jsonb_build_object('exercises', jsonb_build_array(jsonb_build_object('id', ex->>'id')))))";
+
+    private static final String SELECT_TEST_RESOLUTIONS_CHUNK =
+            "SELECT id FROM test_resolution WHERE testid = ? LIMIT ?";
+
+    /**
+     * Identifiers of the exercises deleted along with a test, and of their rubrics and solutions.
+     */
+    public record DeletedExercises(List<String> exercisesIds, List<String> rubricsIds, List<String> solutionsIds) {}
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public BulkDeletionDAO(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Deletes every resolution of a test, along with the exercise resolutions.
+     * @param testId identifier of the test
+     * @return identifiers of the deleted test resolutions
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public List<String> deleteTestResolutions(String testId) {
+        jdbcTemplate.update("DELETE FROM exercise_resolution WHERE test_resolutionid IN (SELECT id FROM test_resolution WHERE testid = ?)", testId);
+        return jdbcTemplate.queryForList("DELETE FROM test_resolution WHERE testid = ? RETURNING id", String.class, testId);
+    }
+
+    /**
+     * Deletes a chunk of the resolutions of a test, along with the exercise resolutions.
+     * @param testId identifier of the test
+     * @param chunkSize maximum number of test resolutions to delete
+     * @return number of deleted test resolutions. If lower than the chunk size, no resolutions are left.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public int deleteTestResolutions(String testId, int chunkSize) {
+        List<String> ids = jdbcTemplate.queryForList(SELECT_TEST_RESOLUTIONS_CHUNK, String.class, testId, chunkSize);
+        if (ids.isEmpty())
+            return 0;
+        Array idsArray = createArray(ids);
+        jdbcTemplate.update("DELETE FROM exercise_resolution WHERE test_resolutionid = ANY(?)", idsArray);
+        return jdbcTemplate.update("DELETE FROM test_resolution WHERE id = ANY(?)", idsArray);
+    }
+
+    /**
+     * Deletes a test, its tags and attempt counters, and the exercises that are not shared with other tests.
+     * The resolutions of the test must have been deleted.
+     * @param testId identifier of the test
+     * @return deleted exercises
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public DeletedExercises deleteTest(String testId) {
+        List<String> exercisesIds = jdbcTemplate.queryForList(SELECT_TEST_EXERCISES, String.class, testId);
+
+        jdbcTemplate.update("DELETE FROM test_tags WHERE testid = ?", testId);
+        jdbcTemplate.update("DELETE FROM test_attempt_counter WHERE testid = ?", testId);
+        jdbcTemplate.update("DELETE FROM test_statistics WHERE testid = ?", testId);
+        jdbcTemplate.update("DELETE FROM test_exercise_statistics WHERE testid = ?", testId);
+        for (String table : TEST_SUBCLASS_TABLES)
+            jdbcTemplate.update("DELETE FROM " + table + " WHERE id = ?", testId);
+        jdbcTemplate.update("DELETE FROM test WHERE id = ?", testId);
+
+        return deleteExercises(exercisesIds);
+    }
+
+    /**
+     * Deletes exercises, along with their resolutions, tags, rubrics, solutions and attempt counters.
+     * @param exercisesIds identifiers of the exercises
+     * @return deleted exercises
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public DeletedExercises deleteExercises(List<String> exercisesIds) {
+        if (exercisesIds.isEmpty())
+            return new DeletedExercises(List.of(), List.of(), List.of());
+        Array ids = createArray(exercisesIds);
+
+        // the rubrics and solutions are referenced by the exercises, so they can only be deleted after them
+        List<String> rubricsIds = jdbcTemplate.queryForList("SELECT rubricid FROM exercise WHERE id = ANY(?) AND rubricid IS NOT NULL", String.class, ids);
+        List<String> solutionsIds = jdbcTemplate.queryForList("SELECT solutionid FROM exercise WHERE id = ANY(?) AND solutionid IS NOT NULL", String.class, ids);
+
+        jdbcTemplate.update("DELETE FROM exercise_resolution WHERE exerciseid = ANY(?)", ids);
+        jdbcTemplate.update("DELETE FROM exercise_attempt_counter WHERE exerciseid = ANY(?)", ids);
+        jdbcTemplate.update("DELETE FROM exercise_tag WHERE exerciseid = ANY(?)", ids);
+        for (String table : EXERCISE_SUBCLASS_TABLES)
+            jdbcTemplate.update("DELETE FROM " + table + " WHERE id = ANY(?)", ids);
+        jdbcTemplate.update("DELETE FROM exercise WHERE id = ANY(?)", ids);
+
+        if (!rubricsIds.isEmpty()) {
+            Array rubrics = createArray(rubricsIds);
+            for (String table : RUBRIC_SUBCLASS_TABLES)
+                jdbcTemplate.update("DELETE FROM " + table + " WHERE id = ANY(?)", rubrics);
+            jdbcTemplate.update("DELETE FROM exercise_rubric WHERE id = ANY(?)", rubrics);
+        }
+        if (!solutionsIds.isEmpty())
+            jdbcTemplate.update("DELETE FROM exercise_solution WHERE id = ANY(?)", createArray(solutionsIds));
+        return new DeletedExercises(exercisesIds, rubricsIds, solutionsIds);
+    }
+
+    /**
+     * Locks a deleted test that still needs to be purged. Tests locked by other transactions are skipped,
+     * so that several instances can purge different tests at the same time.
+     * @return identifier of the test, or 'null' if there is no test to purge
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public String lockDeletedTest() {
+        List<String> ids = jdbcTemplate.queryForList(
+                "SELECT id FROM test WHERE deletion_date IS NOT NULL ORDER BY deletion_date LIMIT 1 FOR UPDATE SKIP LOCKED", String.class);
+        return ids.isEmpty() ? null : ids.get(0);
+    }
+
+    private Array createArray(List<String> values) {
+        return jdbcTemplate.execute((java.sql.Connection con) -> con.createArrayOf("varchar", values.toArray()));
+    }
+}
@@ -0,0 +1,137 @@
+package pt.uminho.di.chalktyk.repositories;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import pt.uminho.di.chalktyk.models.miscellaneous.Visibility;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Set-based duplication of exercises and tests. Instead of loading and saving each entity,
+ * rows are copied with 'INSERT ... SELECT' statements, so the number of statements does not
+ * depend on the number of duplicated exercises.
+ * <p>
+ * Rows are copied column by column through 'jsonb_populate_record', so columns added to the
+ * tables are copied without changes to this class. Only the tables themselves are listed here,
+ * which means that new exercise or rubric types must be added to the lists below.
+ */
+@Repository
+public class BulkDuplicationDAO {
+    // subclass tables of the exercise rubrics, parents before children
+    private static final List<String> RUBRIC_SUBCLASS_TABLES =
+            List.of("multiple_choice_rubric", "open_answer_rubric", "chat_exercise_rubric", "fill_the_blanks_rubric");
+
+    // subclass tables of the exercises, parents before children
+    private static final List<String> EXERCISE_SUBCLASS_TABLES =
+            List.of("multiple_choice_exercise", "open_answer_exercise", "fill_the_blanks_exercise", "chat_exercise");
+
+    private static final String CREATE_COPY_MAP =
+            "CREATE TEMP TABLE IF NOT EXISTS exercise_copy_map (" +
+            "source_id varchar(255), copy_id varchar(255), " +
+            "source_rubric_id varchar(255), copy_rubric_id varchar(255), " +
+            "source_solution_id varchar(255), copy_solution_id varchar(255)) ON COMMIT DROP";
+
+    // the identifiers of the copied rubric and solution are only kept if the source exercise has one
+    private static final String INSERT_COPY_MAP =
+            "INSERT INTO exercise_copy_map " +
+            "SELECT e.id, ?, e.rubricid, CASE WHEN e.rubricid IS NULL THEN NULL ELSE CAST(? AS varchar) END, " +
+            "e.solutionid, CASE WHEN e.solutionid IS NULL THEN NULL ELSE CAST(? AS varchar) END " +
+            "FROM exercise e WHERE e.id = ?";
+
+    private static final String COPY_EXERCISE_TAGS =
+            "INSERT INTO exercise_tag (exerciseid, tagid) " +
+            "SELECT m.copy_id, et.tagid FROM exercise_tag et JOIN exercise_copy_map m ON et.exerciseid = m.source_id";
+
+    private static final String COPY_TEST_TAGS =
+            "INSERT INTO test_tags (nexercises, tagid, testid) " +
+            "SELECT tt.nexercises, tt.tagid, ? FROM test_tags tt WHERE tt.testid = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public BulkDuplicationDAO(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Copy of an exercise.
+     * @param sourceId identifier of the exercise that is copied
+     * @param copyId identifier given to the copy
+     */
+    public record ExerciseCopy(String sourceId, String copyId) {}
+
+    /**
+     * Duplicates exercises, along with their rubrics, solutions and tags.
+     * The copies are owned by the given specialist and institution, and are not associated with any course.
+     * An exercise may be copied more than once, as long as each copy has a different identifier.
+     * Must be called inside a transaction, and after flushing pending changes of the exercises.
+     *
+     * @param copies copies to create
+     * @param specialistId identifier of the specialist that owns the copies
+     * @param institutionId identifier of the institution of the copies
+     * @param visibility visibility of the copies
+     * @return number of copies created. Copies of exercises that do not exist are not created.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public int duplicateExercises(List<ExerciseCopy> copies, String specialistId, String institutionId, Visibility visibility) {
+        if (copies.isEmpty())
+            return 0;
+
+        jdbcTemplate.execute(CREATE_COPY_MAP);
+        jdbcTemplate.update("DELETE FROM exercise_copy_map");
+        int[][] mapped = jdbcTemplate.batchUpdate(INSERT_COPY_MAP, copies, copies.size(), (ps, copy) -> {
+            ps.setString(1, copy.copyId());
+            ps.setString(2, UUID.randomUUID().toString());
+            ps.setString(3, UUID.randomUUID().toString());
+            ps.setString(4, copy.sourceId());
+        });
+        int nrCopies = Arrays.stream(mapped).flatMapToInt(Arrays::stream).sum();
+
+        // rubrics and solutions are copied first, since the exercises reference them
+        jdbcTemplate.update(copyRows("exercise_rubric", "rubric", ""));
+        for (String table : RUBRIC_SUBCLASS_TABLES)
+            jdbcTemplate.update(copyRows(table, "rubric", ""));
+        jdbcTemplate.update(copyRows("exercise_solution", "solution", ""));
+
+        jdbcTemplate.update(copyRows("exercise", "",
+                        ", 'rubricid', m.copy_rubric_id, 'solutionid', m.copy_solution_id, " +
+                        "'specialistid', CAST(? AS varchar), 'institutionid', CAST(? AS varchar), " +
+                        "'courseid', NULL, 'visibility', CAST(? AS varchar)"),
+                specialistId, institutionId, visibility.name());
+        for (String table : EXERCISE_SUBCLASS_TABLES)
+            jdbcTemplate.update(copyRows(table, "", ""));
+        jdbcTemplate.update(COPY_EXERCISE_TAGS);
+
+        return nrCopies;
+    }
+
+    /**
+     * Copies the tags of a test to other tests.
+     * @param sourceTestId identifier of the test whose tags are copied
+     * @param copiesIds identifiers of the tests that receive the tags
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void duplicateTestTags(String sourceTestId, List<String> copiesIds) {
+        jdbcTemplate.batchUpdate(COPY_TEST_TAGS, copiesIds, copiesIds.size(), (ps, copyId) -> {
+            ps.setString(1, copyId);
+            ps.setString(2, sourceTestId);
+        });
+    }
+
+    /**
+     * @param table table whose rows are copied
+     * @param entity prefix of the columns of the copy map that hold the identifiers ("", "rubric" or "solution")
+     * @param overrides additional pairs of column name and value, that replace the values of the source row
+     * @return statement that copies the rows of the table that are referenced by the copy map
+     */
+    private static String copyRows(String table, String entity, String overrides) {
+        String prefix = entity.isEmpty() ? "" : entity + "_";
+        return "INSERT INTO " + table + " " +
+                "SELECT (jsonb_populate_record(NULL::" + table + ", " +
+                "to_jsonb(t) || jsonb_build_object('id', m.copy_" + prefix + "id" + overrides + "))).* " +
+                "FROM " + table + " t JOIN exercise_copy_map m ON t.id = m.source_" + prefix + "id";
+    }
+}
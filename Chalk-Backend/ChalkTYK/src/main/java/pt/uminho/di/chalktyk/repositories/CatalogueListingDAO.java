@@ -0,0 +1,133 @@
+package pt.uminho.di.chalktyk.repositories;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.TypedQuery;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+import org.springframework.data.support.PageableExecutionUtils;
+import org.springframework.stereotype.Repository;
+import pt.uminho.di.chalktyk.models.exercises.Exercise;
+import pt.uminho.di.chalktyk.models.tests.Test;
+
+import java.util.List;
+
+/**
+ * Lists the identifiers of the exercises and tests that match the filters of the catalogues
+ * (see {@link CatalogueSpecifications}). Only the identifiers are paged, so the pages are cut by the database,
+ * and the entities of a page are then loaded with a single query.
+ * <p>
+ * Besides pages, the identifiers can be listed in slices that start after a given identifier (keyset pagination),
+ * which are not counted and do not get slower as the listing goes deeper.
+ */
+@Repository
+public class CatalogueListingDAO {
+    private final EntityManager entityManager;
+
+    public CatalogueListingDAO(EntityManager entityManager) {
+        this.entityManager = entityManager;
+    }
+
+    /**
+     * @param filters specification of the exercises
+     * @param pageable page to retrieve, and its order
+     * @return page with the identifiers of the exercises that match the filters
+     */
+    public Page<String> listExercisesIds(Specification<Exercise> filters, Pageable pageable) {
+        return listIds(Exercise.class, filters, pageable);
+    }
+
+    /**
+     * @param filters specification of the tests
+     * @param pageable page to retrieve, and its order
+     * @return page with the identifiers of the tests that match the filters
+     */
+    public Page<String> listTestsIds(Specification<Test> filters, Pageable pageable) {
+        return listIds(Test.class, filters, pageable);
+    }
+
+    /**
+     * Keyset pagination of the exercises. The exercises are not counted.
+     * @param filters specification of the exercises
+     * @param lastId identifier of the last exercise of the previous slice, or 'null' for the first slice
+     * @param size maximum number of identifiers
+     * @return slice with the identifiers of the exercises that match the filters, in ascending order
+     */
+    public Slice<String> sliceExercisesIds(Specification<Exercise> filters, String lastId, int size) {
+        return sliceIds(Exercise.class, filters, lastId, size);
+    }
+
+    /**
+     * Keyset pagination of the tests. The tests are not counted.
+     * @param filters specification of the tests
+     * @param lastId identifier of the last test of the previous slice, or 'null' for the first slice
+     * @param size maximum number of identifiers
+     * @return slice with the identifiers of the tests that match the filters, in ascending order
+     */
+    public Slice<String> sliceTestsIds(Specification<Test> filters, String lastId, int size) {
+        return sliceIds(Test.class, filters, lastId, size);
+    }
+
+    private <T> Page<String> listIds(Class<T> entityClass, Specification<T> filters, Pageable pageable) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+
+        CriteriaQuery<String> query = cb.createQuery(String.class);
+        Root<T> root = query.from(entityClass);
+        query.select(root.get("id"));
+        Predicate predicate = filters.toPredicate(root, query, cb);
+        if (predicate != null)
+            query.where(predicate);
+        if (pageable.getSort().isSorted())
+            query.orderBy(QueryUtils.toOrders(pageable.getSort(), root, cb));
+
+        TypedQuery<String> typedQuery = entityManager.createQuery(query);
+        if (pageable.isPaged())
+            typedQuery.setFirstResult((int) pageable.getOffset()).setMaxResults(pageable.getPageSize());
+        List<String> ids = typedQuery.getResultList();
+
+        // the total is only counted when it is not known from the page itself
+        return PageableExecutionUtils.getPage(ids, pageable, () -> count(entityClass, filters));
+    }
+
+    private <T> Slice<String> sliceIds(Class<T> entityClass, Specification<T> filters, String lastId, int size) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+
+        CriteriaQuery<String> query = cb.createQuery(String.class);
+        Root<T> root = query.from(entityClass);
+        Path<String> id = root.get("id");
+        query.select(id);
+        Predicate predicate = filters.toPredicate(root, query, cb);
+        if (lastId != null)
+            predicate = predicate != null ? cb.and(predicate, cb.greaterThan(id, lastId)) : cb.greaterThan(id, lastId);
+        if (predicate != null)
+            query.where(predicate);
+        query.orderBy(cb.asc(id));
+
+        // an extra identifier tells if there is a next slice
+        List<String> ids = entityManager.createQuery(query).setMaxResults(size + 1).getResultList();
+        boolean hasNext = ids.size() > size;
+        if (hasNext)
+            ids = ids.subList(0, size);
+        return new SliceImpl<>(ids, PageRequest.ofSize(size), hasNext);
+    }
+
+    private <T> long count(Class<T> entityClass, Specification<T> filters) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Long> query = cb.createQuery(Long.class);
+        Root<T> root = query.from(entityClass);
+        query.select(cb.count(root));
+        Predicate predicate = filters.toPredicate(root, query, cb);
+        if (predicate != null)
+            query.where(predicate);
+        return entityManager.createQuery(query).getSingleResult();
+    }
+}
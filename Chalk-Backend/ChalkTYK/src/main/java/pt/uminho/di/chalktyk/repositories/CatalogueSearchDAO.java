@@ -0,0 +1,238 @@
+package pt.uminho.di.chalktyk.repositories;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import pt.uminho.di.chalktyk.models.miscellaneous.Visibility;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Ranked search of the exercise and test catalogues.
+ * <p>
+ * A search matches the words of the query against a full-text document, made of the title (and, for exercises,
+ * the text of the statement), and matches the query as a substring of the same fields. Full-text matches are
+ * served by GIN indexes over the documents, and substring matches by trigram (pg_trgm) indexes over the fields.
+ * Results are ranked by the full-text rank plus the trigram similarity between the query and the title.
+ * The 'simple' text search configuration is used, since the catalogues mix several languages.
+ * <p>
+ * Hibernate does not create these indexes, so they are created, if missing, when the application starts.
+ * <p>
+ * The number of items that match the filters of the catalogues can also be estimated,
+ * for the listings that are not counted (see {@link RowEstimatesDAO}).
+ */
+@Slf4j
+@Repository
+public class CatalogueSearchDAO {
+    // the expressions must match the ones of the indexes, for the indexes to be used
+    private static final String EXERCISE_DOCUMENT = "to_tsvector('simple', coalesce(title, '') || ' ' || coalesce(statement ->> 'text', ''))";
+    private static final String EXERCISE_TEXT = "(statement ->> 'text')";
+    private static final String TEST_DOCUMENT = "to_tsvector('simple', coalesce(title, ''))";
+    private static final String QUERY = "websearch_to_tsquery('simple', :search)";
+
+    // name of each index, and what it indexes
+    private static final Map<String, String> SEARCH_INDEXES = Map.of(
+            "exercise_search_document_idx", "ON exercise USING gin (" + EXERCISE_DOCUMENT + ")",
+            "exercise_title_trgm_idx", "ON exercise USING gin (title gin_trgm_ops)",
+            "exercise_statement_text_trgm_idx", "ON exercise USING gin (" + EXERCISE_TEXT + " gin_trgm_ops)",
+            "test_search_document_idx", "ON test USING gin (" + TEST_DOCUMENT + ")",
+            "test_title_trgm_idx", "ON test USING gin (title gin_trgm_ops)");
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final RowEstimatesDAO rowEstimatesDAO;
+
+    public CatalogueSearchDAO(NamedParameterJdbcTemplate jdbcTemplate, RowEstimatesDAO rowEstimatesDAO) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.rowEstimatesDAO = rowEstimatesDAO;
+    }
+
+    /**
+     * Creates the extension and the indexes used by the searches, if they do not exist.
+     * Runs once the schema has been updated by Hibernate. The indexes are built without blocking writes.
+     * <p>
+     * A concurrent build that fails leaves an invalid index behind, which is not used by the planner
+     * and would be kept by "IF NOT EXISTS". Invalid indexes are dropped and built again.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void createSearchIndexes() {
+        try {
+            jdbcTemplate.getJdbcTemplate().execute("CREATE EXTENSION IF NOT EXISTS pg_trgm");
+        } catch (DataAccessException e) {
+            log.error("Could not create the indexes of the catalogue search.", e);
+            return;
+        }
+
+        for (Map.Entry<String, String> index : SEARCH_INDEXES.entrySet()) {
+            String name = index.getKey();
+            try {
+                Boolean invalid = jdbcTemplate.queryForObject(
+                        "SELECT EXISTS (SELECT 1 FROM pg_index WHERE indexrelid = to_regclass(:name) AND NOT indisvalid)",
+                        new MapSqlParameterSource("name", name), Boolean.class);
+                if (Boolean.TRUE.equals(invalid)) {
+                    log.warn("Index '{}' of the catalogue search is invalid, building it again.", name);
+                    jdbcTemplate.getJdbcTemplate().execute("DROP INDEX CONCURRENTLY IF EXISTS " + name);
+                }
+                jdbcTemplate.getJdbcTemplate().execute("CREATE INDEX CONCURRENTLY IF NOT EXISTS " + name + " " + index.getValue());
+            } catch (DataAccessException e) {
+                log.error("Could not create the index '{}' of the catalogue search.", name, e);
+            }
+        }
+    }
+
+    /**
+     * Searches the exercises, ranked by relevance. Applies the same filters as {@link CatalogueSpecifications#exercises}.
+     * @param search query, in the syntax of web search engines (e.g. quoted phrases, "or", and "-" to exclude words)
+     * @param tagIDS identifiers of the tags, or 'null'
+     * @param matchAllTags if 'true' the exercises must have all the tags, otherwise at least one of them
+     * @param visibilityType visibility of the exercises. If 'null', any visibility except test
+     * @param institutionId identifier of the institution, or 'null'
+     * @param courseId identifier of the course, or 'null'
+     * @param specialistId identifier of the specialist, or 'null'
+     * @param title pattern of the title, with the sql wildcards, or 'null'
+     * @param exerciseType type of the exercises, or 'null'
+     * @param pageable page to retrieve
+     * @return page with the identifiers of the exercises, the most relevant first
+     */
+    public Page<String> searchExercises(String search, List<String> tagIDS, boolean matchAllTags, Visibility visibilityType,
+                                        String institutionId, String courseId, String specialistId,
+                                        String title, String exerciseType, Pageable pageable) {
+        MapSqlParameterSource params = searchParams(search);
+        StringBuilder where = new StringBuilder(" WHERE (" + EXERCISE_DOCUMENT + " @@ " + QUERY +
+                " OR title ILIKE :pattern OR " + EXERCISE_TEXT + " ILIKE :pattern)");
+
+        appendExerciseFilters(where, params, tagIDS, matchAllTags, visibilityType, institutionId, courseId, specialistId, title, exerciseType);
+        return search("exercise", EXERCISE_DOCUMENT, where.toString(), params, pageable);
+    }
+
+    /**
+     * Searches the tests, ranked by relevance. Applies the same filters as {@link CatalogueSpecifications#tests}.
+     * Deleted tests are not searched.
+     * @param search query, in the syntax of web search engines (e.g. quoted phrases, "or", and "-" to exclude words)
+     * @param tagIDS identifiers of the tags, or 'null'
+     * @param matchAllTags if 'true' the tests must have all the tags, otherwise at least one of them
+     * @param visibilityType visibility of the tests, or 'null'
+     * @param institutionId identifier of the institution, or 'null'
+     * @param courseId identifier of the course, or 'null'
+     * @param specialistId identifier of the specialist, or 'null'
+     * @param title exact title, or 'null'
+     * @param pageable page to retrieve
+     * @return page with the identifiers of the tests, the most relevant first
+     */
+    public Page<String> searchTests(String search, List<String> tagIDS, boolean matchAllTags, Visibility visibilityType,
+                                    String institutionId, String courseId, String specialistId,
+                                    String title, Pageable pageable) {
+        MapSqlParameterSource params = searchParams(search);
+        StringBuilder where = new StringBuilder(" WHERE deletion_date IS NULL AND (" + TEST_DOCUMENT + " @@ " + QUERY + " OR title ILIKE :pattern)");
+
+        appendTestFilters(where, params, tagIDS, matchAllTags, visibilityType, institutionId, courseId, specialistId, title);
+        return search("test", TEST_DOCUMENT, where.toString(), params, pageable);
+    }
+
+    /**
+     * Estimates the number of exercises that match the filters, without searching.
+     * Takes the same filters as {@link #searchExercises}.
+     * @return estimated number of exercises
+     */
+    public long estimateExercises(List<String> tagIDS, boolean matchAllTags, Visibility visibilityType,
+                                  String institutionId, String courseId, String specialistId,
+                                  String title, String exerciseType) {
+        MapSqlParameterSource params = new MapSqlParameterSource();
+        StringBuilder where = new StringBuilder(" WHERE true");
+        appendExerciseFilters(where, params, tagIDS, matchAllTags, visibilityType, institutionId, courseId, specialistId, title, exerciseType);
+        return rowEstimatesDAO.estimateRows("SELECT 1 FROM exercise" + where, params);
+    }
+
+    /**
+     * Estimates the number of tests that match the filters, without searching.
+     * Takes the same filters as {@link #searchTests}.
+     * @return estimated number of tests
+     */
+    public long estimateTests(List<String> tagIDS, boolean matchAllTags, Visibility visibilityType,
+                              String institutionId, String courseId, String specialistId, String title) {
+        MapSqlParameterSource params = new MapSqlParameterSource();
+        StringBuilder where = new StringBuilder(" WHERE deletion_date IS NULL");
+        appendTestFilters(where, params, tagIDS, matchAllTags, visibilityType, institutionId, courseId, specialistId, title);
+        return rowEstimatesDAO.estimateRows("SELECT 1 FROM test" + where, params);
+    }
+
+    private static void appendExerciseFilters(StringBuilder where, MapSqlParameterSource params, List<String> tagIDS, boolean matchAllTags,
+                                              Visibility visibilityType, String institutionId, String courseId, String specialistId,
+                                              String title, String exerciseType) {
+        if (tagIDS != null && !tagIDS.isEmpty()) {
+            where.append(" AND id IN (SELECT exerciseid FROM exercise_tag WHERE tagid IN (:tagIDS)");
+            if (matchAllTags)
+                where.append(" GROUP BY exerciseid HAVING COUNT(tagid) = :sizeTagIDS");
+            where.append(")");
+            params.addValue("tagIDS", tagIDS).addValue("sizeTagIDS", tagIDS.size());
+        }
+        if (visibilityType == null)
+            where.append(" AND visibility <> 'TEST'");
+        else
+            appendFilter(where, params, "visibility", visibilityType.name());
+        appendFilter(where, params, "institutionid", institutionId);
+        appendFilter(where, params, "courseid", courseId);
+        appendFilter(where, params, "specialistid", specialistId);
+        appendFilter(where, params, "type", exerciseType);
+        if (title != null) {
+            where.append(" AND title LIKE :title");
+            params.addValue("title", title);
+        }
+    }
+
+    private static void appendTestFilters(StringBuilder where, MapSqlParameterSource params, List<String> tagIDS, boolean matchAllTags,
+                                          Visibility visibilityType, String institutionId, String courseId, String specialistId, String title) {
+        if (tagIDS != null && !tagIDS.isEmpty()) {
+            where.append(" AND id IN (SELECT testid FROM test_tags WHERE tagid IN (:tagIDS)");
+            if (matchAllTags)
+                where.append(" GROUP BY testid HAVING COUNT(tagid) = :sizeTagIDS");
+            where.append(")");
+            params.addValue("tagIDS", tagIDS).addValue("sizeTagIDS", tagIDS.size());
+        }
+        appendFilter(where, params, "visibility", visibilityType != null ? visibilityType.name() : null);
+        appendFilter(where, params, "institutionid", institutionId);
+        appendFilter(where, params, "courseid", courseId);
+        appendFilter(where, params, "specialistid", specialistId);
+        appendFilter(where, params, "title", title);
+    }
+
+    private Page<String> search(String table, String document, String where, MapSqlParameterSource params, Pageable pageable) {
+        params.addValue("limit", pageable.getPageSize()).addValue("offset", pageable.getOffset());
+        List<String> ids = jdbcTemplate.queryForList(
+                "SELECT id FROM " + table + where +
+                " ORDER BY ts_rank(" + document + ", " + QUERY + ") + similarity(coalesce(title, ''), :search) DESC, id" +
+                " LIMIT :limit OFFSET :offset", params, String.class);
+
+        // the total is only counted when it is not known from the page itself
+        long total;
+        if (pageable.getOffset() == 0 && ids.size() < pageable.getPageSize())
+            total = ids.size();
+        else {
+            Long count = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + table + where, params, Long.class);
+            total = count != null ? count : 0;
+        }
+        return new PageImpl<>(ids, pageable, total);
+    }
+
+    private static MapSqlParameterSource searchParams(String search) {
+        // the query is matched as a substring, so the wildcards it contains are escaped
+        String escaped = search.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+        return new MapSqlParameterSource()
+                .addValue("search", search)
+                .addValue("pattern", '%' + escaped + '%');
+    }
+
+    private static void appendFilter(StringBuilder where, MapSqlParameterSource params, String column, String value) {
+        if (value != null) {
+            where.append(" AND ").append(column).append(" = :").append(column);
+            params.addValue(column, value);
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package pt.uminho.di.chalktyk.repositories;
+
+import jakarta.persistence.criteria.Join;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Subquery;
+import org.springframework.data.jpa.domain.Specification;
+import pt.uminho.di.chalktyk.models.exercises.Exercise;
+import pt.uminho.di.chalktyk.models.miscellaneous.Tag;
+import pt.uminho.di.chalktyk.models.miscellaneous.Visibility;
+import pt.uminho.di.chalktyk.models.tests.Test;
+import pt.uminho.di.chalktyk.models.tests.TestTag;
+
+import java.util.List;
+
+/**
+ * Filters of the exercise and test catalogues.
+ * <p>
+ * Each filter that is not given results in a 'null' specification, which is dropped when the filters are combined.
+ * So, only the predicates of the given filters are emitted, and each combination of filters is planned
+ * on its own, instead of a single generic plan, full of "(:param is null or ...)" predicates, that can't use the indexes.
+ */
+public final class CatalogueSpecifications {
+
+    private CatalogueSpecifications() {}
+
+    /**
+     * @param tagIDS identifiers of the tags, or 'null'
+     * @param matchAllTags if 'true' the exercises must have all the tags, otherwise at least one of them
+     * @param visibility visibility of the exercises. If 'null', any visibility except test
+     * @param institutionId identifier of the institution, or 'null'
+     * @param courseId identifier of the course, or 'null'
+     * @param specialistId identifier of the specialist, or 'null'
+     * @param title pattern of the title, with the sql wildcards, or 'null'
+     * @param exerciseType type of the exercises, or 'null'
+     * @return specification of the exercises that match the given filters
+     */
+    public static Specification<Exercise> exercises(List<String> tagIDS, boolean matchAllTags, Visibility visibility,
+                                                    String institutionId, String courseId, String specialistId,
+                                                    String title, String exerciseType) {
+        return Specification.allOf(
+                exercisesWithTags(tagIDS, matchAllTags),
+                visibility != null ? equal("visibility", visibility) : (root, query, cb) -> cb.notEqual(root.get("visibility"), Visibility.TEST),
+                equal("institutionId", institutionId),
+                equal("courseId", courseId),
+                equal("specialistId", specialistId),
+                title != null ? (root, query, cb) -> cb.like(root.get("title"), title) : null,
+                equal("exerciseType", exerciseType));
+    }
+
+    /**
+     * @param tagIDS identifiers of the tags, or 'null'
+     * @param matchAllTags if 'true' the tests must have all the tags, otherwise at least one of them
+     * @param visibility visibility of the tests, or 'null'
+     * @param institutionId identifier of the institution, or 'null'
+     * @param courseId identifier of the course, or 'null'
+     * @param specialistId identifier of the specialist, or 'null'
+     * @param title exact title, or 'null'
+     * @return specification of the tests that match the given filters
+     */
+    public static Specification<Test> tests(List<String> tagIDS, boolean matchAllTags, Visibility visibility,
+                                            String institutionId, String courseId, String specialistId, String title) {
+        return Specification.allOf(
+                testsWithTags(tagIDS, matchAllTags),
+                equal("visibility", visibility),
+                equal("institutionId", institutionId),
+                equal("courseId", courseId),
+                equal("specialistId", specialistId),
+                equal("title", title));
+    }
+
+    private static Specification<Exercise> exercisesWithTags(List<String> tagIDS, boolean matchAllTags) {
+        if (tagIDS == null || tagIDS.isEmpty())
+            return null;
+        return (root, query, cb) -> {
+            Subquery<String> tagged = query.subquery(String.class);
+            Root<Exercise> exercise = tagged.from(Exercise.class);
+            Join<Exercise, Tag> tag = exercise.join("tags");
+            tagged.select(exercise.get("id")).where(tag.get("id").in(tagIDS));
+            if (matchAllTags)
+                tagged.groupBy(exercise.get("id")).having(cb.equal(cb.count(tag.get("id")), (long) tagIDS.size()));
+            return root.get("id").in(tagged);
+        };
+    }
+
+    private static Specification<Test> testsWithTags(List<String> tagIDS, boolean matchAllTags) {
+        if (tagIDS == null || tagIDS.isEmpty())
+            return null;
+        return (root, query, cb) -> {
+            Subquery<String> tagged = query.subquery(String.class);
+            Root<TestTag> testTag = tagged.from(TestTag.class);
+            Path<String> testId = testTag.get("testTagPK").get("test").get("id"),
+                         tagId = testTag.get("testTagPK").get("tag").get("id");
+            tagged.select(testId).where(tagId.in(tagIDS));
+            if (matchAllTags)
+                tagged.groupBy(testId).having(cb.equal(cb.count(tagId), (long) tagIDS.size()));
+            return root.get("id").in(tagged);
+        };
+    }
+
+    private static <T> Specification<T> equal(String attribute, Object value) {
+        return value != null ? (root, query, cb) -> cb.equal(root.get(attribute), value) : null;
+    }
+}
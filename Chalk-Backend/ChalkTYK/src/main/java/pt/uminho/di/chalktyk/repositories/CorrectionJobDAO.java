@@ -0,0 +1,68 @@
+package pt.uminho.di.chalktyk.repositories;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import pt.uminho.di.chalktyk.models.corrections.CorrectionJob;
+import pt.uminho.di.chalktyk.models.corrections.CorrectionJobStatus;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface CorrectionJobDAO extends JpaRepository<CorrectionJob, String> {
+    /**
+     * Cancels the running jobs, cancelled on an instance that did not run them, whose owner stopped.
+     * @param now current date, the end date of the jobs
+     * @param staleBefore running jobs without a heartbeat after this date are cancelled
+     */
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE CorrectionJob j SET j.status = 'CANCELLED', j.endDate = :now WHERE j.cancelRequested = true " +
+            "AND j.status = 'RUNNING' AND (j.heartbeatDate IS NULL OR j.heartbeatDate < :staleBefore)")
+    int cancelStaleJobs(@Param("now") LocalDateTime now, @Param("staleBefore") LocalDateTime staleBefore);
+
+    @Query("SELECT j.status FROM CorrectionJob j WHERE j.id = :jobId")
+    CorrectionJobStatus getJobStatus(@Param("jobId") String jobId);
+
+    /**
+     * @param queuedBefore queued jobs created before this date are returned
+     * @param staleBefore running jobs without a heartbeat after this date are returned
+     * @return identifiers of the queued jobs and of the running jobs whose owner stopped
+     */
+    @Query("SELECT j.id FROM CorrectionJob j WHERE (j.status = 'QUEUED' AND j.creationDate < :queuedBefore) " +
+            "OR (j.status = 'RUNNING' AND (j.heartbeatDate IS NULL OR j.heartbeatDate < :staleBefore)) ORDER BY j.creationDate")
+    List<String> getJobsIdsToResume(@Param("queuedBefore") LocalDateTime queuedBefore, @Param("staleBefore") LocalDateTime staleBefore);
+
+    /**
+     * Claims a job for an instance, if the job is queued, or if it is running but its owner stopped.
+     * @param jobId identifier of the job
+     * @param ownerId identifier of the instance
+     * @param now current date
+     * @param staleBefore running jobs without a heartbeat after this date can be claimed
+     * @return 1 if the job was claimed, 0 otherwise
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE CorrectionJob j SET j.status = 'RUNNING', j.ownerId = :ownerId, j.heartbeatDate = :now " +
+            "WHERE j.id = :jobId AND j.cancelRequested = false AND (j.status = 'QUEUED' " +
+            "OR (j.status = 'RUNNING' AND (j.heartbeatDate IS NULL OR j.heartbeatDate < :staleBefore)))")
+    int claimJob(@Param("jobId") String jobId, @Param("ownerId") String ownerId,
+                 @Param("now") LocalDateTime now, @Param("staleBefore") LocalDateTime staleBefore);
+
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE CorrectionJob j SET j.heartbeatDate = :now WHERE j.id IN :jobsIds AND j.ownerId = :ownerId AND j.status = 'RUNNING'")
+    void updateHeartbeats(@Param("jobsIds") Collection<String> jobsIds, @Param("ownerId") String ownerId, @Param("now") LocalDateTime now);
+
+    /**
+     * @return identifiers, among the given jobs, of the jobs that should stop running on the given instance,
+     * i.e. the jobs that were cancelled elsewhere or that were claimed by another instance
+     */
+    @Query("SELECT j.id FROM CorrectionJob j WHERE j.id IN :jobsIds AND (j.cancelRequested = true OR j.ownerId <> :ownerId)")
+    List<String> getJobsIdsToStop(@Param("jobsIds") Collection<String> jobsIds, @Param("ownerId") String ownerId);
+
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE CorrectionJob j SET j.correctedResolutions = :correctedResolutions WHERE j.id = :jobId")
+    void updateCorrectedResolutions(@Param("jobId") String jobId, @Param("correctedResolutions") long correctedResolutions);
+}
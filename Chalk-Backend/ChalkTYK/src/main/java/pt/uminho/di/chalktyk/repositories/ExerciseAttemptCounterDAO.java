@@ -0,0 +1,41 @@
+package pt.uminho.di.chalktyk.repositories;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import pt.uminho.di.chalktyk.models.exercises.ExerciseAttemptCounter;
+import pt.uminho.di.chalktyk.models.exercises.ExerciseAttemptCounterPK;
+
+@Repository
+public interface ExerciseAttemptCounterDAO extends JpaRepository<ExerciseAttemptCounter, ExerciseAttemptCounterPK> {
+    /**
+     * Atomically allocates the next submission number of a student for an exercise.
+     * The counter is created on the first allocation, starting after the resolutions that already exist.
+     * @param studentId identifier of the student
+     * @param exerciseId identifier of the exercise
+     * @return allocated submission number
+     */
+    @Transactional
+    @Query(value = "INSERT INTO exercise_attempt_counter (studentid, exerciseid, last_submission_nr) " +
+            "VALUES (:studentId, :exerciseId, (SELECT COALESCE(MAX(submission_nr), 0) + 1 FROM exercise_resolution WHERE exerciseid = :exerciseId AND studentid = :studentId)) " +
+            "ON CONFLICT (studentid, exerciseid) DO UPDATE SET last_submission_nr = exercise_attempt_counter.last_submission_nr + 1 " +
+            "RETURNING last_submission_nr", nativeQuery = true)
+    int nextSubmissionNr(@Param("studentId") String studentId, @Param("exerciseId") String exerciseId);
+
+    /**
+     * Makes sure the counter of a student for an exercise is not behind the given submission number,
+     * which was chosen by the caller (e.g. the submission number of a test resolution).
+     * @param studentId identifier of the student
+     * @param exerciseId identifier of the exercise
+     * @param submissionNr submission number in use
+     * @return last submission number of the counter
+     */
+    @Transactional
+    @Query(value = "INSERT INTO exercise_attempt_counter (studentid, exerciseid, last_submission_nr) " +
+            "VALUES (:studentId, :exerciseId, GREATEST(:submissionNr, (SELECT COALESCE(MAX(submission_nr), 0) FROM exercise_resolution WHERE exerciseid = :exerciseId AND studentid = :studentId))) " +
+            "ON CONFLICT (studentid, exerciseid) DO UPDATE SET last_submission_nr = GREATEST(exercise_attempt_counter.last_submission_nr, :submissionNr) " +
+            "RETURNING last_submission_nr", nativeQuery = true)
+    int reserveSubmissionNr(@Param("studentId") String studentId, @Param("exerciseId") String exerciseId, @Param("submissionNr") int submissionNr);
+}
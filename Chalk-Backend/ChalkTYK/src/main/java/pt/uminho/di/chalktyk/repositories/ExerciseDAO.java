@@ -1,7 +1,5 @@
 package pt.uminho.di.chalktyk.repositories;
 
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
@@ -9,8 +7,8 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import pt.uminho.di.chalktyk.models.exercises.Exercise;
 import pt.uminho.di.chalktyk.models.miscellaneous.Tag;
-import pt.uminho.di.chalktyk.models.miscellaneous.Visibility;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
@@ -22,6 +20,16 @@ public interface ExerciseDAO extends JpaRepository<Exercise, String> {
     @Query("SELECT e FROM Exercise e WHERE e.id = :exerciseId")
     Optional<Exercise> loadByIdWithoutSolutionAndRubric(@Param("exerciseId") String exerciseId);
 
+    /**
+     * Loads, in a single query, every exercise of the given list. Loads everything except solution and rubric.
+     * The order of the returned list is not guaranteed to match the order of the identifiers.
+     * @param exercisesIds list with ids of exercises
+     * @return exercises that exist with the given identifiers
+     */
+    @EntityGraph(value = "Exercise.NoRubricNoSolution", type = EntityGraph.EntityGraphType.LOAD)
+    @Query("SELECT e FROM Exercise e WHERE e.id IN :exercisesIds")
+    List<Exercise> loadByIdsWithoutSolutionAndRubric(@Param("exercisesIds") Collection<String> exercisesIds);
+
     @Query(value = "SELECT e.tags FROM Exercise e WHERE e.id = :exerciseId")
     Set<Tag> getExerciseTags(@Param("exerciseId") String exerciseId);
 
@@ -33,45 +41,6 @@ public interface ExerciseDAO extends JpaRepository<Exercise, String> {
     @Query("SELECT t, COUNT(e.id) FROM Exercise e JOIN e.tags t WHERE e.id IN :exercisesIds GROUP BY t.id")
     Set<Object[]> countTagsOccurrencesForExercisesList(@Param("exercisesIds") List<String> exercisesIds);
 
-    @EntityGraph(attributePaths = "tags", type = EntityGraph.EntityGraphType.LOAD)
-    @Query("SELECT e FROM Exercise e WHERE e.id IN (" +
-            "SELECT e1.id FROM Exercise e1 " +
-            "JOIN e1.tags t WHERE " +
-            "t.id IN :tagIDS GROUP BY e1 HAVING COUNT(t.id) = :sizeTagIDS and " +
-            " ((:visibilityType is null and e.visibility != 'TEST') or e.visibility = :visibilityType) and" +
-            " (:institutionId is null or e.institution.name=:institutionId) and" +
-            " (:courseId is null or e.course.id=:courseId) and" +
-            " (:specialistID is null or e.specialist.id=:specialistID) and" +
-            " (:title is null or e.title LIKE :title) and" +
-            " (:exerciseType is null or e.exerciseType = :exerciseType))")
-    Page<Exercise> getExercisesMatchAllTags(@Param("tagIDS") List<String> tagIDS,
-                                            @Param("sizeTagIDS") int sizeTagIDS,
-                                            @Param("visibilityType") Visibility visibilityType,
-                                            @Param("institutionId") String institutionId,
-                                            @Param("courseId") String courseId,
-                                            @Param("specialistID") String specialistId,
-                                            @Param("title")  String title,
-                                            @Param("exerciseType")  String exerciseType,
-                                            Pageable pageable);
-
-    @EntityGraph(attributePaths = "tags", type = EntityGraph.EntityGraphType.LOAD)
-    @Query("SELECT e FROM Exercise e WHERE " +
-            "(:tagIDS is null or e.id IN (SELECT e1.id FROM Exercise e1 JOIN e1.tags t WHERE t.id IN :tagIDS)) and " +
-            " ((:visibilityType is null and e.visibility != 'TEST') or e.visibility = :visibilityType) and" +
-            " (:institutionId is null or e.institution.name=:institutionId) and" +
-            " (:courseId is null or e.course.id=:courseId) and" +
-            " (:specialistID is null or e.specialist.id=:specialistID) and" +
-            " (:title is null or e.title LIKE :title) and" +
-            " (:exerciseType is null or e.exerciseType = :exerciseType)")
-    Page<Exercise> getExercisesMatchAnyGivenTag(@Param("tagIDS") List<String> tagIDS,
-                                                @Param("visibilityType") Visibility visibilityType,
-                                                @Param("institutionId") String institutionId,
-                                                @Param("courseId") String courseId,
-                                                @Param("specialistID") String specialistId,
-                                                @Param("title")  String title,
-                                                @Param("exerciseType")  String exerciseType,
-                                                Pageable pageable);
-
     /**
      * Get the identifier of the specialist that owns the exercise.
      * @param exerciseId identifier of the exercise
@@ -79,4 +48,24 @@ public interface ExerciseDAO extends JpaRepository<Exercise, String> {
      */
     @Query(value = "SELECT e.specialist.id FROM Exercise e WHERE e.id = :exerciseId")
     String getExerciseSpecialistId(@Param("exerciseId") String exerciseId);
+
+    /**
+     * Gets the test exercises of a specialist with a given content hash.
+     * @param specialistId identifier of the specialist
+     * @param contentHash hash of the content
+     * @return identifiers of the exercises
+     */
+    @Query("SELECT e.id FROM Exercise e WHERE e.specialist.id = :specialistId AND e.contentHash = :contentHash AND e.visibility = 'TEST'")
+    List<String> getTestExercisesWithContentHash(@Param("specialistId") String specialistId, @Param("contentHash") String contentHash);
+
+    /**
+     * From a list of exercises, gets the ones that can be shared by the tests of a specialist,
+     * i.e., test exercises of the specialist that have a content hash, and that were not resolved yet.
+     * @param exercisesIds identifiers of the exercises
+     * @param specialistId identifier of the specialist
+     * @return identifiers of the shareable exercises
+     */
+    @Query("SELECT e.id FROM Exercise e WHERE e.id IN :exercisesIds AND e.specialist.id = :specialistId AND e.contentHash IS NOT NULL AND e.visibility = 'TEST' " +
+            "AND NOT EXISTS (SELECT 1 FROM ExerciseResolution r WHERE r.exercise.id = e.id)")
+    Set<String> getShareableTestExercises(@Param("exercisesIds") Collection<String> exercisesIds, @Param("specialistId") String specialistId);
 }
@@ -2,6 +2,7 @@ package pt.uminho.di.chalktyk.repositories;
 
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
@@ -26,7 +27,20 @@ public interface ExerciseResolutionDAO extends JpaRepository<ExerciseResolution,
      * @return page of resolutions, with a given status, of a specific exercise
      */
     Page<ExerciseResolution> findAllByExercise_IdAndStatus(String exerciseId, ExerciseResolutionStatus status, Pageable pageable);
-    
+
+    /**
+     * Finds the identifier and the data of the resolutions, with a given status, of a specific exercise,
+     * that follow a given resolution in the order of the identifiers. The resolutions are not loaded as entities.
+     * @param exerciseId identifier of the exercise
+     * @param status status of the resolutions
+     * @param lastId identifier of the last resolution of the previous chunk, or an empty string for the first chunk
+     * @param pageable size of the chunk
+     * @return pairs of (identifier, data) ordered by identifier
+     */
+    @Query("SELECT r.id, r.data FROM ExerciseResolution r WHERE r.exercise.id = :exerciseId AND r.status = :status AND r.id > :lastId ORDER BY r.id")
+    List<Object[]> findResolutionsDataAfter(@Param("exerciseId") String exerciseId, @Param("status") ExerciseResolutionStatus status,
+                                            @Param("lastId") String lastId, Pageable pageable);
+
     /**
      * @param exerciseId identifier of the exercise
      * @return total number of resolutions for a specific exercise
@@ -79,6 +93,49 @@ public interface ExerciseResolutionDAO extends JpaRepository<ExerciseResolution,
     @Query("SELECT r FROM ExerciseResolution r JOIN FETCH r.student s WHERE r.exercise.id = :exerciseId AND r.status = :status AND r.submissionNr = (SELECT MAX (r2.submissionNr) FROM ExerciseResolution r2 WHERE r2.exercise.id = :exerciseId AND r.student.id = r2.student.id)")
     Page<ExerciseResolution> findLatestResolutionsByExercise_IdAndStatus(@Param("exerciseId") String exerciseId, @Param("status") ExerciseResolutionStatus status, Pageable pageable);
 
+    // keyset condition and order of the slices of resolutions of an exercise
+    String AFTER_RESOLUTION = " AND (r.studentId, r.submissionNr, r.id) > (cast(:lastStudentId as String), cast(:lastSubmissionNr as Integer), cast(:lastId as String)) ORDER BY r.studentId, r.submissionNr, r.id";
+    // condition that only keeps the last resolution of each student
+    String LATEST_RESOLUTION = " AND r.submissionNr = (SELECT MAX (r2.submissionNr) FROM ExerciseResolution r2 WHERE r2.exercise.id = :exerciseId AND r.student.id = r2.student.id)";
+
+    /**
+     * Keyset pagination of the resolutions of an exercise. The resolutions are not counted.
+     * @param exerciseId identifier of the exercise
+     * @param lastStudentId identifier of the student of the last resolution of the previous slice.
+     *                      Use an empty string to get the first slice.
+     * @param lastSubmissionNr submission number of the last resolution of the previous slice
+     * @param lastId identifier of the last resolution of the previous slice
+     * @param pageable used to limit the number of resolutions. The page index should always be 0.
+     * @return resolutions that follow the given one, ordered by student, submission number and identifier
+     */
+    @Query("SELECT r FROM ExerciseResolution r JOIN FETCH r.student s WHERE r.exercise.id = :exerciseId" + AFTER_RESOLUTION)
+    Slice<ExerciseResolution> findResolutionsAfter(@Param("exerciseId") String exerciseId, @Param("lastStudentId") String lastStudentId,
+                                                   @Param("lastSubmissionNr") int lastSubmissionNr, @Param("lastId") String lastId, Pageable pageable);
+
+    /**
+     * Same as {@link #findResolutionsAfter(String, String, int, String, Pageable)}, but only for the resolutions with the given status.
+     */
+    @Query("SELECT r FROM ExerciseResolution r JOIN FETCH r.student s WHERE r.exercise.id = :exerciseId AND r.status = :status" + AFTER_RESOLUTION)
+    Slice<ExerciseResolution> findResolutionsWithStatusAfter(@Param("exerciseId") String exerciseId, @Param("status") ExerciseResolutionStatus status,
+                                                             @Param("lastStudentId") String lastStudentId, @Param("lastSubmissionNr") int lastSubmissionNr,
+                                                             @Param("lastId") String lastId, Pageable pageable);
+
+    /**
+     * Same as {@link #findResolutionsAfter(String, String, int, String, Pageable)}, but only for the last resolution of each student.
+     */
+    @Query("SELECT r FROM ExerciseResolution r JOIN FETCH r.student s WHERE r.exercise.id = :exerciseId" + LATEST_RESOLUTION + AFTER_RESOLUTION)
+    Slice<ExerciseResolution> findLatestResolutionsAfter(@Param("exerciseId") String exerciseId, @Param("lastStudentId") String lastStudentId,
+                                                         @Param("lastSubmissionNr") int lastSubmissionNr, @Param("lastId") String lastId, Pageable pageable);
+
+    /**
+     * Same as {@link #findLatestResolutionsAfter(String, String, int, String, Pageable)},
+     * but only for the last resolutions with the given status.
+     */
+    @Query("SELECT r FROM ExerciseResolution r JOIN FETCH r.student s WHERE r.exercise.id = :exerciseId AND r.status = :status" + LATEST_RESOLUTION + AFTER_RESOLUTION)
+    Slice<ExerciseResolution> findLatestResolutionsWithStatusAfter(@Param("exerciseId") String exerciseId, @Param("status") ExerciseResolutionStatus status,
+                                                                   @Param("lastStudentId") String lastStudentId, @Param("lastSubmissionNr") int lastSubmissionNr,
+                                                                   @Param("lastId") String lastId, Pageable pageable);
+
     /**
      * Deletes all resolutions of an exercise.
      * @param exerciseId exercise identifier
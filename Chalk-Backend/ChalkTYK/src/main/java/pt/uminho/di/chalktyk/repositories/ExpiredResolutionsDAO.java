@@ -0,0 +1,83 @@
+package pt.uminho.di.chalktyk.repositories;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import pt.uminho.di.chalktyk.models.tests.TestResolutionStatus;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Set-based submission of the ongoing test resolutions whose deadline has passed.
+ * The resolutions are found through the index on their status and deadline.
+ */
+@Repository
+public class ExpiredResolutionsDAO {
+    // key of the advisory lock that allows a single instance to close expired resolutions at a time
+    private static final long CLOSE_EXPIRED_LOCK_KEY = 0x4348414c4b01L;
+
+    private static final String LOCK_EXPIRED_RESOLUTIONS =
+            "SELECT id FROM test_resolution WHERE status = ? AND deadline < ? ORDER BY deadline LIMIT ? FOR UPDATE SKIP LOCKED";
+
+    private static final String CLOSE_RESOLUTIONS =
+            "UPDATE test_resolution SET status = ?, submission_date = deadline, correction_pending = ?, " +
+            "revised_count = NULL, not_revised_count = NULL WHERE status = ? AND id IN (%s)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public ExpiredResolutionsDAO(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Tries to acquire the lock for closing expired resolutions. The lock is released when the transaction ends.
+     * @return 'true' if the lock was acquired, or 'false' if it is held by another transaction
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public boolean tryLockCloseExpired() {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject("SELECT pg_try_advisory_xact_lock(?)", Boolean.class, CLOSE_EXPIRED_LOCK_KEY));
+    }
+
+    /**
+     * Locks the ongoing resolutions whose deadline has passed, the oldest first, until the transaction ends.
+     * Resolutions locked by other transactions are skipped.
+     * @param now current date
+     * @param limit maximum number of resolutions to lock
+     * @return identifiers of the locked resolutions
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public List<String> lockExpiredResolutions(LocalDateTime now, int limit) {
+        return jdbcTemplate.queryForList(LOCK_EXPIRED_RESOLUTIONS, String.class, TestResolutionStatus.ONGOING.ordinal(), now, limit);
+    }
+
+    /**
+     * Submits ongoing resolutions. The submission date of each resolution is set to its deadline,
+     * and its revised counters become unknown, since they are not kept up to date while it is ongoing.
+     * @param ids identifiers of the resolutions, locked by {@link #lockExpiredResolutions(LocalDateTime, int)}
+     * @param correctionPending whether the resolutions wait to be corrected automatically
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void closeResolutions(List<String> ids, boolean correctionPending) {
+        if (ids.isEmpty())
+            return;
+        List<Object> args = new ArrayList<>(ids.size() + 3);
+        args.add(TestResolutionStatus.NOT_REVISED.ordinal());
+        args.add(correctionPending);
+        args.add(TestResolutionStatus.ONGOING.ordinal());
+        args.addAll(ids);
+        jdbcTemplate.update(String.format(CLOSE_RESOLUTIONS, String.join(",", Collections.nCopies(ids.size(), "?"))), args.toArray());
+    }
+
+    /**
+     * @param now current date
+     * @return oldest deadline, before the current date, of an ongoing resolution, or 'null' if there is none
+     */
+    public LocalDateTime getOldestExpiredDeadline(LocalDateTime now) {
+        return jdbcTemplate.queryForObject("SELECT min(deadline) FROM test_resolution WHERE status = ? AND deadline < ?",
+                LocalDateTime.class, TestResolutionStatus.ONGOING.ordinal(), now);
+    }
+}
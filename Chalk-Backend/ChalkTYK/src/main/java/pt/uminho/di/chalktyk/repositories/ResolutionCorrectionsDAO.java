@@ -0,0 +1,46 @@
+package pt.uminho.di.chalktyk.repositories;
+
+import io.hypersistence.utils.hibernate.type.util.ObjectMapperWrapper;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import pt.uminho.di.chalktyk.models.exercises.ExerciseResolution;
+import pt.uminho.di.chalktyk.models.exercises.ExerciseResolutionStatus;
+
+import java.sql.Types;
+import java.util.List;
+
+/**
+ * Writes the corrections of exercise resolutions in JDBC batches, bypassing the persistence context.
+ */
+@Repository
+public class ResolutionCorrectionsDAO {
+    // resolutions revised in the meantime, e.g. manually, are not overwritten
+    private static final String UPDATE_CORRECTION =
+            "UPDATE exercise_resolution SET data = CAST(? AS jsonb), points = ?, status = ? WHERE id = ? AND status = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public ResolutionCorrectionsDAO(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Writes the data, points and status of corrected resolutions that were not revised.
+     * @param resolutions corrected resolutions
+     * @param batchSize number of updates sent to the database at a time
+     */
+    public void writeCorrections(List<ExerciseResolution> resolutions, int batchSize) {
+        if (resolutions.isEmpty())
+            return;
+        jdbcTemplate.batchUpdate(UPDATE_CORRECTION, resolutions, batchSize, (ps, res) -> {
+            ps.setString(1, ObjectMapperWrapper.INSTANCE.toString(res.getData()));
+            if (res.getPoints() != null)
+                ps.setFloat(2, res.getPoints());
+            else
+                ps.setNull(2, Types.REAL);
+            ps.setInt(3, res.getStatus().ordinal());
+            ps.setString(4, res.getId());
+            ps.setInt(5, ExerciseResolutionStatus.NOT_REVISED.ordinal());
+        });
+    }
+}
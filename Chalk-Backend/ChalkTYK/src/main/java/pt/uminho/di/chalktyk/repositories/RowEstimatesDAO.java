@@ -0,0 +1,64 @@
+package pt.uminho.di.chalktyk.repositories;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.stereotype.Repository;
+import pt.uminho.di.chalktyk.models.exercises.ExerciseResolutionStatus;
+
+/**
+ * Estimates of the number of rows of the listings, taken from the plans of their queries.
+ * The queries are planned, but not executed, so an estimate costs about the same regardless of the
+ * number of rows, unlike a count. Estimates are as good as the statistics of the tables.
+ */
+@Repository
+public class RowEstimatesDAO {
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    public RowEstimatesDAO(NamedParameterJdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * @param query sql query
+     * @param params parameters of the query
+     * @return number of rows that the planner estimates the query returns
+     */
+    public long estimateRows(String query, SqlParameterSource params) {
+        String plan = jdbcTemplate.queryForObject("EXPLAIN (FORMAT JSON) " + query, params, String.class);
+        try {
+            return objectMapper.readTree(plan).path(0).path("Plan").path("Plan Rows").asLong();
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not read the plan of the query.", e);
+        }
+    }
+
+    /**
+     * @param exerciseId identifier of the exercise
+     * @param status status of the resolutions, or 'null' for any status
+     * @param latest if 'true' only the last resolution of each student is counted
+     * @return estimated number of resolutions of the exercise
+     */
+    public long estimateExerciseResolutions(String exerciseId, ExerciseResolutionStatus status, boolean latest) {
+        MapSqlParameterSource params = new MapSqlParameterSource("exerciseId", exerciseId);
+        // the last resolutions are estimated by the number of students that resolved the exercise
+        String query = (latest ? "SELECT DISTINCT studentid" : "SELECT 1") + " FROM exercise_resolution WHERE exerciseid = :exerciseId";
+        if (status != null) {
+            query += " AND status = :status";
+            params.addValue("status", status.ordinal());
+        }
+        return estimateRows(query, params);
+    }
+
+    /**
+     * @param testId identifier of the test
+     * @return estimated number of resolutions of the test
+     */
+    public long estimateTestResolutions(String testId) {
+        return estimateRows("SELECT 1 FROM test_resolution WHERE testid = :testId", new MapSqlParameterSource("testId", testId));
+    }
+}
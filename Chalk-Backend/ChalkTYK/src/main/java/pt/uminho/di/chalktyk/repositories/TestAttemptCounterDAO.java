@@ -0,0 +1,26 @@
+package pt.uminho.di.chalktyk.repositories;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import pt.uminho.di.chalktyk.models.tests.TestAttemptCounter;
+import pt.uminho.di.chalktyk.models.tests.TestAttemptCounterPK;
+
+@Repository
+public interface TestAttemptCounterDAO extends JpaRepository<TestAttemptCounter, TestAttemptCounterPK> {
+    /**
+     * Atomically allocates the next submission number of a student for a test.
+     * The counter is created on the first allocation, starting after the resolutions that already exist.
+     * @param studentId identifier of the student
+     * @param testId identifier of the test
+     * @return allocated submission number
+     */
+    @Transactional
+    @Query(value = "INSERT INTO test_attempt_counter (studentid, testid, last_submission_nr) " +
+            "VALUES (:studentId, :testId, (SELECT COALESCE(MAX(submission_nr), 0) + 1 FROM test_resolution WHERE testid = :testId AND studentid = :studentId)) " +
+            "ON CONFLICT (studentid, testid) DO UPDATE SET last_submission_nr = test_attempt_counter.last_submission_nr + 1 " +
+            "RETURNING last_submission_nr", nativeQuery = true)
+    int nextSubmissionNr(@Param("studentId") String studentId, @Param("testId") String testId);
+}
@@ -7,37 +7,59 @@ import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
-import pt.uminho.di.chalktyk.models.exercises.Exercise;
-import pt.uminho.di.chalktyk.models.miscellaneous.Visibility;
+import pt.uminho.di.chalktyk.dtos.TestListingDTO;
+import pt.uminho.di.chalktyk.models.tests.LiveTest;
 import pt.uminho.di.chalktyk.models.tests.Test;
 
 import java.util.List;
 
 @Repository
 public interface TestDAO extends JpaRepository<Test, String> {
-    @Query("SELECT test FROM Test test WHERE" +
-            " CASE WHEN :matchAllTags = true THEN (:tagIDS is null or :tagsSize = 0 or test.id IN (SELECT tgs.testTagPK.test.id FROM TestTag tgs WHERE tgs.testTagPK.tag.id IN :tagIDS GROUP BY tgs.testTagPK.test.id HAVING COUNT(tgs.testTagPK.tag.id) = :tagsSize))"+
-            " ELSE (:tagIDS is null or :tagsSize = 0 or test.id IN (SELECT tgs.testTagPK.test.id FROM TestTag tgs WHERE tgs.testTagPK.tag.id IN :tagIDS)) END and"+
-            " (:visibilityType is null or test.visibility = :visibilityType) and" +
-            " (:institutionId is null or test.institution.name = :institutionId) and" +
-            " (:courseId is null or test.course.id = :courseId) and" +
-            " (:specialistID is null or test.specialist.id = :specialistID) and" +
-            " (:title is null or test.title = :title)")
-    Page<Test> getTests(Pageable pageable,
-                           @Param("tagIDS") java.util.List<String> tagIDS, @Param("tagsSize") int tagsSize, @Param("matchAllTags")  boolean matchAllTags,
-                           @Param("visibilityType") Visibility visibilityType,
-                           @Param("institutionId") String institutionId,
-                           @Param("courseId") String courseId,
-                           @Param("specialistID") String specialistId,
-                           @Param("title")  String title);
-
-    @Query("SELECT e FROM MultipleChoiceExercise e WHERE " +
-            "(:tagIDS is null or e.id IN (SELECT e1.id FROM Exercise e1 JOIN e1.tags t WHERE t.id IN :tagIDS)) and " +
-            " e.visibility = 'PUBLIC'" +
-            " ORDER BY FUNCTION('RANDOM')")
-    Page<Exercise> getExercisesForAutoEvalTest(@Param("tagIDS") List<String> tagIDS,
-                                               Pageable pageable);
+    /**
+     * Projects the columns required to list the tests with the given identifiers.
+     * The order of the returned list is not guaranteed to match the order of the identifiers.
+     * @param testsIds identifiers of the tests
+     * @return listings of the tests that exist with the given identifiers
+     */
+    @Query(value = "SELECT new pt.uminho.di.chalktyk.dtos.TestListingDTO(test.id, test.title, test.globalInstructions, test.globalPoints," +
+            " test.conclusion, test.creationDate, test.publishDate, test.specialistId, test.visibility, test.courseId, test.institutionId)" +
+            " FROM Test test WHERE test.id IN :testsIds")
+    List<TestListingDTO> getTestsListingByIds(@Param("testsIds") java.util.Collection<String> testsIds);
+
+    /**
+     * @param tagId identifier of the tag
+     * @return identifiers of the exercises with the given tag, that can be given in auto evaluation tests
+     */
+    @Query("SELECT e.id FROM MultipleChoiceExercise e JOIN e.tags t WHERE t.id = :tagId AND e.visibility = 'PUBLIC'")
+    List<String> getAutoEvalCandidatesWithTag(@Param("tagId") String tagId);
+
+    /**
+     * @param testId identifier of the test
+     * @return the live test with the given identifier, or 'null' if there is no such live test
+     */
+    @Query("SELECT t FROM LiveTest t WHERE t.id = :testId")
+    LiveTest getLiveTest(@Param("testId") String testId);
 
     @Query("SELECT t FROM AutoEvaluationTest t WHERE t.student.id = :studentId")
     Page<Test> getAutoEvaluationTestsFromStudent(@Param("studentId") String studentId, Pageable pageable);
+
+    // condition that matches the tests whose groups reference the exercise ':exerciseId'
+    String REFERENCES_EXERCISE = " t.groups @> jsonb_build_array(jsonb_build_object('exercises', jsonb_build_array(jsonb_build_object('id', CAST(:exerciseId AS varchar)))))";
+
+    /**
+     * @param exerciseId identifier of the exercise
+     * @return number of tests that reference the exercise
+     */
+    @Query(value = "SELECT COUNT(*) FROM test t WHERE" + REFERENCES_EXERCISE, nativeQuery = true)
+    long countTestsReferencingExercise(@Param("exerciseId") String exerciseId);
+
+    /**
+     * Checks if an exercise is referenced by a test other than the given one.
+     * The references are checked even if the exercise no longer has a content hash.
+     * @param testId identifier of the test
+     * @param exerciseId identifier of the exercise
+     * @return 'true' if the exercise is shared with other tests
+     */
+    @Query(value = "SELECT EXISTS (SELECT 1 FROM test t WHERE t.id <> :testId AND" + REFERENCES_EXERCISE + ")", nativeQuery = true)
+    boolean isExerciseSharedWithOtherTests(@Param("testId") String testId, @Param("exerciseId") String exerciseId);
 }
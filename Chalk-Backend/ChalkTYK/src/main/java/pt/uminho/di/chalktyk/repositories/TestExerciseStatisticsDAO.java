@@ -0,0 +1,35 @@
+package pt.uminho.di.chalktyk.repositories;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import pt.uminho.di.chalktyk.models.tests.TestExerciseStatistics;
+import pt.uminho.di.chalktyk.models.tests.TestExerciseStatisticsPK;
+
+import java.util.List;
+
+@Repository
+public interface TestExerciseStatisticsDAO extends JpaRepository<TestExerciseStatistics, TestExerciseStatisticsPK> {
+    @Query("SELECT s FROM TestExerciseStatistics s WHERE s.testExerciseStatisticsPK.testId = :testId")
+    List<TestExerciseStatistics> getTestExercisesStatistics(@Param("testId") String testId);
+
+    /**
+     * Atomically adds a change to the statistics of an exercise of a test.
+     * See {@link TestStatisticsDAO#addChange(String, long, double, double, String)}.
+     */
+    @Modifying
+    @Query(value = "INSERT INTO test_exercise_statistics (testid, exerciseid, count, sum, sum_squares, histogram) " +
+            "VALUES (:testId, :exerciseId, :count, :sum, :sumSquares, CAST(:histogram AS integer[])) " +
+            "ON CONFLICT (testid, exerciseid) DO UPDATE SET count = test_exercise_statistics.count + EXCLUDED.count, " +
+            "sum = test_exercise_statistics.sum + EXCLUDED.sum, sum_squares = test_exercise_statistics.sum_squares + EXCLUDED.sum_squares, " +
+            "histogram = ARRAY(SELECT h.a + h.b FROM unnest(test_exercise_statistics.histogram, EXCLUDED.histogram) WITH ORDINALITY AS h(a, b, i) ORDER BY h.i)",
+            nativeQuery = true)
+    void addChange(@Param("testId") String testId, @Param("exerciseId") String exerciseId, @Param("count") long count,
+                   @Param("sum") double sum, @Param("sumSquares") double sumSquares, @Param("histogram") String histogram);
+
+    @Modifying
+    @Query("DELETE FROM TestExerciseStatistics s WHERE s.testExerciseStatisticsPK.testId = :testId")
+    void deleteTestExercisesStatistics(@Param("testId") String testId);
+}
@@ -1,23 +1,171 @@
 package pt.uminho.di.chalktyk.repositories;
 
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import pt.uminho.di.chalktyk.dtos.TestResolutionExportDTO;
 import pt.uminho.di.chalktyk.models.tests.TestResolution;
+import pt.uminho.di.chalktyk.models.tests.TestResolutionStatus;
 
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.stream.Stream;
 
 @Repository
 public interface TestResolutionDAO extends JpaRepository<TestResolution,String> {
-    @Query(value = "select tr from TestResolution tr where tr.test.id = :testId")
+    // ordered, so that pages do not depend on the plan chosen by the database
+    @Query(value = "select tr from TestResolution tr where tr.test.id = :testId order by tr.startDate, tr.id")
     Page<TestResolution> getTestResolutions(@Param("testId") String testId, Pageable pageable);
 
     @Query(value = "select tr from TestResolution tr where tr.test.id = :testId")
     List<TestResolution> getTestResolutions(@Param("testId") String testId);
 
+    /**
+     * First slice of the keyset pagination of the resolutions of a test. The resolutions are not counted.
+     * @param testId identifier of the test
+     * @param pageable used to limit the number of resolutions. The page index should always be 0.
+     * @return resolutions, ordered by start date and identifier
+     */
+    @Query(value = "select tr from TestResolution tr where tr.test.id = :testId order by tr.startDate, tr.id")
+    Slice<TestResolution> getFirstTestResolutions(@Param("testId") String testId, Pageable pageable);
+
+    /**
+     * Keyset pagination of the resolutions of a test. The resolutions are not counted.
+     * @param testId identifier of the test
+     * @param lastStartDate start date of the last resolution of the previous slice
+     * @param lastId identifier of the last resolution of the previous slice
+     * @param pageable used to limit the number of resolutions. The page index should always be 0.
+     * @return resolutions that follow the given one, ordered by start date and identifier
+     */
+    @Query(value = "select tr from TestResolution tr where tr.test.id = :testId and (tr.startDate, tr.id) > (cast(:lastStartDate as LocalDateTime), cast(:lastId as String)) order by tr.startDate, tr.id")
+    Slice<TestResolution> getTestResolutionsAfter(@Param("testId") String testId, @Param("lastStartDate") LocalDateTime lastStartDate,
+                                                 @Param("lastId") String lastId, Pageable pageable);
+
+    /**
+     * Keyset pagination over the identifiers of the resolutions of a test.
+     * @param testId identifier of the test
+     * @param excludedStatus resolutions with this status are ignored
+     * @param lastId only identifiers greater than this one are returned. Use an empty string to get the first page.
+     * @param pageable used to limit the number of identifiers returned. The page index should always be 0.
+     * @return identifiers of the resolutions, in ascending order
+     */
+    @Query(value = "select tr.id from TestResolution tr where tr.test.id = :testId and tr.status <> :excludedStatus and tr.id > :lastId order by tr.id")
+    List<String> getTestResolutionsIdsAfter(@Param("testId") String testId, @Param("excludedStatus") TestResolutionStatus excludedStatus,
+                                            @Param("lastId") String lastId, Pageable pageable);
+
+    /**
+     * Streams the resolutions of a test, to be exported. Rows are read from a forward-only cursor,
+     * a few at a time, so the stream must be consumed inside a transaction and closed afterwards.
+     * @param testId identifier of the test
+     * @return stream of resolutions, ordered by student and submission number
+     */
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query(value = "select new pt.uminho.di.chalktyk.dtos.TestResolutionExportDTO(s.email, tr.submissionNr, tr.status, tr.submissionDate, tr.totalPoints, tr.groups) " +
+            "from TestResolution tr join tr.student s where tr.test.id = :testId order by tr.student.id, tr.submissionNr")
+    Stream<TestResolutionExportDTO> streamTestResolutionsForExport(@Param("testId") String testId);
+
+    /**
+     * @param id identifier of the test resolution
+     * @return list with a single row, composed by the status, the identifier of the student,
+     * the identifier of the test and the submission number of the resolution. Empty if the resolution does not exist.
+     */
+    @Query(value = "select tr.status, tr.student.id, tr.test.id, tr.submissionNr from TestResolution tr where tr.id = :id")
+    List<Object[]> getTestResolutionHeader(@Param("id") String id);
+
+    /**
+     * Reads the entry of an exercise in a group of a test resolution, without reading the rest of the document.
+     * @param id identifier of the test resolution
+     * @param groupIndex index of the group
+     * @param exerciseId identifier of the exercise
+     * @return list with a single row, composed by a boolean that indicates if the group has an entry for the exercise,
+     * and the identifier of the exercise resolution in the entry (may be 'null').
+     */
+    @Query(value = "SELECT jsonb_exists(groups -> CAST(:groupIndex AS int) -> 'resolutions', :exerciseId), " +
+            "groups -> CAST(:groupIndex AS int) -> 'resolutions' -> :exerciseId ->> 'resolutionId' " +
+            "FROM test_resolution WHERE id = :id", nativeQuery = true)
+    List<Object[]> getExerciseResolutionEntry(@Param("id") String id, @Param("groupIndex") int groupIndex, @Param("exerciseId") String exerciseId);
+
+    /**
+     * Replaces, in place, the entry of an exercise in a group of a test resolution.
+     * The update only happens if the resolution has the given status.
+     * @param id identifier of the test resolution
+     * @param groupIndex index of the group
+     * @param exerciseId identifier of the exercise
+     * @param entry json of the new entry
+     * @param status ordinal of the status the resolution must have
+     * @return number of updated resolutions
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query(value = "UPDATE test_resolution SET groups = jsonb_set(groups, ARRAY[CAST(:groupIndex AS text), 'resolutions', :exerciseId], CAST(:entry AS jsonb)), " +
+            "not_revised_count = not_revised_count + :created WHERE id = :id AND status = :status", nativeQuery = true)
+    int setExerciseResolutionEntry(@Param("id") String id, @Param("groupIndex") int groupIndex, @Param("exerciseId") String exerciseId,
+                                   @Param("entry") String entry, @Param("created") int created, @Param("status") int status);
+
+    /**
+     * Locks a test resolution, and reads what a correction of one of its exercises changes,
+     * without reading the rest of the document.
+     * @param id identifier of the test resolution
+     * @param groupIndex index of the group of the exercise
+     * @param exerciseId identifier of the exercise
+     * @return list with a single row, composed by the status, the total points, the revised and not revised counters,
+     * the points of the group, and the identifier of the exercise resolution and the points in the entry of the exercise.
+     * Empty if the resolution does not exist.
+     */
+    @Query(value = "SELECT status, total_points, revised_count, not_revised_count, groups -> CAST(:groupIndex AS int) ->> 'groupPoints', " +
+            "groups -> CAST(:groupIndex AS int) -> 'resolutions' -> :exerciseId ->> 'resolutionId', " +
+            "groups -> CAST(:groupIndex AS int) -> 'resolutions' -> :exerciseId ->> 'points' " +
+            "FROM test_resolution WHERE id = :id FOR UPDATE", nativeQuery = true)
+    List<Object[]> lockExerciseCorrectionEntry(@Param("id") String id, @Param("groupIndex") int groupIndex, @Param("exerciseId") String exerciseId);
+
+    /**
+     * Counts the exercise resolutions referenced by the groups of a test resolution, by status.
+     * @param id identifier of the test resolution
+     * @return list of rows composed by the ordinal of the status of the exercise resolutions, and their number
+     */
+    @Query(value = "SELECT er.status, COUNT(*) FROM exercise_resolution er WHERE er.id IN (" +
+            "SELECT e.value ->> 'resolutionId' FROM test_resolution t, jsonb_array_elements(t.groups) g, jsonb_each(g -> 'resolutions') e " +
+            "WHERE t.id = :id AND jsonb_typeof(e.value) = 'object') GROUP BY er.status", nativeQuery = true)
+    List<Object[]> countExerciseResolutionsByStatus(@Param("id") String id);
+
+    /**
+     * Writes, in place, the correction of an exercise of a test resolution: the points of the exercise and of its group,
+     * the total points, the counters and the status.
+     * @return number of updated resolutions
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query(value = "UPDATE test_resolution SET groups = jsonb_set(jsonb_set(groups, " +
+            "ARRAY[CAST(:groupIndex AS text), 'resolutions', :exerciseId, 'points'], to_jsonb(CAST(:points AS real))), " +
+            "ARRAY[CAST(:groupIndex AS text), 'groupPoints'], to_jsonb(CAST(:groupPoints AS real))), " +
+            "total_points = :totalPoints, revised_count = :revisedCount, not_revised_count = :notRevisedCount, status = :status " +
+            "WHERE id = :id", nativeQuery = true)
+    int setExerciseCorrection(@Param("id") String id, @Param("groupIndex") int groupIndex, @Param("exerciseId") String exerciseId,
+                              @Param("points") float points, @Param("groupPoints") float groupPoints, @Param("totalPoints") float totalPoints,
+                              @Param("revisedCount") int revisedCount, @Param("notRevisedCount") int notRevisedCount, @Param("status") int status);
+
+    /**
+     * Sets the deadline of the ongoing resolutions of a test, after the deadline of the test changes.
+     * @param testId identifier of the test
+     * @param deadline new deadline
+     * @return number of updated resolutions
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query(value = "UPDATE TestResolution tr SET tr.deadline = :deadline WHERE tr.test.id = :testId " +
+            "AND tr.status = pt.uminho.di.chalktyk.models.tests.TestResolutionStatus.ONGOING")
+    int updateOngoingResolutionsDeadline(@Param("testId") String testId, @Param("deadline") LocalDateTime deadline);
+
+    long countByTest_IdAndStatusNot(String testId, TestResolutionStatus status);
+
     @Query(value = "SELECT COUNT(*) FROM TestResolution tr where tr.test.id = :testId")
     int countTotalSubmissionsForTest(@Param("testId") String testId);
 
@@ -36,7 +184,33 @@ public interface TestResolutionDAO extends JpaRepository<TestResolution,String>
     @Query(value = "SELECT DISTINCT studentid FROM test_resolution WHERE testid = :testId", nativeQuery = true)
     List<String> getDistinctStudentsForTest(@Param("testId") String testId);
     
+    /**
+     * Gets the last resolution (the one with the highest submission number) of every student that resolved the test.
+     * @param testId identifier of the test
+     * @return last resolution of each student, ordered by student identifier
+     */
+    @Query(value = "SELECT DISTINCT ON (studentid) * FROM test_resolution WHERE testid = :testId ORDER BY studentid, submission_nr DESC", nativeQuery = true)
+    List<TestResolution> getStudentsLastResolutions(@Param("testId") String testId);
+
     @Query("SELECT r FROM TestResolution r JOIN FETCH r.student s WHERE r.student.id = :studentId AND r.test.id = :testId AND r.submissionNr = (SELECT MAX(r2.submissionNr) FROM TestResolution r2 WHERE r2.test.id = :testId AND r.student.id = r2.student.id)")
     TestResolution getStudentLastResolution(@Param("studentId") String studentId, @Param("testId") String testId);
 
+
+    /**
+     * Claims the correction of a submitted resolution, so that it is corrected only once.
+     * The claim is undone if the transaction rolls back.
+     * @param id identifier of the test resolution
+     * @return 1 if the correction was claimed, or 0 if it is not pending
+     */
+    @Modifying
+    @Query(value = "update TestResolution tr set tr.correctionPending = false where tr.id = :id and tr.correctionPending = true")
+    int claimPendingCorrection(@Param("id") String id);
+
+    /**
+     * @param submittedBefore only resolutions submitted before this date are returned
+     * @param pageable used to limit the number of identifiers returned
+     * @return identifiers of the submitted resolutions that are still waiting to be corrected, the oldest first
+     */
+    @Query(value = "select tr.id from TestResolution tr where tr.correctionPending = true and tr.submissionDate < :submittedBefore order by tr.submissionDate")
+    List<String> getPendingCorrectionsIds(@Param("submittedBefore") LocalDateTime submittedBefore, Pageable pageable);
 }
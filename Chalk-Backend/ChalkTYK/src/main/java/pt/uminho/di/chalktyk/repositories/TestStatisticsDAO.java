@@ -0,0 +1,33 @@
+package pt.uminho.di.chalktyk.repositories;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import pt.uminho.di.chalktyk.models.tests.TestStatistics;
+
+@Repository
+public interface TestStatisticsDAO extends JpaRepository<TestStatistics, String> {
+    /**
+     * Atomically adds a change to the statistics of a test. The statistics are created by the first change.
+     * @param testId identifier of the test
+     * @param count change of the number of resolutions
+     * @param sum change of the sum of the points
+     * @param sumSquares change of the sum of the squares of the points
+     * @param histogram change of each bin of the histogram, as an array literal (e.g. "{0,1,0}")
+     */
+    @Modifying
+    @Query(value = "INSERT INTO test_statistics (testid, count, sum, sum_squares, histogram) " +
+            "VALUES (:testId, :count, :sum, :sumSquares, CAST(:histogram AS integer[])) " +
+            "ON CONFLICT (testid) DO UPDATE SET count = test_statistics.count + EXCLUDED.count, " +
+            "sum = test_statistics.sum + EXCLUDED.sum, sum_squares = test_statistics.sum_squares + EXCLUDED.sum_squares, " +
+            "histogram = ARRAY(SELECT h.a + h.b FROM unnest(test_statistics.histogram, EXCLUDED.histogram) WITH ORDINALITY AS h(a, b, i) ORDER BY h.i)",
+            nativeQuery = true)
+    void addChange(@Param("testId") String testId, @Param("count") long count, @Param("sum") double sum,
+                   @Param("sumSquares") double sumSquares, @Param("histogram") String histogram);
+
+    @Modifying
+    @Query("DELETE FROM TestStatistics s WHERE s.testId = :testId")
+    void deleteTestStatistics(@Param("testId") String testId);
+}
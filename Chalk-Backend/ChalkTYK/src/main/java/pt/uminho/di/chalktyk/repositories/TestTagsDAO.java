@@ -4,13 +4,31 @@ import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import pt.uminho.di.chalktyk.models.miscellaneous.Tag;
 import pt.uminho.di.chalktyk.models.tests.TestTag;
 import pt.uminho.di.chalktyk.models.tests.TestTagPK;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
 public interface TestTagsDAO extends JpaRepository<TestTag, TestTagPK> {
     @Query(value = "select tg from TestTag tg where tg.testTagPK.test.id = :testId")
     List<TestTag> getTestTags(@Param("testId") String testId);
+
+    /**
+     * Gets the tags of a test in a single query, avoiding the lazy loading of each tag.
+     * @param testId identifier of the test
+     * @return list of tags present in the test
+     */
+    @Query(value = "select tg.testTagPK.tag from TestTag tg where tg.testTagPK.test.id = :testId")
+    List<Tag> getTagsOfTest(@Param("testId") String testId);
+
+    /**
+     * Gets the tags of a list of tests in a single query.
+     * @param testsIds identifiers of the tests
+     * @return list of arrays, where the first element is the identifier of the test and the second is a tag of the test.
+     */
+    @Query(value = "select tg.testTagPK.test.id, tg.testTagPK.tag from TestTag tg where tg.testTagPK.test.id in :testsIds")
+    List<Object[]> getTagsOfTests(@Param("testsIds") Collection<String> testsIds);
 }
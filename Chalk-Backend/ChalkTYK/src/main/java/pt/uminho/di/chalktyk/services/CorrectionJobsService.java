@@ -0,0 +1,295 @@
+package pt.uminho.di.chalktyk.services;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import pt.uminho.di.chalktyk.models.corrections.CorrectionJob;
+import pt.uminho.di.chalktyk.models.corrections.CorrectionJobStatus;
+import pt.uminho.di.chalktyk.models.corrections.CorrectionJobTarget;
+import pt.uminho.di.chalktyk.models.exercises.Exercise;
+import pt.uminho.di.chalktyk.repositories.CorrectionJobDAO;
+import pt.uminho.di.chalktyk.services.exceptions.BadInputException;
+import pt.uminho.di.chalktyk.services.exceptions.NotFoundException;
+import pt.uminho.di.chalktyk.services.exceptions.ServiceException;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs correction jobs on the workers of each instance of the application.
+ * <p>
+ * A job is claimed by an instance before it runs, so it runs on a single instance at a time. The owner of
+ * a running job periodically writes a heartbeat. Jobs whose owner stopped, i.e. without a recent heartbeat,
+ * and jobs left queued, are claimed and resumed by any instance.
+ * A job cancelled on an instance that does not run it is stopped by its owner, on the next heartbeat.
+ */
+@Slf4j
+@Service("correctionJobsService")
+public class CorrectionJobsService implements ICorrectionJobsService {
+    // minimum interval between two writes of the progress of a job
+    private static final long PROGRESS_PERSIST_INTERVAL_MILLIS = 1000;
+
+    private final CorrectionJobDAO jobDAO;
+    private final ITestsService testsService;
+    private final IExercisesService exercisesService;
+    private final ThreadPoolTaskExecutor jobsExecutor;
+    private final TransactionTemplate newTransaction;
+    private final MeterRegistry meterRegistry;
+    private final Counter correctedResolutionsCounter;
+    // identifier of this instance, as the owner of the jobs it runs
+    private final String instanceId = UUID.randomUUID().toString();
+    private final Duration lease;
+
+    // progress of the jobs being executed by this instance
+    private final Map<String, JobProgress> runningJobs = new ConcurrentHashMap<>();
+
+    public CorrectionJobsService(CorrectionJobDAO jobDAO, ITestsService testsService, IExercisesService exercisesService,
+                                 @Qualifier("correctionJobsExecutor") ThreadPoolTaskExecutor jobsExecutor,
+                                 PlatformTransactionManager transactionManager, MeterRegistry meterRegistry,
+                                 @Value("${chalktyk.corrections.jobs.lease:30s}") Duration lease) {
+        this.jobDAO = jobDAO;
+        this.testsService = testsService;
+        this.exercisesService = exercisesService;
+        this.jobsExecutor = jobsExecutor;
+        this.newTransaction = new TransactionTemplate(transactionManager);
+        this.newTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.meterRegistry = meterRegistry;
+        this.lease = lease;
+        this.correctedResolutionsCounter = Counter.builder("chalktyk.corrections.resolutions")
+                .description("Resolutions corrected by correction jobs")
+                .register(meterRegistry);
+    }
+
+    @Override
+    @Transactional(rollbackFor = ServiceException.class)
+    public String submitTestCorrection(String testId, String correctionType, String requesterId) throws NotFoundException {
+        if (!testsService.testExists(testId))
+            throw new NotFoundException("Couldn't submit test correction: couldn't find test with id '" + testId + "'");
+        return createJob(new CorrectionJob(CorrectionJobTarget.TEST, testId, correctionType, requesterId));
+    }
+
+    @Override
+    @Transactional(rollbackFor = ServiceException.class)
+    public String submitExerciseCorrection(String exerciseId, String correctionType, String requesterId) throws NotFoundException, BadInputException {
+        Exercise exercise = exercisesService.getExerciseById(exerciseId);
+        if (!exercise.supportsCorrectionType(correctionType))
+            throw new BadInputException("Could not correct exercise resolutions: correction type not supported.");
+        return createJob(new CorrectionJob(CorrectionJobTarget.EXERCISE, exerciseId, correctionType, requesterId));
+    }
+
+    @Override
+    public CorrectionJob getJob(String jobId) throws NotFoundException {
+        CorrectionJob job = jobDAO.findById(jobId).orElse(null);
+        if (job == null)
+            throw new NotFoundException("Couldn't get correction job: couldn't find job with id '" + jobId + "'");
+
+        // the persisted progress of running jobs may be outdated
+        JobProgress progress = runningJobs.get(jobId);
+        if (progress != null)
+            progress.copyTo(job);
+        return job;
+    }
+
+    @Override
+    @Transactional(rollbackFor = ServiceException.class)
+    public void cancelJob(String jobId) throws NotFoundException, BadInputException {
+        CorrectionJob job = jobDAO.findById(jobId).orElse(null);
+        if (job == null)
+            throw new NotFoundException("Couldn't cancel correction job: couldn't find job with id '" + jobId + "'");
+        if (job.getStatus() != CorrectionJobStatus.QUEUED && job.getStatus() != CorrectionJobStatus.RUNNING)
+            throw new BadInputException("Couldn't cancel correction job: the job has already finished.");
+
+        // a running job is marked as cancelled by its worker, when the correction stops.
+        // If the job runs on another instance, its owner stops it on the next heartbeat
+        JobProgress progress = runningJobs.get(jobId);
+        if (progress != null)
+            progress.cancel();
+        else if (job.getStatus() == CorrectionJobStatus.RUNNING) {
+            job.setCancelRequested(true);
+            jobDAO.save(job);
+        }
+        else {
+            job.setStatus(CorrectionJobStatus.CANCELLED);
+            job.setEndDate(LocalDateTime.now());
+            jobDAO.save(job);
+        }
+    }
+
+    /**
+     * Resumes the jobs left queued, and the running jobs whose owner stopped, e.g. when the application stopped.
+     * Since corrected resolutions are skipped, the correction continues where it stopped.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeJobs() {
+        LocalDateTime now = LocalDateTime.now(), staleBefore = now.minus(lease);
+        newTransaction.executeWithoutResult(status -> jobDAO.cancelStaleJobs(now, staleBefore));
+        List<String> jobsIds = jobDAO.getJobsIdsToResume(staleBefore, staleBefore);
+        for (String jobId : jobsIds)
+            jobsExecutor.execute(() -> runJob(jobId));
+        if (!jobsIds.isEmpty())
+            log.info("Resuming {} correction jobs.", jobsIds.size());
+    }
+
+    /**
+     * Writes the heartbeat of the jobs run by this instance, stops the ones cancelled or claimed elsewhere,
+     * and resumes the jobs of instances that stopped.
+     */
+    @Scheduled(fixedDelayString = "${chalktyk.corrections.jobs.heartbeat-interval:10000}")
+    public void maintainJobs() {
+        Set<String> jobsIds = new HashSet<>(runningJobs.keySet());
+        if (!jobsIds.isEmpty()) {
+            List<String> toStop = newTransaction.execute(status -> {
+                jobDAO.updateHeartbeats(jobsIds, instanceId, LocalDateTime.now());
+                return jobDAO.getJobsIdsToStop(jobsIds, instanceId);
+            });
+            for (String jobId : toStop) {
+                JobProgress progress = runningJobs.get(jobId);
+                if (progress != null)
+                    progress.cancel();
+            }
+        }
+        resumeJobs();
+    }
+
+    /* **** Auxiliary methods **** */
+
+    /**
+     * Persists the job, and dispatches it to the workers once the transaction commits.
+     * @return identifier of the job
+     */
+    private String createJob(CorrectionJob job) {
+        String jobId = jobDAO.save(job).getId();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    jobsExecutor.execute(() -> runJob(jobId));
+                }
+            });
+        }
+        else jobsExecutor.execute(() -> runJob(jobId));
+        return jobId;
+    }
+
+    private void runJob(String jobId) {
+        // the job runs only if this instance claims it
+        LocalDateTime now = LocalDateTime.now();
+        Integer claimed = newTransaction.execute(status -> jobDAO.claimJob(jobId, instanceId, now, now.minus(lease)));
+        if (claimed == null || claimed == 0)
+            return;
+        CorrectionJob job = jobDAO.findById(jobId).orElse(null);
+        if (job == null)
+            return;
+
+        JobProgress progress = new JobProgress(jobId, job.getCorrectedResolutions(), job.getFailures());
+        runningJobs.put(jobId, progress);
+        if (job.getStartDate() == null) {
+            job.setStartDate(now);
+            jobDAO.save(job);
+        }
+
+        CorrectionJobStatus status;
+        String errorMessage = null;
+        try {
+            if (job.getTarget() == CorrectionJobTarget.TEST)
+                testsService.automaticCorrection(job.getTargetId(), job.getCorrectionType(), progress);
+            else
+                exercisesService.issueExerciseResolutionsCorrection(job.getTargetId(), job.getCorrectionType(), progress);
+            status = progress.isCancelled() ? CorrectionJobStatus.CANCELLED : CorrectionJobStatus.COMPLETED;
+        } catch (ServiceException | RuntimeException e) {
+            log.error("Correction job {} failed.", jobId, e);
+            status = CorrectionJobStatus.FAILED;
+            errorMessage = e.getMessage();
+        }
+
+        runningJobs.remove(jobId);
+        job = jobDAO.findById(jobId).orElse(job);
+        // the job was claimed by another instance, which now reports its result
+        if (!instanceId.equals(job.getOwnerId()))
+            return;
+        if (job.isCancelRequested())
+            status = CorrectionJobStatus.CANCELLED;
+        progress.copyTo(job);
+        job.setStatus(status);
+        job.setErrorMessage(errorMessage);
+        job.setEndDate(LocalDateTime.now());
+        jobDAO.save(job);
+    }
+
+    /**
+     * Progress of a running job. The number of corrected resolutions
+     * is periodically persisted, so that it survives a restart.
+     */
+    private class JobProgress implements CorrectionProgressListener {
+        private final String jobId;
+        private final AtomicLong totalResolutions = new AtomicLong(-1);
+        private final AtomicLong correctedResolutions;
+        private final Map<String, AtomicLong> failures = new ConcurrentHashMap<>();
+        private final AtomicLong lastPersist = new AtomicLong(System.currentTimeMillis());
+        private volatile boolean cancelled = false;
+
+        JobProgress(String jobId, long correctedResolutions, Map<String, Long> failures) {
+            this.jobId = jobId;
+            this.correctedResolutions = new AtomicLong(correctedResolutions);
+            if (failures != null)
+                failures.forEach((type, count) -> this.failures.put(type, new AtomicLong(count)));
+        }
+
+        @Override
+        public void onStart(long totalResolutions) {
+            // when a job is resumed, the resolutions corrected before are no longer counted by the correction
+            this.totalResolutions.set(totalResolutions + correctedResolutions.get());
+        }
+
+        @Override
+        public void onResolutionsCorrected(int count) {
+            long corrected = correctedResolutions.addAndGet(count);
+            correctedResolutionsCounter.increment(count);
+
+            long now = System.currentTimeMillis(), last = lastPersist.get();
+            if (now - last >= PROGRESS_PERSIST_INTERVAL_MILLIS && lastPersist.compareAndSet(last, now))
+                newTransaction.executeWithoutResult(status -> jobDAO.updateCorrectedResolutions(jobId, corrected));
+        }
+
+        @Override
+        public void onCorrectionFailure(String exerciseType) {
+            failures.computeIfAbsent(exerciseType, t -> new AtomicLong()).incrementAndGet();
+            meterRegistry.counter("chalktyk.corrections.failures", "exerciseType", exerciseType).increment();
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        void cancel() {
+            cancelled = true;
+        }
+
+        void copyTo(CorrectionJob job) {
+            long total = totalResolutions.get();
+            if (total >= 0)
+                job.setTotalResolutions(total);
+            job.setCorrectedResolutions(correctedResolutions.get());
+            Map<String, Long> failuresCopy = new HashMap<>();
+            failures.forEach((type, count) -> failuresCopy.put(type, count.get()));
+            job.setFailures(failuresCopy);
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package pt.uminho.di.chalktyk.services;
+
+/**
+ * Receives the progress of a bulk correction of resolutions,
+ * and allows the correction to be cancelled.
+ * Implementations must be thread-safe, since resolutions may be corrected in parallel.
+ */
+public interface CorrectionProgressListener {
+    CorrectionProgressListener NONE = new CorrectionProgressListener() {};
+
+    /**
+     * @param totalResolutions number of resolutions that will be corrected
+     */
+    default void onStart(long totalResolutions) {}
+
+    /**
+     * @param count number of resolutions that were corrected since the last call
+     */
+    default void onResolutionsCorrected(int count) {}
+
+    /**
+     * Called when the resolution of an exercise could not be corrected.
+     * @param exerciseType type of the exercise
+     */
+    default void onCorrectionFailure(String exerciseType) {}
+
+    /**
+     * @return 'true' if the correction should stop. Resolutions already corrected are kept.
+     */
+    default boolean isCancelled() {
+        return false;
+    }
+}
@@ -0,0 +1,77 @@
+package pt.uminho.di.chalktyk.services;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import pt.uminho.di.chalktyk.repositories.BulkDeletionDAO;
+
+/**
+ * Purges the tests deleted in the background (see {@link ITestsService#deleteTestById(String, boolean)}).
+ * <p>
+ * The resolutions of a deleted test are deleted in chunks, each in its own transaction,
+ * so that deleting a test with many resolutions does not hold locks for long.
+ * Once the resolutions are gone, the test and its exercises are deleted.
+ * The test being purged is locked with 'FOR UPDATE SKIP LOCKED', so several instances
+ * of the application can purge different tests at the same time.
+ */
+@Slf4j
+@Component
+public class DeletedTestsPurger {
+    private final BulkDeletionDAO bulkDeletionDAO;
+    private final TransactionTemplate newTransaction;
+    private final int chunkSize;
+    private final Counter purgedTestsCounter;
+    private final Counter purgedResolutionsCounter;
+
+    public DeletedTestsPurger(BulkDeletionDAO bulkDeletionDAO, PlatformTransactionManager transactionManager,
+                              @Value("${chalktyk.tests.purge.chunk-size:500}") int chunkSize,
+                              MeterRegistry meterRegistry) {
+        this.bulkDeletionDAO = bulkDeletionDAO;
+        this.newTransaction = new TransactionTemplate(transactionManager);
+        this.newTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.chunkSize = chunkSize;
+        this.purgedTestsCounter = Counter.builder("chalktyk.tests.purged")
+                .description("Deleted tests that were purged")
+                .register(meterRegistry);
+        this.purgedResolutionsCounter = Counter.builder("chalktyk.tests.purged.resolutions")
+                .description("Test resolutions purged along with deleted tests")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Purges deleted tests, one chunk at a time, until there are no more tests to purge.
+     */
+    @Scheduled(fixedDelayString = "${chalktyk.tests.purge.interval:60000}")
+    public void purge() {
+        try {
+            while (Boolean.TRUE.equals(newTransaction.execute(status -> purgeChunk())));
+        } catch (RuntimeException e) {
+            log.error("Could not purge deleted tests.", e);
+        }
+    }
+
+    /**
+     * Deletes a chunk of the resolutions of a deleted test, and the test itself if no resolutions are left.
+     * @return 'true' if a chunk was purged, or 'false' if there are no tests to purge
+     */
+    private boolean purgeChunk() {
+        String testId = bulkDeletionDAO.lockDeletedTest();
+        if (testId == null)
+            return false;
+
+        int deleted = bulkDeletionDAO.deleteTestResolutions(testId, chunkSize);
+        purgedResolutionsCounter.increment(deleted);
+        if (deleted < chunkSize) {
+            bulkDeletionDAO.deleteTest(testId);
+            purgedTestsCounter.increment();
+            log.info("Purged deleted test '{}'.", testId);
+        }
+        return true;
+    }
+}
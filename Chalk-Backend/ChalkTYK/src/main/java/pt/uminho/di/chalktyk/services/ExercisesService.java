@@ -1,14 +1,26 @@
 package pt.uminho.di.chalktyk.services;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.PersistenceContext;
 import org.apache.commons.lang3.tuple.Pair;
 import org.hibernate.Hibernate;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import pt.uminho.di.chalktyk.dtos.CursorPageDTO;
 import pt.uminho.di.chalktyk.models.courses.Course;
 import pt.uminho.di.chalktyk.models.exercises.*;
 import pt.uminho.di.chalktyk.models.institutions.Institution;
@@ -16,20 +28,37 @@ import pt.uminho.di.chalktyk.models.miscellaneous.Tag;
 import pt.uminho.di.chalktyk.models.miscellaneous.Visibility;
 import pt.uminho.di.chalktyk.models.users.Specialist;
 import pt.uminho.di.chalktyk.models.users.Student;
+import pt.uminho.di.chalktyk.repositories.CatalogueListingDAO;
+import pt.uminho.di.chalktyk.repositories.CatalogueSearchDAO;
+import pt.uminho.di.chalktyk.repositories.CatalogueSpecifications;
+import pt.uminho.di.chalktyk.repositories.ExerciseAttemptCounterDAO;
 import pt.uminho.di.chalktyk.repositories.ExerciseDAO;
 import pt.uminho.di.chalktyk.repositories.ExerciseResolutionDAO;
 import pt.uminho.di.chalktyk.repositories.ExerciseRubricDAO;
 import pt.uminho.di.chalktyk.repositories.ExerciseSolutionDAO;
+import pt.uminho.di.chalktyk.repositories.ResolutionCorrectionsDAO;
+import pt.uminho.di.chalktyk.repositories.RowEstimatesDAO;
+import pt.uminho.di.chalktyk.repositories.TestDAO;
+import pt.uminho.di.chalktyk.services.caches.AutoEvaluationExercisePool;
+import pt.uminho.di.chalktyk.services.caches.TestSnapshotCache;
 import pt.uminho.di.chalktyk.services.exceptions.BadInputException;
 import pt.uminho.di.chalktyk.services.exceptions.NotFoundException;
 import pt.uminho.di.chalktyk.services.exceptions.ServiceException;
 import pt.uminho.di.chalktyk.services.exceptions.ForbiddenException;
 
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.*;
 import java.util.stream.Collectors;
 
 @Service("exercisesService")
 public class ExercisesService implements IExercisesService{
+    // serializes the content of exercises for hashing, with a fixed order of properties
+    private static final ObjectMapper HASH_MAPPER = JsonMapper.builder()
+            .enable(MapperFeature.SORT_PROPERTIES_ALPHABETICALLY)
+            .enable(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS)
+            .build();
+
     private final ISpecialistsService specialistsService;
     private final IStudentsService studentsService;
     private final ICoursesService coursesService;
@@ -39,13 +68,26 @@ public class ExercisesService implements IExercisesService{
     private final ExerciseSolutionDAO exerciseSolutionDAO;
     private final ExerciseRubricDAO exerciseRubricDAO;
     private final ExerciseResolutionDAO exerciseResolutionDAO;
+    private final ExerciseAttemptCounterDAO exerciseAttemptCounterDAO;
+    private final TestDAO testDAO;
+    private final TestSnapshotCache testsCache;
+    private final AutoEvaluationExercisePool autoEvalExercisePool;
+    private final CatalogueListingDAO catalogueListingDAO;
+    private final CatalogueSearchDAO catalogueSearchDAO;
+    private final RowEstimatesDAO rowEstimatesDAO;
+    private final ResolutionCorrectionsDAO resolutionCorrectionsDAO;
+    private final int correctionBatchSize;
     @PersistenceContext
     private final EntityManager entityManager;
 
     public ExercisesService(ISpecialistsService specialistsService, IStudentsService studentsService, ExerciseDAO exerciseDAO, ICoursesService coursesService,
                             IInstitutionsService institutionsService, ITagsService iTagsService, ExerciseSolutionDAO exerciseSolutionDAO,
                             ExerciseRubricDAO exerciseRubricDAO, EntityManager entityManager,
-                            ExerciseResolutionDAO exerciseResolutionDAO) {
+                            ExerciseResolutionDAO exerciseResolutionDAO, ExerciseAttemptCounterDAO exerciseAttemptCounterDAO, TestDAO testDAO, TestSnapshotCache testsCache,
+                            AutoEvaluationExercisePool autoEvalExercisePool,
+                            CatalogueListingDAO catalogueListingDAO, CatalogueSearchDAO catalogueSearchDAO, RowEstimatesDAO rowEstimatesDAO,
+                            ResolutionCorrectionsDAO resolutionCorrectionsDAO,
+                            @Value("${chalktyk.corrections.batch-size:500}") int correctionBatchSize) {
         this.specialistsService = specialistsService;
         this.studentsService = studentsService;
         this.exerciseDAO = exerciseDAO;
@@ -56,6 +98,15 @@ public class ExercisesService implements IExercisesService{
         this.exerciseRubricDAO = exerciseRubricDAO;
         this.entityManager = entityManager;
         this.exerciseResolutionDAO = exerciseResolutionDAO;
+        this.exerciseAttemptCounterDAO = exerciseAttemptCounterDAO;
+        this.testDAO = testDAO;
+        this.testsCache = testsCache;
+        this.autoEvalExercisePool = autoEvalExercisePool;
+        this.catalogueListingDAO = catalogueListingDAO;
+        this.catalogueSearchDAO = catalogueSearchDAO;
+        this.rowEstimatesDAO = rowEstimatesDAO;
+        this.resolutionCorrectionsDAO = resolutionCorrectionsDAO;
+        this.correctionBatchSize = correctionBatchSize;
     }
 
     /**
@@ -88,6 +139,26 @@ public class ExercisesService implements IExercisesService{
         return exercise;
     }
 
+    /**
+     * Get Exercises by their IDs, using a single query. Loads everything except solution and rubric.
+     *
+     * @param exercisesIds identifiers of the exercises
+     * @return map that associates each identifier to the respective exercise
+     * @throws NotFoundException if any of the exercises does not exist
+     **/
+    @Override
+    public Map<String, Exercise> getExercisesByIds(Collection<String> exercisesIds) throws NotFoundException {
+        Map<String, Exercise> exercises = new HashMap<>();
+        if (exercisesIds == null || exercisesIds.isEmpty())
+            return exercises;
+        for (Exercise exercise : exerciseDAO.loadByIdsWithoutSolutionAndRubric(new HashSet<>(exercisesIds)))
+            exercises.put(exercise.getId(), exercise);
+        for (String exerciseId : exercisesIds)
+            if (!exercises.containsKey(exerciseId))
+                throw new NotFoundException("Exercise does not exist.");
+        return exercises;
+    }
+
     /**
      * Get Exercise by ID
      *
@@ -190,8 +261,14 @@ public class ExercisesService implements IExercisesService{
         if(rubric != null)
             _createExerciseRubric(exercise, rubric);
 
+        // exercises of tests can be shared by the copies of the test
+        if (visibility == Visibility.TEST)
+            exercise.setContentHash(_computeContentHash(exercise, rubric, solution));
+
         // persists the exercise in database
         exercise = exerciseDAO.save(exercise);
+        if (visibility == Visibility.PUBLIC)
+            _invalidateAutoEvalPools(exercise);
 
         return exercise.getId();
     }
@@ -211,6 +288,8 @@ public class ExercisesService implements IExercisesService{
         Exercise exercise = exerciseDAO.findById(exerciseId).orElse(null);
         if (exercise == null)
             throw new NotFoundException("Could not delete exercise: Exercise does not exist.");
+        testsCache.invalidateExercise(exerciseId);
+        _invalidateAutoEvalPools(exercise);
 
         // Checks existence of resolutions
         deleteExerciseResolutions(exerciseId);
@@ -304,11 +383,100 @@ public class ExercisesService implements IExercisesService{
         return copy.getId();
     }
 
+    @Override
+    @Transactional(rollbackFor = ServiceException.class)
+    public String getOrDuplicateTestExercise(String specialistId, String exerciseId, Collection<String> testExercisesIds) throws NotFoundException {
+        Exercise source = _getExerciseById(exerciseId);
+
+        // the exercise is already a body that the tests of the specialist can share
+        if (source.getVisibility() == Visibility.TEST && source.getContentHash() != null
+                && Objects.equals(source.getSpecialistId(), specialistId) && !testExercisesIds.contains(exerciseId)
+                && !exerciseResolutionDAO.existsExerciseResolutions(exerciseId))
+            return exerciseId;
+
+        String hash = _computeContentHash(source,
+                exerciseRubricDAO.findByExerciseId(exerciseId).orElse(null),
+                exerciseSolutionDAO.findByExerciseId(exerciseId).orElse(null));
+
+        // reuses a test exercise of the specialist with the same content, that was not resolved yet.
+        // The content of the candidate is checked, so that an outdated hash never leads to a wrong exercise.
+        // A candidate that does not match is only skipped, since other tests may still share it.
+        for (String candidateId : exerciseDAO.getTestExercisesWithContentHash(specialistId, hash)) {
+            if (testExercisesIds.contains(candidateId) || exerciseResolutionDAO.existsExerciseResolutions(candidateId))
+                continue;
+            Exercise candidate = _getExerciseById(candidateId);
+            String candidateHash = _computeContentHash(candidate,
+                    exerciseRubricDAO.findByExerciseId(candidateId).orElse(null),
+                    exerciseSolutionDAO.findByExerciseId(candidateId).orElse(null));
+            if (hash.equals(candidateHash))
+                return candidateId;
+        }
+
+        String copyId = duplicateExerciseById(specialistId, exerciseId, null, Visibility.TEST);
+        _getExerciseById(copyId).setContentHash(hash);
+        return copyId;
+    }
+
+    /**
+     * Exercises of tests may be shared by several tests, and must not be changed in place while shared.
+     * Whether an exercise is shared is given by the number of tests that reference it, not by its hash.
+     * Must be called before changing an exercise. Since the exercise will no longer match its hash, the hash is removed.
+     * @param exercise exercise that will be changed
+     * @throws BadInputException if the exercise is shared by several tests
+     */
+    private void _beforeExerciseChange(Exercise exercise) throws BadInputException {
+        if (exercise.getVisibility() != Visibility.TEST)
+            return;
+        if (testDAO.countTestsReferencingExercise(exercise.getId()) > 1)
+            throw new BadInputException("Cannot change exercise: the exercise is shared by several tests, and must be changed through one of them.");
+        exercise.setContentHash(null);
+    }
+
+    /**
+     * Discards the auto evaluation pools of the tags of the exercise,
+     * since they hold the public multiple choice exercises of each tag.
+     *
+     * @param exercise exercise that was, or is about to be, created, changed or deleted
+     */
+    private void _invalidateAutoEvalPools(Exercise exercise) {
+        if ("MC".equals(exercise.getExerciseType()) && exercise.getTags() != null)
+            autoEvalExercisePool.invalidate(exercise.getTags().stream().map(Tag::getId).toList());
+    }
+
+    /**
+     * Calculates the hash of the content of an exercise, i.e. everything that is copied when the exercise is duplicated:
+     * the title, the statement and the data of the exercise type, the rubric, the solution and the tags.
+     * Properties are serialized in a fixed order, so that equal contents have the same hash.
+     * @return hexadecimal representation of the SHA-256 hash of the content
+     */
+    private static String _computeContentHash(Exercise exercise, ExerciseRubric rubric, ExerciseSolution solution) {
+        ObjectNode content = HASH_MAPPER.valueToTree(Hibernate.unproxy(exercise));
+        content.remove(List.of("id", "visibility", "courseId", "specialistId", "institutionId", "rubricId", "solutionId", "tags"));
+
+        List<String> tagsIds = exercise.getTags() == null ? new ArrayList<>()
+                : exercise.getTags().stream().map(Tag::getId).sorted().collect(Collectors.toList());
+        content.set("tags", HASH_MAPPER.valueToTree(tagsIds));
+        if (rubric != null)
+            content.set("rubric", HASH_MAPPER.<ObjectNode>valueToTree(Hibernate.unproxy(rubric)).without("id"));
+        if (solution != null)
+            content.set("solution", HASH_MAPPER.<ObjectNode>valueToTree(Hibernate.unproxy(solution)).without("id"));
+
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(HASH_MAPPER.writeValueAsBytes(content)));
+        } catch (NoSuchAlgorithmException | JsonProcessingException e) {
+            throw new IllegalStateException("Could not calculate the content hash of the exercise.", e);
+        }
+    }
+
     @Override
     @Transactional(rollbackFor = ServiceException.class)
     public String updateAllOnExercise(String exerciseId, Exercise newBody, ExerciseRubric rubric, ExerciseSolution solution, List<String> tagsIds, Visibility visibility) throws NotFoundException, BadInputException {
         // gets exercise using the identifier, or throws not found exception
         Exercise exercise = _getExerciseById(exerciseId);
+        _beforeExerciseChange(exercise);
+        testsCache.invalidateExercise(exerciseId);
+        _invalidateAutoEvalPools(exercise);
 
         // flag that indicates if the exercise was duplicated,
         // since an exercise with resolutions cannot be duplicated.
@@ -333,6 +501,7 @@ public class ExercisesService implements IExercisesService{
             _updateExerciseTags(exercise,tagsIds);
         if(visibility!=null)
             _updateExerciseVisibility(exercise,visibility);
+        _invalidateAutoEvalPools(exercise);
 
         return duplicated ? exerciseId : null; // returns the exercise identifier of the duplicate exercise, or 'null' if it was not duplicated
     }
@@ -341,6 +510,9 @@ public class ExercisesService implements IExercisesService{
     @Transactional(rollbackFor = ServiceException.class)
     public Exercise updateExerciseBody(String exerciseId, Exercise newBody) throws NotFoundException, BadInputException {
         Exercise exercise = _getExerciseById(exerciseId);
+        _beforeExerciseChange(exercise);
+        testsCache.invalidateExercise(exerciseId);
+        _invalidateAutoEvalPools(exercise);
         exercise = _updateExerciseBody(exercise, newBody, false, false);
         return exercise.getId().equals(exerciseId) ? null : exercise; // returns the exercise if the exercise was duplicated
     }
@@ -431,7 +603,12 @@ public class ExercisesService implements IExercisesService{
     @Override
     public void updateExerciseTags(String exerciseId, List<String> tagsIds) throws BadInputException, NotFoundException {
         Exercise exercise = _getExerciseById(exerciseId);
+        _beforeExerciseChange(exercise);
+        testsCache.invalidateExercise(exerciseId);
+        // the pools of the old and of the new tags
+        _invalidateAutoEvalPools(exercise);
         _updateExerciseTags(exercise, tagsIds);
+        _invalidateAutoEvalPools(exercise);
     }
 
     private void _updateExerciseTags(Exercise exercise, List<String> tagsIds) throws BadInputException, NotFoundException{
@@ -455,6 +632,9 @@ public class ExercisesService implements IExercisesService{
     @Transactional(rollbackFor = ServiceException.class)
     public void updateExerciseVisibility(String exerciseId, Visibility visibility) throws NotFoundException, BadInputException {
         Exercise exercise = _getExerciseById(exerciseId);
+        _beforeExerciseChange(exercise);
+        testsCache.invalidateExercise(exerciseId);
+        _invalidateAutoEvalPools(exercise);
         _updateExerciseVisibility(exercise, visibility);
     }
 
@@ -482,6 +662,8 @@ public class ExercisesService implements IExercisesService{
     @Transactional(rollbackFor = ServiceException.class)
     public void updateExerciseCourse(String exerciseId, String courseId) throws NotFoundException, BadInputException {
         Exercise exercise = _getExerciseById(exerciseId);
+        _beforeExerciseChange(exercise);
+        testsCache.invalidateExercise(exerciseId);
         _updateExerciseCourse(exercise, courseId);
     }
 
@@ -529,6 +711,8 @@ public class ExercisesService implements IExercisesService{
     @Transactional(rollbackFor = ServiceException.class)
     public void createExerciseRubric(String exerciseId, ExerciseRubric rubric) throws NotFoundException, BadInputException {
         Exercise exercise = _getExerciseById(exerciseId);
+        _beforeExerciseChange(exercise);
+        testsCache.invalidateExercise(exerciseId);
         _createExerciseRubric(exercise, rubric);
     }
 
@@ -588,6 +772,8 @@ public class ExercisesService implements IExercisesService{
     @Transactional(rollbackFor = ServiceException.class)
     public void createExerciseSolution(String exerciseId, ExerciseSolution solution) throws NotFoundException, BadInputException {
         Exercise exercise = _getExerciseById(exerciseId);
+        _beforeExerciseChange(exercise);
+        testsCache.invalidateExercise(exerciseId);
         _createExerciseSolution(exercise, solution);
     }
 
@@ -678,6 +864,12 @@ public class ExercisesService implements IExercisesService{
     @Transactional(rollbackFor = ServiceException.class)
     @Override
     public void issueExerciseResolutionsCorrection(String exerciseId, String correctionType) throws BadInputException, NotFoundException, ForbiddenException {
+        issueExerciseResolutionsCorrection(exerciseId, correctionType, CorrectionProgressListener.NONE);
+    }
+
+    @Transactional(rollbackFor = ServiceException.class)
+    @Override
+    public void issueExerciseResolutionsCorrection(String exerciseId, String correctionType, CorrectionProgressListener listener) throws BadInputException, NotFoundException, ForbiddenException {
         // gets instance of the exercise and it's rubric
         Exercise exercise = _getExerciseById(exerciseId);
         if(!exercise.supportsCorrectionType(correctionType))
@@ -692,7 +884,7 @@ public class ExercisesService implements IExercisesService{
         ExerciseSolution solution = getExerciseSolution(exerciseId);
 
         if(correctionType.equalsIgnoreCase("auto"))
-            automaticExerciseResolutionsCorrection(exercise, rubric, solution);
+            automaticExerciseResolutionsCorrection(exercise, rubric, solution, listener);
         else // more correction types ...
             throw new ForbiddenException("Correction type is supported, but cannot be issued by this method.");
     }
@@ -735,6 +927,19 @@ public class ExercisesService implements IExercisesService{
         // for the automatic correction of the exercise
         ExerciseSolution solution = getExerciseSolution(exerciseId);
 
+        return issueExerciseResolutionCorrection(resolution, exercise, rubric, solution, correctionType);
+    }
+
+    @Transactional(rollbackFor = ServiceException.class)
+    @Override
+    public float issueExerciseResolutionCorrection(ExerciseResolution resolution, Exercise exercise, ExerciseRubric rubric, ExerciseSolution solution, String correctionType) throws BadInputException, ForbiddenException {
+        // if the exercise is already revised, then returns the points attributed to the resolution
+        if(resolution.getStatus() == ExerciseResolutionStatus.REVISED)
+            return resolution.getPoints();
+
+        if(!exercise.supportsCorrectionType(correctionType))
+            throw new BadInputException("Could not correct exercise resolution: correction type not supported.");
+
         if(correctionType.equalsIgnoreCase("auto"))
             return automaticExerciseResolutionCorrection(resolution, exercise, rubric, solution);
         else // ... more correction types
@@ -803,6 +1008,46 @@ public class ExercisesService implements IExercisesService{
         return new PageImpl<>(list, resolutions.getPageable(), resolutions.getTotalElements());
     }
 
+    @Transactional(rollbackFor = ServiceException.class)
+    @Override
+    public CursorPageDTO<Pair<Student, ExerciseResolution>> getExerciseResolutions(String exerciseId, String cursor, Integer itemsPerPage, boolean latest, boolean onlyNotRevised, boolean estimateTotal) throws BadInputException {
+        // the cursor holds the student, the submission number and the identifier of the last resolution
+        String[] after = KeysetCursor.decode(cursor, 3);
+        String lastStudentId = "", lastId = "";
+        int lastSubmissionNr = 0;
+        if (after != null) {
+            try {
+                lastSubmissionNr = Integer.parseInt(after[1]);
+            } catch (NumberFormatException nfe) {
+                throw new BadInputException("Invalid cursor.");
+            }
+            lastStudentId = after[0];
+            lastId = after[2];
+        }
+
+        Pageable limit = PageRequest.ofSize(itemsPerPage);
+        ExerciseResolutionStatus status = onlyNotRevised ? ExerciseResolutionStatus.NOT_REVISED : null;
+        Slice<ExerciseResolution> resolutions;
+        if (latest)
+            resolutions = status == null ? exerciseResolutionDAO.findLatestResolutionsAfter(exerciseId, lastStudentId, lastSubmissionNr, lastId, limit)
+                                         : exerciseResolutionDAO.findLatestResolutionsWithStatusAfter(exerciseId, status, lastStudentId, lastSubmissionNr, lastId, limit);
+        else
+            resolutions = status == null ? exerciseResolutionDAO.findResolutionsAfter(exerciseId, lastStudentId, lastSubmissionNr, lastId, limit)
+                                         : exerciseResolutionDAO.findResolutionsWithStatusAfter(exerciseId, status, lastStudentId, lastSubmissionNr, lastId, limit);
+
+        List<Pair<Student, ExerciseResolution>> list = new ArrayList<>();
+        for (ExerciseResolution res : resolutions)
+            list.add(Pair.of(res.getStudent(), res));
+
+        String nextCursor = null;
+        if (resolutions.hasNext()) {
+            ExerciseResolution last = resolutions.getContent().get(resolutions.getNumberOfElements() - 1);
+            nextCursor = KeysetCursor.encode(last.getStudentId(), last.getSubmissionNr(), last.getId());
+        }
+        Long estimatedTotal = estimateTotal ? rowEstimatesDAO.estimateExerciseResolutions(exerciseId, status, latest) : null;
+        return new CursorPageDTO<>(list, nextCursor, estimatedTotal);
+    }
+
     /**
      * Create a resolution for a specific exercise.
      *
@@ -855,14 +1100,17 @@ public class ExercisesService implements IExercisesService{
 
         // sets resolution number
         if(submissionNr == null) {
-            ExerciseResolution lastResolution = exerciseResolutionDAO.getStudentLastResolution(studentId, exerciseId);
-            submissionNr = lastResolution != null ? lastResolution.getSubmissionNr() + 1 : 1;
+            submissionNr = exerciseAttemptCounterDAO.nextSubmissionNr(studentId, exerciseId);
         }else{
-            // Checks if there is no resolution with the given submission number
+            // The exercise may be shared by several tests, so the given number (of a test resolution)
+            // may already be used by the resolution of another test. The next free number is used instead.
             ExerciseResolution resolutionWithSubmissionNr =
                     exerciseResolutionDAO.getStudentResolutionBySubmissionNr(studentId, exerciseId, submissionNr);
             if(resolutionWithSubmissionNr != null)
-                throw new ForbiddenException("Could not create exercise resolution: There is already a resolution with the given submission number.");
+                submissionNr = exerciseAttemptCounterDAO.nextSubmissionNr(studentId, exerciseId);
+            else
+                // the numbers allocated afterwards must not collide with the given one
+                exerciseAttemptCounterDAO.reserveSubmissionNr(studentId, exerciseId, submissionNr);
         }
         resolution.setSubmissionNr(submissionNr);
 
@@ -947,35 +1195,78 @@ public class ExercisesService implements IExercisesService{
      */
     @Override
     public Page<Exercise> getExercises(Integer page, Integer itemsPerPage, List<String> tags, boolean matchAllTags, Visibility visibilityType, String courseId, String institutionId, String specialistId, String title, String exerciseType, boolean verifyParams) throws BadInputException, NotFoundException {
+        if (verifyParams)
+            verifyListingParams(courseId, institutionId, specialistId);
+
+        // adds the sql wildcards before and after the title
+        title = title != null ? '%' + title + '%' : null;
+
+        // only the predicates of the given filters are part of the query
+        Page<String> ids = catalogueListingDAO.listExercisesIds(
+                CatalogueSpecifications.exercises(tags, matchAllTags, visibilityType, institutionId, courseId, specialistId, title, exerciseType),
+                PageRequest.of(page, itemsPerPage));
+        return new PageImpl<>(loadExercises(ids.getContent()), ids.getPageable(), ids.getTotalElements());
+    }
+
+    @Override
+    public CursorPageDTO<Exercise> getExercises(String cursor, Integer itemsPerPage, boolean estimateTotal, List<String> tags, boolean matchAllTags, Visibility visibilityType, String courseId, String institutionId, String specialistId, String title, String exerciseType, boolean verifyParams) throws BadInputException, NotFoundException {
+        String[] after = KeysetCursor.decode(cursor, 1);
+        if (verifyParams)
+            verifyListingParams(courseId, institutionId, specialistId);
+
+        // adds the sql wildcards before and after the title
+        title = title != null ? '%' + title + '%' : null;
+
+        Slice<String> ids = catalogueListingDAO.sliceExercisesIds(
+                CatalogueSpecifications.exercises(tags, matchAllTags, visibilityType, institutionId, courseId, specialistId, title, exerciseType),
+                after != null ? after[0] : null, itemsPerPage);
+        String nextCursor = ids.hasNext() ? KeysetCursor.encode(ids.getContent().get(ids.getNumberOfElements() - 1)) : null;
+        Long estimatedTotal = estimateTotal ? catalogueSearchDAO.estimateExercises(tags, matchAllTags, visibilityType, institutionId, courseId,
+                                                                                   specialistId, title, exerciseType) : null;
+        return new CursorPageDTO<>(loadExercises(ids.getContent()), nextCursor, estimatedTotal);
+    }
 
-        if(verifyParams && courseId!=null) {
+    @Override
+    public Page<Exercise> searchExercises(String search, Integer page, Integer itemsPerPage, List<String> tags, boolean matchAllTags, Visibility visibilityType, String courseId, String institutionId, String specialistId, String title, String exerciseType, boolean verifyParams) throws BadInputException, NotFoundException {
+        if (search == null || search.isBlank())
+            throw new BadInputException("Could not search exercises: the search query is empty.");
+        if (verifyParams)
+            verifyListingParams(courseId, institutionId, specialistId);
+
+        // adds the sql wildcards before and after the title
+        title = title != null ? '%' + title + '%' : null;
+
+        Page<String> ids = catalogueSearchDAO.searchExercises(search.trim(), tags, matchAllTags, visibilityType, institutionId, courseId,
+                                                              specialistId, title, exerciseType, PageRequest.of(page, itemsPerPage));
+        return new PageImpl<>(loadExercises(ids.getContent()), ids.getPageable(), ids.getTotalElements());
+    }
+
+    /**
+     * Loads the exercises with the given identifiers with a single query, keeping the order of the identifiers.
+     */
+    private List<Exercise> loadExercises(List<String> ids) {
+        Map<String, Exercise> exercises = new HashMap<>();
+        if (!ids.isEmpty())
+            for (Exercise exercise : exerciseDAO.loadByIdsWithoutSolutionAndRubric(ids))
+                exercises.put(exercise.getId(), exercise);
+        return ids.stream().map(exercises::get).filter(Objects::nonNull).toList();
+    }
+
+    private void verifyListingParams(String courseId, String institutionId, String specialistId) throws NotFoundException {
+        if(courseId!=null) {
             if(!coursesService.existsCourseById(courseId))
                 throw new NotFoundException("Theres no course with the given id");
         }
 
-        if(verifyParams && institutionId!=null) {
+        if(institutionId!=null) {
             if(!institutionsService.existsInstitutionById(institutionId))
                 throw new NotFoundException("Theres no institution with the given id");
         }
 
-        if (verifyParams && specialistId != null) {
+        if (specialistId != null) {
             if(!specialistsService.existsSpecialistById(specialistId))
                 throw new NotFoundException("Theres no specialist with the given id");
         }
-
-        // adds the sql wildcards before and after the title
-        title = title != null ? '%' + title + '%' : null;
-
-        Page<Exercise> exercises;
-        if(matchAllTags && tags != null && !tags.isEmpty())
-            exercises = exerciseDAO.getExercisesMatchAllTags(tags, tags.size(), visibilityType, institutionId,
-                                                             courseId, specialistId, title, exerciseType,
-                                                             PageRequest.of(page, itemsPerPage));
-        else
-            exercises = exerciseDAO.getExercisesMatchAnyGivenTag(tags,visibilityType,institutionId,courseId,
-                                                                 specialistId,title,exerciseType,
-                                                                 PageRequest.of(page, itemsPerPage));
-        return exercises;
     }
 
     /**
@@ -1155,30 +1446,73 @@ public class ExercisesService implements IExercisesService{
 
     /**
      * Automatically corrects the not revised resolutions of an exercise.
+     * The resolutions are walked in chunks, by identifier, and graded in memory,
+     * with the solution and the rubric compiled once.
+     * The corrections of each chunk are written in a JDBC batch.
      * @param exercise concrete exercise
      * @param rubric rubric of the exercise
      * @param solution solution of the exercise
      * @throws NotFoundException if the exercise, or its rubric, or its solution were not found
      * @throws ForbiddenException if the resolutions cannot be corrected automatically
      */
-    private void automaticExerciseResolutionsCorrection(Exercise exercise, ExerciseRubric rubric, ExerciseSolution solution) throws NotFoundException, ForbiddenException {
+    private void automaticExerciseResolutionsCorrection(Exercise exercise, ExerciseRubric rubric, ExerciseSolution solution, CorrectionProgressListener listener) throws NotFoundException, ForbiddenException {
         String exerciseId = exercise.getId();
+        ExerciseRubric unproxiedRubric = rubric != null ? (ExerciseRubric) Hibernate.unproxy(rubric) : null;
+        ResolutionGrader grader = exercise.compileAutomaticEvaluation(solution, unproxiedRubric);
 
         // Get number of resolutions not revised
         long resolutionsCount = exerciseResolutionDAO.countByExerciseIdAndStatus(exerciseId, ExerciseResolutionStatus.NOT_REVISED);
+        listener.onStart(resolutionsCount);
+
+        // the corrections are written bypassing the persistence context, so the context is synchronized around them
+        entityManager.flush();
 
-        // Iterates over all resolutions that are not revised, and corrects them
+        // Iterates over the resolutions that are not revised, after the last corrected one, instead of skipping
+        // them with an offset, as the corrected resolutions leave the set that is being walked.
         // Corrects a portion at a time, to avoid a great memory consumption
-        for(int pageIndex = 0, i = 0; i < resolutionsCount; pageIndex++, i += 5){
-            // gets page
-            Page<ExerciseResolution> page =
-                    exerciseResolutionDAO.findAllByExercise_IdAndStatus(exerciseId,
-                                                                    ExerciseResolutionStatus.NOT_REVISED,
-                                                                    PageRequest.of(pageIndex, 5));
-
-            // corrects each exercise of the page
-            for (ExerciseResolution res : page)
-                automaticExerciseResolutionCorrection(res, exercise, rubric, solution);
+        String lastId = "";
+        List<ExerciseResolution> corrected = new ArrayList<>(correctionBatchSize);
+        while (!listener.isCancelled()) {
+            List<Object[]> chunk = exerciseResolutionDAO.findResolutionsDataAfter(exerciseId, ExerciseResolutionStatus.NOT_REVISED,
+                                                                                  lastId, PageRequest.of(0, correctionBatchSize));
+            if (chunk.isEmpty())
+                break;
+
+            corrected.clear();
+            for (Object[] row : chunk) {
+                ExerciseResolution res = new ExerciseResolution();
+                res.setId((String) row[0]);
+                res.setData((ExerciseResolutionData) row[1]);
+                res.setStatus(ExerciseResolutionStatus.NOT_REVISED);
+                try {
+                    corrected.add(grader.grade(res));
+                } catch (ForbiddenException e) {
+                    listener.onCorrectionFailure(exercise.getExerciseType());
+                    throw e;
+                }
+            }
+            resolutionCorrectionsDAO.writeCorrections(corrected, correctionBatchSize);
+            _detachResolutions(corrected);
+            listener.onResolutionsCorrected(chunk.size());
+            if (chunk.size() < correctionBatchSize)
+                break;
+            lastId = (String) chunk.get(chunk.size() - 1)[0];
+        }
+    }
+
+    /**
+     * Detaches the managed instances, if any, of resolutions whose corrections were written bypassing the persistence context,
+     * so that they are read again when needed. The other entities of the context, e.g. the ones of the caller, are kept.
+     * @param resolutions resolutions that were corrected
+     */
+    private void _detachResolutions(List<ExerciseResolution> resolutions) {
+        SessionImplementor session = entityManager.unwrap(SessionImplementor.class);
+        EntityPersister persister = session.getFactory().getMappingMetamodel().getEntityDescriptor(ExerciseResolution.class);
+        org.hibernate.engine.spi.PersistenceContext context = session.getPersistenceContextInternal();
+        for (ExerciseResolution resolution : resolutions) {
+            Object managed = context.getEntity(session.generateEntityKey(resolution.getId(), persister));
+            if (managed != null)
+                entityManager.detach(managed);
         }
     }
 
@@ -0,0 +1,92 @@
+package pt.uminho.di.chalktyk.services;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import pt.uminho.di.chalktyk.repositories.ExpiredResolutionsDAO;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Submits the ongoing resolutions of deliver date and live tests once their deadline has passed,
+ * for students that never submitted them (see {@link ITestsService#closeExpiredTestResolutions(int, boolean)}).
+ * <p>
+ * The resolutions are submitted in batches, each in its own transaction. Each batch holds a transaction-level
+ * advisory lock, so, with several instances of the application, only one of them sweeps at a time.
+ * The lag, i.e. how long the oldest expired resolution has been waiting to be submitted,
+ * is exposed as the "chalktyk.tests.deadlines.lag" metric.
+ */
+@Slf4j
+@Component
+public class ExpiredResolutionsSweeper {
+    private final ITestsService testsService;
+    private final ExpiredResolutionsDAO expiredResolutionsDAO;
+    private final TransactionTemplate newTransaction;
+    private final int batchSize;
+    private final boolean autoCorrect;
+    private final AtomicLong lagSeconds = new AtomicLong();
+    private final Counter closedCounter;
+
+    public ExpiredResolutionsSweeper(ITestsService testsService, ExpiredResolutionsDAO expiredResolutionsDAO,
+                                     PlatformTransactionManager transactionManager,
+                                     @Value("${chalktyk.tests.deadlines.batch-size:500}") int batchSize,
+                                     @Value("${chalktyk.tests.deadlines.auto-correct:false}") boolean autoCorrect,
+                                     MeterRegistry meterRegistry) {
+        this.testsService = testsService;
+        this.expiredResolutionsDAO = expiredResolutionsDAO;
+        this.newTransaction = new TransactionTemplate(transactionManager);
+        this.newTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.batchSize = batchSize;
+        this.autoCorrect = autoCorrect;
+        Gauge.builder("chalktyk.tests.deadlines.lag", lagSeconds, AtomicLong::get)
+                .description("Seconds since the deadline of the oldest ongoing resolution that was not submitted yet")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+        this.closedCounter = Counter.builder("chalktyk.tests.deadlines.closed")
+                .description("Resolutions submitted because their deadline passed")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Submits expired resolutions, one batch at a time, until there are no more expired resolutions,
+     * or another instance is submitting them.
+     */
+    @Scheduled(fixedDelayString = "${chalktyk.tests.deadlines.interval:30000}")
+    public void sweep() {
+        try {
+            updateLag();
+            while (Boolean.TRUE.equals(newTransaction.execute(status -> closeBatch())));
+        } catch (RuntimeException e) {
+            log.error("Could not submit expired test resolutions.", e);
+        }
+    }
+
+    /**
+     * @return 'true' if a full batch was submitted, so there may be more expired resolutions
+     */
+    private boolean closeBatch() {
+        if (!expiredResolutionsDAO.tryLockCloseExpired())
+            return false;
+        List<String> closed = testsService.closeExpiredTestResolutions(batchSize, autoCorrect);
+        closedCounter.increment(closed.size());
+        if (!closed.isEmpty())
+            log.info("Submitted {} expired test resolutions.", closed.size());
+        return closed.size() == batchSize;
+    }
+
+    private void updateLag() {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime oldest = expiredResolutionsDAO.getOldestExpiredDeadline(now);
+        lagSeconds.set(oldest != null ? Duration.between(oldest, now).toSeconds() : 0);
+    }
+}
@@ -0,0 +1,49 @@
+package pt.uminho.di.chalktyk.services;
+
+import pt.uminho.di.chalktyk.models.corrections.CorrectionJob;
+import pt.uminho.di.chalktyk.services.exceptions.BadInputException;
+import pt.uminho.di.chalktyk.services.exceptions.NotFoundException;
+
+public interface ICorrectionJobsService {
+
+    /**
+     * Creates a job that corrects, asynchronously, the resolutions of a test.
+     *
+     * @param testId         identifier of the test
+     * @param correctionType type of correction. Can be 'auto' or 'ai'.
+     * @param requesterId    identifier of the user that requested the correction
+     * @return identifier of the job
+     * @throws NotFoundException if the test does not exist
+     */
+    String submitTestCorrection(String testId, String correctionType, String requesterId) throws NotFoundException;
+
+    /**
+     * Creates a job that corrects, asynchronously, the resolutions of an exercise.
+     *
+     * @param exerciseId     identifier of the exercise
+     * @param correctionType type of correction. Can be 'auto' or 'ai'.
+     * @param requesterId    identifier of the user that requested the correction
+     * @return identifier of the job
+     * @throws NotFoundException if the exercise does not exist
+     * @throws BadInputException if the exercise does not support the correction type
+     */
+    String submitExerciseCorrection(String exerciseId, String correctionType, String requesterId) throws NotFoundException, BadInputException;
+
+    /**
+     * Gets a job, including the progress of the correction.
+     *
+     * @param jobId identifier of the job
+     * @return job
+     * @throws NotFoundException if the job does not exist
+     */
+    CorrectionJob getJob(String jobId) throws NotFoundException;
+
+    /**
+     * Cancels a job. Resolutions that were already corrected are kept.
+     *
+     * @param jobId identifier of the job
+     * @throws NotFoundException if the job does not exist
+     * @throws BadInputException if the job has already finished
+     */
+    void cancelJob(String jobId) throws NotFoundException, BadInputException;
+}
@@ -4,6 +4,7 @@ import org.apache.commons.lang3.tuple.Pair;
 
 import org.springframework.data.domain.Page;
 import org.springframework.transaction.annotation.Transactional;
+import pt.uminho.di.chalktyk.dtos.CursorPageDTO;
 import pt.uminho.di.chalktyk.models.exercises.*;
 import pt.uminho.di.chalktyk.models.miscellaneous.Tag;
 import pt.uminho.di.chalktyk.models.miscellaneous.Visibility;
@@ -13,7 +14,9 @@ import pt.uminho.di.chalktyk.services.exceptions.NotFoundException;
 import pt.uminho.di.chalktyk.services.exceptions.ForbiddenException;
 import pt.uminho.di.chalktyk.services.exceptions.ServiceException;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 public interface IExercisesService{
@@ -26,6 +29,15 @@ public interface IExercisesService{
      **/
     Exercise getExerciseById(String exerciseId) throws NotFoundException;
 
+    /**
+     * Get Exercises by their IDs, using a single query. Loads everything except solution and rubric.
+     *
+     * @param exercisesIds identifiers of the exercises
+     * @return map that associates each identifier to the respective exercise
+     * @throws NotFoundException if any of the exercises does not exist
+     **/
+    Map<String, Exercise> getExercisesByIds(Collection<String> exercisesIds) throws NotFoundException;
+
 
     /**
      * Verify if exercise exists
@@ -70,6 +82,23 @@ public interface IExercisesService{
 
     String duplicateExerciseById(String specialistId, String exerciseId, String courseId, Visibility visibility) throws NotFoundException;
 
+    /**
+     * Gets an exercise, with the same content as the given exercise, that can be used by a test of the specialist.
+     * Exercises of tests are shared by the tests of a specialist while their content is the same,
+     * so the exercise is only duplicated, with the TEST visibility, if the specialist does not own
+     * a test exercise with the same content. Shared exercises are not changed in place,
+     * tests that want to change them must use a copy.
+     * An exercise is never used twice by the same test, so the exercises already in the test are not reused.
+     * Exercises that already have resolutions are not reused either, so that the resolutions of an exercise
+     * only belong to the tests that shared it before it was resolved.
+     * @param specialistId identifier of the specialist that owns the test
+     * @param exerciseId exercise identifier
+     * @param testExercisesIds identifiers of the exercises already in the test
+     * @return identifier of the test exercise
+     * @throws NotFoundException if the exercise or the specialist were not found
+     */
+    String getOrDuplicateTestExercise(String specialistId, String exerciseId, Collection<String> testExercisesIds) throws NotFoundException;
+
     /**
      * Updates an exercise. If an object is 'null' than it is considered that it should remain the same.
      * To delete it, a specific delete method should be invoked.
@@ -135,6 +164,18 @@ public interface IExercisesService{
      */
     void issueExerciseResolutionsCorrection(String exerciseId, String correctionType) throws BadInputException, NotFoundException, ForbiddenException;
 
+    /**
+     * Same as {@link #issueExerciseResolutionsCorrection(String, String)}, but reports the progress to a listener.
+     *
+     * @param exerciseId     identifier of the exercise
+     * @param correctionType type of correction. Can be 'auto' or 'ai'.
+     * @param listener       receives the progress of the correction, and may cancel it
+     * @throws BadInputException     if the correction type is not valid. It should be 'auto' or 'ai'.
+     * @throws NotFoundException     if the exercise does not exist
+     * @throws ForbiddenException if the exercise does not support the requested correction type.
+     */
+    void issueExerciseResolutionsCorrection(String exerciseId, String correctionType, CorrectionProgressListener listener) throws BadInputException, NotFoundException, ForbiddenException;
+
     /**
      * Requests that the correction of the exercise resolution be done autonomously.
      * The correction can either be automatic or done by AI.
@@ -149,6 +190,22 @@ public interface IExercisesService{
      */
     float issueExerciseResolutionCorrection(String resolutionId, String correctionType) throws BadInputException, NotFoundException, ForbiddenException;
 
+    /**
+     * Same as {@link #issueExerciseResolutionCorrection(String, String)}, but uses an exercise, rubric and solution
+     * that were previously loaded. Allows correcting many resolutions without loading
+     * the exercise, the rubric and the solution for each one of them.
+     *
+     * @param resolution     exercise resolution. Must be a resolution of the given exercise.
+     * @param exercise       exercise
+     * @param rubric         rubric of the exercise, or 'null' if it does not exist
+     * @param solution       solution of the exercise, or 'null' if it does not exist
+     * @param correctionType type of correction. Can be 'auto' or 'ai'.
+     * @return points attributed to the resolution
+     * @throws BadInputException     if the correction type is not valid. It should be 'auto' or 'ai'.
+     * @throws ForbiddenException if the exercise does not support the requested correction type.
+     */
+    float issueExerciseResolutionCorrection(ExerciseResolution resolution, Exercise exercise, ExerciseRubric rubric, ExerciseSolution solution, String correctionType) throws BadInputException, ForbiddenException;
+
     /**
      * @param exerciseId identifier of an exercise
      * @param total The total number of submissions can be obtained by setting the value to 'true'.
@@ -169,6 +226,21 @@ public interface IExercisesService{
      */
     Page<Pair<Student, ExerciseResolution>> getExerciseResolutions(String exerciseId, Integer page, Integer itemsPerPage, boolean latest, boolean onlyNotRevised);
 
+    /**
+     * Keyset paginated version of {@link #getExerciseResolutions(String, Integer, Integer, boolean, boolean)}.
+     * Pages start right after the last resolution of the previous page, and are not counted.
+     * The resolutions are ordered by student and submission number.
+     * @param exerciseId     identifier of the exercise
+     * @param cursor         cursor returned with the previous page. 'null' or empty for the first page.
+     * @param itemsPerPage   number of pairs in each page
+     * @param latest         if 'true' only the latest resolution of a student is returned.
+     * @param onlyNotRevised if 'true' only exercises resolutions that haven't been corrected will be returned.
+     * @param estimateTotal  if 'true' an estimate of the number of resolutions is returned with the page
+     * @return page of pairs of a student and its correspondent exercise resolution, with the cursor of the next page
+     * @throws BadInputException if the cursor is not valid
+     */
+    CursorPageDTO<Pair<Student, ExerciseResolution>> getExerciseResolutions(String exerciseId, String cursor, Integer itemsPerPage, boolean latest, boolean onlyNotRevised, boolean estimateTotal) throws BadInputException;
+
     /**
      * Create a resolution for a specific exercise.
      *
@@ -182,6 +254,19 @@ public interface IExercisesService{
      */
     ExerciseResolution createExerciseResolution(String studentId, String exerciseId, ExerciseResolutionData resolutionData) throws NotFoundException, BadInputException, ForbiddenException;
 
+    /**
+     * Create a resolution for a specific exercise, with a given submission number, e.g. the number of a test resolution.
+     * If the student already has a resolution of the exercise with that number, e.g. in another test that shares the exercise,
+     * the next free number is used instead.
+     *
+     * @param studentId      identifier of the creator of the resolution.
+     * @param exerciseId     identifier of the exercise
+     * @param resolutionData new resolution
+     * @param submissionNr   submission number of the resolution, or 'null' to use the next free number
+     * @return created resolution
+     * @throws NotFoundException if the exercise was not found
+     * @throws BadInputException if there is some problem regarding the resolution of the exercise
+     */
     @Transactional(rollbackFor = ServiceException.class)
     ExerciseResolution createExerciseResolution(String studentId, String exerciseId, ExerciseResolutionData resolutionData, Integer submissionNr) throws NotFoundException, BadInputException, ForbiddenException;
 
@@ -239,6 +324,29 @@ public interface IExercisesService{
      */
     Page<Exercise> getExercises(Integer page, Integer itemsPerPage, List<String> tags, boolean matchAllTags, Visibility visibilityType, String courseId, String institutionId, String specialistId, String title, String exerciseType, boolean verifyParams) throws BadInputException, NotFoundException;
 
+    /**
+     * Keyset paginated version of
+     * {@link #getExercises(Integer, Integer, List, boolean, Visibility, String, String, String, String, String, boolean)}.
+     * Pages start right after the last exercise of the previous page, and are not counted.
+     * The exercises are ordered by identifier.
+     * @param cursor         cursor returned with the previous page. 'null' or empty for the first page.
+     * @param itemsPerPage   number of items per page
+     * @param estimateTotal  if 'true' an estimate of the number of exercises that match the filters is returned with the page
+     * @return page of exercises that match the given filters, with the cursor of the next page
+     * @throws BadInputException if the cursor is not valid
+     */
+    CursorPageDTO<Exercise> getExercises(String cursor, Integer itemsPerPage, boolean estimateTotal, List<String> tags, boolean matchAllTags, Visibility visibilityType, String courseId, String institutionId, String specialistId, String title, String exerciseType, boolean verifyParams) throws BadInputException, NotFoundException;
+
+    /**
+     * Searches the exercises whose title or statement match the given query, the most relevant first.
+     * The remaining parameters filter the exercises as in
+     * {@link #getExercises(Integer, Integer, List, boolean, Visibility, String, String, String, String, String, boolean)}.
+     * @param search words to search for, or a fragment of the title or statement
+     * @return page of exercises that match the query and the given filters
+     * @throws BadInputException if the query is empty
+     */
+    Page<Exercise> searchExercises(String search, Integer page, Integer itemsPerPage, List<String> tags, boolean matchAllTags, Visibility visibilityType, String courseId, String institutionId, String specialistId, String title, String exerciseType, boolean verifyParams) throws BadInputException, NotFoundException;
+
     /**
      * Adds a comment to an exercise resolution.
      * If the resolution already has a
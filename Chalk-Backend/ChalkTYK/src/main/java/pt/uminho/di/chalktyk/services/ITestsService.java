@@ -1,9 +1,14 @@
 package pt.uminho.di.chalktyk.services;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.time.LocalDateTime;
 import java.util.List;
 
 import org.springframework.data.domain.Page;
+import pt.uminho.di.chalktyk.dtos.CursorPageDTO;
+import pt.uminho.di.chalktyk.dtos.TestListingDTO;
+import pt.uminho.di.chalktyk.dtos.TestStatisticsDTO;
 import pt.uminho.di.chalktyk.models.exercises.ExerciseResolution;
 import pt.uminho.di.chalktyk.models.miscellaneous.Visibility;
 import pt.uminho.di.chalktyk.models.tests.*;
@@ -31,6 +36,27 @@ public interface ITestsService {
      **/
      Page<Test> getTests(Integer page, Integer itemsPerPage, List<String> tags, Boolean matchAllTags, Visibility visibility, String specialistId, String courseId, String institutionId, String title, boolean verifyParams) throws NotFoundException;
 
+    /**
+     * Keyset paginated version of {@link #getTests(Integer, Integer, List, Boolean, Visibility, String, String, String, String, boolean)}.
+     * Pages start right after the last test of the previous page, and are not counted. The tests are ordered by identifier.
+     * @param cursor        cursor returned with the previous page. 'null' or empty for the first page.
+     * @param itemsPerPage  maximum items in a page
+     * @param estimateTotal if 'true' an estimate of the number of tests that match the filters is returned with the page
+     * @return page of tests, with the cursor of the next page
+     * @throws BadInputException if the cursor is not valid
+     **/
+     CursorPageDTO<Test> getTests(String cursor, Integer itemsPerPage, boolean estimateTotal, List<String> tags, Boolean matchAllTags, Visibility visibility, String specialistId, String courseId, String institutionId, String title, boolean verifyParams) throws NotFoundException, BadInputException;
+
+    /**
+     * Searches the tests whose title matches the given query, the most relevant first.
+     * The remaining parameters filter the tests as in
+     * {@link #getTests(Integer, Integer, List, Boolean, Visibility, String, String, String, String, boolean)}.
+     * @param search words to search for, or a fragment of the title
+     * @return page of tests that match the query and the given filters
+     * @throws BadInputException if the query is empty
+     **/
+     Page<Test> searchTests(String search, Integer page, Integer itemsPerPage, List<String> tags, Boolean matchAllTags, Visibility visibility, String specialistId, String courseId, String institutionId, String title, boolean verifyParams) throws NotFoundException, BadInputException;
+
     /**
      * Get test using its id
      *
@@ -40,6 +66,23 @@ public interface ITestsService {
      **/
     Test getTestById(String testId) throws NotFoundException;
 
+    /**
+     * Get the columns of a test needed to list it, without loading its groups.
+     *
+     * @param testId identifier of the test
+     * @return listing of the test
+     * @throws NotFoundException if no test was found with the given id
+     **/
+    TestListingDTO getTestListing(String testId) throws NotFoundException;
+
+    /**
+     * Verify if test exists
+     *
+     * @param testId identifier of the test
+     * @return true if test exists, false otherwise
+     **/
+    boolean testExists(String testId);
+
     /**
      * Create a test
      *
@@ -58,6 +101,16 @@ public interface ITestsService {
      **/
     void deleteTestById(String testId) throws NotFoundException;
 
+    /**
+     * Delete test by its id, along with its resolutions and exercises.
+     *
+     * @param testId
+     * @param background if 'true', the test is hidden right away, and its resolutions
+     *                   and exercises are deleted in the background, in chunks.
+     * @throws NotFoundException if no test was found with the given id
+     **/
+    void deleteTestById(String testId, boolean background) throws NotFoundException;
+
     /**
      * Duplicates the test using its identifier
      * id and specialist, institution are changed (to correspond the new specialist)
@@ -74,6 +127,20 @@ public interface ITestsService {
      **/
     String duplicateTestById(String specialistId, String testId, Visibility visibility, String courseId) throws BadInputException, NotFoundException;
 
+    /**
+     * Duplicates the test into several courses, creating a copy for each course.
+     * Each copy has its own copies of the exercises, which are duplicated in bulk.
+     *
+     * @param specialistId identifier of the specialist that owns the copies
+     * @param testId identifier of the test
+     * @param visibility visibility of the copies
+     * @param coursesIds identifiers of the courses
+     * @return identifiers of the copies, in the order of the given courses
+     * @throws BadInputException if no courses are given, if a course does not exist, or if the specialist does not belong to a course
+     * @throws NotFoundException if no test or specialist were found with the given ids
+     **/
+    List<String> duplicateTestIntoCourses(String specialistId, String testId, Visibility visibility, List<String> coursesIds) throws BadInputException, NotFoundException;
+
     /**
      * Updates test basic properties: title, conclusion, globalInstructions, publishDate and visibility.
      * @param body body containing the new basic properties.
@@ -98,6 +165,16 @@ public interface ITestsService {
      **/
     void updateTestTitle(String testId, String title) throws NotFoundException;
 
+    /**
+     * Updates whether the resolutions of a test are queued to be corrected automatically as soon as they are submitted.
+     * When enabled, a submitted resolution is marked as not revised, and corrected in the background.
+     *
+     * @param testId
+     * @param gradeOnSubmit
+     * @throws NotFoundException if no test was found with the given id
+     **/
+    void updateTestGradeOnSubmit(String testId, boolean gradeOnSubmit) throws NotFoundException;
+
     /**
      * Updates a test's global instructions
      *
@@ -232,6 +309,16 @@ public interface ITestsService {
      **/
     void automaticCorrection(String testId, String correctionType) throws NotFoundException;
 
+    /**
+     * Issue the automatic correction of the test resolutions, reporting the progress to a listener.
+     *
+     * @param testId
+     * @param correctionType   Type of correction ("auto" or "ai")
+     * @param listener         receives the progress of the correction, and may cancel it
+     * @throws NotFoundException     if the test or any exercise were not found
+     **/
+    void automaticCorrection(String testId, String correctionType, CorrectionProgressListener listener) throws NotFoundException;
+
     /**
      * Issue the automatic correction of a single test resolution
      *
@@ -252,6 +339,17 @@ public interface ITestsService {
      **/
     Integer countStudentsTestResolutions(String testId, Boolean total) throws NotFoundException;
 
+    /**
+     * Retrieves the statistics of the corrected resolutions of a test, and of each of its exercises.
+     * Only revised resolutions are counted: the ongoing ones, and the submitted ones that wait to be corrected, are not.
+     * The statistics are kept up to date as the resolutions are corrected, so they are not computed from the resolutions.
+     *
+     * @param testId
+     * @return statistics of the test
+     * @throws NotFoundException if no test was found with the given id
+     **/
+    TestStatisticsDTO getTestStatistics(String testId) throws NotFoundException;
+
     /**
      * Get all test resolutions
      *
@@ -263,6 +361,21 @@ public interface ITestsService {
      **/
     Page<TestResolution> getTestResolutions(String testId, Integer page, Integer itemsPerPage) throws NotFoundException;
 
+    /**
+     * Keyset paginated version of {@link #getTestResolutions(String, Integer, Integer)}.
+     * Pages start right after the last resolution of the previous page, and are not counted.
+     * The resolutions are ordered by start date.
+     *
+     * @param testId identifier of the test
+     * @param cursor cursor returned with the previous page. 'null' or empty for the first page.
+     * @param itemsPerPage maximum items in a page
+     * @param estimateTotal if 'true' an estimate of the number of resolutions is returned with the page
+     * @return page with resolutions, with the cursor of the next page
+     * @throws NotFoundException if no test was found with the given id
+     * @throws BadInputException if the cursor is not valid
+     **/
+    CursorPageDTO<TestResolution> getTestResolutions(String testId, String cursor, Integer itemsPerPage, boolean estimateTotal) throws NotFoundException, BadInputException;
+
     /**
      * Get test resolution using its id
      *
@@ -293,6 +406,26 @@ public interface ITestsService {
      **/
     void submitTestResolution(String testResId) throws NotFoundException, ForbiddenException;
 
+    /**
+     * Submits, with a single statement, the ongoing test resolutions whose deadline has passed.
+     * The resolutions are marked as not revised, and their submission date is set to the deadline.
+     *
+     * @param limit maximum number of resolutions to submit
+     * @param autoCorrect whether the submitted resolutions should be queued to be corrected automatically
+     * @return identifiers of the submitted resolutions
+     **/
+    List<String> closeExpiredTestResolutions(int limit, boolean autoCorrect);
+
+    /**
+     * Queues again, to be corrected automatically, the submitted resolutions whose correction is still pending,
+     * e.g. because it was lost on a restart, or rejected by a full queue.
+     *
+     * @param submittedBefore only resolutions submitted before this date are queued
+     * @param limit maximum number of resolutions to queue
+     * @return identifiers of the queued resolutions
+     **/
+    List<String> queuePendingCorrections(LocalDateTime submittedBefore, int limit);
+
     /**
      * Create a test resolution
      *
@@ -408,6 +541,21 @@ public interface ITestsService {
      **/
     List<TestResolution> getStudentLastResolutionsWithEmails(String testId) throws NotFoundException;
 
+    /**
+     * Writes the results of every resolution of a test to the given stream, one resolution per line.
+     * Each line identifies the student by its email, and contains the submission number and
+     * the points of every group and of every exercise. Resolutions are read and written one by one,
+     * so the memory used does not depend on the number of resolutions.
+     *
+     * @param testId       identifier of the test
+     * @param format       format of the export. Can be 'csv' or 'ndjson'.
+     * @param outputStream stream where the results are written to. Is not closed.
+     * @throws NotFoundException if the test does not exist
+     * @throws BadInputException if the format is not supported
+     * @throws IOException if an error occurs while writing to the stream
+     **/
+    void exportTestResults(String testId, String format, OutputStream outputStream) throws NotFoundException, BadInputException, IOException;
+
     /**
      * Get latest test resolution made by the student
      *
@@ -441,6 +589,22 @@ public interface ITestsService {
      */
     String uploadResolution(String testResId, String exeId, ExerciseResolution resolution) throws NotFoundException, BadInputException, ForbiddenException;
 
+    /**
+     * Autosaves a resolution for a specific exercise on a given test.
+     * Unlike {@link #uploadResolution(String, String, ExerciseResolution)}, the resolution is buffered
+     * and written later, along with other autosaves, so repeated autosaves of the same exercise
+     * result in a single write. Buffered resolutions are written before the test resolution is submitted.
+     *
+     * @param  testResId  identifier of the test resolution
+     * @param  exeId      identifier of the exercise
+     * @param  resolution resolution of the exercise
+     * @return identifier of the exercise resolution
+     * @throws NotFoundException if no test resolution or exercise were found
+     * @throws BadInputException if any property of the resolution is not valid
+     * @throws ForbiddenException if the test resolution was already submitted
+     */
+    String autosaveResolution(String testResId, String exeId, ExerciseResolution resolution) throws NotFoundException, BadInputException, ForbiddenException;
+
     /**
      * Add an exercise to a given test
      *
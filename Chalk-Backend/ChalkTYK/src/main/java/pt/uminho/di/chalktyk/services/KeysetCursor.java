@@ -0,0 +1,50 @@
+package pt.uminho.di.chalktyk.services;
+
+import pt.uminho.di.chalktyk.services.exceptions.BadInputException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Opaque cursors of the keyset paginated listings.
+ * <p>
+ * A cursor holds the values of the sort key of the last item of a page, ending with its identifier,
+ * so the next page starts right after that item, instead of skipping the previous pages with an offset.
+ * The values are encoded in base64, since clients should not depend on their format.
+ */
+final class KeysetCursor {
+    private static final String SEPARATOR = "\n";
+
+    private KeysetCursor() {}
+
+    /**
+     * @param values values of the sort key of the last item of a page, ending with its identifier
+     * @return cursor of the page that follows the item
+     */
+    static String encode(Object... values) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0)
+                sb.append(SEPARATOR);
+            sb.append(values[i]);
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(sb.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @param cursor cursor returned with a previous page. 'null' or empty for the first page.
+     * @param nrValues number of values of the sort key, including the identifier
+     * @return values of the cursor, or 'null' if the first page is requested
+     * @throws BadInputException if the cursor is malformed
+     */
+    static String[] decode(String cursor, int nrValues) throws BadInputException {
+        if (cursor == null || cursor.isEmpty())
+            return null;
+        try {
+            String[] values = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split(SEPARATOR, -1);
+            if (values.length == nrValues)
+                return values;
+        } catch (IllegalArgumentException ignored) {}
+        throw new BadInputException("Invalid cursor.");
+    }
+}
@@ -0,0 +1,344 @@
+package pt.uminho.di.chalktyk.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import pt.uminho.di.chalktyk.dtos.LiveTestClockDTO;
+import pt.uminho.di.chalktyk.dtos.LiveTestClockDTO.Phase;
+import pt.uminho.di.chalktyk.models.tests.LiveTest;
+import pt.uminho.di.chalktyk.repositories.TestDAO;
+import pt.uminho.di.chalktyk.services.exceptions.BadInputException;
+import pt.uminho.di.chalktyk.services.exceptions.NotFoundException;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Clocks of the live tests, which push the state of each test to the clients following it,
+ * with server-sent events, so that the clients do not need to poll for it.
+ * <p>
+ * There is a clock per live test with at least one client. Each clock has a single timer, which wakes up
+ * on every change of phase (start, end of the start tolerance and end of the test), and every sync interval,
+ * and sends the following events to every client of the test:
+ * <ul>
+ *     <li>"status": current state, sent when a client connects, and when the dates of the test change;</li>
+ *     <li>"started", "tolerance-closed" and "forced-submit": changes of phase. The ongoing resolutions are
+ *     submitted by the server once the test ends (see {@link ExpiredResolutionsSweeper}),
+ *     and the connections are closed after "forced-submit";</li>
+ *     <li>"remaining": current state, sent periodically, so that the clients can correct their local countdown.</li>
+ * </ul>
+ * The connections are asynchronous, so they do not hold a request thread while open.
+ * Events are serialized once, and written to every connection of the test by the thread of its timer.
+ */
+@Slf4j
+@Component
+public class LiveTestClock {
+    private final TestDAO testDAO;
+    private final ObjectMapper objectMapper;
+    private final ScheduledExecutorService timers;
+    private final long syncIntervalMillis;
+    private final long connectionTimeoutMillis;
+
+    private final ConcurrentHashMap<String, Clock> clocks = new ConcurrentHashMap<>();
+    private final AtomicInteger connections = new AtomicInteger();
+
+    public LiveTestClock(TestDAO testDAO, ObjectMapper objectMapper,
+                         @Value("${chalktyk.tests.live-clock.threads:2}") int threads,
+                         @Value("${chalktyk.tests.live-clock.sync-interval:30s}") Duration syncInterval,
+                         @Value("${chalktyk.tests.live-clock.connection-timeout:30m}") Duration connectionTimeout,
+                         MeterRegistry meterRegistry) {
+        this.testDAO = testDAO;
+        this.objectMapper = objectMapper;
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("live-test-clock-");
+        threadFactory.setDaemon(true);
+        this.timers = Executors.newScheduledThreadPool(threads, threadFactory);
+        this.syncIntervalMillis = syncInterval.toMillis();
+        this.connectionTimeoutMillis = connectionTimeout.toMillis();
+
+        Gauge.builder("chalktyk.tests.live-clock.clocks", clocks, ConcurrentHashMap::size)
+                .description("Live tests with connected clients")
+                .register(meterRegistry);
+        Gauge.builder("chalktyk.tests.live-clock.connections", connections, AtomicInteger::get)
+                .description("Clients connected to the clocks of live tests")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Connects a client to the clock of a live test. The client immediately receives the current state of the test.
+     * @param testId identifier of the live test
+     * @return emitter of the events of the clock
+     * @throws NotFoundException if the test does not exist
+     * @throws BadInputException if the test is not a live test
+     */
+    public SseEmitter subscribe(String testId) throws NotFoundException, BadInputException {
+        // the clients of a test that already has a clock do not hit the database
+        Clock existing = clocks.get(testId);
+        Schedule schedule = existing != null ? existing.schedule : loadSchedule(testId);
+
+        SseEmitter emitter = new SseEmitter(connectionTimeoutMillis);
+        LocalDateTime now = LocalDateTime.now();
+        if (schedule.phase(now) == Phase.ENDED) {
+            try {
+                emitter.send(buildEvent("status", schedule.toDTO(testId, now)));
+                emitter.complete();
+            } catch (IOException e) {
+                emitter.completeWithError(e);
+            }
+            return emitter;
+        }
+
+        Clock[] created = new Clock[1];
+        Clock clock = clocks.compute(testId, (id, c) -> {
+            if (c == null)
+                c = created[0] = new Clock(id, schedule);
+            c.emitters.add(emitter);
+            return c;
+        });
+        connections.incrementAndGet();
+        if (created[0] != null)
+            created[0].start();
+
+        Runnable unsubscribe = () -> unsubscribe(clock, emitter);
+        emitter.onCompletion(unsubscribe);
+        emitter.onTimeout(unsubscribe);
+        emitter.onError(e -> unsubscribe.run());
+        send(clock, emitter, buildEvent("status", clock.schedule.toDTO(testId, now)));
+        return emitter;
+    }
+
+    /**
+     * Reloads the dates of a live test, and sends its new state to its clients.
+     * Inside a transaction, the dates are only reloaded once the transaction commits.
+     * @param testId identifier of the live test
+     */
+    public void reschedule(String testId) {
+        Runnable action = () -> {
+            Clock clock = clocks.get(testId);
+            if (clock == null)
+                return;
+            try {
+                clock.reschedule(loadSchedule(testId));
+            } catch (NotFoundException | BadInputException e) {
+                clock.end();
+            }
+        };
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        }
+        else action.run();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        timers.shutdownNow();
+        for (Clock clock : new ArrayList<>(clocks.values()))
+            clock.end();
+    }
+
+    private Schedule loadSchedule(String testId) throws NotFoundException, BadInputException {
+        LiveTest test = testDAO.getLiveTest(testId);
+        if (test == null) {
+            if (!testDAO.existsById(testId))
+                throw new NotFoundException("Could not follow test: there is no test with the given identifier.");
+            throw new BadInputException("Could not follow test: test with id '" + testId + "' is not a live test.");
+        }
+        LocalDateTime start = test.getStartDate();
+        return new Schedule(start, start.plusSeconds(test.getStartTolerance()), start.plusSeconds(test.getDuration()));
+    }
+
+    private void unsubscribe(Clock clock, SseEmitter emitter) {
+        boolean[] removed = new boolean[1];
+        clocks.computeIfPresent(clock.testId, (id, c) -> {
+            if (c != clock)
+                return c;
+            if (c.emitters.remove(emitter))
+                connections.decrementAndGet();
+            removed[0] = c.emitters.isEmpty();
+            return removed[0] ? null : c;
+        });
+        // stopped outside of the map, as the timer locks the clock before the map
+        if (removed[0])
+            clock.stop();
+    }
+
+    private Set<ResponseBodyEmitter.DataWithMediaType> buildEvent(String name, LiveTestClockDTO state) {
+        try {
+            return SseEmitter.event().name(name).data(objectMapper.writeValueAsString(state)).build();
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void send(Clock clock, SseEmitter emitter, Set<ResponseBodyEmitter.DataWithMediaType> event) {
+        try {
+            emitter.send(event);
+        } catch (IOException | IllegalStateException e) {
+            // the client is gone. The container completes the emitter.
+            unsubscribe(clock, emitter);
+        }
+    }
+
+    /**
+     * Start, end of the start tolerance and end of a live test.
+     */
+    private record Schedule(LocalDateTime start, LocalDateTime toleranceEnd, LocalDateTime end) {
+        Phase phase(LocalDateTime now) {
+            if (now.isBefore(start))
+                return Phase.NOT_STARTED;
+            if (now.isBefore(toleranceEnd))
+                return Phase.STARTED;
+            if (now.isBefore(end))
+                return Phase.ONGOING;
+            return Phase.ENDED;
+        }
+
+        /**
+         * @return first change of phase after the given date, or 'null' if the test has ended
+         */
+        LocalDateTime nextChange(LocalDateTime now) {
+            for (LocalDateTime change : List.of(start, toleranceEnd, end))
+                if (change.isAfter(now))
+                    return change;
+            return null;
+        }
+
+        LiveTestClockDTO toDTO(String testId, LocalDateTime now) {
+            LocalDateTime target = now.isBefore(start) ? start : end;
+            long remaining = Math.max(0, Duration.between(now, target).toSeconds());
+            return new LiveTestClockDTO(testId, phase(now), now, start, toleranceEnd, end, remaining);
+        }
+    }
+
+    private final class Clock {
+        private final String testId;
+        private volatile Schedule schedule;
+        private final List<SseEmitter> emitters = new CopyOnWriteArrayList<>();
+        // guarded by this
+        private Phase phase;
+        private ScheduledFuture<?> timer;
+        private boolean stopped = false;
+
+        private Clock(String testId, Schedule schedule) {
+            this.testId = testId;
+            this.schedule = schedule;
+        }
+
+        private synchronized void start() {
+            // the clock is published before it is started, so a reschedule may have started it already
+            if (stopped || timer != null)
+                return;
+            LocalDateTime now = LocalDateTime.now();
+            phase = schedule.phase(now);
+            scheduleNext(now);
+        }
+
+        private synchronized void stop() {
+            stopped = true;
+            if (timer != null)
+                timer.cancel(false);
+        }
+
+        private synchronized void reschedule(Schedule schedule) {
+            if (stopped)
+                return;
+            this.schedule = schedule;
+            if (timer != null)
+                timer.cancel(false);
+
+            // the phase may go back, so the change is only announced with the new state
+            LocalDateTime now = LocalDateTime.now();
+            phase = schedule.phase(now);
+            broadcast(buildEvent("status", schedule.toDTO(testId, now)));
+            if (phase == Phase.ENDED)
+                end();
+            else
+                scheduleNext(now);
+        }
+
+        private synchronized void tick() {
+            if (stopped)
+                return;
+            try {
+                LocalDateTime now = LocalDateTime.now();
+                Phase current = schedule.phase(now);
+                LiveTestClockDTO state = schedule.toDTO(testId, now);
+
+                // every phase that was skipped over is also announced, in order
+                for (Phase p : Phase.values()) {
+                    if (p.compareTo(phase) > 0 && p.compareTo(current) <= 0)
+                        broadcast(buildEvent(eventName(p), state));
+                }
+                if (current.compareTo(phase) > 0)
+                    phase = current;
+
+                if (phase == Phase.ENDED) {
+                    end();
+                    return;
+                }
+                broadcast(buildEvent("remaining", state));
+                scheduleNext(now);
+            } catch (RuntimeException e) {
+                log.error("Could not update the clock of live test '{}'.", testId, e);
+                scheduleNext(LocalDateTime.now());
+            }
+        }
+
+        private void scheduleNext(LocalDateTime now) {
+            long delay = syncIntervalMillis;
+            LocalDateTime next = schedule.nextChange(now);
+            if (next != null)
+                // wakes up just after the change, so that the new phase is seen
+                delay = Math.min(delay, Duration.between(now, next).toMillis() + 1);
+            timer = timers.schedule(this::tick, delay, TimeUnit.MILLISECONDS);
+        }
+
+        private void broadcast(Set<ResponseBodyEmitter.DataWithMediaType> event) {
+            for (SseEmitter emitter : emitters)
+                send(this, emitter, event);
+        }
+
+        /**
+         * Removes the clock and closes the connections of its clients.
+         */
+        private synchronized void end() {
+            stop();
+            clocks.remove(testId, this);
+            List<SseEmitter> closed = new ArrayList<>(emitters);
+            emitters.clear();
+            connections.addAndGet(-closed.size());
+            for (SseEmitter emitter : closed)
+                emitter.complete();
+        }
+
+        private static String eventName(Phase phase) {
+            return switch (phase) {
+                case NOT_STARTED -> "status";
+                case STARTED -> "started";
+                case ONGOING -> "tolerance-closed";
+                case ENDED -> "forced-submit";
+            };
+        }
+    }
+}
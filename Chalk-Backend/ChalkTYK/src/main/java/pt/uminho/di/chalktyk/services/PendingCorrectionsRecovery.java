@@ -0,0 +1,53 @@
+package pt.uminho.di.chalktyk.services;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Queues again the corrections of submitted resolutions that were lost, e.g. on a restart,
+ * or rejected because the queue was full (see {@link ITestsService#queuePendingCorrections(LocalDateTime, int)}).
+ * <p>
+ * Only resolutions submitted for longer than the delay are queued, so that the corrections queued on submission
+ * have time to run. Each correction is claimed when it runs, so a resolution queued more than once,
+ * or by several instances of the application, is corrected once.
+ */
+@Slf4j
+@Component
+public class PendingCorrectionsRecovery {
+    private final ITestsService testsService;
+    private final Duration delay;
+    private final int batchSize;
+    private final Counter requeuedCounter;
+
+    public PendingCorrectionsRecovery(ITestsService testsService,
+                                      @Value("${chalktyk.corrections.submissions.recovery-delay:2m}") Duration delay,
+                                      @Value("${chalktyk.corrections.submissions.recovery-batch-size:500}") int batchSize,
+                                      MeterRegistry meterRegistry) {
+        this.testsService = testsService;
+        this.delay = delay;
+        this.batchSize = batchSize;
+        this.requeuedCounter = Counter.builder("chalktyk.corrections.submissions.requeued")
+                .description("Submitted resolutions queued again because their correction was still pending")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${chalktyk.corrections.submissions.recovery-interval:60000}")
+    public void recover() {
+        try {
+            List<String> queued = testsService.queuePendingCorrections(LocalDateTime.now().minus(delay), batchSize);
+            requeuedCounter.increment(queued.size());
+            if (!queued.isEmpty())
+                log.info("Queued again the correction of {} submitted test resolutions.", queued.size());
+        } catch (RuntimeException e) {
+            log.error("Could not queue the pending corrections of submitted test resolutions.", e);
+        }
+    }
+}
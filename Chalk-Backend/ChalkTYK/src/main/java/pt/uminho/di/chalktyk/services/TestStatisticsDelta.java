@@ -0,0 +1,143 @@
+package pt.uminho.di.chalktyk.services;
+
+import pt.uminho.di.chalktyk.models.tests.PointsSummary;
+import pt.uminho.di.chalktyk.models.tests.TestExerciseResolutionBasic;
+import pt.uminho.di.chalktyk.models.tests.TestResolution;
+import pt.uminho.di.chalktyk.models.tests.TestResolutionGroup;
+import pt.uminho.di.chalktyk.models.tests.TestResolutionStatus;
+import pt.uminho.di.chalktyk.repositories.TestExerciseStatisticsDAO;
+import pt.uminho.di.chalktyk.repositories.TestStatisticsDAO;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+/**
+ * Change of the statistics of a test, accumulated while the points of its resolutions change,
+ * and then written with a single upsert per test and per exercise.
+ * The points of a resolution are removed before it changes, and added again afterwards.
+ * Only the corrected (revised) resolutions are counted, so the resolutions that are still ongoing,
+ * or that wait to be corrected, are not.
+ */
+class TestStatisticsDelta {
+    private final String testId;
+    private final Map<String, Float> exercisesPoints;
+    private final float testPoints;
+    private final Change testChange = new Change();
+    // sorted, so that concurrent writers lock the rows in the same order
+    private final Map<String, Change> exercisesChanges = new TreeMap<>();
+
+    /**
+     * @param testId identifier of the test
+     * @param exercisesPoints maps the identifier of each exercise of the test to its points
+     */
+    TestStatisticsDelta(String testId, Map<String, Float> exercisesPoints) {
+        this.testId = testId;
+        this.exercisesPoints = exercisesPoints;
+        this.testPoints = (float) exercisesPoints.values().stream().mapToDouble(Float::doubleValue).sum();
+    }
+
+    /**
+     * Removes the current points of a resolution from the statistics.
+     * @param resolution resolution of the test
+     */
+    void remove(TestResolution resolution) {
+        change(resolution, -1);
+    }
+
+    /**
+     * Adds the current points of a resolution to the statistics.
+     * @param resolution resolution of the test
+     */
+    void add(TestResolution resolution) {
+        change(resolution, 1);
+    }
+
+    /**
+     * Replaces the total points of a resolution, and the points of one of its exercises, in the statistics.
+     * Used when a single exercise changes, so that the rest of the resolution is not needed.
+     * The status of the resolution must not change.
+     * @param status status of the resolution
+     * @param oldTotal previous total points of the resolution
+     * @param newTotal new total points of the resolution
+     * @param exerciseId identifier of the exercise
+     * @param oldPoints previous points of the exercise
+     * @param newPoints new points of the exercise
+     */
+    void replace(TestResolutionStatus status, Float oldTotal, Float newTotal, String exerciseId, Float oldPoints, Float newPoints) {
+        if (status != TestResolutionStatus.REVISED)
+            return;
+        if (oldTotal != null)
+            testChange.add(oldTotal, testPoints, -1);
+        if (newTotal != null)
+            testChange.add(newTotal, testPoints, 1);
+        Float maxPoints = exercisesPoints.get(exerciseId);
+        if (maxPoints != null) {
+            Change change = exercisesChanges.computeIfAbsent(exerciseId, k -> new Change());
+            if (oldPoints != null)
+                change.add(oldPoints, maxPoints, -1);
+            if (newPoints != null)
+                change.add(newPoints, maxPoints, 1);
+        }
+    }
+
+    /**
+     * Writes the accumulated changes, and clears them.
+     */
+    void write(TestStatisticsDAO testStatisticsDAO, TestExerciseStatisticsDAO exerciseStatisticsDAO) {
+        if (!testChange.isEmpty())
+            testStatisticsDAO.addChange(testId, testChange.count, testChange.sum, testChange.sumSquares, testChange.getHistogramLiteral());
+        for (Map.Entry<String, Change> entry : exercisesChanges.entrySet()) {
+            Change change = entry.getValue();
+            if (!change.isEmpty())
+                exerciseStatisticsDAO.addChange(testId, entry.getKey(), change.count, change.sum, change.sumSquares, change.getHistogramLiteral());
+        }
+        testChange.clear();
+        exercisesChanges.clear();
+    }
+
+    private void change(TestResolution resolution, int sign) {
+        if (resolution.getStatus() != TestResolutionStatus.REVISED)
+            return;
+        if (resolution.getTotalPoints() != null)
+            testChange.add(resolution.getTotalPoints(), testPoints, sign);
+        for (TestResolutionGroup trg : resolution.getGroups()) {
+            for (Map.Entry<String, TestExerciseResolutionBasic> entry : trg.getResolutions().entrySet()) {
+                TestExerciseResolutionBasic pair = entry.getValue();
+                Float maxPoints = exercisesPoints.get(entry.getKey());
+                if (pair != null && pair.getPoints() != null && maxPoints != null)
+                    exercisesChanges.computeIfAbsent(entry.getKey(), k -> new Change()).add(pair.getPoints(), maxPoints, sign);
+            }
+        }
+    }
+
+    private static class Change {
+        private long count = 0;
+        private double sum = 0;
+        private double sumSquares = 0;
+        private final int[] histogram = new int[PointsSummary.NR_BINS];
+
+        private void add(float points, float maxPoints, int sign) {
+            count += sign;
+            sum += sign * points;
+            sumSquares += sign * (double) points * points;
+            histogram[PointsSummary.getBin(points, maxPoints)] += sign;
+        }
+
+        private boolean isEmpty() {
+            return count == 0 && sum == 0 && sumSquares == 0 && Arrays.stream(histogram).allMatch(h -> h == 0);
+        }
+
+        private void clear() {
+            count = 0;
+            sum = 0;
+            sumSquares = 0;
+            Arrays.fill(histogram, 0);
+        }
+
+        private String getHistogramLiteral() {
+            return Arrays.stream(histogram).mapToObj(Integer::toString).collect(Collectors.joining(",", "{", "}"));
+        }
+    }
+}
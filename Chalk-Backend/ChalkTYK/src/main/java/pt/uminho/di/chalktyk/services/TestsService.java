@@ -1,19 +1,51 @@
 package pt.uminho.di.chalktyk.services;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.apache.commons.lang3.tuple.Pair;
+import org.apache.commons.lang3.tuple.Triple;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Hibernate;
+import org.hibernate.engine.spi.EntityEntry;
+import org.hibernate.engine.spi.SessionImplementor;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.stereotype.Service;
 
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.PersistenceContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import pt.uminho.di.chalktyk.dtos.CursorPageDTO;
+import pt.uminho.di.chalktyk.dtos.TestListingDTO;
+import pt.uminho.di.chalktyk.dtos.TestResolutionExportDTO;
+import pt.uminho.di.chalktyk.dtos.TestStatisticsDTO;
 import pt.uminho.di.chalktyk.models.courses.Course;
 import pt.uminho.di.chalktyk.models.exercises.*;
 import pt.uminho.di.chalktyk.models.exercises.items.Item;
@@ -29,23 +61,53 @@ import pt.uminho.di.chalktyk.models.tests.TestExercise.ReferenceExercise;
 import pt.uminho.di.chalktyk.models.tests.TestExercise.TestExercise;
 import pt.uminho.di.chalktyk.models.users.Specialist;
 import pt.uminho.di.chalktyk.models.users.Student;
+import pt.uminho.di.chalktyk.repositories.BulkDeletionDAO;
+import pt.uminho.di.chalktyk.repositories.BulkDuplicationDAO;
+import pt.uminho.di.chalktyk.repositories.CatalogueListingDAO;
+import pt.uminho.di.chalktyk.repositories.CatalogueSearchDAO;
+import pt.uminho.di.chalktyk.repositories.CatalogueSpecifications;
+import pt.uminho.di.chalktyk.repositories.ExerciseDAO;
 import pt.uminho.di.chalktyk.repositories.ExerciseResolutionDAO;
+import pt.uminho.di.chalktyk.repositories.ExpiredResolutionsDAO;
+import pt.uminho.di.chalktyk.repositories.RowEstimatesDAO;
+import pt.uminho.di.chalktyk.repositories.TestAttemptCounterDAO;
 import pt.uminho.di.chalktyk.repositories.TestDAO;
+import pt.uminho.di.chalktyk.repositories.TestExerciseStatisticsDAO;
+import pt.uminho.di.chalktyk.repositories.TestStatisticsDAO;
 import pt.uminho.di.chalktyk.repositories.TestResolutionDAO;
 import pt.uminho.di.chalktyk.repositories.TestTagsDAO;
+import pt.uminho.di.chalktyk.services.caches.AutoEvaluationExercisePool;
+import pt.uminho.di.chalktyk.services.caches.ResolutionAutosaveBuffer;
+import pt.uminho.di.chalktyk.services.caches.TestSnapshotCache;
 import pt.uminho.di.chalktyk.services.exceptions.BadInputException;
 import pt.uminho.di.chalktyk.services.exceptions.NotFoundException;
 import pt.uminho.di.chalktyk.services.exceptions.ServiceException;
 import pt.uminho.di.chalktyk.services.exceptions.ForbiddenException;
 
+@Slf4j
 @Service("testsService")
 public class TestsService implements ITestsService {
-    
+    // number of exported resolutions written between two flushes of the output
+    private static final int EXPORT_FLUSH_ROWS = 100;
+    // number of resolutions read at a time when the statistics of a test are computed again
+    private static final int STATISTICS_REBUILD_ROWS = 500;
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
     @PersistenceContext
     private final EntityManager entityManager;
     private final TestDAO testDAO;
     private final TestResolutionDAO resolutionDAO;
+    private final TestAttemptCounterDAO attemptCounterDAO;
     private final TestTagsDAO testTagsDAO;
+    private final BulkDuplicationDAO bulkDuplicationDAO;
+    private final BulkDeletionDAO bulkDeletionDAO;
+    private final ExpiredResolutionsDAO expiredResolutionsDAO;
+    private final CatalogueListingDAO catalogueListingDAO;
+    private final CatalogueSearchDAO catalogueSearchDAO;
+    private final RowEstimatesDAO rowEstimatesDAO;
+    private final TestStatisticsDAO testStatisticsDAO;
+    private final TestExerciseStatisticsDAO exerciseStatisticsDAO;
+    private final ExerciseDAO exerciseDAO;
     private final ExerciseResolutionDAO exerciseResolutionDAO;
     private final IInstitutionsService institutionsService;
     private final ISpecialistsService specialistsService;
@@ -54,15 +116,35 @@ public class TestsService implements ITestsService {
     private final ITagsService tagsService;
     private final IExercisesService exercisesService;
     private final ExerciseResolutionDAO exeResDAO;
-
+    private final TestSnapshotCache testsCache;
+    private final ResolutionAutosaveBuffer autosaveBuffer;
+    private final AutoEvaluationExercisePool autoEvalExercisePool;
+    private final LiveTestClock liveTestClock;
+    private final ThreadPoolTaskExecutor correctionExecutor;
+    private final ThreadPoolTaskExecutor submissionsCorrectionExecutor;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionTemplate newTransaction;
+    private final int correctionChunkSize;
 
     @Autowired
-    public TestsService(EntityManager entityManager, TestDAO testDAO, TestResolutionDAO resolutionDAO, TestTagsDAO testTagsDAO, ExerciseResolutionDAO exerciseResolutionDAO, ISpecialistsService specialistsService, IStudentsService studentsService,
-                        IInstitutionsService institutionsService, ICoursesService coursesService, ITagsService tagsService, IExercisesService exercisesService, ExerciseResolutionDAO exeResDAO){
+    public TestsService(EntityManager entityManager, TestDAO testDAO, TestResolutionDAO resolutionDAO, TestAttemptCounterDAO attemptCounterDAO, TestTagsDAO testTagsDAO, BulkDuplicationDAO bulkDuplicationDAO, BulkDeletionDAO bulkDeletionDAO, ExpiredResolutionsDAO expiredResolutionsDAO, CatalogueListingDAO catalogueListingDAO, CatalogueSearchDAO catalogueSearchDAO, RowEstimatesDAO rowEstimatesDAO, TestStatisticsDAO testStatisticsDAO, TestExerciseStatisticsDAO exerciseStatisticsDAO, ExerciseDAO exerciseDAO, ExerciseResolutionDAO exerciseResolutionDAO, ISpecialistsService specialistsService, IStudentsService studentsService,
+                        IInstitutionsService institutionsService, ICoursesService coursesService, ITagsService tagsService, IExercisesService exercisesService, ExerciseResolutionDAO exeResDAO,
+                        TestSnapshotCache testsCache, ResolutionAutosaveBuffer autosaveBuffer, AutoEvaluationExercisePool autoEvalExercisePool, LiveTestClock liveTestClock, @Qualifier("correctionExecutor") ThreadPoolTaskExecutor correctionExecutor,
+                        @Qualifier("submissionsCorrectionExecutor") ThreadPoolTaskExecutor submissionsCorrectionExecutor, PlatformTransactionManager transactionManager, @Value("${chalktyk.corrections.chunk-size:50}") int correctionChunkSize){
         this.entityManager = entityManager;
         this.testDAO = testDAO;
         this.resolutionDAO = resolutionDAO;
+        this.attemptCounterDAO = attemptCounterDAO;
         this.testTagsDAO = testTagsDAO;
+        this.bulkDuplicationDAO = bulkDuplicationDAO;
+        this.bulkDeletionDAO = bulkDeletionDAO;
+        this.expiredResolutionsDAO = expiredResolutionsDAO;
+        this.catalogueListingDAO = catalogueListingDAO;
+        this.catalogueSearchDAO = catalogueSearchDAO;
+        this.rowEstimatesDAO = rowEstimatesDAO;
+        this.testStatisticsDAO = testStatisticsDAO;
+        this.exerciseStatisticsDAO = exerciseStatisticsDAO;
+        this.exerciseDAO = exerciseDAO;
         this.exerciseResolutionDAO = exerciseResolutionDAO;
         this.specialistsService = specialistsService;
         this.studentsService = studentsService;
@@ -71,60 +153,136 @@ public class TestsService implements ITestsService {
         this.tagsService = tagsService;
         this.exercisesService = exercisesService;
         this.exeResDAO = exeResDAO;
+        this.testsCache = testsCache;
+        this.autosaveBuffer = autosaveBuffer;
+        this.autoEvalExercisePool = autoEvalExercisePool;
+        this.liveTestClock = liveTestClock;
+        this.correctionExecutor = correctionExecutor;
+        this.submissionsCorrectionExecutor = submissionsCorrectionExecutor;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.newTransaction = new TransactionTemplate(transactionManager);
+        this.newTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.correctionChunkSize = correctionChunkSize;
     }
 
     
     @Override
     @Transactional
     public Page<Test> getTests(Integer page, Integer itemsPerPage, List<String> tags, Boolean matchAllTags, Visibility visibility, String specialistId, String courseId, String institutionId, String title, boolean verifyParams) throws NotFoundException {
-        if(verifyParams && courseId!=null) {
+        if (verifyParams)
+            verifyListingParams(courseId, institutionId, specialistId);
+        // only the predicates of the given filters are part of the query
+        Page<String> ids = catalogueListingDAO.listTestsIds(
+                CatalogueSpecifications.tests(tags, Boolean.TRUE.equals(matchAllTags), visibility, institutionId, courseId, specialistId, title),
+                PageRequest.of(page, itemsPerPage));
+        return new PageImpl<>(loadTests(ids.getContent()), ids.getPageable(), ids.getTotalElements());
+    }
+
+    @Override
+    @Transactional
+    public CursorPageDTO<Test> getTests(String cursor, Integer itemsPerPage, boolean estimateTotal, List<String> tags, Boolean matchAllTags, Visibility visibility, String specialistId, String courseId, String institutionId, String title, boolean verifyParams) throws NotFoundException, BadInputException {
+        String[] after = KeysetCursor.decode(cursor, 1);
+        if (verifyParams)
+            verifyListingParams(courseId, institutionId, specialistId);
+        boolean matchAll = Boolean.TRUE.equals(matchAllTags);
+        Slice<String> ids = catalogueListingDAO.sliceTestsIds(
+                CatalogueSpecifications.tests(tags, matchAll, visibility, institutionId, courseId, specialistId, title),
+                after != null ? after[0] : null, itemsPerPage);
+        String nextCursor = ids.hasNext() ? KeysetCursor.encode(ids.getContent().get(ids.getNumberOfElements() - 1)) : null;
+        Long estimatedTotal = estimateTotal ? catalogueSearchDAO.estimateTests(tags, matchAll, visibility, institutionId, courseId, specialistId, title) : null;
+        return new CursorPageDTO<>(loadTests(ids.getContent()), nextCursor, estimatedTotal);
+    }
+
+    @Override
+    @Transactional
+    public Page<Test> searchTests(String search, Integer page, Integer itemsPerPage, List<String> tags, Boolean matchAllTags, Visibility visibility, String specialistId, String courseId, String institutionId, String title, boolean verifyParams) throws NotFoundException, BadInputException {
+        if (search == null || search.isBlank())
+            throw new BadInputException("Could not search tests: the search query is empty.");
+        if (verifyParams)
+            verifyListingParams(courseId, institutionId, specialistId);
+
+        Page<String> ids = catalogueSearchDAO.searchTests(search.trim(), tags, Boolean.TRUE.equals(matchAllTags), visibility, institutionId, courseId,
+                                                          specialistId, title, PageRequest.of(page, itemsPerPage));
+        return new PageImpl<>(loadTests(ids.getContent()), ids.getPageable(), ids.getTotalElements());
+    }
+
+    private void verifyListingParams(String courseId, String institutionId, String specialistId) throws NotFoundException {
+        if(courseId!=null) {
             if(!coursesService.existsCourseById(courseId))
                 throw new NotFoundException("There is no course with the given id");
         }
 
-        if(verifyParams && institutionId!=null) {
+        if(institutionId!=null) {
             if(!institutionsService.existsInstitutionById(institutionId))
                 throw new NotFoundException("There is no institution with the given id");
         }
 
-        if (verifyParams && specialistId != null) {
+        if (specialistId != null) {
             if(!specialistsService.existsSpecialistById(specialistId))
                 throw new NotFoundException("There is no specialist with the given id");
         }
-        Page<Test> tests = testDAO.getTests(PageRequest.of(page, itemsPerPage), tags, tags != null ? tags.size() : 0, matchAllTags, visibility, institutionId, courseId, specialistId, title);
+    }
+
+    /**
+     * Loads the tests with the given identifiers, keeping the order of the identifiers. Only the columns required
+     * for the listing are loaded (groups are not), with a single query.
+     */
+    private List<Test> loadTests(List<String> ids) {
+        Map<String, TestListingDTO> listings = new HashMap<>();
+        if (!ids.isEmpty())
+            for (TestListingDTO t : testDAO.getTestsListingByIds(ids))
+                listings.put(t.getId(), t);
+        List<TestListingDTO> tests = ids.stream().map(listings::get).filter(Objects::nonNull).toList();
+
+        // gets the tags of every test of the page with a single query
+        Map<String, List<Tag>> testsTags = new HashMap<>();
+        if (!tests.isEmpty()) {
+            List<String> testsIds = tests.stream().map(TestListingDTO::getId).toList();
+            for (Object[] o : testTagsDAO.getTagsOfTests(testsIds))
+                testsTags.computeIfAbsent((String) o[0], k -> new ArrayList<>()).add(((Tag) o[1]).clone());
+        }
 
-        // turning groups to null
         List<Test> tmpTests = new ArrayList<>();
-        for (Test t: tests){
-            Test tmpTest = new Test(t.getId(), t.getTitle(), t.getGlobalInstructions(), t.getGlobalPoints(), t.getConclusion(), t.getCreationDate(),
-                    t.getPublishDate(), t.getSpecialist(), t.getVisibility(), t.getCourse(), t.getInstitution(), null);
-            List<Tag> tmpTags = testTagsDAO.getTestTags(t.getId()).stream().map(tt -> tt.getTestTagPK().getTag().clone()).toList();
-            tmpTest.setTags(tmpTags);
+        for (TestListingDTO t: tests){
+            Test tmpTest = new Test(t.getId(), t.getTitle(), t.getGlobalInstructions(), t.getGlobalPoints(), t.getConclusion(), t.getCreationDate(), t.getPublishDate(),
+                    t.getSpecialistId() != null ? entityManager.getReference(Specialist.class, t.getSpecialistId()) : null,
+                    t.getVisibility(),
+                    t.getCourseId() != null ? entityManager.getReference(Course.class, t.getCourseId()) : null,
+                    t.getInstitutionId() != null ? entityManager.getReference(Institution.class, t.getInstitutionId()) : null,
+                    null);
+            tmpTest.setTags(testsTags.getOrDefault(t.getId(), new ArrayList<>()));
             tmpTests.add(tmpTest);
         }
-
-        return new PageImpl<>(tmpTests, tests.getPageable(), tests.getTotalElements());
+        return tmpTests;
     }
 
     @Override
     @Transactional
     public Test getTestById(String testId) throws NotFoundException {
+        Test cached = testsCache.get(testId);
+        if (cached != null)
+            return cached;
+        long cacheVersion = testsCache.version();
+
         Test t = testDAO.findById(testId).orElse(null);
         if (t == null)
             throw new NotFoundException("Could not get test: there is no test with the given identifier.");
 
-        // getting concrete exercises
+        // getting concrete exercises, loading all of them with a single query
         List<TestGroup> newGroups = new ArrayList<>();
         List<TestGroup> groups = t.getGroups();
         if (groups != null){
+            List<String> exercisesIds = new ArrayList<>();
+            for (TestGroup tg: groups)
+                for (TestExercise ref: tg.getExercises())
+                    exercisesIds.add(ref.getId());
+            Map<String, Exercise> exercises = exercisesService.getExercisesByIds(exercisesIds);
+
             for (TestGroup tg: groups){
                 TestGroup newGroup = new TestGroup(tg.getGroupInstructions(), tg.getGroupPoints(), new ArrayList<>());
                 List<TestExercise> newExes = new ArrayList<>();
-                for (TestExercise ref: tg.getExercises()){
-                    Exercise exe = exercisesService.getExerciseById(ref.getId());
-                    TestExercise newExe = new ConcreteExercise(ref.getPoints(), exe);
-                    newExes.add(newExe);
-                }
+                for (TestExercise ref: tg.getExercises())
+                    newExes.add(new ConcreteExercise(ref.getPoints(), exercises.get(ref.getId())));
                 newGroup.setExercises(newExes);
                 newGroups.add(newGroup);
             }
@@ -132,14 +290,32 @@ public class TestsService implements ITestsService {
 
         Test ret = new Test(testId, t.getTitle(), t.getGlobalInstructions(), t.getGlobalPoints(), t.getConclusion(), t.getCreationDate(),
                 t.getPublishDate(), t.getSpecialist(), t.getVisibility(), t.getCourse(), t.getInstitution(), newGroups);
+        ret.setGradeOnSubmit(t.isGradeOnSubmit());
 
         // get tags
-        List<Tag> tags = testTagsDAO.getTestTags(t.getId()).stream().map(tt -> tt.getTestTagPK().getTag().clone()).toList();
+        List<Tag> tags = testTagsDAO.getTagsOfTest(t.getId()).stream().map(Tag::clone).toList();
         ret.setTags(tags);
 
+        // only published tests are cached, as the others are still likely to be edited
+        if (t.getPublishDate() != null && !t.getPublishDate().isAfter(LocalDateTime.now()))
+            testsCache.put(testId, ret, cacheVersion);
+
         return ret;
     }
 
+    @Override
+    public boolean testExists(String testId) {
+        return testDAO.existsById(testId);
+    }
+
+    @Override
+    public TestListingDTO getTestListing(String testId) throws NotFoundException {
+        List<TestListingDTO> listings = testDAO.getTestsListingByIds(List.of(testId));
+        if (listings.isEmpty())
+            throw new NotFoundException("Could not get test: there is no test with the given identifier.");
+        return listings.get(0);
+    }
+
     private Test _getTestById(String testId) throws NotFoundException {
         Test t = testDAO.findById(testId).orElse(null);
         if (t == null)
@@ -230,11 +406,11 @@ public class TestsService implements ITestsService {
                     }
 
                     // Else the exercise is a reference to an existing exercise,
-                    // therefore the exercise needs to be duplicated and
-                    // a new reference, containing the id of the duplicate,
-                    // needs to be created.
+                    // therefore the exercise needs to be duplicated, or a test exercise
+                    // with the same content reused, and a new reference, containing
+                    // the id of the test exercise, needs to be created.
                     else if (exe instanceof ReferenceExercise re) {
-                        dupExerciseId = exercisesService.duplicateExerciseById(specialistId, re.getId(), null, Visibility.TEST);
+                        dupExerciseId = exercisesService.getOrDuplicateTestExercise(specialistId, re.getId(), allNewExesIds);
                     } else {
                         break;
                     }
@@ -271,99 +447,168 @@ public class TestsService implements ITestsService {
     @Override
     @Transactional(rollbackFor = ServiceException.class)
     public void deleteTestById(String testId) throws NotFoundException {
+        deleteTestById(testId, false);
+    }
+
+    @Override
+    @Transactional(rollbackFor = ServiceException.class)
+    public void deleteTestById(String testId, boolean background) throws NotFoundException {
         Test test = testDAO.findById(testId).orElse(null);
         if (test == null)
             throw new NotFoundException("Couldn't delete test '" + testId + "': test was not found.");
 
-        // delete test resolutions
-        List<TestResolution> trs = resolutionDAO.getTestResolutions(testId);
-        if (trs != null){
-            for (TestResolution tr: trs){
-                deleteTestResolutionById(tr.getId());
-            }
+        if (background) {
+            // the test is hidden right away, and purged by the DeletedTestsPurger
+            test.setDeletionDate(LocalDateTime.now());
+            testDAO.saveAndFlush(test);
+            // detached, so that it is no longer found through the persistence context
+            entityManager.detach(test);
         }
-
-        deleteTestTags(testId);
-
-        // delete test exercises
-        List<TestGroup> tgs = test.getGroups();
-        for (TestGroup tg: tgs){
-            for (TestExercise exe: tg.getExercises()){
-                exercisesService.deleteExerciseById(exe.getId());
-            }
+        else {
+            // pending changes are written before the rows are deleted. Afterwards, only the entities
+            // of the deleted rows are evicted, the other entities of the transaction stay managed
+            entityManager.flush();
+            List<String> resolutionsIds = bulkDeletionDAO.deleteTestResolutions(testId);
+            BulkDeletionDAO.DeletedExercises exercises = bulkDeletionDAO.deleteTest(testId);
+            _evictDeletedTest(testId, new HashSet<>(resolutionsIds), exercises);
         }
+        testsCache.invalidate(testId);
+    }
 
-        testDAO.delete(test);
+    /**
+     * Detaches, from the persistence context, the entities whose rows were deleted along with a test.
+     * @param testId identifier of the test
+     * @param resolutionsIds identifiers of the deleted test resolutions
+     * @param exercises deleted exercises
+     */
+    private void _evictDeletedTest(String testId, Set<String> resolutionsIds, BulkDeletionDAO.DeletedExercises exercises) {
+        Set<String> exercisesIds = new HashSet<>(exercises.exercisesIds()),
+                    rubricsIds = new HashSet<>(exercises.rubricsIds()),
+                    solutionsIds = new HashSet<>(exercises.solutionsIds());
+        List<Object> deleted = new ArrayList<>();
+        for (Map.Entry<Object, EntityEntry> entry : entityManager.unwrap(SessionImplementor.class).getPersistenceContextInternal().reentrantSafeEntityEntries()) {
+            Object entity = entry.getKey();
+            if ((entity instanceof Test t && testId.equals(t.getId()))
+                    || (entity instanceof TestResolution tr && (testId.equals(tr.getTestId()) || resolutionsIds.contains(tr.getId())))
+                    || (entity instanceof ExerciseResolution er && (resolutionsIds.contains(er.getTestResolutionId()) || exercisesIds.contains(er.getExerciseId())))
+                    || (entity instanceof Exercise e && exercisesIds.contains(e.getId()))
+                    || (entity instanceof ExerciseRubric r && rubricsIds.contains(r.getId()))
+                    || (entity instanceof ExerciseSolution sol && solutionsIds.contains(sol.getId()))
+                    || (entity instanceof TestTag tt && testId.equals(tt.getTestTagPK().getTest().getId()))
+                    || (entity instanceof TestStatistics ts && testId.equals(ts.getTestId()))
+                    || (entity instanceof TestExerciseStatistics tes && testId.equals(tes.getTestExerciseStatisticsPK().getTestId())))
+                deleted.add(entity);
+        }
+        deleted.forEach(entityManager::detach);
     }
 
     @Override
     @Transactional(rollbackFor = ServiceException.class)
     public String duplicateTestById(String specialistId, String testId, Visibility visibility, String courseId) throws BadInputException, NotFoundException {
+        return _duplicateTest(specialistId, testId, visibility, Collections.singletonList(courseId)).get(0);
+    }
+
+    @Override
+    @Transactional(rollbackFor = ServiceException.class)
+    public List<String> duplicateTestIntoCourses(String specialistId, String testId, Visibility visibility, List<String> coursesIds) throws BadInputException, NotFoundException {
+        if (coursesIds == null || coursesIds.isEmpty())
+            throw new BadInputException("Cannot duplicate test: no courses were given.");
+        if (coursesIds.stream().anyMatch(Objects::isNull))
+            throw new BadInputException("Cannot duplicate test: course identifiers cannot be null.");
+        return _duplicateTest(specialistId, testId, visibility, coursesIds);
+    }
+
+    /**
+     * Duplicates a test once for each given course. Exercises that can be shared by the tests of the specialist
+     * are referenced by the copies. The remaining exercises, and their rubrics, solutions and tags, are copied in bulk,
+     * so the number of statements does not grow with the number of exercises or courses.
+     * @param coursesIds identifiers of the courses of the copies. A 'null' identifier means the copy is not associated with a course.
+     * @return identifiers of the copies, in the order of the given courses
+     */
+    private List<String> _duplicateTest(String specialistId, String testId, Visibility visibility, List<String> coursesIds) throws BadInputException, NotFoundException {
         // if test does not exist, a not found exception will be thrown
         // fetch original models
         Test ogTest = _getTestById(testId);
 
-        // Copies the basic information, and sets the visibility
-        Test newTest = new Test(null, ogTest.getTitle(), ogTest.getGlobalInstructions(),
-                                ogTest.getGlobalPoints(), ogTest.getConclusion(),
-                                LocalDateTime.now(), null, null,
-                                visibility != null ? visibility : Visibility.PRIVATE,
-                                null, null, null);
-
         // if specialist does not exist, a not found exception will be thrown
         Specialist specialist = specialistsService.getSpecialistById(specialistId);
-        newTest.setSpecialist(specialist);
 
         // Gets the specialist's institution
         Institution institution = specialist.getInstitution();
-        newTest.setInstitution(institution);
 
-        // Check if course is valid
+        // Check if courses are valid
+        Map<String, Course> courses = new HashMap<>();
         try {
-            if (courseId != null) {
-                // the owner of the test must be associated with the course
-                if (!coursesService.checkSpecialistInCourse(courseId, specialistId))
-                    throw new BadInputException("Cannot duplicate test: specialist does not belong to the given course.");
-                else {
-                    Course course = coursesService.getCourseById(courseId);
-                    newTest.setCourse(course);
+            for (String courseId : coursesIds) {
+                if (courseId != null && !courses.containsKey(courseId)) {
+                    // the owner of the test must be associated with the course
+                    if (!coursesService.checkSpecialistInCourse(courseId, specialistId))
+                        throw new BadInputException("Cannot duplicate test: specialist does not belong to the given course.");
+                    courses.put(courseId, coursesService.getCourseById(courseId));
                 }
             }
         } catch (NotFoundException nfe) {
             throw new BadInputException("Cannot duplicate test: course not found.");
         }
 
-        // duplicate exercises
-        List<TestGroup> tgs = ogTest.getGroups();
-        List<TestGroup> newTGs = new ArrayList<>();
-        for (TestGroup tg: tgs){
-            List<TestExercise> newExes = new ArrayList<>();
-            for (TestExercise exe: tg.getExercises()){
-                // Persisted tests can only contain reference exercises.
-                // Asserts that the retrieved test does not have a concrete exercise
-                assert !(exe instanceof ConcreteExercise);
-                String dupExerciseId = exercisesService.duplicateExerciseById(specialistId, exe.getId(), null, Visibility.TEST);
-                ReferenceExercise newExe = new ReferenceExercise(dupExerciseId, exe.getPoints());
-                newExes.add(newExe);
+        // test exercises of the specialist that can be shared are not copied, the copies of the test reference them
+        Set<String> shareableExercises = exerciseDAO.getShareableTestExercises(
+                ogTest.getGroups().stream().flatMap(tg -> tg.getExercises().stream()).map(TestExercise::getId).toList(),
+                specialistId);
+
+        List<Test> newTests = new ArrayList<>();
+        List<BulkDuplicationDAO.ExerciseCopy> exerciseCopies = new ArrayList<>();
+        for (String courseId : coursesIds) {
+            // Copies the basic information, and sets the visibility
+            Test newTest = new Test(null, ogTest.getTitle(), ogTest.getGlobalInstructions(),
+                                    ogTest.getGlobalPoints(), ogTest.getConclusion(),
+                                    LocalDateTime.now(), null, null,
+                                    visibility != null ? visibility : Visibility.PRIVATE,
+                                    null, null, null);
+            newTest.setSpecialist(specialist);
+            newTest.setInstitution(institution);
+            newTest.setGradeOnSubmit(ogTest.isGradeOnSubmit());
+            newTest.setCourse(courseId != null ? courses.get(courseId) : null);
+
+            // the identifiers of the exercises copies are chosen here,
+            // so that the groups can reference them before the copies are made
+            List<TestGroup> newTGs = new ArrayList<>();
+            for (TestGroup tg: ogTest.getGroups()){
+                List<TestExercise> newExes = new ArrayList<>();
+                for (TestExercise exe: tg.getExercises()){
+                    // Persisted tests can only contain reference exercises.
+                    // Asserts that the retrieved test does not have a concrete exercise
+                    assert !(exe instanceof ConcreteExercise);
+                    String dupExerciseId;
+                    if (shareableExercises.contains(exe.getId()))
+                        dupExerciseId = exe.getId();
+                    else {
+                        dupExerciseId = UUID.randomUUID().toString();
+                        exerciseCopies.add(new BulkDuplicationDAO.ExerciseCopy(exe.getId(), dupExerciseId));
+                    }
+                    newExes.add(new ReferenceExercise(dupExerciseId, exe.getPoints()));
+                }
+                newTGs.add(new TestGroup(tg.getGroupInstructions(), tg.getGroupPoints(), newExes));
             }
-            TestGroup newTG = new TestGroup(tg.getGroupInstructions(), tg.getGroupPoints(), newExes);
-            newTGs.add(newTG);
+            newTest.setGroups(newTGs);
+            newTests.add(newTest);
         }
-        newTest.setGroups(newTGs);
 
-        // persists new test
-        newTest = testDAO.save(newTest);
+        // duplicate exercises. Pending changes need to be flushed,
+        // since the exercises are copied directly in the database.
+        entityManager.flush();
+        int copied = bulkDuplicationDAO.duplicateExercises(exerciseCopies, specialistId,
+                institution != null ? institution.getName() : null, Visibility.TEST);
+        if (copied != exerciseCopies.size())
+            throw new NotFoundException("Cannot duplicate test: some exercises of the test could not be found.");
 
-        List<TestTag> tags = testTagsDAO.getTestTags(testId);
-        for (TestTag tmp: tags){
-            Tag tag = tmp.getTestTagPK().getTag();
-            TestTagPK testTagPK = new TestTagPK(tag, newTest);
-            TestTag testTag = new TestTag(tmp.getNExercises(), testTagPK);
-            testTagsDAO.save(testTag);
-        }
+        // persists new tests. The tests need to be written before their tags.
+        newTests = testDAO.saveAllAndFlush(newTests);
+        List<String> newTestsIds = newTests.stream().map(Test::getId).toList();
+        bulkDuplicationDAO.duplicateTestTags(testId, newTestsIds);
 
         // TODO: future work - duplicate LiveTest and DeliverDateTest properties 
-        return newTest.getId();
+        return newTestsIds;
     }
 
     /**
@@ -383,6 +628,7 @@ public class TestsService implements ITestsService {
         body.setCreationDate(test.getCreationDate());
         body.copyBasicDataTo(test);
         test.verifyProperties();
+        testsCache.invalidate(test.getId());
         testDAO.save(test);
     }
 
@@ -410,17 +656,48 @@ public class TestsService implements ITestsService {
         if(groupExercises == null)
             throw new BadInputException("Couldn't update test: exercise does not belong to the given group.");
 
+        boolean changed = false;
         for(TestExercise te : groupExercises){
             if(te.getId().equals(exerciseId)){
                 float pointsDiff = points - te.getPoints();
                 te.setPoints(points); // update exercise points
                 test.setGlobalPoints(test.getGlobalPoints() + pointsDiff); // update test points
                 group.setGroupPoints(group.getGroupPoints() + pointsDiff); // update group points
+                changed = pointsDiff != 0;
                 break;
             }
         }
 
+        testsCache.invalidate(test.getId());
         testDAO.save(test);
+        // the points of the test decide the bins of the histograms
+        if (changed)
+            _rebuildTestStatistics(test);
+    }
+
+    /**
+     * Computes the statistics of a test again, from its resolutions.
+     * Needed when the points of the test change, since the histograms were filled with the previous points.
+     * @param test test, with its current points
+     */
+    private void _rebuildTestStatistics(Test test) {
+        testStatisticsDAO.deleteTestStatistics(test.getId());
+        exerciseStatisticsDAO.deleteTestExercisesStatistics(test.getId());
+
+        TestStatisticsDelta statistics = new TestStatisticsDelta(test.getId(), TestBlueprint.of(test).getExercisesPoints());
+        Pageable limit = PageRequest.ofSize(STATISTICS_REBUILD_ROWS);
+        Slice<TestResolution> resolutions = resolutionDAO.getFirstTestResolutions(test.getId(), limit);
+        while (true) {
+            for (TestResolution resolution : resolutions) {
+                statistics.add(resolution);
+                entityManager.detach(resolution); // only the points are needed, so the resolutions read are not kept
+            }
+            if (!resolutions.hasNext())
+                break;
+            TestResolution last = resolutions.getContent().get(resolutions.getNumberOfElements() - 1);
+            resolutions = resolutionDAO.getTestResolutionsAfter(test.getId(), last.getStartDate(), last.getId(), limit);
+        }
+        statistics.write(testStatisticsDAO, exerciseStatisticsDAO);
     }
 
     @Override
@@ -430,6 +707,18 @@ public class TestsService implements ITestsService {
         if (test == null)
             throw new NotFoundException("Couldn't update test title: couldn't find test with id '" + testId + "'");
         test.setTitle(title);
+        testsCache.invalidate(test.getId());
+        testDAO.save(test);
+    }
+
+    @Override
+    @Transactional(rollbackFor = ServiceException.class)
+    public void updateTestGradeOnSubmit(String testId, boolean gradeOnSubmit) throws NotFoundException {
+        Test test = testDAO.findById(testId).orElse(null);
+        if (test == null)
+            throw new NotFoundException("Couldn't update test grading mode: couldn't find test with id '" + testId + "'");
+        test.setGradeOnSubmit(gradeOnSubmit);
+        testsCache.invalidate(test.getId());
         testDAO.save(test);
     }
 
@@ -440,6 +729,7 @@ public class TestsService implements ITestsService {
         if (test == null)
             throw new NotFoundException("Couldn't update test global instructions: couldn't find test with id '" + testId + "'");
         test.setGlobalInstructions(globalInstructions);
+        testsCache.invalidate(test.getId());
         testDAO.save(test);
     }
 
@@ -450,6 +740,7 @@ public class TestsService implements ITestsService {
         if (test == null)
             throw new NotFoundException("Couldn't update test conclusion: couldn't find test with id '" + testId + "'");
         test.setConclusion(conclusion);
+        testsCache.invalidate(test.getId());
         testDAO.save(test);
     }
 
@@ -468,6 +759,7 @@ public class TestsService implements ITestsService {
             publishDate = test.getCreationDate();
 
         test.setPublishDate(publishDate);
+        testsCache.invalidate(test.getId());
         testDAO.save(test);
     }
 
@@ -481,6 +773,7 @@ public class TestsService implements ITestsService {
             publishDate = test.getCreationDate();
 
         test.setPublishDate(publishDate);
+        testsCache.invalidate(test.getId());
         testDAO.save(test);
         return test;
     }
@@ -512,6 +805,7 @@ public class TestsService implements ITestsService {
         }
         
         test.setVisibility(visibility);
+        testsCache.invalidate(test.getId());
         testDAO.save(test);
     }
 
@@ -533,6 +827,7 @@ public class TestsService implements ITestsService {
             throw new BadInputException("Couldn't update test course: specialist must belong to course");
 
         test.setCourse(course);
+        testsCache.invalidate(test.getId());
         testDAO.save(test);
     }
 
@@ -567,6 +862,8 @@ public class TestsService implements ITestsService {
                 test.getGroups().stream()
                         .flatMap(g -> g.getExercises().stream())
                         .map(TestExercise::getId).collect(Collectors.toSet());
+        // ids of every exercise used by the test, before and after the update
+        Set<String> testExercisesIds = new HashSet<>(ogExercisesIds);
 
         // check and duplicate exercises
         List<TestGroup> newTGs = new ArrayList<>();
@@ -591,8 +888,9 @@ public class TestsService implements ITestsService {
                         // checks if exercise with the given id already existed in the collection.
                         // if so, the exercise body must be updated.
                         if(ogExercisesIds.contains(tmp.getId())){
-                            exerciseId = exe.getId();
-                            ogExercisesIds.remove(exerciseId);
+                            ogExercisesIds.remove(exe.getId());
+                            // shared exercises are not changed, the test gets its own copy instead
+                            exerciseId = _getOwnTestExercise(test.getId(), specialistId, exe.getId());
                             exercisesService.updateAllOnExercise(exerciseId, tmp, tmp.getRubric(), tmp.getSolution(), tagIds, Visibility.TEST);
                         }else{
                             exerciseId = exercisesService.createExercise(tmp, tmp.getSolution(), tmp.getRubric(), tagIds);
@@ -610,13 +908,14 @@ public class TestsService implements ITestsService {
                             exerciseId = exe.getId();
                             ogExercisesIds.remove(exe.getId());
                         } else {
-                            exerciseId = exercisesService.duplicateExerciseById(specialistId, exe.getId(), null, Visibility.TEST);
+                            exerciseId = exercisesService.getOrDuplicateTestExercise(specialistId, exe.getId(), testExercisesIds);
                             exercisesCollectionChanged = true;
                         }
                     }
                     ReferenceExercise newExe = new ReferenceExercise(exerciseId, exe.getPoints());
                     newExes.add(newExe);
                     allNewExesIds.add(exerciseId);
+                    testExercisesIds.add(exerciseId);
                 }
             }
 
@@ -629,6 +928,7 @@ public class TestsService implements ITestsService {
         // update points
         test.calculatePoints();
 
+        testsCache.invalidate(test.getId());
         test = testDAO.save(test);
 
         // count and create tags if there was an update regarding the exercises
@@ -639,7 +939,7 @@ public class TestsService implements ITestsService {
 
         // delete all exercises that are no longer used
         for(String exId : ogExercisesIds)
-            exercisesService.deleteExerciseById(exId);
+            _deleteTestExercise(test.getId(), exId);
     }
 
     @Transactional(rollbackFor = ServiceException.class)
@@ -661,6 +961,9 @@ public class TestsService implements ITestsService {
         // Set of ids of exercises on the current version of the group.
         // This set is need to delete exercises that are no longer being used.
         Set<String> ogExercisesIds = group.getExercises().stream().map(TestExercise::getId).collect(Collectors.toSet());
+        // ids of every exercise used by the test, before and after the update
+        Set<String> testExercisesIds = tgs.stream().flatMap(g -> g.getExercises().stream())
+                .map(TestExercise::getId).collect(Collectors.toCollection(HashSet::new));
 
         // check and duplicate exercises
         List<String> allNewExesIds = new ArrayList<>();
@@ -682,8 +985,9 @@ public class TestsService implements ITestsService {
                     // checks if exercise with the given id already existed in the collection.
                     // if so, the exercise body must be updated.
                     if(ogExercisesIds.contains(tmp.getId())){
-                        exerciseId = exe.getId();
-                        ogExercisesIds.remove(exerciseId);
+                        ogExercisesIds.remove(exe.getId());
+                        // shared exercises are not changed, the test gets its own copy instead
+                        exerciseId = _getOwnTestExercise(test.getId(), specialistId, exe.getId());
                         exercisesService.updateAllOnExercise(exerciseId, tmp, tmp.getRubric(), tmp.getSolution(), tagIds, Visibility.TEST);
                     }else{
                         exerciseId = exercisesService.createExercise(tmp, tmp.getSolution(), tmp.getRubric(), tagIds);
@@ -701,13 +1005,14 @@ public class TestsService implements ITestsService {
                         exerciseId = exe.getId();
                         ogExercisesIds.remove(exe.getId());
                     } else {
-                        exerciseId = exercisesService.duplicateExerciseById(specialistId, exe.getId(), null, Visibility.TEST);
+                        exerciseId = exercisesService.getOrDuplicateTestExercise(specialistId, exe.getId(), testExercisesIds);
                         exercisesCollectionChanged = true;
                     }
                 }
                 ReferenceExercise newExe = new ReferenceExercise(exerciseId, exe.getPoints());
                 newExes.add(newExe);
                 allNewExesIds.add(exerciseId);
+                testExercisesIds.add(exerciseId);
             }
         }
 
@@ -719,6 +1024,7 @@ public class TestsService implements ITestsService {
         // update points
         test.calculatePoints();
 
+        testsCache.invalidate(test.getId());
         test = testDAO.save(test);
 
         // count and create tags if there was an update regarding the exercises
@@ -729,7 +1035,7 @@ public class TestsService implements ITestsService {
 
         // delete all exercises that are no longer used
         for(String exId : ogExercisesIds)
-            exercisesService.deleteExerciseById(exId);
+            _deleteTestExercise(test.getId(), exId);
     }
 
     @Transactional(rollbackFor = ServiceException.class)
@@ -747,7 +1053,9 @@ public class TestsService implements ITestsService {
             throw new BadInputException("Couldn't update test deliver date: deliver date occurs before publish date");
 
         lt.setDeliverDate(deliverDate);
+        testsCache.invalidate(lt.getId());
         testDAO.save(lt);
+        resolutionDAO.updateOngoingResolutionsDeadline(testId, lt.getResolutionDeadline());
     }
 
     @Transactional(rollbackFor = ServiceException.class)
@@ -765,7 +1073,10 @@ public class TestsService implements ITestsService {
             throw new BadInputException("Couldn't update test start date: test hasn't been published yet");
 
         lt.setStartDate(startDate);
+        testsCache.invalidate(lt.getId());
         testDAO.save(lt);
+        resolutionDAO.updateOngoingResolutionsDeadline(testId, lt.getResolutionDeadline());
+        liveTestClock.reschedule(testId);
     }
 
     @Transactional(rollbackFor = ServiceException.class)
@@ -783,7 +1094,10 @@ public class TestsService implements ITestsService {
             throw new BadInputException("Couldn't update test duration: duration must be positive");
 
         lt.setDuration(duration);
+        testsCache.invalidate(lt.getId());
         testDAO.save(lt);
+        resolutionDAO.updateOngoingResolutionsDeadline(testId, lt.getResolutionDeadline());
+        liveTestClock.reschedule(testId);
     }
 
     @Transactional(rollbackFor = ServiceException.class)
@@ -801,27 +1115,90 @@ public class TestsService implements ITestsService {
             throw new BadInputException("Couldn't update test start tolerance: start tolerance can't be negative");
 
         lt.setStartTolerance(startTolerance);
+        testsCache.invalidate(lt.getId());
         testDAO.save(lt);
+        liveTestClock.reschedule(testId);
     }
 
-    @Transactional(rollbackFor = ServiceException.class)
+    /**
+     * Corrects the resolutions of a test that are not revised yet.
+     * The identifiers of the resolutions are read in chunks, using keyset pagination,
+     * and each chunk is corrected, in parallel, in its own transaction.
+     * Since revised resolutions are skipped, if the correction is interrupted,
+     * issuing it again resumes the correction from the chunks that were not committed.
+     * If invoked inside a transaction, the chunks are corrected sequentially in that transaction.
+     */
     @Override
     public void automaticCorrection(String testId, String correctionType) throws NotFoundException {
+        automaticCorrection(testId, correctionType, CorrectionProgressListener.NONE);
+    }
+
+    @Override
+    public void automaticCorrection(String testId, String correctionType, CorrectionProgressListener listener) throws NotFoundException {
         Test test = testDAO.findById(testId).orElse(null);
         if (test == null)
             throw new NotFoundException("Couldn't evaluate test: couldn't find test with id '" + testId + "'");
 
         // get exercise points
-        Map<String, Float> mapExePoints = new HashMap<>();
-        for (TestGroup tg: test.getGroups()){
-            for (TestExercise exe: tg.getExercises())
-                mapExePoints.put(exe.getId(), exe.getPoints());
+        Map<String, Float> mapExePoints = getTestBlueprint(testId).getExercisesPoints();
+
+        // loads the exercises, rubrics and solutions only once
+        Map<String, Triple<Exercise, ExerciseRubric, ExerciseSolution>> materials = getCorrectionMaterials(mapExePoints.keySet());
+
+        listener.onStart(resolutionDAO.countByTest_IdAndStatusNot(testId, TestResolutionStatus.REVISED));
+
+        boolean inTransaction = TransactionSynchronizationManager.isActualTransactionActive();
+        List<Future<?>> chunks = new ArrayList<>();
+        String lastId = "";
+        List<String> ids;
+        while (!listener.isCancelled() && !(ids = resolutionDAO.getTestResolutionsIdsAfter(testId, TestResolutionStatus.REVISED, lastId, PageRequest.of(0, correctionChunkSize))).isEmpty()) {
+            lastId = ids.get(ids.size() - 1);
+            if (inTransaction)
+                correctTestResolutions(ids, correctionType, mapExePoints, materials, listener);
+            else {
+                List<String> chunk = ids;
+                chunks.add(correctionExecutor.submit(() -> transactionTemplate.executeWithoutResult(status -> {
+                    try {
+                        correctTestResolutions(chunk, correctionType, mapExePoints, materials, listener);
+                    } catch (NotFoundException e) {
+                        throw new CorrectionException(e);
+                    }
+                })));
+            }
+        }
+
+        // waits for every chunk to be corrected
+        NotFoundException notFoundException = null;
+        for (Future<?> chunk : chunks) {
+            try {
+                chunk.get();
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof CorrectionException ce && notFoundException == null)
+                    notFoundException = ce.getCause();
+                else if (!(e.getCause() instanceof CorrectionException))
+                    throw new RuntimeException(e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            }
+        }
+        if (notFoundException != null)
+            throw notFoundException;
+    }
+
+    /**
+     * Used to propagate a NotFoundException from a chunk correction,
+     * and to rollback its transaction.
+     */
+    private static class CorrectionException extends RuntimeException {
+        CorrectionException(NotFoundException cause) {
+            super(cause);
         }
 
-        // automatically correct all tests
-        List<TestResolution> resolutions = resolutionDAO.getTestResolutions(testId);
-        for (TestResolution testResolution : resolutions)
-            _automaticCorrectionSingle(testResolution, correctionType, mapExePoints);
+        @Override
+        public synchronized NotFoundException getCause() {
+            return (NotFoundException) super.getCause();
+        }
     }
 
     @Transactional(rollbackFor = ServiceException.class)
@@ -832,14 +1209,83 @@ public class TestsService implements ITestsService {
             throw new NotFoundException("Couldn't evaluate test: couldn't find test resolution with id '" + testResolutionId + "'");
 
         // get exercise points
-        Test test = _getTestById(resolution.getTestId());
-        Map<String, Float> mapExePoints = new HashMap<>();
-        for (TestGroup tg: test.getGroups()){
-            for (TestExercise exe: tg.getExercises())
-                mapExePoints.put(exe.getId(), exe.getPoints());
+        Map<String, Float> mapExePoints = getTestBlueprint(resolution.getTestId()).getExercisesPoints();
+
+        correctTestResolutions(List.of(testResolutionId), correctionType, mapExePoints, getCorrectionMaterials(mapExePoints.keySet()), CorrectionProgressListener.NONE);
+    }
+
+    /**
+     * Gets the blueprint of a test, from the cache of tests if possible.
+     * @param testId identifier of the test
+     * @return blueprint of the test
+     * @throws NotFoundException if the test does not exist
+     */
+    private TestBlueprint getTestBlueprint(String testId) throws NotFoundException {
+        TestBlueprint blueprint = testsCache.getBlueprint(testId);
+        if (blueprint != null)
+            return blueprint;
+        long cacheVersion = testsCache.version();
+        blueprint = TestBlueprint.of(_getTestById(testId));
+        testsCache.putBlueprint(testId, blueprint, cacheVersion);
+        return blueprint;
+    }
+
+    /**
+     * Loads, for each exercise, everything required to correct its resolutions.
+     * @param exercisesIds identifiers of the exercises
+     * @return map that associates the identifier of an exercise to the exercise, its rubric and its solution.
+     * @throws NotFoundException if any of the exercises does not exist
+     */
+    private Map<String, Triple<Exercise, ExerciseRubric, ExerciseSolution>> getCorrectionMaterials(Collection<String> exercisesIds) throws NotFoundException {
+        Map<String, Triple<Exercise, ExerciseRubric, ExerciseSolution>> materials = new HashMap<>();
+        for (Exercise exercise : exercisesService.getExercisesByIds(exercisesIds).values()) {
+            ExerciseRubric rubric = exercisesService.getExerciseRubric(exercise.getId());
+            if (rubric != null)
+                rubric = (ExerciseRubric) Hibernate.unproxy(rubric);
+            ExerciseSolution solution = exercisesService.getExerciseSolution(exercise.getId());
+            materials.put(exercise.getId(), Triple.of(exercise, rubric, solution));
         }
+        return materials;
+    }
 
-        _automaticCorrectionSingle(resolution, correctionType, mapExePoints);
+    /**
+     * Corrects a chunk of test resolutions. The test resolutions and their exercise resolutions
+     * are loaded with a single query each.
+     * @param testResolutionsIds identifiers of the test resolutions
+     * @param correctionType correction type
+     * @param mapExePoints Maps exercise id to the total points of the exercise.
+     * @param materials Maps exercise id to the exercise, its rubric and its solution.
+     * @param listener receives the progress of the correction
+     */
+    private void correctTestResolutions(List<String> testResolutionsIds, String correctionType, Map<String, Float> mapExePoints,
+                                        Map<String, Triple<Exercise, ExerciseRubric, ExerciseSolution>> materials,
+                                        CorrectionProgressListener listener) throws NotFoundException {
+        List<TestResolution> resolutions = resolutionDAO.findAllById(testResolutionsIds);
+
+        // gets every exercise resolution of the chunk
+        List<String> exeResIds = new ArrayList<>();
+        for (TestResolution resolution : resolutions)
+            for (TestResolutionGroup trg : resolution.getGroups())
+                for (TestExerciseResolutionBasic pair : trg.getResolutions().values())
+                    if (pair != null)
+                        exeResIds.add(pair.getResolutionId());
+        Map<String, ExerciseResolution> exeResolutions = new HashMap<>();
+        for (ExerciseResolution exeRes : exerciseResolutionDAO.findAllById(exeResIds))
+            exeResolutions.put(exeRes.getId(), exeRes);
+
+        if (resolutions.isEmpty())
+            return;
+
+        // the resolutions of a chunk belong to the same test
+        TestStatisticsDelta statistics = new TestStatisticsDelta(resolutions.get(0).getTestId(), mapExePoints);
+        for (TestResolution resolution : resolutions) {
+            statistics.remove(resolution);
+            _automaticCorrectionSingle(resolution, correctionType, mapExePoints, exeResolutions, materials, listener);
+            statistics.add(resolution);
+        }
+        resolutionDAO.saveAll(resolutions);
+        statistics.write(testStatisticsDAO, exerciseStatisticsDAO);
+        listener.onResolutionsCorrected(resolutions.size());
     }
 
     /**
@@ -848,11 +1294,18 @@ public class TestsService implements ITestsService {
      * @param resolution test resolution to be automatically corrected
      * @param correctionType correction type
      * @param mapExePoints Maps exercise id to the total points of the exercise.
+     * @param exeResolutions Maps the identifier of an exercise resolution to the exercise resolution.
+     * @param materials Maps exercise id to the exercise, its rubric and its solution.
+     * @param listener notified when an exercise resolution cannot be corrected
      */
-    private void _automaticCorrectionSingle(TestResolution resolution, String correctionType, Map<String, Float> mapExePoints) throws NotFoundException {
+    private void _automaticCorrectionSingle(TestResolution resolution, String correctionType, Map<String, Float> mapExePoints,
+                                            Map<String, ExerciseResolution> exeResolutions,
+                                            Map<String, Triple<Exercise, ExerciseRubric, ExerciseSolution>> materials,
+                                            CorrectionProgressListener listener) throws NotFoundException {
         assert resolution != null && mapExePoints != null;
 
         boolean isRevised = true;
+        int revisedCount = 0, notRevisedCount = 0;
         List<TestResolutionGroup> groups = resolution.getGroups();
         for (TestResolutionGroup trg : groups) {
             float points = 0.0F;
@@ -863,13 +1316,21 @@ public class TestsService implements ITestsService {
                 TestExerciseResolutionBasic pair = entry.getValue();
 
                 if (pair != null) {
+                    ExerciseResolution exeRes = exeResolutions.get(pair.getResolutionId());
+                    if (exeRes == null)
+                        throw new NotFoundException("Could not correct exercise resolution: resolution does not exist.");
+                    Triple<Exercise, ExerciseRubric, ExerciseSolution> material = materials.get(entry.getKey());
+                    if (material == null)
+                        throw new NotFoundException("Exercise does not exist.");
+
                     Float exeResPercentage = null;
                     try {
-                        exeResPercentage = exercisesService.issueExerciseResolutionCorrection(pair.getResolutionId(), correctionType);
+                        exeResPercentage = exercisesService.issueExerciseResolutionCorrection(exeRes, material.getLeft(), material.getMiddle(), material.getRight(), correctionType);
                     } catch (BadInputException | ForbiddenException e) {
                         // If an exercise can't be corrected, using the chosen correctionType,
                         // it just is not corrected.
                         isRevised = false;
+                        listener.onCorrectionFailure(material.getLeft().getExerciseType());
                     }
 
                     float newPoints;
@@ -878,19 +1339,25 @@ public class TestsService implements ITestsService {
                         pair.setPoints(newPoints);
                         points += newPoints; // updates total points of the group
                     }
+
+                    if (exeRes.getStatus() == ExerciseResolutionStatus.REVISED)
+                        revisedCount++;
+                    else
+                        notRevisedCount++;
                 }
             }
             trg.setGroupPoints(points);
         }
         resolution.setGroups(groups);
         resolution.updateSum();
+        resolution.setRevisedCount(revisedCount);
+        resolution.setNotRevisedCount(notRevisedCount);
 
         // check if everything has been revised
         if (isRevised)
             resolution.setStatus(TestResolutionStatus.REVISED);
         else
             resolution.setStatus(TestResolutionStatus.NOT_REVISED);
-        resolutionDAO.save(resolution);
     }
 
     @Override
@@ -904,6 +1371,37 @@ public class TestsService implements ITestsService {
             return resolutionDAO.countDistinctSubmissionsForTest(testId);
     }
 
+    @Override
+    @Transactional(rollbackFor = ServiceException.class)
+    public TestStatisticsDTO getTestStatistics(String testId) throws NotFoundException {
+        Test test = _getTestById(testId);
+        float testPoints = getTestBlueprint(testId).getTotalPoints();
+
+        TestStatistics testStats = testStatisticsDAO.findById(testId).orElse(null);
+        Map<String, TestExerciseStatistics> exercisesStats = new HashMap<>();
+        for (TestExerciseStatistics exeStats : exerciseStatisticsDAO.getTestExercisesStatistics(testId))
+            exercisesStats.put(exeStats.getTestExerciseStatisticsPK().getExerciseId(), exeStats);
+
+        // exercises without corrected resolutions are also listed, in the order of the test
+        List<TestStatisticsDTO.ExerciseStatisticsDTO> exercises = new ArrayList<>();
+        for (TestGroup tg : test.getGroups()) {
+            for (TestExercise exe : tg.getExercises()) {
+                TestExerciseStatistics exeStats = exercisesStats.get(exe.getId());
+                float maxPoints = exe.getPoints();
+                if (exeStats == null)
+                    exercises.add(new TestStatisticsDTO.ExerciseStatisticsDTO(exe.getId(), maxPoints, 0, 0, 0, 0, new int[PointsSummary.NR_BINS]));
+                else
+                    exercises.add(new TestStatisticsDTO.ExerciseStatisticsDTO(exe.getId(), maxPoints, exeStats.getCount(), exeStats.getAverage(),
+                            exeStats.getStandardDeviation(), maxPoints > 0 ? exeStats.getAverage() / maxPoints : 0, exeStats.getHistogram()));
+            }
+        }
+
+        if (testStats == null)
+            return new TestStatisticsDTO(testId, testPoints, 0, 0, 0, new int[PointsSummary.NR_BINS], exercises);
+        return new TestStatisticsDTO(testId, testPoints, testStats.getCount(), testStats.getAverage(),
+                testStats.getStandardDeviation(), testStats.getHistogram(), exercises);
+    }
+
     @Override
     @Transactional(rollbackFor = ServiceException.class)
     public Page<TestResolution> getTestResolutions(String testId, Integer page, Integer itemsPerPage) throws NotFoundException{
@@ -912,6 +1410,34 @@ public class TestsService implements ITestsService {
         return resolutionDAO.getTestResolutions(testId, PageRequest.of(page, itemsPerPage));
     }
 
+    @Override
+    @Transactional(rollbackFor = ServiceException.class)
+    public CursorPageDTO<TestResolution> getTestResolutions(String testId, String cursor, Integer itemsPerPage, boolean estimateTotal) throws NotFoundException, BadInputException {
+        // the cursor holds the start date and the identifier of the last resolution
+        String[] after = KeysetCursor.decode(cursor, 2);
+        LocalDateTime lastStartDate = null;
+        if (after != null) {
+            try {
+                lastStartDate = LocalDateTime.parse(after[0]);
+            } catch (DateTimeParseException dtpe) {
+                throw new BadInputException("Invalid cursor.");
+            }
+        }
+        if (!testDAO.existsById(testId))
+            throw new NotFoundException("Cannot get test resolutions for test " + testId + ": couldn't find test with given id.");
+
+        Pageable limit = PageRequest.ofSize(itemsPerPage);
+        Slice<TestResolution> resolutions = after == null ? resolutionDAO.getFirstTestResolutions(testId, limit)
+                                                          : resolutionDAO.getTestResolutionsAfter(testId, lastStartDate, after[1], limit);
+        String nextCursor = null;
+        if (resolutions.hasNext()) {
+            TestResolution last = resolutions.getContent().get(resolutions.getNumberOfElements() - 1);
+            nextCursor = KeysetCursor.encode(last.getStartDate(), last.getId());
+        }
+        Long estimatedTotal = estimateTotal ? rowEstimatesDAO.estimateTestResolutions(testId) : null;
+        return new CursorPageDTO<>(resolutions.getContent(), nextCursor, estimatedTotal);
+    }
+
     @Override
     @Transactional(rollbackFor = ServiceException.class)
     public TestResolution getTestResolutionById(String resolutionId) throws NotFoundException{
@@ -943,7 +1469,7 @@ public class TestsService implements ITestsService {
                 student,
                 test,
                 TestResolutionStatus.ONGOING,
-                test.createEmptyResolutionGroups());
+                getTestBlueprint(testId).createEmptyResolutionGroups());
         return createTestResolution(testId, resolution).getId();
     }
 
@@ -958,6 +1484,7 @@ public class TestsService implements ITestsService {
             throw new BadInputException("Cannot create a test resolution with a 'null' body");
 
         resolution.setTest(test);
+        resolution.setDeadline(test.getResolutionDeadline());
         resolution.verifyProperties();
 
         // check time constraints
@@ -1003,9 +1530,13 @@ public class TestsService implements ITestsService {
         student = entityManager.getReference(Student.class, student.getId());
         resolution.setStudent(student);
 
-        TestResolution lastRes = resolutionDAO.getStudentLastResolution(student.getId(), testId);
-        int submissionNr = lastRes != null ? lastRes.getSubmissionNr() + 1 : 1;
-        resolution.setSubmissionNr(submissionNr);
+        resolution.setSubmissionNr(attemptCounterDAO.nextSubmissionNr(student.getId(), testId));
+
+        // the exercise resolutions of a resolution created without them are counted as they are uploaded
+        boolean empty = resolution.getGroups().stream()
+                                  .allMatch(g -> g.getResolutions() == null || g.getResolutions().values().stream().allMatch(Objects::isNull));
+        resolution.setRevisedCount(empty ? 0 : null);
+        resolution.setNotRevisedCount(empty ? 0 : null);
 
         return resolutionDAO.save(resolution);
     }
@@ -1017,6 +1548,14 @@ public class TestsService implements ITestsService {
         if (resolution == null)
             throw new NotFoundException("Couldn't delete resolution: Resolution '" + resolutionId + "'was not found");
 
+        // the statistics of deleted tests are no longer updated
+        Test test = testDAO.findById(resolution.getTestId()).orElse(null);
+        if (test != null) {
+            TestStatisticsDelta statistics = new TestStatisticsDelta(test.getId(), getTestBlueprint(test.getId()).getExercisesPoints());
+            statistics.remove(resolution);
+            statistics.write(testStatisticsDAO, exerciseStatisticsDAO);
+        }
+
         // delete exercise resolutions
         for (TestResolutionGroup trg: resolution.getGroups()){
             for (TestExerciseResolutionBasic exeResPair: trg.getResolutions().values()){
@@ -1034,9 +1573,14 @@ public class TestsService implements ITestsService {
         if (resolution == null)
             throw new NotFoundException("Couldn't update resolution: Resolution '" + testResId + "'was not found");
 
+        // the status decides whether the resolution is counted in the statistics
+        TestStatisticsDelta statistics = new TestStatisticsDelta(resolution.getTestId(), getTestBlueprint(resolution.getTestId()).getExercisesPoints());
+        statistics.remove(resolution);
         resolution.setSubmissionNr(body.getSubmissionNr());
         resolution.setStatus(body.getStatus());
         resolutionDAO.save(resolution);
+        statistics.add(resolution);
+        statistics.write(testStatisticsDAO, exerciseStatisticsDAO);
         _updateTestResolutionStartDate(resolution, body.getStartDate());
         _updateTestResolutionSubmissionDate(resolution, body.getSubmissionDate());
     }
@@ -1138,8 +1682,13 @@ public class TestsService implements ITestsService {
         if (resolution == null)
             throw new NotFoundException("Couldn't update resolution: Resolution '" + testResId + "'was not found");
 
+        // the status decides whether the resolution is counted in the statistics
+        TestStatisticsDelta statistics = new TestStatisticsDelta(resolution.getTestId(), getTestBlueprint(resolution.getTestId()).getExercisesPoints());
+        statistics.remove(resolution);
         resolution.setStatus(status);
         resolutionDAO.save(resolution);
+        statistics.add(resolution);
+        statistics.write(testStatisticsDAO, exerciseStatisticsDAO);
     }
 
 
@@ -1207,14 +1756,7 @@ public class TestsService implements ITestsService {
     public List<TestResolution> getStudentLastResolutions(String testId) throws NotFoundException {
         if (!testDAO.existsById(testId))
             throw new NotFoundException("Cannot get last resolutions for test " + testId + ": couldn't find test with given id.");
-        List<String> studentIds = resolutionDAO.getDistinctStudentsForTest(testId);
-
-        List<TestResolution> resolutions = new ArrayList<>();
-        for (String studentId: studentIds){
-            resolutions.add(_getStudentLastResolution(testId, studentId));
-        }
-
-        return resolutions;
+        return resolutionDAO.getStudentsLastResolutions(testId);
     }
 
     @Override
@@ -1222,13 +1764,16 @@ public class TestsService implements ITestsService {
     public List<TestResolution> getStudentLastResolutionsWithEmails(String testId) throws NotFoundException {
         if (!testDAO.existsById(testId))
             throw new NotFoundException("Cannot get last resolutions for test " + testId + ": couldn't find test with given id.");
-        List<String> studentIds = resolutionDAO.getDistinctStudentsForTest(testId);
+        // the query, declared in TestResolution, returns each resolution along with the email of the student
+        @SuppressWarnings("unchecked")
+        List<Object[]> rows = entityManager.createNamedQuery("TestResolution.getStudentsLastResolutionsWithEmails")
+                                           .setParameter("testId", testId)
+                                           .getResultList();
 
         List<TestResolution> resolutions = new ArrayList<>();
-        for (String studentId: studentIds){
-            TestResolution tr = _getStudentLastResolution(testId, studentId);
-            Student s = studentsService.getStudentById(studentId);
-            Student sWithEmail = new Student(); sWithEmail.setId(s.getEmail());
+        for (Object[] row : rows){
+            TestResolution tr = (TestResolution) row[0];
+            Student sWithEmail = new Student(); sWithEmail.setId((String) row[1]);
             
             TestResolution trWithEmail = new TestResolution(tr.getId(), tr.getStartDate(), tr.getSubmissionDate(), tr.getSubmissionNr(), tr.getTotalPoints(),
                                                             sWithEmail, tr.getTest(), tr.getStatus(), tr.getGroups());
@@ -1239,29 +1784,104 @@ public class TestsService implements ITestsService {
         return resolutions;
     }
 
-    private TestResolution _getStudentLastResolution(String testId, String studentId) throws NotFoundException {
-        List<String> ids = getStudentTestResolutionsIds(testId, studentId);
-        TestResolution res = null;
-    
-        if (ids.isEmpty())
-            throw new NotFoundException("Cannot get student " + studentId + " last resolution for test " + testId + ": couldn't find any resolution.");
-        else {
-            int k;
-            for (k = 0; res == null && k < ids.size(); k++)
-                res = resolutionDAO.findById(ids.get(k)).orElse(null);
+    @Override
+    @Transactional(readOnly = true)
+    public void exportTestResults(String testId, String format, OutputStream outputStream) throws NotFoundException, BadInputException, IOException {
+        if (!"csv".equals(format) && !"ndjson".equals(format))
+            throw new BadInputException("Cannot export test results: format '" + format + "' is not supported.");
+        Test test = testDAO.findById(testId).orElse(null);
+        if (test == null)
+            throw new NotFoundException("Cannot export test results for test " + testId + ": couldn't find test with given id.");
+
+        // identifiers of the exercises of each group, to write the columns in the order of the test
+        List<List<String>> exercisesIds = new ArrayList<>();
+        for (TestGroup group : test.getGroups())
+            exercisesIds.add(group.getExercises().stream().map(TestExercise::getId).toList());
+
+        Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+        boolean csv = "csv".equals(format);
+        if (csv) {
+            writeResultsCsvHeader(writer, exercisesIds);
+            // the header is sent right away, so that the download starts before the resolutions are read
+            writer.flush();
+        }
 
-            if (res == null)
-                throw new NotFoundException("Cannot get student " + studentId + " last resolution for test " + testId + ": error finding resolution in DB.");
-            else {
-                for (int i = k; i < ids.size(); i++){
-                    TestResolution tmp = resolutionDAO.findById(ids.get(i)).orElse(null);
-                    if (tmp != null && res.getSubmissionNr() < tmp.getSubmissionNr())
-                        res = tmp;
-                }
+        int rows = 0;
+        try (Stream<TestResolutionExportDTO> resolutions = resolutionDAO.streamTestResolutionsForExport(testId)) {
+            for (Iterator<TestResolutionExportDTO> it = resolutions.iterator(); it.hasNext(); ) {
+                TestResolutionExportDTO resolution = it.next();
+                if (csv)
+                    writeResultsCsvRow(writer, resolution, exercisesIds);
+                else
+                    writeResultsJsonLine(writer, resolution);
+                if (++rows % EXPORT_FLUSH_ROWS == 0)
+                    writer.flush();
             }
         }
+        writer.flush();
+    }
 
-        return res;
+    private static void writeResultsCsvHeader(Writer writer, List<List<String>> exercisesIds) throws IOException {
+        writer.write("email,submission_nr,status,submission_date,total_points");
+        for (int i = 0; i < exercisesIds.size(); i++) {
+            writer.write(",group_" + (i + 1) + "_points");
+            for (String exerciseId : exercisesIds.get(i))
+                writer.write(",group_" + (i + 1) + "_" + exerciseId);
+        }
+        writer.write("\n");
+    }
+
+    private static void writeResultsCsvRow(Writer writer, TestResolutionExportDTO resolution, List<List<String>> exercisesIds) throws IOException {
+        writer.write(csvField(resolution.getStudentEmail()));
+        writer.write("," + resolution.getSubmissionNr());
+        writer.write("," + csvField(resolution.getStatus()));
+        writer.write("," + csvField(resolution.getSubmissionDate()));
+        writer.write("," + csvField(resolution.getTotalPoints()));
+
+        List<TestResolutionGroup> groups = resolution.getGroups();
+        for (int i = 0; i < exercisesIds.size(); i++) {
+            TestResolutionGroup group = groups != null && i < groups.size() ? groups.get(i) : null;
+            writer.write("," + csvField(group != null ? group.getGroupPoints() : null));
+            for (String exerciseId : exercisesIds.get(i)) {
+                TestExerciseResolutionBasic exeRes = group != null && group.getResolutions() != null ? group.getResolutions().get(exerciseId) : null;
+                writer.write("," + csvField(exeRes != null ? exeRes.getPoints() : null));
+            }
+        }
+        writer.write("\n");
+    }
+
+    private static String csvField(Object value) {
+        if (value == null)
+            return "";
+        String s = value.toString();
+        if (s.contains(",") || s.contains("\"") || s.contains("\n") || s.contains("\r"))
+            return "\"" + s.replace("\"", "\"\"") + "\"";
+        return s;
+    }
+
+    private static void writeResultsJsonLine(Writer writer, TestResolutionExportDTO resolution) throws IOException {
+        List<Map<String, Object>> groups = new ArrayList<>();
+        if (resolution.getGroups() != null) {
+            for (TestResolutionGroup group : resolution.getGroups()) {
+                Map<String, Float> exercisesPoints = new LinkedHashMap<>();
+                if (group.getResolutions() != null)
+                    group.getResolutions().forEach((exerciseId, exeRes) -> exercisesPoints.put(exerciseId, exeRes != null ? exeRes.getPoints() : null));
+                Map<String, Object> groupMap = new LinkedHashMap<>();
+                groupMap.put("points", group.getGroupPoints());
+                groupMap.put("exercises", exercisesPoints);
+                groups.add(groupMap);
+            }
+        }
+
+        Map<String, Object> line = new LinkedHashMap<>();
+        line.put("email", resolution.getStudentEmail());
+        line.put("submissionNr", resolution.getSubmissionNr());
+        line.put("status", resolution.getStatus());
+        line.put("submissionDate", resolution.getSubmissionDate() != null ? resolution.getSubmissionDate().toString() : null);
+        line.put("totalPoints", resolution.getTotalPoints());
+        line.put("groups", groups);
+        writer.write(objectMapper.writeValueAsString(line));
+        writer.write("\n");
     }
 
     @Override
@@ -1299,30 +1919,79 @@ public class TestsService implements ITestsService {
     @Override
     @Transactional(rollbackFor = ServiceException.class)
 	public void manualCorrectionForExercise(String exeResId, String testResId, Float points, String comment) throws NotFoundException, BadInputException {
-        TestResolution updatedTR = getTestResolutionById(testResId);
+        List<Object[]> header = resolutionDAO.getTestResolutionHeader(testResId);
+        if (header.isEmpty())
+            throw new NotFoundException("Could not get test resolution: there is no test resolution with the given identifier.");
+        String testId = (String) header.get(0)[2];
         ExerciseResolution er = exercisesService.getExerciseResolution(exeResId);
-        
-        TestExercise ref = getTestExercise(updatedTR.getTestId(), er.getExerciseId());
-        float refPoints = ref.getPoints();
+        TestBlueprint blueprint = getTestBlueprint(testId);
+
+        TestBlueprint.ExerciseEntry ref = blueprint.getExercise(er.getExerciseId());
+        if (ref == null)
+            throw new NotFoundException("Couldn't manually correct exercise: couldn't find exercise in the test");
+        float refPoints = ref.points();
         if (refPoints < points)
             throw new BadInputException("Could not correct exercise: points attributed are more than the value of the exercise");
 
-        // updating exercise resolution
-        Float oldPoints = er.getPoints();
-        if (oldPoints == null)
-            oldPoints = 0.0F;
-        er.setStatus(ExerciseResolutionStatus.REVISED);
-        er.setPoints(points / refPoints * 100); // convert points to a percentage between 0 and 100
+        // locks the test resolution, and reads only the entry of the exercise, its group and the counters
+        List<Object[]> rows = resolutionDAO.lockExerciseCorrectionEntry(testResId, ref.groupIndex(), er.getExerciseId());
+        if (rows.isEmpty() || !exeResId.equals(rows.get(0)[5])) {
+            // the groups of the resolution do not follow the structure of the test
+            _manualCorrectionScanningGroups(testResId, er, blueprint, points, refPoints, comment);
+            return;
+        }
+        Object[] row = rows.get(0);
+        TestResolutionStatus status = TestResolutionStatus.values()[((Number) row[0]).intValue()];
+        Float oldTotal = row[1] != null ? ((Number) row[1]).floatValue() : null;
+        Integer revisedCount = row[2] != null ? ((Number) row[2]).intValue() : null,
+                notRevisedCount = row[3] != null ? ((Number) row[3]).intValue() : null;
+        Float oldGroupPoints = row[4] != null ? Float.valueOf((String) row[4]) : null,
+              oldPoints = row[6] != null ? Float.valueOf((String) row[6]) : null;
+
+        boolean wasRevised = er.getStatus() == ExerciseResolutionStatus.REVISED;
+        saveManualCorrection(er, points, refPoints, comment);
+
+        // the points of the exercise resolution are a percentage, so the previous points are taken from the test resolution
+        float groupPoints = oldGroupPoints != null ? oldGroupPoints + points - (oldPoints != null ? oldPoints : 0.0F) : points;
+        float totalPoints = (oldTotal != null ? oldTotal : 0.0F) + groupPoints - (oldGroupPoints != null ? oldGroupPoints : 0.0F);
+
+        if (revisedCount == null || notRevisedCount == null || status == TestResolutionStatus.ONGOING) {
+            // unknown counters are computed once, and kept up to date from then on.
+            // The counters of ongoing resolutions are not trusted, since uploads reset exercise resolutions to not revised
+            int[] counts = countExerciseResolutions(testResId);
+            revisedCount = counts[0];
+            notRevisedCount = counts[1];
+        }
+        else if (!wasRevised) {
+            revisedCount++;
+            notRevisedCount = Math.max(0, notRevisedCount - 1);
+        }
 
-        Comment c;
-        if (comment != null){
-            List<Item> items = new ArrayList<>();
-            StringItem si = new StringItem(comment);
-            items.add(si);
-            c = new Comment(items);
-            er.setComment(c);
+        TestResolutionStatus newStatus = isRevised(status, notRevisedCount) ? TestResolutionStatus.REVISED : status;
+        resolutionDAO.setExerciseCorrection(testResId, ref.groupIndex(), er.getExerciseId(), points, groupPoints, totalPoints,
+                                            revisedCount, notRevisedCount, newStatus.ordinal());
+
+        TestStatisticsDelta statistics = new TestStatisticsDelta(testId, blueprint.getExercisesPoints());
+        if (newStatus != status) {
+            // the resolution was not counted before it was revised, so all of its points are added
+            statistics.add(getTestResolutionById(testResId));
         }
-        exerciseResolutionDAO.save(er);
+        else
+            statistics.replace(status, oldTotal, totalPoints, er.getExerciseId(), oldPoints, points);
+        statistics.write(testStatisticsDAO, exerciseStatisticsDAO);
+	}
+
+    /**
+     * Manually corrects an exercise by loading the whole test resolution, and searching every group for the exercise resolution.
+     * Used when the groups of the resolution do not follow the structure of the test.
+     */
+    private void _manualCorrectionScanningGroups(String testResId, ExerciseResolution er, TestBlueprint blueprint,
+                                                 float points, float refPoints, String comment) throws NotFoundException {
+        TestResolution updatedTR = getTestResolutionById(testResId);
+        TestStatisticsDelta statistics = new TestStatisticsDelta(updatedTR.getTestId(), blueprint.getExercisesPoints());
+        statistics.remove(updatedTR);
+
+        saveManualCorrection(er, points, refPoints, comment);
 
         // modifying test resolution
         List<TestResolutionGroup> updatedGroups = updatedTR.getGroups();
@@ -1334,7 +2003,11 @@ public class TestsService implements ITestsService {
             for (Map.Entry<String, TestExerciseResolutionBasic> entry : resMap.entrySet()) {
                 TestExerciseResolutionBasic exeResPair = entry.getValue();
 
-                if (exeResPair != null && exeResPair.getResolutionId().equals(exeResId)) {
+                if (exeResPair != null && exeResPair.getResolutionId().equals(er.getId())) {
+                    // the points of the exercise resolution are a percentage, so the previous points are taken from the test resolution
+                    Float oldPoints = exeResPair.getPoints();
+                    if (oldPoints == null)
+                        oldPoints = 0.0F;
                     if (testResolutionGroup.getGroupPoints() != null)
                         testResolutionGroup.setGroupPoints(testResolutionGroup.getGroupPoints() + points - oldPoints);
                     else
@@ -1351,50 +2024,151 @@ public class TestsService implements ITestsService {
             throw new NotFoundException("Couldn't manually correct exercise: couldn't find exercise in the test");
 
         updatedTR.updateSum();
-        if (isTestResolutionRevised(testResId))
+        int[] counts = countExerciseResolutions(testResId);
+        updatedTR.setRevisedCount(counts[0]);
+        updatedTR.setNotRevisedCount(counts[1]);
+        if (isRevised(updatedTR.getStatus(), updatedTR.getNotRevisedCount()))
             updatedTR.setStatus(TestResolutionStatus.REVISED);
         resolutionDAO.save(updatedTR);
-	}
+        statistics.add(updatedTR);
+        statistics.write(testStatisticsDAO, exerciseStatisticsDAO);
+    }
 
-    private TestExercise getTestExercise(String testId, String exeId) throws NotFoundException {
-        Test test = _getTestById(testId);
-        TestExercise res = null;
-        for (TestGroup tg: test.getGroups()){
-            for (TestExercise exe: tg.getExercises()){
-                if (exe.getId().equals(exeId)){
-                    res = exe;
-                    break;
-                }
-            }
-        }
+    private void saveManualCorrection(ExerciseResolution er, float points, float refPoints, String comment) {
+        er.setStatus(ExerciseResolutionStatus.REVISED);
+        er.setPoints(points / refPoints * 100); // convert points to a percentage between 0 and 100
 
-        return res;
+        Comment c;
+        if (comment != null){
+            List<Item> items = new ArrayList<>();
+            StringItem si = new StringItem(comment);
+            items.add(si);
+            c = new Comment(items);
+            er.setComment(c);
+        }
+        exerciseResolutionDAO.save(er);
     }
 
-    // assumes that the resolution exists
-    private boolean isTestResolutionRevised(String testResId) throws NotFoundException {
-        List<ExerciseResolution> exes = getExerciseResolutionsForTestResolution(testResId);
-
-        boolean revised = true;
-        for (ExerciseResolution er: exes){
-            if (er.getSubmissionNr() != -1){
-                if (er.getStatus().equals(ExerciseResolutionStatus.NOT_REVISED)){
-                    revised = false;
-                    break;
-                }
-            }
+    /**
+     * Counts the exercise resolutions of a test resolution, after flushing the pending corrections.
+     * @return array with the number of revised, and not revised, exercise resolutions
+     */
+    private int[] countExerciseResolutions(String testResId) {
+        exerciseResolutionDAO.flush();
+        int[] counts = new int[2];
+        for (Object[] row : resolutionDAO.countExerciseResolutionsByStatus(testResId)) {
+            int count = ((Number) row[1]).intValue();
+            if (((Number) row[0]).intValue() == ExerciseResolutionStatus.REVISED.ordinal())
+                counts[0] += count;
+            else
+                counts[1] += count;
         }
+        return counts;
+    }
 
-        return revised;
+    // a resolution that is still ongoing is not revised, even if all of its exercises are
+    private static boolean isRevised(TestResolutionStatus status, int notRevisedCount) {
+        return status != TestResolutionStatus.ONGOING && notRevisedCount == 0;
     }
 
     @Override
     @Transactional(rollbackFor = ServiceException.class)
     public String uploadResolution(String testResId, String exeId, ExerciseResolution resolution) throws NotFoundException, BadInputException, ForbiddenException {
-        TestResolution testRes = getTestResolutionById(testResId);
+        List<Object[]> header = resolutionDAO.getTestResolutionHeader(testResId);
+        if (header.isEmpty())
+            throw new NotFoundException("Could not get test resolution: there is no test resolution with the given identifier.");
+        TestResolutionStatus status = (TestResolutionStatus) header.get(0)[0];
+        String studentId = (String) header.get(0)[1],
+               testId = (String) header.get(0)[2];
+        int submissionNr = (Integer) header.get(0)[3];
+
+        if(!status.equals(TestResolutionStatus.ONGOING))
+            throw new ForbiddenException("Could not upload exercise resolution: Test was already submitted.");
+
+        // an older autosave must not overwrite this resolution
+        autosaveBuffer.discard(testResId, exeId);
+
+        // finds the group of the exercise, and then its entry in the test resolution,
+        // without loading the whole document
+        Integer groupIndex = getTestBlueprint(testId).getGroupIndex(exeId);
+        if (groupIndex == null)
+            throw new NotFoundException("Cannot upload resolution for exercise with id '" + exeId + "'' in test resolution with id '" + testResId + "': couldn't find the exercise");
+        List<Object[]> entry = resolutionDAO.getExerciseResolutionEntry(testResId, groupIndex, exeId);
+        if (entry.isEmpty() || !Boolean.TRUE.equals(entry.get(0)[0]))
+            // the groups of the resolution do not follow the structure of the test
+            return _uploadResolutionScanningGroups(testResId, exeId, resolution);
+        String exeResId = (String) entry.get(0)[1];
+        int created = exeResId == null ? 1 : 0;
+
+        // if associated with exercise id there is no info about a resolution,
+        // then an exercise resolution is created. Else, updates the current resolution
+        if (exeResId == null) {
+            resolution = exercisesService.createExerciseResolution(studentId, exeId, resolution.getData(), submissionNr);
+            resolution = associateExerciseResToTestRes(resolution, entityManager.getReference(TestResolution.class, testResId));
+        }
+        else
+            resolution = exercisesService.updateExerciseResolution(exeResId, resolution.getData());
 
-        if(!testRes.getStatus().equals(TestResolutionStatus.ONGOING))
+        // patches only the entry of the exercise
+        TestExerciseResolutionBasic resInfo = new TestExerciseResolutionBasic(resolution.getId(), 0.0f); // TODO - acho que deveria ser null, mas como o Ray meteu a 0.0f noutros sitios, nao quero mudar a logica
+        String resInfoJson;
+        try {
+            resInfoJson = objectMapper.writeValueAsString(resInfo);
+        } catch (JsonProcessingException e) {
+            throw new BadInputException("Could not upload exercise resolution: " + e.getMessage());
+        }
+        if (resolutionDAO.setExerciseResolutionEntry(testResId, groupIndex, exeId, resInfoJson, created, TestResolutionStatus.ONGOING.ordinal()) == 0)
+            throw new ForbiddenException("Could not upload exercise resolution: Test was already submitted.");
+
+        return resolution.getId();
+    }
+
+    @Override
+    @Transactional(rollbackFor = ServiceException.class)
+    public String autosaveResolution(String testResId, String exeId, ExerciseResolution resolution) throws NotFoundException, BadInputException, ForbiddenException {
+        List<Object[]> header = resolutionDAO.getTestResolutionHeader(testResId);
+        if (header.isEmpty())
+            throw new NotFoundException("Could not get test resolution: there is no test resolution with the given identifier.");
+        TestResolutionStatus status = (TestResolutionStatus) header.get(0)[0];
+        String testId = (String) header.get(0)[2];
+
+        if(!status.equals(TestResolutionStatus.ONGOING))
             throw new ForbiddenException("Could not upload exercise resolution: Test was already submitted.");
+        if(resolution == null || resolution.getData() == null)
+            throw new BadInputException("Could not upload exercise resolution: resolution data is null.");
+
+        // checks the resolution data against the exercise of the (cached) test
+        Integer groupIndex = getTestBlueprint(testId).getGroupIndex(exeId);
+        Exercise exercise = null;
+        if (groupIndex != null)
+            for (TestExercise te : getTestById(testId).getGroups().get(groupIndex).getExercises())
+                if (exercise == null && te.getId().equals(exeId) && te instanceof ConcreteExercise ce)
+                    exercise = ce.getExercise();
+        if (exercise == null)
+            throw new NotFoundException("Cannot upload resolution for exercise with id '" + exeId + "'' in test resolution with id '" + testResId + "': couldn't find the exercise");
+        exercise.verifyResolutionProperties(resolution.getData());
+
+        // the identifier of the exercise resolution is known if an autosave is already buffered
+        String exeResId = autosaveBuffer.getBufferedResolutionId(testResId, exeId);
+        if (exeResId == null) {
+            List<Object[]> entry = resolutionDAO.getExerciseResolutionEntry(testResId, groupIndex, exeId);
+            exeResId = !entry.isEmpty() ? (String) entry.get(0)[1] : null;
+        }
+
+        // the first save of an exercise creates its resolution, so it is not buffered
+        if (exeResId == null)
+            return uploadResolution(testResId, exeId, resolution);
+
+        autosaveBuffer.put(testResId, exeId, exeResId, resolution.getData());
+        return exeResId;
+    }
+
+    /**
+     * Uploads a resolution by loading the whole test resolution, and searching every group for the exercise.
+     * Used when the groups of the resolution do not follow the structure of the test.
+     */
+    private String _uploadResolutionScanningGroups(String testResId, String exeId, ExerciseResolution resolution) throws NotFoundException, BadInputException, ForbiddenException {
+        TestResolution testRes = getTestResolutionById(testResId);
 
         boolean found = false;
         String res = null;
@@ -1412,6 +2186,8 @@ public class TestsService implements ITestsService {
                         resolution = associateExerciseResToTestRes(resolution, testRes);
                         resInfo = new TestExerciseResolutionBasic(resolution.getId(), 0.0f); // TODO - acho que deveria ser null, mas como o Ray meteu a 0.0f noutros sitios, nao quero mudar a logica
                         mapExeRes.put(exeId, resInfo); // updates info about the resolution in the map
+                        if (testRes.getNotRevisedCount() != null)
+                            testRes.setNotRevisedCount(testRes.getNotRevisedCount() + 1);
                     }else{
                         // else, updates the current resolution
                         resolution = exercisesService.updateExerciseResolution(resInfo.getResolutionId(), resolution.getData());
@@ -1468,7 +2244,10 @@ public class TestsService implements ITestsService {
             if (exe == null)
                 throw new NotFoundException("Couldn't add exercise to test: couldn't find exercise with id '" + re.getId() + "'");
             
-            dupExeId = exercisesService.duplicateExerciseById(exe.getSpecialistId(), exe.getId(), null, Visibility.TEST);
+            List<String> testExercisesIds = test.getGroups().stream()
+                    .flatMap(tg -> tg.getExercises().stream()).map(TestExercise::getId).toList();
+            // the test exercises are owned by the owner of the test, so they are only shared between their tests
+            dupExeId = exercisesService.getOrDuplicateTestExercise(test.getSpecialistId(), exe.getId(), testExercisesIds);
             exeFinalId = dupExeId;
             points = re.getPoints();
             tagIds = exe.getTags().stream().map(Tag::getId).toList();
@@ -1508,6 +2287,7 @@ public class TestsService implements ITestsService {
         // save test
         test.setGroups(groups);
         test.calculatePoints(); 
+        testsCache.invalidate(test.getId());
         testDAO.save(test);
         return exeFinalId;
     }
@@ -1545,13 +2325,14 @@ public class TestsService implements ITestsService {
         }
         if (found)
             // delete exercise
-            exercisesService.deleteExerciseById(exerciseId);
+            _deleteTestExercise(testId, exerciseId);
         else
             throw new NotFoundException("Couldn't delete exercise from test: couldn't find exercise with id '" + exerciseId + "'");
 
         // save test
         test.setGroups(groups);
         test.calculatePoints(); 
+        testsCache.invalidate(test.getId());
         testDAO.save(test);
     }
 
@@ -1586,18 +2367,48 @@ public class TestsService implements ITestsService {
                 break;
             }
         }
-        if (found)
-            // change visibility to PRIVATE
-            exercisesService.updateExerciseVisibility(exerciseId, Visibility.PRIVATE);
+        if (found) {
+            // change visibility to PRIVATE. If the exercise is shared with other tests,
+            // a private copy is created instead, since the other tests still use the exercise.
+            if (testDAO.isExerciseSharedWithOtherTests(testId, exerciseId))
+                exercisesService.duplicateExerciseById(test.getSpecialistId(), exerciseId, null, Visibility.PRIVATE);
+            else
+                exercisesService.updateExerciseVisibility(exerciseId, Visibility.PRIVATE);
+        }
         else
             throw new NotFoundException("Couldn't delete exercise from test: couldn't find exercise with id '" + exerciseId + "'");
 
         // save test
         test.setGroups(groups);
         test.calculatePoints(); 
+        testsCache.invalidate(test.getId());
         testDAO.save(test);
     }
 
+    /**
+     * Test exercises may be shared by several tests (see {@link IExercisesService#getOrDuplicateTestExercise(String, String, Collection)}).
+     * Before a test changes one of its exercises, the test gets its own copy if the exercise is shared.
+     * @param testId identifier of the test
+     * @param specialistId identifier of the owner of the test
+     * @param exerciseId identifier of the exercise
+     * @return identifier of the exercise that the test can change
+     */
+    private String _getOwnTestExercise(String testId, String specialistId, String exerciseId) throws NotFoundException {
+        if (!testDAO.isExerciseSharedWithOtherTests(testId, exerciseId))
+            return exerciseId;
+        return exercisesService.duplicateExerciseById(specialistId, exerciseId, null, Visibility.TEST);
+    }
+
+    /**
+     * Deletes an exercise that is no longer used by a test, unless it is shared with other tests.
+     * @param testId identifier of the test
+     * @param exerciseId identifier of the exercise
+     */
+    private void _deleteTestExercise(String testId, String exerciseId) throws NotFoundException {
+        if (!testDAO.isExerciseSharedWithOtherTests(testId, exerciseId))
+            exercisesService.deleteExerciseById(exerciseId);
+    }
+
     private void deleteTestTags(String testId){
         List<TestTag> tags = testTagsDAO.getTestTags(testId);
         if (tags != null){
@@ -1634,25 +2445,30 @@ public class TestsService implements ITestsService {
         if (testResolution == null)
             throw new NotFoundException("Could not get exercise resolution: there is no test resolution with the given identifier");
         
-        for (TestResolutionGroup trg: testResolution.getGroups()){
-            for (Map.Entry<String, TestExerciseResolutionBasic> entry: trg.getResolutions().entrySet()){
-                if (exeId.equals(entry.getKey())){
-                    String exeResId = entry.getValue().getResolutionId();
-                    if (exeResId.isEmpty()){
-                        ExerciseResolution exeRes = new ExerciseResolution();
-                        exeRes.setSubmissionNr(-1);
-                        return exeRes;
-                    }
-                    else {
-                        return exercisesService.getExerciseResolution(exeResId);
-                    }
-                }
-            }
+        // the group of the exercise is looked up first. The other groups are only searched
+        // if the groups of the resolution do not follow the structure of the test.
+        List<TestResolutionGroup> groups = testResolution.getGroups();
+        Integer groupIndex = getTestBlueprint(testResolution.getTestId()).getGroupIndex(exeId);
+        if (groupIndex != null && groupIndex < groups.size() && groups.get(groupIndex).getResolutions().containsKey(exeId))
+            return getExerciseResolutionFromEntry(groups.get(groupIndex).getResolutions().get(exeId));
+        for (TestResolutionGroup trg: groups){
+            if (trg.getResolutions().containsKey(exeId))
+                return getExerciseResolutionFromEntry(trg.getResolutions().get(exeId));
         }
 
         throw new NotFoundException("Could not get exercise resolution: there is no exercise in the test with the given identifier");
     }
 
+    private ExerciseResolution getExerciseResolutionFromEntry(TestExerciseResolutionBasic entry) throws NotFoundException {
+        // exercises that were not answered have no resolution
+        if (entry == null || entry.getResolutionId() == null || entry.getResolutionId().isEmpty()){
+            ExerciseResolution exeRes = new ExerciseResolution();
+            exeRes.setSubmissionNr(-1);
+            return exeRes;
+        }
+        return exercisesService.getExerciseResolution(entry.getResolutionId());
+    }
+
     public void submitTestResolution(String testResId) throws NotFoundException, ForbiddenException {
         TestResolution resolution = resolutionDAO.findById(testResId).orElse(null);
         if (resolution == null)
@@ -1661,9 +2477,113 @@ public class TestsService implements ITestsService {
         if(!resolution.getStatus().equals(TestResolutionStatus.ONGOING))
             throw new ForbiddenException("Could not submit test: Test was already submitted.");
 
+        // writes the autosaves that are still buffered, so that they are corrected.
+        // The write bypasses the persistence context, so, inside a transaction, the context is synchronized around it
+        boolean inTransaction = TransactionSynchronizationManager.isActualTransactionActive();
+        if (inTransaction)
+            entityManager.flush();
+        if (autosaveBuffer.flush(testResId) > 0 && inTransaction) {
+            entityManager.clear();
+            resolution = resolutionDAO.findById(testResId).orElseThrow();
+        }
+
         resolution.setSubmissionDate(LocalDateTime.now());
+        // the counters may be outdated by the uploads, so they are counted again when needed
+        resolution.setRevisedCount(null);
+        resolution.setNotRevisedCount(null);
+        Test test = _getTestById(resolution.getTestId());
+        if (!test.isGradeOnSubmit()) {
+            resolutionDAO.save(resolution);
+            automaticCorrectionSingle(testResId, "auto");
+            return;
+        }
+
+        // the resolution is no longer ongoing, so it can't be changed or submitted again while it waits for the correction.
+        // It is counted in the statistics once it is corrected
+        resolution.setStatus(TestResolutionStatus.NOT_REVISED);
+        resolution.setCorrectionPending(true);
         resolutionDAO.save(resolution);
-        automaticCorrectionSingle(testResId, "auto");
+        queueCorrectionOnSubmit(testResId, inTransaction);
+    }
+
+    /**
+     * Queues a submitted resolution, whose correction is pending, to be corrected automatically
+     * by the submissions correction executor, in a transaction of its own.
+     * Inside a transaction, the resolution is only queued once the transaction commits,
+     * so that the correction sees the submission, and a rolled back submission is not corrected.
+     * If the executor rejects the correction, or it fails, the correction stays pending,
+     * and is queued again by {@link #queuePendingCorrections(LocalDateTime, int)}.
+     * @param testResId identifier of the test resolution
+     * @param inTransaction whether there is an active transaction
+     */
+    private void queueCorrectionOnSubmit(String testResId, boolean inTransaction) {
+        Runnable correction = () -> {
+            try {
+                submissionsCorrectionExecutor.execute(() -> correctPendingSubmission(testResId));
+            } catch (TaskRejectedException e) {
+                log.warn("Correction of submitted test resolution '{}' was not queued. It is left pending.", testResId);
+            }
+        };
+
+        if (inTransaction) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    correction.run();
+                }
+            });
+        }
+        else correction.run();
+    }
+
+    /**
+     * Corrects a submitted resolution, if its correction is still pending.
+     * The correction is claimed in the same transaction, so it is done once, even if the resolution was queued twice.
+     * @param testResId identifier of the test resolution
+     */
+    private void correctPendingSubmission(String testResId) {
+        try {
+            newTransaction.executeWithoutResult(status -> {
+                if (resolutionDAO.claimPendingCorrection(testResId) == 0)
+                    return;
+                try {
+                    automaticCorrectionSingle(testResId, "auto");
+                } catch (NotFoundException e) {
+                    throw new CorrectionException(e);
+                }
+            });
+        } catch (RuntimeException e) {
+            log.error("Could not correct submitted test resolution '{}'.", testResId, e);
+        }
+    }
+
+    @Override
+    public List<String> queuePendingCorrections(LocalDateTime submittedBefore, int limit) {
+        List<String> pending = resolutionDAO.getPendingCorrectionsIds(submittedBefore, PageRequest.of(0, limit));
+        for (String testResId : pending)
+            queueCorrectionOnSubmit(testResId, false);
+        return pending;
+    }
+
+    @Override
+    @Transactional(rollbackFor = ServiceException.class)
+    public List<String> closeExpiredTestResolutions(int limit, boolean autoCorrect) {
+        // the resolutions are updated bypassing the persistence context, so the context is synchronized around the update
+        entityManager.flush();
+        List<String> closed = expiredResolutionsDAO.lockExpiredResolutions(LocalDateTime.now(), limit);
+        if (closed.isEmpty())
+            return closed;
+        // the buffered autosaves are only written to ongoing resolutions, so they are flushed before closing them
+        for (String testResId : closed)
+            autosaveBuffer.flush(testResId);
+        expiredResolutionsDAO.closeResolutions(closed, autoCorrect);
+        entityManager.clear();
+
+        // the closed resolutions are not revised, so they are only counted in the statistics once they are corrected
+        if (autoCorrect)
+            for (String testResId : closed)
+                queueCorrectionOnSubmit(testResId, true);
+        return closed;
     }
 
     @Override
@@ -1682,7 +2602,32 @@ public class TestsService implements ITestsService {
         if(tagsIds == null)
             throw new BadInputException("Cannot create auto evaluation test: list of tag identifiers was not provided.");
 
-        List<Exercise> exercises = testDAO.getExercisesForAutoEvalTest(tagsIds,PageRequest.of(0, nrExercises)).toList();
+        // the exercises are sampled from in-memory pools, instead of sorting every candidate in the database.
+        // The pools may be slightly outdated, so exercises that were deleted or are no longer public are skipped,
+        // and replaced by sampling again, until there are enough exercises or the pools run out.
+        List<Exercise> exercises = new ArrayList<>();
+        Set<String> sampled = new HashSet<>();
+        boolean stale = false;
+        while (exercises.size() < nrExercises) {
+            List<String> sampledIds = autoEvalExercisePool.sample(tagsIds, nrExercises - exercises.size(), studentId, sampled);
+            if (sampledIds.isEmpty())
+                break;
+            sampled.addAll(sampledIds);
+            Map<String, Exercise> sampledExercises = new HashMap<>();
+            for (Exercise exercise : exerciseDAO.findAllById(sampledIds))
+                sampledExercises.put(exercise.getId(), exercise);
+            for (String sampledId : sampledIds) {
+                Exercise exercise = sampledExercises.get(sampledId);
+                if (exercise != null && exercise.getVisibility() == Visibility.PUBLIC)
+                    exercises.add(exercise);
+                else
+                    stale = true;
+            }
+        }
+        // the pools are reloaded the next time, instead of skipping the same exercises until they expire
+        if (stale)
+            autoEvalExercisePool.invalidate(tagsIds);
+        autoEvalExercisePool.markSeen(studentId, exercises.stream().map(Exercise::getId).toList());
         List<TestExercise> testExercises = new ArrayList<>();
         float exercisesPoints = 10f;
 
@@ -1691,7 +2636,6 @@ public class TestsService implements ITestsService {
             throw new NotFoundException("Cannot create auto evaluation test: Could not find any exercises with the given tags.");
 
         for(Exercise exercise: exercises){
-            System.out.println(exercise.getId());
             String dupId = exercisesService.duplicateExerciseByIdNoSpecialist(exercise.getId(), Visibility.TEST);
             exercise = exercisesService.getExerciseById(dupId);
             // Any multiple choice exercise that requires any justification
@@ -0,0 +1,221 @@
+package pt.uminho.di.chalktyk.services.caches;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import pt.uminho.di.chalktyk.repositories.TestDAO;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pools of the exercises that can be given in auto evaluation tests, used to sample exercises
+ * without sorting the candidates in the database.
+ * <p>
+ * There is a pool per tag, holding the identifiers of the public multiple choice exercises with the tag.
+ * Pools are loaded when first needed, and reloaded once they are older than the time to live.
+ * The pools of the tags of an exercise are also discarded when the exercise is created, changed or deleted
+ * on this instance, so the time to live bounds how long the changes made on other instances take to be seen.
+ * At most 'max-pools' pools are kept, the least recently used are discarded first.
+ * <p>
+ * Exercises are sampled uniformly from the union of the pools of the requested tags: a pool is chosen with
+ * probability proportional to its size, then an exercise of the pool, which is accepted with probability
+ * 1/m, where m is the number of requested pools that contain it. Each sampled exercise takes a constant
+ * expected number of attempts, as long as most candidates are not excluded.
+ * <p>
+ * The exercises recently given to each student are remembered, and excluded from the next samples.
+ */
+@Component
+public class AutoEvaluationExercisePool {
+    // attempts per requested exercise, before falling back to scanning the candidates
+    private static final int ATTEMPTS_PER_EXERCISE = 32;
+
+    private final TestDAO testDAO;
+    private final long ttlMillis;
+    private final int recentPerStudent;
+    private final int maxStudents;
+    private final int maxPools;
+
+    // access ordered, so the pools of the least requested tags are dropped first
+    private final LinkedHashMap<String, Pool> pools;
+    // access ordered, so the history of the least active students is dropped first
+    private final LinkedHashMap<String, LinkedHashSet<String>> recentlySeen;
+    private final AtomicLong loads = new AtomicLong();
+    private final AtomicLong fallbacks = new AtomicLong();
+
+    public AutoEvaluationExercisePool(TestDAO testDAO,
+                                      @Value("${chalktyk.autoeval.pool-ttl:5m}") Duration ttl,
+                                      @Value("${chalktyk.autoeval.recent-per-student:50}") int recentPerStudent,
+                                      @Value("${chalktyk.autoeval.max-students:10000}") int maxStudents,
+                                      @Value("${chalktyk.autoeval.max-pools:1024}") int maxPools,
+                                      MeterRegistry meterRegistry) {
+        this.testDAO = testDAO;
+        this.ttlMillis = ttl.toMillis();
+        this.recentPerStudent = recentPerStudent;
+        this.maxStudents = maxStudents;
+        this.maxPools = maxPools;
+        this.pools = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Pool> eldest) {
+                return size() > AutoEvaluationExercisePool.this.maxPools;
+            }
+        };
+        this.recentlySeen = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, LinkedHashSet<String>> eldest) {
+                return size() > AutoEvaluationExercisePool.this.maxStudents;
+            }
+        };
+
+        FunctionCounter.builder("chalktyk.autoeval.pool.loads", loads, AtomicLong::get).register(meterRegistry);
+        FunctionCounter.builder("chalktyk.autoeval.pool.fallbacks", fallbacks, AtomicLong::get).register(meterRegistry);
+    }
+
+    /**
+     * Samples distinct exercises, without replacement, for an auto evaluation test.
+     * The exercises recently given to the student are only used if there are not enough other exercises.
+     * @param tagsIds identifiers of the tags. The exercises must have at least one of them.
+     * @param nrExercises number of exercises to sample
+     * @param studentId identifier of the student
+     * @param excluded identifiers of the exercises that must not be sampled, e.g. the ones sampled before that could not be used
+     * @return identifiers of the sampled exercises. Fewer than requested if there are not enough candidates.
+     */
+    public List<String> sample(List<String> tagsIds, int nrExercises, String studentId, Set<String> excluded) {
+        List<Pool> requested = new ArrayList<>();
+        for (String tagId : new HashSet<>(tagsIds))
+            requested.add(getPool(tagId));
+
+        Set<String> seen;
+        synchronized (recentlySeen) {
+            seen = new HashSet<>(recentlySeen.getOrDefault(studentId, new LinkedHashSet<>()));
+        }
+        seen.addAll(excluded);
+
+        Set<String> sampled = new LinkedHashSet<>();
+        sample(requested, nrExercises, seen, sampled);
+        if (sampled.size() < nrExercises) {
+            // not enough unseen exercises, so the seen ones are also used
+            sample(requested, nrExercises, excluded, sampled);
+        }
+        return new ArrayList<>(sampled);
+    }
+
+    /**
+     * Remembers the exercises given to a student, so that they are not sampled again soon.
+     * @param studentId identifier of the student
+     * @param exercisesIds identifiers of the exercises, as returned by {@link #sample(List, int, String, Set)}
+     */
+    public void markSeen(String studentId, Collection<String> exercisesIds) {
+        synchronized (recentlySeen) {
+            LinkedHashSet<String> seen = recentlySeen.computeIfAbsent(studentId, k -> new LinkedHashSet<>());
+            for (String exerciseId : exercisesIds) {
+                // moves the exercise to the end, as the most recent one
+                seen.remove(exerciseId);
+                seen.add(exerciseId);
+            }
+            for (Iterator<String> it = seen.iterator(); seen.size() > recentPerStudent; ) {
+                it.next();
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Discards the pools of the given tags, so that they are reloaded when needed.
+     * Inside a transaction, the pools are discarded again once it commits,
+     * so that a pool reloaded before the commit, without the changes, is not kept.
+     * @param tagsIds identifiers of the tags
+     */
+    public void invalidate(Collection<String> tagsIds) {
+        if (tagsIds.isEmpty())
+            return;
+        List<String> tags = List.copyOf(tagsIds);
+        removePools(tags);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    removePools(tags);
+                }
+            });
+        }
+    }
+
+    private void removePools(List<String> tagsIds) {
+        synchronized (pools) {
+            for (String tagId : tagsIds)
+                pools.remove(tagId);
+        }
+    }
+
+    private void sample(List<Pool> requested, int nrExercises, Set<String> excluded, Set<String> sampled) {
+        int total = requested.stream().mapToInt(p -> p.ids().length).sum();
+        if (total == 0)
+            return;
+
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int attempts = ATTEMPTS_PER_EXERCISE * nrExercises;
+        while (sampled.size() < nrExercises && attempts-- > 0) {
+            // chooses a pool with probability proportional to its size, then an exercise of the pool
+            int index = random.nextInt(total);
+            Pool pool = null;
+            for (Pool p : requested) {
+                if (index < p.ids().length) {
+                    pool = p;
+                    break;
+                }
+                index -= p.ids().length;
+            }
+            String candidate = pool.ids()[index];
+            if (sampled.contains(candidate) || excluded.contains(candidate))
+                continue;
+
+            // exercises in several of the requested pools are accepted less often, so that every exercise is equally likely
+            int multiplicity = 0;
+            for (Pool p : requested)
+                if (p.members().contains(candidate))
+                    multiplicity++;
+            if (multiplicity == 1 || random.nextInt(multiplicity) == 0)
+                sampled.add(candidate);
+        }
+
+        if (sampled.size() < nrExercises) {
+            // most candidates were excluded or already sampled, so the remaining ones are listed and shuffled
+            fallbacks.incrementAndGet();
+            Set<String> remaining = new LinkedHashSet<>();
+            for (Pool p : requested)
+                for (String id : p.ids())
+                    if (!sampled.contains(id) && !excluded.contains(id))
+                        remaining.add(id);
+            List<String> shuffled = new ArrayList<>(remaining);
+            Collections.shuffle(shuffled, random);
+            for (int i = 0; i < shuffled.size() && sampled.size() < nrExercises; i++)
+                sampled.add(shuffled.get(i));
+        }
+    }
+
+    private Pool getPool(String tagId) {
+        long now = System.currentTimeMillis();
+        synchronized (pools) {
+            Pool pool = pools.get(tagId);
+            if (pool != null && now - pool.loadedAt() < ttlMillis)
+                return pool;
+        }
+
+        // loaded outside the lock. Concurrent loads of the same pool are harmless.
+        List<String> ids = testDAO.getAutoEvalCandidatesWithTag(tagId);
+        Pool pool = new Pool(ids.toArray(new String[0]), new HashSet<>(ids), now);
+        loads.incrementAndGet();
+        synchronized (pools) {
+            pools.put(tagId, pool);
+        }
+        return pool;
+    }
+
+    private record Pool(String[] ids, Set<String> members, long loadedAt) {}
+}
@@ -0,0 +1,404 @@
+package pt.uminho.di.chalktyk.services.caches;
+
+import io.hypersistence.utils.hibernate.type.util.ObjectMapperWrapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import pt.uminho.di.chalktyk.models.exercises.ExerciseResolutionData;
+import pt.uminho.di.chalktyk.models.exercises.ExerciseResolutionStatus;
+import pt.uminho.di.chalktyk.models.tests.TestResolutionStatus;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * Write-behind buffer for the autosaves of exercise resolutions done during a test.
+ * <p>
+ * Only the latest data of each (test resolution, exercise) pair is kept, so repeated autosaves
+ * of the same exercise are coalesced into a single write. Buffered resolutions are written in JDBC batches:
+ * periodically, once they have been buffered for longer than the maximum staleness;
+ * when the buffer exceeds the maximum number of bytes; when a test resolution is submitted;
+ * and when the application shuts down.
+ * The lag between an autosave and its write is exposed as a metric ("chalktyk.autosave.*").
+ * <p>
+ * Autosaves being written are kept as in-flight until their write commits. If the write fails, they are put
+ * back in the buffer, unless they were replaced or discarded in the meantime. An exercise is written by one batch
+ * at a time, and flushing a test resolution waits for its in-flight writes, so no older autosave lands after it.
+ */
+@Slf4j
+@Component
+public class ResolutionAutosaveBuffer {
+    // exercise resolutions of test resolutions that are no longer ongoing are not updated
+    private static final String UPDATE_RESOLUTION_DATA =
+            "UPDATE exercise_resolution er SET data = CAST(? AS jsonb), status = ? WHERE er.id = ? " +
+            "AND EXISTS (SELECT 1 FROM test_resolution tr WHERE tr.id = er.test_resolutionid AND tr.status = ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final long maxStalenessMillis;
+    private final long maxBytes;
+    private final long maxWaitMillis;
+
+    // buffered autosaves, by test resolution and then by exercise. Also the lock of the buffer
+    private final Map<String, Map<String, PendingWrite>> pending = new HashMap<>();
+    // autosaves being written, by test resolution
+    private final Map<String, List<InFlightWrite>> inFlight = new HashMap<>();
+    private long bufferedBytes = 0; // UTF-8 bytes of the buffered autosaves
+    private int bufferedEntries = 0;
+
+    private final Counter coalescedCounter;
+    private final Counter writtenCounter;
+    private final Counter restoredCounter;
+    private final Timer flushLagTimer;
+
+    public ResolutionAutosaveBuffer(JdbcTemplate jdbcTemplate,
+                                    @Value("${chalktyk.autosave.max-staleness:5s}") Duration maxStaleness,
+                                    @Value("${chalktyk.autosave.max-buffered-bytes:16777216}") long maxBytes,
+                                    @Value("${chalktyk.autosave.max-flush-wait:10s}") Duration maxWait,
+                                    MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.maxStalenessMillis = maxStaleness.toMillis();
+        this.maxBytes = maxBytes;
+        this.maxWaitMillis = maxWait.toMillis();
+
+        this.coalescedCounter = Counter.builder("chalktyk.autosave.coalesced")
+                .description("Autosaves that replaced a buffered autosave of the same exercise")
+                .register(meterRegistry);
+        this.writtenCounter = Counter.builder("chalktyk.autosave.written")
+                .description("Exercise resolutions written by the autosave buffer")
+                .register(meterRegistry);
+        this.restoredCounter = Counter.builder("chalktyk.autosave.restored")
+                .description("Autosaves put back in the buffer after their write failed")
+                .register(meterRegistry);
+        this.flushLagTimer = Timer.builder("chalktyk.autosave.flush.lag")
+                .description("Time between the first buffered autosave of an exercise and its write")
+                .register(meterRegistry);
+        Gauge.builder("chalktyk.autosave.buffered.bytes", this, ResolutionAutosaveBuffer::getBufferedBytes).register(meterRegistry);
+        Gauge.builder("chalktyk.autosave.buffered.entries", this, ResolutionAutosaveBuffer::getBufferedEntries).register(meterRegistry);
+    }
+
+    /**
+     * Buffers the data of an exercise resolution, replacing any data buffered for the same exercise.
+     * If the buffer exceeds the maximum number of bytes, it is flushed by the calling thread.
+     * @param testResId identifier of the test resolution
+     * @param exeId identifier of the exercise
+     * @param exeResId identifier of the exercise resolution where the data is written to
+     * @param data resolution data
+     */
+    public void put(String testResId, String exeId, String exeResId, ExerciseResolutionData data) {
+        String json = ObjectMapperWrapper.INSTANCE.toString(data);
+        int bytes = json.getBytes(StandardCharsets.UTF_8).length;
+        boolean full;
+        synchronized (pending) {
+            PendingWrite previous = removeBuffered(testResId, exeId);
+            long bufferedSince = System.currentTimeMillis();
+            if (previous != null) {
+                // keeps the time of the first unwritten autosave, so that the staleness is bounded
+                bufferedSince = previous.bufferedSince();
+                coalescedCounter.increment();
+            }
+            addBuffered(new PendingWrite(testResId, exeId, exeResId, json, bytes, bufferedSince));
+            full = bufferedBytes > maxBytes;
+        }
+        if (full)
+            flushAll();
+    }
+
+    /**
+     * @param testResId identifier of the test resolution
+     * @param exeId identifier of the exercise
+     * @return identifier of the exercise resolution of a buffered, or in-flight, autosave, or 'null' if there is none
+     */
+    public String getBufferedResolutionId(String testResId, String exeId) {
+        synchronized (pending) {
+            Map<String, PendingWrite> writes = pending.get(testResId);
+            PendingWrite write = writes != null ? writes.get(exeId) : null;
+            if (write != null)
+                return write.exeResId();
+            InFlightWrite written = getInFlight(testResId, exeId);
+            return written != null ? written.write.exeResId() : null;
+        }
+    }
+
+    /**
+     * Discards the buffered autosave of an exercise. Used when the resolution
+     * is written directly, so that an older autosave does not overwrite it.
+     * Waits for the autosaves of the exercise being written by other transactions.
+     * @param testResId identifier of the test resolution
+     * @param exeId identifier of the exercise
+     */
+    public void discard(String testResId, String exeId) {
+        synchronized (pending) {
+            removeBuffered(testResId, exeId);
+            // the autosaves being written are not put back if their write fails
+            List<InFlightWrite> written = inFlight.get(testResId);
+            if (written != null)
+                for (InFlightWrite w : written)
+                    if (w.write.exeId().equals(exeId))
+                        w.discarded = true;
+            awaitInFlight(testResId, exeId);
+        }
+    }
+
+    /**
+     * Writes the buffered autosaves of a test resolution, after waiting for the autosaves
+     * of the test resolution being written by other transactions.
+     * Joins the active transaction, if there is one.
+     * @param testResId identifier of the test resolution
+     * @return number of autosaves written by this call, or by the writes it waited for
+     */
+    public int flush(String testResId) {
+        List<InFlightWrite> writes;
+        int awaited;
+        synchronized (pending) {
+            awaited = awaitInFlight(testResId, null);
+            writes = startWrites(takeBuffered(testResId, write -> true));
+        }
+        write(writes);
+        return awaited + writes.size();
+    }
+
+    /**
+     * Writes the autosaves that have been buffered for longer than the maximum staleness.
+     */
+    @Scheduled(fixedDelayString = "${chalktyk.autosave.flush-interval:1000}")
+    public void flushStale() {
+        long limit = System.currentTimeMillis() - maxStalenessMillis;
+        List<InFlightWrite> writes;
+        synchronized (pending) {
+            writes = startWrites(takeBuffered(null, write -> write.bufferedSince() <= limit));
+        }
+        write(writes);
+    }
+
+    /**
+     * Writes every buffered autosave. Also called when the application shuts down.
+     * The autosaves of exercises that are being written are kept for the next flush.
+     */
+    @PreDestroy
+    public void flushAll() {
+        List<InFlightWrite> writes;
+        synchronized (pending) {
+            writes = startWrites(takeBuffered(null, write -> true));
+        }
+        write(writes);
+    }
+
+    public long getBufferedBytes() {
+        synchronized (pending) {
+            return bufferedBytes;
+        }
+    }
+
+    public int getBufferedEntries() {
+        synchronized (pending) {
+            return bufferedEntries;
+        }
+    }
+
+    /* **** Auxiliary methods. The methods that read or change the state require the lock of the buffer **** */
+
+    private void addBuffered(PendingWrite write) {
+        pending.computeIfAbsent(write.testResId(), k -> new HashMap<>()).put(write.exeId(), write);
+        bufferedBytes += write.bytes();
+        bufferedEntries++;
+    }
+
+    private PendingWrite removeBuffered(String testResId, String exeId) {
+        Map<String, PendingWrite> writes = pending.get(testResId);
+        if (writes == null)
+            return null;
+        PendingWrite write = writes.remove(exeId);
+        if (writes.isEmpty())
+            pending.remove(testResId);
+        if (write != null) {
+            bufferedBytes -= write.bytes();
+            bufferedEntries--;
+        }
+        return write;
+    }
+
+    /**
+     * Removes from the buffer the autosaves that match a condition, except the ones of
+     * exercises being written, so that the writes of an exercise do not overtake each other.
+     * @param testResId identifier of the test resolution, or 'null' for every test resolution
+     */
+    private List<PendingWrite> takeBuffered(String testResId, Predicate<PendingWrite> condition) {
+        List<PendingWrite> taken = new ArrayList<>();
+        Collection<Map<String, PendingWrite>> testResWrites = testResId == null ? pending.values()
+                : pending.containsKey(testResId) ? List.of(pending.get(testResId)) : List.of();
+        for (Map<String, PendingWrite> writes : testResWrites)
+            for (PendingWrite write : writes.values())
+                if (condition.test(write) && getInFlight(write.testResId(), write.exeId()) == null)
+                    taken.add(write);
+        for (PendingWrite write : taken)
+            removeBuffered(write.testResId(), write.exeId());
+        return taken;
+    }
+
+    private InFlightWrite getInFlight(String testResId, String exeId) {
+        List<InFlightWrite> written = inFlight.get(testResId);
+        if (written != null)
+            for (InFlightWrite w : written)
+                if (w.write.exeId().equals(exeId))
+                    return w;
+        return null;
+    }
+
+    /**
+     * Marks autosaves as in-flight, on behalf of the active transaction, if there is one.
+     */
+    private List<InFlightWrite> startWrites(List<PendingWrite> writes) {
+        Object transaction = currentTransaction();
+        List<InFlightWrite> started = new ArrayList<>(writes.size());
+        for (PendingWrite write : writes) {
+            InFlightWrite w = new InFlightWrite(write, transaction);
+            inFlight.computeIfAbsent(write.testResId(), k -> new ArrayList<>()).add(w);
+            started.add(w);
+        }
+        return started;
+    }
+
+    /**
+     * Waits until no other transaction is writing autosaves of a test resolution.
+     * Writes of the active transaction are not waited for, since they commit with it.
+     * The wait is bounded, since the other transaction may be waiting for a lock held by the active one.
+     * @param testResId identifier of the test resolution
+     * @param exeId identifier of the exercise, or 'null' for every exercise of the test resolution
+     * @return number of autosaves that were being written when the wait started
+     */
+    private int awaitInFlight(String testResId, String exeId) {
+        Object transaction = currentTransaction();
+        long deadline = System.currentTimeMillis() + maxWaitMillis;
+        int awaited = -1;
+        while (true) {
+            int count = 0;
+            for (InFlightWrite w : inFlight.getOrDefault(testResId, List.of()))
+                if ((exeId == null || w.write.exeId().equals(exeId)) && (transaction == null || w.transaction != transaction))
+                    count++;
+            if (awaited < 0)
+                awaited = count;
+            long remaining = deadline - System.currentTimeMillis();
+            if (count == 0)
+                return awaited;
+            if (remaining <= 0) {
+                log.warn("Gave up waiting for {} autosaves of test resolution {} being written.", count, testResId);
+                return awaited;
+            }
+            try {
+                pending.wait(remaining);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return awaited;
+            }
+        }
+    }
+
+    /**
+     * @return token of the active transaction, or 'null' if there is none
+     */
+    private Object currentTransaction() {
+        if (!TransactionSynchronizationManager.isActualTransactionActive() || !TransactionSynchronizationManager.isSynchronizationActive())
+            return null;
+        Object transaction = TransactionSynchronizationManager.getResource(this);
+        if (transaction == null) {
+            Object token = new Object();
+            TransactionSynchronizationManager.bindResource(this, token);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(ResolutionAutosaveBuffer.this);
+                }
+            });
+            transaction = token;
+        }
+        return transaction;
+    }
+
+    /* **** Writes, done without holding the lock of the buffer **** */
+
+    private void write(List<InFlightWrite> writes) {
+        if (writes.isEmpty())
+            return;
+        try {
+            jdbcTemplate.batchUpdate(UPDATE_RESOLUTION_DATA, writes, writes.size(), (ps, w) -> {
+                ps.setString(1, w.write.json());
+                ps.setInt(2, ExerciseResolutionStatus.NOT_REVISED.ordinal());
+                ps.setString(3, w.write.exeResId());
+                ps.setInt(4, TestResolutionStatus.ONGOING.ordinal());
+            });
+        } catch (RuntimeException e) {
+            log.error("Could not write {} autosaved resolutions. They were put back in the buffer.", writes.size(), e);
+            complete(writes, false);
+            throw e;
+        }
+
+        // inside a transaction, the writes are only done once it commits
+        if (writes.get(0).transaction != null) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    complete(writes, status == STATUS_COMMITTED);
+                }
+            });
+        }
+        else complete(writes, true);
+    }
+
+    /**
+     * Ends the writes of autosaves. The autosaves of failed writes are put back in the buffer,
+     * unless a newer autosave of the same exercise was buffered, or the autosave was discarded.
+     */
+    private void complete(List<InFlightWrite> writes, boolean committed) {
+        long now = System.currentTimeMillis();
+        int restored = 0;
+        synchronized (pending) {
+            for (InFlightWrite w : writes) {
+                PendingWrite write = w.write;
+                List<InFlightWrite> written = inFlight.get(write.testResId());
+                if (written != null) {
+                    written.remove(w);
+                    if (written.isEmpty())
+                        inFlight.remove(write.testResId());
+                }
+                if (committed)
+                    flushLagTimer.record(Duration.ofMillis(now - write.bufferedSince()));
+                else if (!w.discarded) {
+                    Map<String, PendingWrite> buffered = pending.get(write.testResId());
+                    if (buffered == null || !buffered.containsKey(write.exeId())) {
+                        addBuffered(write);
+                        restored++;
+                    }
+                }
+            }
+            pending.notifyAll();
+        }
+        if (committed)
+            writtenCounter.increment(writes.size());
+        else
+            restoredCounter.increment(restored);
+    }
+
+    private record PendingWrite(String testResId, String exeId, String exeResId, String json, int bytes, long bufferedSince) {}
+
+    private static class InFlightWrite {
+        private final PendingWrite write;
+        private final Object transaction; // token of the transaction of the write, or 'null' if written outside a transaction
+        private boolean discarded = false; // guarded by the lock of the buffer
+
+        private InFlightWrite(PendingWrite write, Object transaction) {
+            this.write = write;
+            this.transaction = transaction;
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package pt.uminho.di.chalktyk.services.caches;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import pt.uminho.di.chalktyk.models.tests.Test;
+import pt.uminho.di.chalktyk.models.tests.TestBlueprint;
+import pt.uminho.di.chalktyk.models.tests.TestGroup;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Size-bounded, in-memory cache of fully hydrated tests (tests whose groups are composed
+ * by concrete exercises), keyed by test identifier.
+ * Also caches the {@link TestBlueprint} of tests, which, unlike the snapshots, is kept for unpublished tests too.
+ * <p>
+ * Every mutation of a test, or of one of its exercises, must invalidate the respective entry.
+ * Entries are versioned: a snapshot that started being built before an invalidation is not stored,
+ * so a concurrent reader can never reinstate an outdated test.
+ * Hits, misses and evictions are exposed as metrics ("chalktyk.cache.tests.*").
+ */
+@Component
+public class TestSnapshotCache {
+    private final int maxSize;
+    private final LinkedHashMap<String, CachedTest> snapshots;
+    private final LinkedHashMap<String, TestBlueprint> blueprints;
+    // incremented on every invalidation; used as the version of the cache
+    private final AtomicLong version = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public TestSnapshotCache(@Value("${chalktyk.cache.tests.max-size:512}") int maxSize, MeterRegistry meterRegistry) {
+        this.maxSize = maxSize;
+        // access ordered map, so the least recently used test is evicted first
+        this.snapshots = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedTest> eldest) {
+                boolean evict = size() > TestSnapshotCache.this.maxSize;
+                if (evict)
+                    evictions.incrementAndGet();
+                return evict;
+            }
+        };
+
+        this.blueprints = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, TestBlueprint> eldest) {
+                return size() > TestSnapshotCache.this.maxSize;
+            }
+        };
+
+        FunctionCounter.builder("chalktyk.cache.tests.hits", hits, AtomicLong::get).register(meterRegistry);
+        FunctionCounter.builder("chalktyk.cache.tests.misses", misses, AtomicLong::get).register(meterRegistry);
+        FunctionCounter.builder("chalktyk.cache.tests.evictions", evictions, AtomicLong::get).register(meterRegistry);
+        Gauge.builder("chalktyk.cache.tests.size", this, TestSnapshotCache::size).register(meterRegistry);
+    }
+
+    /**
+     * @return current version of the cache. Must be read before building
+     * the snapshot that will be given to {@link #put(String, Test, long)}.
+     */
+    public long version() {
+        return version.get();
+    }
+
+    /**
+     * Gets a copy of the snapshot of a test.
+     * @param testId identifier of the test
+     * @return copy of the snapshot, or 'null' if the test is not cached
+     */
+    public Test get(String testId) {
+        CachedTest cached;
+        synchronized (snapshots) {
+            cached = snapshots.get(testId);
+        }
+        if (cached == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return copyOf(cached.test());
+    }
+
+    /**
+     * Gets the blueprint of a test.
+     * @param testId identifier of the test
+     * @return blueprint of the test, or 'null' if it is not cached
+     */
+    public TestBlueprint getBlueprint(String testId) {
+        TestBlueprint blueprint;
+        synchronized (snapshots) {
+            blueprint = blueprints.get(testId);
+        }
+        if (blueprint == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return blueprint;
+    }
+
+    /**
+     * Stores the blueprint of a test, unless an invalidation happened since the given version was read.
+     * @param testId identifier of the test
+     * @param blueprint blueprint of the test
+     * @param version version of the cache read before the test was loaded
+     */
+    public void putBlueprint(String testId, TestBlueprint blueprint, long version) {
+        synchronized (snapshots) {
+            if (this.version.get() == version)
+                blueprints.put(testId, blueprint);
+        }
+    }
+
+    /**
+     * Stores the snapshot of a test, unless an invalidation happened since the given version was read.
+     * @param testId identifier of the test
+     * @param test fully hydrated test
+     * @param version version of the cache read before the test started being built
+     */
+    public void put(String testId, Test test, long version) {
+        synchronized (snapshots) {
+            if (this.version.get() == version)
+                snapshots.put(testId, new CachedTest(copyOf(test), TestBlueprint.of(test)));
+        }
+    }
+
+    /**
+     * Invalidates the snapshot of a test. If there is an active transaction,
+     * the snapshot is invalidated again after the transaction completes,
+     * so that the state prior to the commit is not cached by concurrent readers.
+     * @param testId identifier of the test
+     */
+    public void invalidate(String testId) {
+        _invalidate(testId);
+        afterTransaction(() -> _invalidate(testId));
+    }
+
+    /**
+     * Invalidates the snapshots of every test that contains the given exercise.
+     * Like {@link #invalidate(String)}, it is repeated after the active transaction completes.
+     * @param exerciseId identifier of the exercise
+     */
+    public void invalidateExercise(String exerciseId) {
+        _invalidateExercise(exerciseId);
+        afterTransaction(() -> _invalidateExercise(exerciseId));
+    }
+
+    public int size() {
+        synchronized (snapshots) {
+            return snapshots.size();
+        }
+    }
+
+    private void _invalidate(String testId) {
+        synchronized (snapshots) {
+            version.incrementAndGet();
+            snapshots.remove(testId);
+            blueprints.remove(testId);
+        }
+    }
+
+    private void _invalidateExercise(String exerciseId) {
+        synchronized (snapshots) {
+            // bumps the version even if no test is found, so that tests being built are not stored
+            version.incrementAndGet();
+            snapshots.values().removeIf(cached -> cached.blueprint().containsExercise(exerciseId));
+        }
+    }
+
+    private static void afterTransaction(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    action.run();
+                }
+            });
+        }
+    }
+
+    private record CachedTest(Test test, TestBlueprint blueprint) {}
+
+    /**
+     * Copies the test and its groups, so that the cached snapshot is never modified by its users.
+     * The exercises are shared, as they are only read.
+     */
+    private static Test copyOf(Test test) {
+        List<TestGroup> groups = null;
+        if (test.getGroups() != null) {
+            groups = new ArrayList<>();
+            for (TestGroup group : test.getGroups())
+                groups.add(new TestGroup(group.getGroupInstructions(), group.getGroupPoints(), new ArrayList<>(group.getExercises())));
+        }
+        Test copy = new Test(test.getId(), test.getTitle(), test.getGlobalInstructions(), test.getGlobalPoints(), test.getConclusion(), test.getCreationDate(),
+                test.getPublishDate(), test.getSpecialist(), test.getVisibility(), test.getCourse(), test.getInstitution(), groups);
+        copy.setGradeOnSubmit(test.isGradeOnSubmit());
+        copy.setTags(new ArrayList<>(test.getTags()));
+        return copy;
+    }
+}
@@ -0,0 +1,87 @@
+package pt.uminho.di.chalktyk.Services;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import pt.uminho.di.chalktyk.repositories.TestDAO;
+import pt.uminho.di.chalktyk.services.caches.AutoEvaluationExercisePool;
+
+import java.time.Duration;
+import java.util.*;
+
+public class AutoEvaluationExercisePoolTest {
+
+    private static TestDAO createTestDAO() {
+        TestDAO testDAO = Mockito.mock(TestDAO.class);
+        Mockito.when(testDAO.getAutoEvalCandidatesWithTag("t1")).thenReturn(List.of("e1", "e2", "e3", "e4"));
+        Mockito.when(testDAO.getAutoEvalCandidatesWithTag("t2")).thenReturn(List.of("e3", "e4", "e5", "e6"));
+        return testDAO;
+    }
+
+    private static AutoEvaluationExercisePool createPool() {
+        return new AutoEvaluationExercisePool(createTestDAO(), Duration.ofMinutes(5), 50, 100, 100, new SimpleMeterRegistry());
+    }
+
+    @Test
+    public void excludesRecentlySeenExercises() {
+        AutoEvaluationExercisePool pool = createPool();
+
+        List<String> first = pool.sample(List.of("t1", "t2"), 3, "s1", Set.of());
+        assert first.size() == 3 && new HashSet<>(first).size() == 3;
+        pool.markSeen("s1", first);
+
+        // the other 3 exercises are the only unseen ones
+        List<String> second = pool.sample(List.of("t1", "t2"), 3, "s1", Set.of());
+        assert Collections.disjoint(first, second);
+        pool.markSeen("s1", second);
+
+        // seen exercises are given when there are not enough unseen ones
+        assert pool.sample(List.of("t1", "t2"), 10, "s1", Set.of()).size() == 6;
+        assert pool.sample(List.of("t1"), 2, "s2", Set.of()).stream().allMatch(id -> List.of("e1", "e2", "e3", "e4").contains(id));
+    }
+
+    @Test
+    public void samplesUniformly() {
+        AutoEvaluationExercisePool pool = createPool();
+
+        // e3 and e4 are in both pools, but must not be sampled more often than the others
+        Map<String, Integer> counts = new HashMap<>();
+        int draws = 60000;
+        for (int i = 0; i < draws; i++)
+            counts.merge(pool.sample(List.of("t1", "t2"), 1, "s1", Set.of()).get(0), 1, Integer::sum);
+
+        assert counts.size() == 6;
+        for (int count : counts.values())
+            assert Math.abs(count - draws / 6.0) < draws * 0.02;
+    }
+
+    @Test
+    public void neverSamplesExcludedExercises() {
+        AutoEvaluationExercisePool pool = createPool();
+        pool.markSeen("s1", List.of("e1", "e2"));
+
+        // excluded exercises are not given even when there are not enough other exercises
+        List<String> sampled = pool.sample(List.of("t1"), 4, "s1", Set.of("e3", "e4"));
+        assert new HashSet<>(sampled).equals(Set.of("e1", "e2"));
+        assert pool.sample(List.of("t1"), 4, "s1", Set.of("e1", "e2", "e3", "e4")).isEmpty();
+    }
+
+    @Test
+    public void reloadsInvalidatedAndEvictedPools() {
+        TestDAO testDAO = createTestDAO();
+        AutoEvaluationExercisePool pool = new AutoEvaluationExercisePool(testDAO, Duration.ofMinutes(5), 50, 100, 1, new SimpleMeterRegistry());
+
+        pool.sample(List.of("t1"), 1, "s1", Set.of());
+        pool.sample(List.of("t1"), 1, "s1", Set.of());
+        Mockito.verify(testDAO, Mockito.times(1)).getAutoEvalCandidatesWithTag("t1");
+
+        pool.invalidate(List.of("t1"));
+        pool.sample(List.of("t1"), 1, "s1", Set.of());
+        Mockito.verify(testDAO, Mockito.times(2)).getAutoEvalCandidatesWithTag("t1");
+
+        // only one pool is kept, so loading the pool of 't2' evicts the pool of 't1'
+        pool.sample(List.of("t2"), 1, "s1", Set.of());
+        pool.sample(List.of("t1"), 1, "s1", Set.of());
+        Mockito.verify(testDAO, Mockito.times(3)).getAutoEvalCandidatesWithTag("t1");
+    }
+}
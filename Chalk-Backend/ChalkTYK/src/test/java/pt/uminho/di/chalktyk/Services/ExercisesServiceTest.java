@@ -1,10 +1,12 @@
 package pt.uminho.di.chalktyk.Services;
 import jakarta.persistence.EntityManager;
+import org.hibernate.Hibernate;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.transaction.annotation.Transactional;
+import pt.uminho.di.chalktyk.dtos.CursorPageDTO;
 import pt.uminho.di.chalktyk.models.courses.Course;
 import pt.uminho.di.chalktyk.models.exercises.*;
 import pt.uminho.di.chalktyk.models.exercises.chat.ChatExercise;
@@ -695,6 +697,16 @@ public class ExercisesServiceTest {
         assert pairsOfStudentAndResolutions.size() == 1;
         assert pairsOfStudentAndResolutions.get(0).getRight().getId().equals(er2.getId());
 
+        // same listings, with a cursor
+        var cursorPage = exercisesService.getExerciseResolutions(exerciseId, "", 1, false, false, false);
+        assert cursorPage.getItems().get(0).getRight().getId().equals(er1Id);
+        cursorPage = exercisesService.getExerciseResolutions(exerciseId, cursorPage.getNextCursor(), 1, false, false, false);
+        assert cursorPage.getItems().get(0).getRight().getId().equals(er2Id);
+        assert cursorPage.getNextCursor() == null;
+        cursorPage = exercisesService.getExerciseResolutions(exerciseId, "", 5, true, false, false);
+        assert cursorPage.getItems().size() == 1 && cursorPage.getItems().get(0).getRight().getId().equals(er2Id);
+        assert cursorPage.getNextCursor() == null;
+
         assert exercisesService.countExerciseResolutionsByStudent(exerciseId, studentId) == 2;
 
         // check that the id of the last resolution of the student for the exercise
@@ -707,8 +719,13 @@ public class ExercisesServiceTest {
         assertEquals(2,exerciseResolution.getSubmissionNr());
         assertEquals(ExerciseResolutionStatus.NOT_REVISED,exerciseResolution.getStatus());
 
-        // issues automatic correction of the exercise
+        // issues automatic correction of the exercise.
+        // Only the corrected resolutions are detached, the other entities of the transaction stay managed
+        Exercise managedExercise = entityManager.find(Exercise.class, exerciseId);
+        assert entityManager.contains(exerciseResolution);
         exercisesService.issueExerciseResolutionsCorrection(exerciseId,"auto");
+        assert !entityManager.contains(exerciseResolution);
+        assert entityManager.contains(managedExercise);
         exerciseResolution = exercisesService.getLastExerciseResolutionByStudent(exerciseId,studentId);
         assert exerciseResolution.getId().equals(er2Id);
         assertFalse(rightMC.equals(exerciseResolution.getData()));
@@ -721,6 +738,70 @@ public class ExercisesServiceTest {
         assertEquals(0.0f, exerciseResolution.getPoints());
     }
 
+    @Test
+    public void compiledGraderRejectsOtherResolutionTypes() {
+        ResolutionGrader grader = createMCExercise(specialistId, courseId).compileAutomaticEvaluation(createMCSolution(), createMCRubric());
+        ExerciseResolution resolution = new ExerciseResolution();
+        resolution.setData(new OpenAnswerData("not a multiple choice answer"));
+        assertThrows(ForbiddenException.class, () -> grader.grade(resolution));
+    }
+
+    @Test
+    public void autoCorrectManyResolutions() throws BadInputException, NotFoundException, ForbiddenException {
+        String exerciseId = exercisesService.createExercise(createMCExercise(specialistId,courseId),createMCSolution(),createMCRubric(), new ArrayList<>());
+        List<String> rightIds = new ArrayList<>(), wrongIds = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            rightIds.add(exercisesService.createExerciseResolution(studentId, exerciseId, createRightMCResolution()).getId());
+            wrongIds.add(exercisesService.createExerciseResolution(student2Id, exerciseId, createWrongMCResolution()).getId());
+        }
+        // resolutions graded with points between 0 and 100, and with unanswered items
+        HashMap<String, MultipleChoiceResolutionItem> partialItems = new HashMap<>();
+        partialItems.put("2", new MultipleChoiceResolutionItem(0.0F, null, true));
+        List<ExerciseResolutionData> otherData = List.of(createHalfWrongMCResolution(), new MultipleChoiceData(partialItems));
+        List<String> otherIds = new ArrayList<>();
+        for (ExerciseResolutionData data : otherData)
+            otherIds.add(exercisesService.createExerciseResolution(studentId, exerciseId, data.clone()).getId());
+
+        // every resolution is corrected, even as the corrected ones stop being 'not revised'
+        long[] progress = new long[2];
+        exercisesService.issueExerciseResolutionsCorrection(exerciseId, "auto", new CorrectionProgressListener() {
+            @Override
+            public void onStart(long totalResolutions) { progress[0] = totalResolutions; }
+            @Override
+            public void onResolutionsCorrected(int count) { progress[1] += count; }
+        });
+        assertEquals(14, progress[0]);
+        assertEquals(14, progress[1]);
+        assertEquals(0, exercisesService.getExerciseResolutions(exerciseId, 0, 20, false, true).getTotalElements());
+        for (String id : rightIds) {
+            ExerciseResolution res = exercisesService.getExerciseResolution(id);
+            assertEquals(ExerciseResolutionStatus.REVISED, res.getStatus());
+            assertEquals(100f, res.getPoints());
+        }
+        for (String id : wrongIds)
+            assertEquals(0f, exercisesService.getExerciseResolution(id).getPoints());
+
+        // the bulk correction grades as the correction of a single resolution
+        Exercise exercise = exercisesService.getExerciseById(exerciseId);
+        ExerciseSolution solution = exercisesService.getExerciseSolution(exerciseId);
+        ExerciseRubric rubric = (ExerciseRubric) Hibernate.unproxy(exercisesService.getExerciseRubric(exerciseId));
+        for (int i = 0; i < otherIds.size(); i++) {
+            ExerciseResolution expected = new ExerciseResolution();
+            expected.setData(otherData.get(i).clone());
+            exercise.automaticEvaluation(expected, solution, rubric);
+            ExerciseResolution res = exercisesService.getExerciseResolution(otherIds.get(i));
+            assertEquals(expected.getPoints(), res.getPoints());
+            // compared by value, as jsonb does not keep the sign of a zero
+            Map<String, MultipleChoiceResolutionItem> expectedItems = ((MultipleChoiceData) expected.getData()).getItems(),
+                                                      items = ((MultipleChoiceData) res.getData()).getItems();
+            assertEquals(expectedItems.keySet(), items.keySet());
+            for (String id : expectedItems.keySet()) {
+                assertEquals(expectedItems.get(id).getValue(), items.get(id).getValue());
+                assertEquals(expectedItems.get(id).getPoints(), items.get(id).getPoints(), 0f);
+            }
+        }
+    }
+
     @Test
     public void createResolutionAndManuallyCorrect() throws BadInputException, NotFoundException, ForbiddenException {
         ExerciseSolution exerciseSolution = createMCSolution();
@@ -835,6 +916,75 @@ public class ExercisesServiceTest {
         assert list.size() == 2 && list.containsAll(List.of(exercise1Id, exercise4Id));
     }
 
+    @Test
+    public void testSearchExercises() throws BadInputException, NotFoundException {
+        Tag tag1 = tagsService.createTag("tag1","/");
+        Exercise exercise1 = createOAExercise(specialistId, courseId),
+                 exercise2 = createMCExercise(specialist2Id, course2Id),
+                 exercise3 = createFTBExercise(specialistId, null),
+                 exercise4 = createOA2Exercise(specialist2Id, course2Id);
+        exercise4.setVisibility(Visibility.COURSE);
+        String exercise1Id = exercisesService.createExercise(exercise1, null, null, List.of(tag1.getId()));
+        String exercise2Id = exercisesService.createExercise(exercise2, null, null, List.of());
+        String exercise3Id = exercisesService.createExercise(exercise3, null, null, List.of(tag1.getId()));
+        String exercise4Id = exercisesService.createExercise(exercise4, null, null, List.of());
+        // the search is made with sql, so the exercises are written first
+        entityManager.flush();
+
+        // words of the statement. ex1 and ex2 should be received
+        List<String> list = exercisesService.searchExercises("biblioteca", 0, 10, null, false, null, null, null, null, null, null, false)
+                                            .stream().map(Exercise::getId).toList();
+        assert list.size() == 2 && list.containsAll(List.of(exercise1Id, exercise2Id));
+
+        // words of the title and statement. ex3 should be received
+        list = exercisesService.searchExercises("patinhos música", 0, 10, null, false, null, null, null, null, null, null, false)
+                               .stream().map(Exercise::getId).toList();
+        assert list.equals(List.of(exercise3Id));
+
+        // fragment of the title. ex3 should be received
+        list = exercisesService.searchExercises("atinhos sab", 0, 10, null, false, null, null, null, null, null, null, false)
+                               .stream().map(Exercise::getId).toList();
+        assert list.equals(List.of(exercise3Id));
+
+        // the filters of the listing still apply. ex1 and ex4 are of type 'OA', but only ex1 has tag1
+        list = exercisesService.searchExercises("Pregunta", 0, 10, null, false, null, null, null, null, null, "OA", false)
+                               .stream().map(Exercise::getId).toList();
+        assert list.size() == 2 && list.containsAll(List.of(exercise1Id, exercise4Id));
+        list = exercisesService.searchExercises("Pregunta", 0, 10, List.of(tag1.getId()), false, null, null, null, null, null, "OA", false)
+                               .stream().map(Exercise::getId).toList();
+        assert list.equals(List.of(exercise1Id));
+
+        // wildcards are searched literally
+        assert exercisesService.searchExercises("%", 0, 10, null, false, null, null, null, null, null, null, false).isEmpty();
+        try {
+            exercisesService.searchExercises(" ", 0, 10, null, false, null, null, null, null, null, null, false);
+            assert false;
+        } catch (BadInputException e) {
+            assert true;
+        }
+    }
+
+    @Test
+    public void testGetExercisesWithCursor() throws BadInputException, NotFoundException {
+        List<String> exercisesIds = new ArrayList<>();
+        exercisesIds.add(exercisesService.createExercise(createOAExercise(specialistId, courseId), null, null, List.of()));
+        exercisesIds.add(exercisesService.createExercise(createMCExercise(specialistId, courseId), null, null, List.of()));
+        exercisesIds.add(exercisesService.createExercise(createFTBExercise(specialistId, courseId), null, null, List.of()));
+        exercisesService.createExercise(createOA2Exercise(specialist2Id, course2Id), null, null, List.of());
+        Collections.sort(exercisesIds);
+        // the estimate is made with sql, so the exercises are written first
+        entityManager.flush();
+
+        CursorPageDTO<Exercise> page = exercisesService.getExercises("", 2, true, null, false, null, null, null, specialistId, null, null, false);
+        List<String> listed = new ArrayList<>(page.getItems().stream().map(Exercise::getId).toList());
+        assert page.getNextCursor() != null;
+        assert page.getEstimatedTotal() != null;
+        page = exercisesService.getExercises(page.getNextCursor(), 2, false, null, false, null, null, null, specialistId, null, null, false);
+        listed.addAll(page.getItems().stream().map(Exercise::getId).toList());
+        assert page.getNextCursor() == null;
+        assert listed.equals(exercisesIds);
+    }
+
     @Test
     public void testCountTags() throws BadInputException {
         Tag tag1 = tagsService.createTag("tag1", "/"),
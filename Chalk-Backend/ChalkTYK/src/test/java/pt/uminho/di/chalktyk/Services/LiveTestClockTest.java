@@ -0,0 +1,60 @@
+package pt.uminho.di.chalktyk.Services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import pt.uminho.di.chalktyk.models.tests.LiveTest;
+import pt.uminho.di.chalktyk.repositories.TestDAO;
+import pt.uminho.di.chalktyk.services.LiveTestClock;
+import pt.uminho.di.chalktyk.services.exceptions.BadInputException;
+import pt.uminho.di.chalktyk.services.exceptions.NotFoundException;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+public class LiveTestClockTest {
+
+    private static LiveTest createLiveTest(LocalDateTime startDate, long duration) {
+        LiveTest test = new LiveTest();
+        test.setStartDate(startDate);
+        test.setStartTolerance(1);
+        test.setDuration(duration);
+        return test;
+    }
+
+    @Test
+    public void clockEndsWithTheTest() throws NotFoundException, BadInputException, InterruptedException {
+        TestDAO testDAO = Mockito.mock(TestDAO.class);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        LiveTestClock clock = new LiveTestClock(testDAO, new ObjectMapper().findAndRegisterModules(), 1,
+                Duration.ofSeconds(30), Duration.ofMinutes(30), registry);
+        Mockito.when(testDAO.getLiveTest("t1")).thenReturn(createLiveTest(LocalDateTime.now(), 2));
+        Mockito.when(testDAO.getLiveTest("t2")).thenReturn(createLiveTest(LocalDateTime.now().minusHours(1), 60));
+        Mockito.when(testDAO.existsById("t3")).thenReturn(true);
+
+        // clients of the same test share its clock
+        clock.subscribe("t1");
+        clock.subscribe("t1");
+        assert registry.get("chalktyk.tests.live-clock.clocks").gauge().value() == 1;
+        assert registry.get("chalktyk.tests.live-clock.connections").gauge().value() == 2;
+        Mockito.verify(testDAO, Mockito.times(1)).getLiveTest("t1");
+
+        // tests that already ended have no clock
+        clock.subscribe("t2");
+        assert registry.get("chalktyk.tests.live-clock.clocks").gauge().value() == 1;
+
+        try {
+            clock.subscribe("t3");
+            assert false;
+        } catch (BadInputException e) {
+            assert true;
+        }
+
+        // the clock is removed, and its clients disconnected, when the test ends
+        Thread.sleep(2500);
+        assert registry.get("chalktyk.tests.live-clock.clocks").gauge().value() == 0;
+        assert registry.get("chalktyk.tests.live-clock.connections").gauge().value() == 0;
+        clock.shutdown();
+    }
+}
@@ -0,0 +1,103 @@
+package pt.uminho.di.chalktyk.Services;
+
+import io.hypersistence.utils.hibernate.type.util.ObjectMapperWrapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import pt.uminho.di.chalktyk.models.exercises.open_answer.OpenAnswerData;
+import pt.uminho.di.chalktyk.services.caches.ResolutionAutosaveBuffer;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ResolutionAutosaveBufferTest {
+
+    /**
+     * Database that fails the writes while 'failing' is set, and blocks them while 'blocked' is not released.
+     */
+    private static class FakeJdbcTemplate extends JdbcTemplate {
+        volatile boolean failing = false;
+        volatile CountDownLatch blocked = new CountDownLatch(0);
+        final CountDownLatch writing = new CountDownLatch(1);
+        volatile int written = 0;
+
+        @Override
+        public <T> int[][] batchUpdate(String sql, Collection<T> batchArgs, int batchSize, ParameterizedPreparedStatementSetter<T> pss) {
+            writing.countDown();
+            try {
+                blocked.await();
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+            if (failing)
+                throw new DataAccessResourceFailureException("database is down");
+            written += batchArgs.size();
+            return new int[0][];
+        }
+    }
+
+    private static ResolutionAutosaveBuffer createBuffer(FakeJdbcTemplate jdbcTemplate, Duration maxStaleness) {
+        return new ResolutionAutosaveBuffer(jdbcTemplate, maxStaleness, 1 << 20, Duration.ofSeconds(10), new SimpleMeterRegistry());
+    }
+
+    @Test
+    public void failedWritesArePutBack() {
+        FakeJdbcTemplate jdbcTemplate = new FakeJdbcTemplate();
+        ResolutionAutosaveBuffer buffer = createBuffer(jdbcTemplate, Duration.ofMinutes(1));
+        buffer.put("tr1", "e1", "er1", new OpenAnswerData("first"));
+        buffer.put("tr1", "e2", "er2", new OpenAnswerData("second"));
+
+        jdbcTemplate.failing = true;
+        assertThrows(DataAccessResourceFailureException.class, () -> buffer.flush("tr1"));
+        assertEquals(2, buffer.getBufferedEntries());
+        assertEquals("er1", buffer.getBufferedResolutionId("tr1", "e1"));
+
+        // a discarded autosave is not written
+        buffer.discard("tr1", "e2");
+        jdbcTemplate.failing = false;
+        assertEquals(1, buffer.flush("tr1"));
+        assertEquals(1, jdbcTemplate.written);
+        assertEquals(0, buffer.getBufferedEntries());
+        assertEquals(0, buffer.getBufferedBytes());
+    }
+
+    @Test
+    public void bufferedBytesAreUtf8Bytes() {
+        ResolutionAutosaveBuffer buffer = createBuffer(new FakeJdbcTemplate(), Duration.ofMinutes(1));
+        buffer.put("tr1", "e1", "er1", new OpenAnswerData("ação"));
+        String json = ObjectMapperWrapper.INSTANCE.toString(new OpenAnswerData("ação"));
+        assertEquals(json.getBytes(StandardCharsets.UTF_8).length, buffer.getBufferedBytes());
+        assertTrue(buffer.getBufferedBytes() > json.length());
+    }
+
+    @Test
+    public void flushWaitsForTheWritesInFlight() throws Exception {
+        FakeJdbcTemplate jdbcTemplate = new FakeJdbcTemplate();
+        ResolutionAutosaveBuffer buffer = createBuffer(jdbcTemplate, Duration.ZERO);
+        buffer.put("tr1", "e1", "er1", new OpenAnswerData("answer"));
+
+        // a periodic flush is writing the autosave
+        CountDownLatch release = new CountDownLatch(1);
+        jdbcTemplate.blocked = release;
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            executor.submit(buffer::flushStale);
+            assertTrue(jdbcTemplate.writing.await(5, TimeUnit.SECONDS));
+
+            // the flush of the test resolution returns only after that write
+            Future<Integer> flush = executor.submit(() -> buffer.flush("tr1"));
+            assertThrows(TimeoutException.class, () -> flush.get(300, TimeUnit.MILLISECONDS));
+            release.countDown();
+            assertEquals(1, flush.get(5, TimeUnit.SECONDS));
+            assertEquals(1, jdbcTemplate.written);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
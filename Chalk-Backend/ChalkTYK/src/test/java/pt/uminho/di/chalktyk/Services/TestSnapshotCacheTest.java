@@ -0,0 +1,90 @@
+package pt.uminho.di.chalktyk.Services;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import pt.uminho.di.chalktyk.models.tests.TestExercise.ReferenceExercise;
+import pt.uminho.di.chalktyk.models.tests.TestBlueprint;
+import pt.uminho.di.chalktyk.models.tests.TestGroup;
+import pt.uminho.di.chalktyk.services.caches.TestSnapshotCache;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class TestSnapshotCacheTest {
+
+    private static pt.uminho.di.chalktyk.models.tests.Test createTest(String testId, String exerciseId) {
+        List<TestGroup> groups = new ArrayList<>();
+        groups.add(new TestGroup("instructions", 1.0f, new ArrayList<>(List.of(new ReferenceExercise(exerciseId, 1.0f)))));
+        pt.uminho.di.chalktyk.models.tests.Test test = new pt.uminho.di.chalktyk.models.tests.Test();
+        test.setId(testId);
+        test.setGroups(groups);
+        return test;
+    }
+
+    @Test
+    public void getPutAndInvalidate() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        TestSnapshotCache cache = new TestSnapshotCache(2, registry);
+
+        assert cache.get("t1") == null;
+        cache.put("t1", createTest("t1", "e1"), cache.version());
+        assert cache.get("t1") != null;
+
+        // returned snapshots are copies
+        cache.get("t1").getGroups().clear();
+        assert cache.get("t1").getGroups().size() == 1;
+
+        cache.invalidate("t1");
+        assert cache.get("t1") == null;
+
+        cache.put("t1", createTest("t1", "e1"), cache.version());
+        cache.invalidateExercise("e1");
+        assert cache.get("t1") == null;
+
+        assert registry.get("chalktyk.cache.tests.hits").functionCounter().count() == 3;
+        assert registry.get("chalktyk.cache.tests.misses").functionCounter().count() == 3;
+    }
+
+    @Test
+    public void staleVersionIsNotStored() {
+        TestSnapshotCache cache = new TestSnapshotCache(2, new SimpleMeterRegistry());
+        long version = cache.version();
+        cache.invalidate("t1");
+        cache.put("t1", createTest("t1", "e1"), version);
+        assert cache.get("t1") == null;
+    }
+
+    @Test
+    public void leastRecentlyUsedIsEvicted() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        TestSnapshotCache cache = new TestSnapshotCache(2, registry);
+        cache.put("t1", createTest("t1", "e1"), cache.version());
+        cache.put("t2", createTest("t2", "e2"), cache.version());
+        cache.get("t1");
+        cache.put("t3", createTest("t3", "e3"), cache.version());
+
+        assert cache.size() == 2;
+        assert cache.get("t2") == null;
+        assert cache.get("t1") != null;
+        assert registry.get("chalktyk.cache.tests.evictions").functionCounter().count() == 1;
+    }
+
+    @Test
+    public void blueprints() {
+        TestSnapshotCache cache = new TestSnapshotCache(2, new SimpleMeterRegistry());
+        pt.uminho.di.chalktyk.models.tests.Test test = createTest("t1", "e1");
+        test.getGroups().add(new TestGroup("instructions", 2.0f, new ArrayList<>(List.of(new ReferenceExercise("e2", 2.0f)))));
+
+        TestBlueprint blueprint = TestBlueprint.of(test);
+        assert blueprint.getGroupIndex("e2") == 1 && blueprint.getGroupIndex("e3") == null;
+        assert blueprint.getExercise("e2").points() == 2.0f && blueprint.getTotalPoints() == 3.0f;
+        // every resolution gets its own groups
+        blueprint.createEmptyResolutionGroups().get(0).getResolutions().clear();
+        assert blueprint.createEmptyResolutionGroups().get(0).getResolutions().containsKey("e1");
+
+        cache.putBlueprint("t1", blueprint, cache.version());
+        assert cache.getBlueprint("t1") == blueprint;
+        cache.invalidate("t1");
+        assert cache.getBlueprint("t1") == null;
+    }
+}
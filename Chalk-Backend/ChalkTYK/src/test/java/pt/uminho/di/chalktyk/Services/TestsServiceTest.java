@@ -1,20 +1,31 @@
 package pt.uminho.di.chalktyk.Services;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.stream.Collectors;
 
+import jakarta.persistence.EntityManager;
+import org.hibernate.Hibernate;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
 import org.springframework.transaction.annotation.Transactional;
 
+import pt.uminho.di.chalktyk.dtos.CursorPageDTO;
+import pt.uminho.di.chalktyk.dtos.TestStatisticsDTO;
 import pt.uminho.di.chalktyk.models.courses.Course;
 import pt.uminho.di.chalktyk.models.exercises.Exercise;
 import pt.uminho.di.chalktyk.models.exercises.ExerciseResolution;
@@ -43,6 +54,7 @@ import pt.uminho.di.chalktyk.models.exercises.open_answer.OpenAnswerExercise;
 import pt.uminho.di.chalktyk.models.exercises.open_answer.OpenAnswerRubric;
 import pt.uminho.di.chalktyk.models.miscellaneous.Tag;
 import pt.uminho.di.chalktyk.models.miscellaneous.Visibility;
+import pt.uminho.di.chalktyk.models.tests.DeliverDateTest;
 import pt.uminho.di.chalktyk.models.tests.TestGroup;
 import pt.uminho.di.chalktyk.models.tests.TestResolution;
 import pt.uminho.di.chalktyk.models.tests.TestResolutionStatus;
@@ -51,6 +63,7 @@ import pt.uminho.di.chalktyk.models.tests.TestTagPK;
 import pt.uminho.di.chalktyk.models.tests.TestExercise.ConcreteExercise;
 import pt.uminho.di.chalktyk.models.tests.TestExercise.ReferenceExercise;
 import pt.uminho.di.chalktyk.models.tests.TestExercise.TestExercise;
+import pt.uminho.di.chalktyk.models.users.Student;
 import pt.uminho.di.chalktyk.models.users.Specialist;
 import pt.uminho.di.chalktyk.repositories.TestTagsDAO;
 import pt.uminho.di.chalktyk.services.*;
@@ -71,11 +84,12 @@ public class TestsServiceTest {
     private final IStudentsService studentsService;
     private final ITagsService tagsService;
     private final TestTagsDAO testTagsDAO;
+    private final EntityManager entityManager;
 
     @Autowired
     public TestsServiceTest(ISeedService seedService, ITestsService testsService, ICoursesService coursesService, ISpecialistsService specialistsService,
                             IExercisesService exercisesService, IInstitutionsService institutionsService, IStudentsService studentsService,
-                            ITagsService tagsService, TestTagsDAO testTagsDAO){
+                            ITagsService tagsService, TestTagsDAO testTagsDAO, EntityManager entityManager){
         this.seedService = seedService;
         this.testsService = testsService;
         this.coursesService = coursesService;
@@ -85,6 +99,7 @@ public class TestsServiceTest {
         this.studentsService = studentsService;
         this.tagsService = tagsService;
         this.testTagsDAO = testTagsDAO;
+        this.entityManager = entityManager;
     }
 
     private String specialistId, specialist2Id, courseId, course2Id, studentId, student2Id;
@@ -135,6 +150,63 @@ public class TestsServiceTest {
         assert tt2.getNExercises() == 4;
     }
 
+    @Test
+    public void getTests() throws BadInputException, NotFoundException {
+        pt.uminho.di.chalktyk.models.tests.Test t1 = buildTest(false,75);
+        String testId = testsService.createTest(t1);
+
+        Page<pt.uminho.di.chalktyk.models.tests.Test> page = testsService.getTests(0, 10, List.of(tag1.getId()), true, null, specialistId, courseId, null, null, true);
+        assert page.getTotalElements() == 1;
+        pt.uminho.di.chalktyk.models.tests.Test test = page.getContent().get(0);
+        assert test.getId().equals(testId);
+        assert test.getGroups() == null;
+        assert test.getGlobalPoints() == 15.0F;
+        assert test.getSpecialistId().equals(specialistId);
+        assert test.getCourseId().equals(courseId);
+        assert test.getTags().size() == 2;
+    }
+
+    @Test
+    public void searchTests() throws BadInputException, NotFoundException {
+        pt.uminho.di.chalktyk.models.tests.Test t1 = buildTest(false,75);
+        t1.setTitle("Exame de Sistemas Distribuidos");
+        String test1Id = testsService.createTest(t1);
+        pt.uminho.di.chalktyk.models.tests.Test t2 = buildTest(false,75);
+        t2.setTitle("Teste de Sistemas Operativos");
+        String test2Id = testsService.createTest(t2);
+        // the search is made with sql, so the tests are written first
+        testTagsDAO.flush();
+
+        // words of the title, in any order
+        List<String> list = testsService.searchTests("distribuidos sistemas", 0, 10, null, false, null, specialistId, null, null, null, true)
+                                        .stream().map(pt.uminho.di.chalktyk.models.tests.Test::getId).toList();
+        assert list.equals(List.of(test1Id));
+
+        // fragments of the title, with the filters of the listing
+        list = testsService.searchTests("Sistemas", 0, 10, List.of(tag1.getId()), true, null, specialistId, courseId, null, null, true)
+                           .stream().map(pt.uminho.di.chalktyk.models.tests.Test::getId).toList();
+        assert list.size() == 2 && list.containsAll(List.of(test1Id, test2Id));
+        assert testsService.searchTests("perativ", 0, 10, null, false, null, specialistId, null, null, null, true)
+                           .getContent().get(0).getId().equals(test2Id);
+        assert testsService.searchTests("Sistemas", 0, 10, null, false, null, specialist2Id, null, null, null, true).isEmpty();
+    }
+
+    @Test
+    public void getTestsWithCursor() throws BadInputException, NotFoundException {
+        List<String> testsIds = new ArrayList<>();
+        for (int i = 0; i < 3; i++)
+            testsIds.add(testsService.createTest(buildTest(false,75)));
+        Collections.sort(testsIds);
+
+        CursorPageDTO<pt.uminho.di.chalktyk.models.tests.Test> page = testsService.getTests("", 2, false, List.of(tag1.getId()), true, null, specialistId, courseId, null, null, true);
+        List<String> listed = new ArrayList<>(page.getItems().stream().map(pt.uminho.di.chalktyk.models.tests.Test::getId).toList());
+        assert page.getNextCursor() != null;
+        page = testsService.getTests(page.getNextCursor(), 2, false, List.of(tag1.getId()), true, null, specialistId, courseId, null, null, true);
+        listed.addAll(page.getItems().stream().map(pt.uminho.di.chalktyk.models.tests.Test::getId).toList());
+        assert page.getNextCursor() == null;
+        assert listed.equals(testsIds);
+    }
+
     /*
     @Test
     public void createLiveTest() throws BadInputException, NotFoundException {
@@ -197,6 +269,121 @@ public class TestsServiceTest {
         assert tmp_dup != null;
     }
 
+    @Test
+    public void duplicateTestIntoCourses() throws BadInputException, NotFoundException {
+        pt.uminho.di.chalktyk.models.tests.Test t1 = buildTest(false,75);
+        String testId = testsService.createTest(t1);
+
+        // the exercises are copied, since they belong to another specialist
+        List<String> duplicatesIds = testsService.duplicateTestIntoCourses(this.specialist2Id, testId, Visibility.PRIVATE, List.of(this.course2Id, this.course2Id));
+        assert duplicatesIds.size() == 2;
+
+        pt.uminho.di.chalktyk.models.tests.Test og = testsService.getTestById(testId);
+        Set<String> copiesExercisesIds = new HashSet<>();
+        for (int i = 0; i < duplicatesIds.size(); i++) {
+            pt.uminho.di.chalktyk.models.tests.Test dup = testsService.getTestById(duplicatesIds.get(i));
+            assert dup.getCourse().getId().equals(this.course2Id);
+            assert testsService.getTestTags(dup.getId()).size() == testsService.getTestTags(testId).size();
+            assert dup.getGroups().size() == og.getGroups().size();
+
+            for (int g = 0; g < og.getGroups().size(); g++) {
+                List<TestExercise> ogExes = og.getGroups().get(g).getExercises(),
+                                   dupExes = dup.getGroups().get(g).getExercises();
+                assert ogExes.size() == dupExes.size();
+                for (int e = 0; e < ogExes.size(); e++) {
+                    String ogExeId = ogExes.get(e).getId(), dupExeId = dupExes.get(e).getId();
+                    assert !ogExeId.equals(dupExeId);
+                    assert copiesExercisesIds.add(dupExeId);
+
+                    // the copy has its own rubric and solution
+                    Exercise ogExe = exercisesService.getExerciseById(ogExeId),
+                             dupExe = exercisesService.getExerciseById(dupExeId);
+                    assert ogExe.getClass().equals(dupExe.getClass());
+                    assert ogExe.getTitle().equals(dupExe.getTitle());
+                    assert dupExe.getVisibility() == Visibility.TEST;
+                    assert dupExe.getSpecialistId().equals(this.specialist2Id);
+                    assert dupExe.getCourseId() == null;
+                    assert !ogExe.getRubricId().equals(dupExe.getRubricId());
+                    assert !ogExe.getSolutionId().equals(dupExe.getSolutionId());
+                    assert Hibernate.getClass(exercisesService.getExerciseRubric(dupExeId)).equals(Hibernate.getClass(exercisesService.getExerciseRubric(ogExeId)));
+                    assert exercisesService.getExerciseSolution(dupExeId).getData().equals(exercisesService.getExerciseSolution(ogExeId).getData());
+                    assert exercisesService.getExerciseTags(dupExeId).equals(exercisesService.getExerciseTags(ogExeId));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void duplicateTestSharesExercises() throws BadInputException, NotFoundException {
+        pt.uminho.di.chalktyk.models.tests.Test t1 = buildTest(true, 100000);
+        String testId = testsService.createTest(t1);
+        String duplicateId = testsService.duplicateTestById(this.specialistId, testId, Visibility.PRIVATE, this.courseId);
+
+        // the copy references the exercises of the original test
+        List<String> ogExesIds = testsService.getTestById(testId).getGroups().stream()
+                .flatMap(tg -> tg.getExercises().stream()).map(TestExercise::getId).toList();
+        List<String> dupExesIds = testsService.getTestById(duplicateId).getGroups().stream()
+                .flatMap(tg -> tg.getExercises().stream()).map(TestExercise::getId).toList();
+        assert ogExesIds.equals(dupExesIds);
+
+        // shared exercises are not changed through the exercises
+        String sharedId = ogExesIds.get(0);
+        try {
+            exercisesService.updateExerciseTags(sharedId, List.of(tag1.getId()));
+            assert false;
+        } catch (BadInputException e) {
+            assert true;
+        }
+
+        // changing the exercise through the copy, makes the copy use its own exercise
+        Exercise changed = exercisesService.getExerciseById(sharedId).cloneExerciseDataOnly();
+        changed.setId(sharedId);
+        changed.setTitle("Changed title");
+        changed.setTags(Set.of(tag1));
+        List<TestGroup> groups = new ArrayList<>();
+        for (TestGroup tg : testsService.getTestById(duplicateId).getGroups()) {
+            List<TestExercise> exes = new ArrayList<>();
+            for (TestExercise exe : tg.getExercises())
+                exes.add(exe.getId().equals(sharedId) ? new ConcreteExercise(exe.getPoints(), changed) : new ReferenceExercise(exe.getId(), exe.getPoints()));
+            groups.add(new TestGroup(tg.getGroupInstructions(), tg.getGroupPoints(), exes));
+        }
+        testsService.updateTestGroups(duplicateId, groups);
+
+        String forkId = testsService.getTestById(duplicateId).getGroups().get(0).getExercises().get(0).getId();
+        assert !forkId.equals(sharedId);
+        assert exercisesService.getExerciseById(forkId).getTitle().equals("Changed title");
+        assert !exercisesService.getExerciseById(sharedId).getTitle().equals("Changed title");
+
+        // deleting the copy keeps the exercises that are still used by the original test
+        testsService.deleteTestById(duplicateId);
+        for (String exeId : ogExesIds)
+            assert exercisesService.getExerciseById(exeId) != null;
+    }
+
+    @Test
+    public void resolveSharedExercise() throws NotFoundException, BadInputException, InterruptedException, ForbiddenException {
+        String testId = testsService.createTest(buildMCTest());
+        String duplicateId = testsService.duplicateTestById(this.specialistId, testId, Visibility.PUBLIC, this.courseId);
+        String exeId = testsService.getTestById(testId).getGroups().get(0).getExercises().get(0).getId();
+        assert testsService.getTestById(duplicateId).getGroups().get(0).getExercises().get(0).getId().equals(exeId);
+        testsService.updateTestPublishDate(duplicateId, LocalDateTime.now());
+        Thread.sleep(200); // wait some time before starting a test.
+
+        // the student resolves the shared exercise in both tests, with the first resolution of each test
+        String tr1 = testsService.startTest(testId, this.studentId);
+        String tr2 = testsService.startTest(duplicateId, this.studentId);
+        ExerciseResolution er = new ExerciseResolution(null,null,null, createRightMCResolution(),
+                ExerciseResolutionStatus.NOT_REVISED, null, null, null);
+        String er1 = testsService.uploadResolution(tr1, exeId, er);
+        String er2 = testsService.uploadResolution(tr2, exeId, er);
+        assert !er1.equals(er2);
+        assert !exercisesService.getExerciseResolution(er1).getSubmissionNr().equals(exercisesService.getExerciseResolution(er2).getSubmissionNr());
+
+        // an exercise that was resolved is no longer shared
+        String copyId = testsService.duplicateTestById(this.specialistId, testId, Visibility.PUBLIC, this.courseId);
+        assert !testsService.getTestById(copyId).getGroups().get(0).getExercises().get(0).getId().equals(exeId);
+    }
+
     /* 
     @Test
     public void duplicateLiveTest() throws BadInputException, NotFoundException {
@@ -248,7 +435,11 @@ public class TestsServiceTest {
         TestResolution tr = testsService.getTestResolutionById(tr_id);
         assert tr != null;
 
+        // only the entities of the deleted rows are evicted
+        Student student = studentsService.getStudentById(this.studentId);
         testsService.deleteTestById(testId);
+        assert !entityManager.contains(tr);
+        assert entityManager.contains(student);
         try {
             testsService.getTestResolutionById(tr_id);
             assert false;
@@ -263,6 +454,25 @@ public class TestsServiceTest {
         }
     }
 
+    @Test
+    public void deleteTestInBackground() throws BadInputException, NotFoundException, InterruptedException, ForbiddenException {
+        pt.uminho.di.chalktyk.models.tests.Test t1 = buildTest(false,75);
+        String testId = testsService.createTest(t1);
+
+        Thread.sleep(200); // wait some time before starting a test.
+        String tr_id = testsService.startTest(testId, this.studentId);
+
+        // the test is hidden right away, while its resolutions are only purged later
+        testsService.deleteTestById(testId, true);
+        try {
+            testsService.getTestById(testId);
+            assert false;
+        }
+        catch (NotFoundException e) {
+            assert testsService.getTestResolutionById(tr_id) != null;
+        }
+    }
+
     @Test
     public void startTest() throws NotFoundException, BadInputException, ForbiddenException {
         pt.uminho.di.chalktyk.models.tests.Test t1 = buildTest(false,75);
@@ -336,6 +546,90 @@ public class TestsServiceTest {
         assert trs2.get(0).getId().equals(tr_id3);
     }
 
+    @Test
+    public void getTestResolutionsWithCursor() throws NotFoundException, BadInputException, InterruptedException, ForbiddenException {
+        pt.uminho.di.chalktyk.models.tests.Test t1 = buildTest(false,75);
+        String testId = testsService.createTest(t1);
+
+        Thread.sleep(200); // wait some time before starting a test.
+        String tr_id1 = testsService.startTest(testId, this.studentId);
+        String tr_id2 = testsService.startTest(testId, this.student2Id);
+        String tr_id3 = testsService.startTest(testId, this.studentId);
+        // the estimate is made with sql, so the resolutions are written first
+        testTagsDAO.flush();
+
+        CursorPageDTO<TestResolution> page1 = testsService.getTestResolutions(testId, "", 2, true);
+        assert page1.getItems().stream().map(TestResolution::getId).toList().equals(List.of(tr_id1, tr_id2));
+        assert page1.getNextCursor() != null;
+        assert page1.getEstimatedTotal() != null;
+
+        CursorPageDTO<TestResolution> page2 = testsService.getTestResolutions(testId, page1.getNextCursor(), 2, false);
+        assert page2.getItems().stream().map(TestResolution::getId).toList().equals(List.of(tr_id3));
+        assert page2.getNextCursor() == null;
+        assert page2.getEstimatedTotal() == null;
+
+        try {
+            testsService.getTestResolutions(testId, "not-a-cursor", 2, false);
+            assert false;
+        } catch (BadInputException e) {
+            assert true;
+        }
+    }
+
+    @Test
+    public void getStudentLastResolutions() throws NotFoundException, BadInputException, InterruptedException, ForbiddenException {
+        pt.uminho.di.chalktyk.models.tests.Test t1 = buildTest(false,75);
+        String testId = testsService.createTest(t1);
+
+        Thread.sleep(200); // wait some time before starting a test.
+        testsService.startTest(testId, this.studentId);
+        String tr_id2 = testsService.startTest(testId, this.student2Id);
+        String tr_id3 = testsService.startTest(testId, this.studentId);
+
+        List<TestResolution> trs = testsService.getStudentLastResolutions(testId);
+        assert trs.size() == 2;
+        assert trs.stream().map(TestResolution::getId).collect(Collectors.toSet()).equals(Set.of(tr_id2, tr_id3));
+
+        List<TestResolution> trsWithEmails = testsService.getStudentLastResolutionsWithEmails(testId);
+        assert trsWithEmails.size() == 2;
+        for (TestResolution tr : trsWithEmails) {
+            String studentId = tr.getId().equals(tr_id3) ? this.studentId : this.student2Id;
+            assert tr.getStudentId().equals(studentsService.getStudentById(studentId).getEmail());
+        }
+    }
+
+    @Test
+    public void exportTestResults() throws NotFoundException, BadInputException, InterruptedException, ForbiddenException, IOException {
+        pt.uminho.di.chalktyk.models.tests.Test t1 = buildTest(false,75);
+        String testId = testsService.createTest(t1);
+
+        Thread.sleep(200); // wait some time before starting a test.
+        testsService.startTest(testId, this.studentId);
+        testsService.startTest(testId, this.student2Id);
+        testsService.startTest(testId, this.studentId);
+
+        ByteArrayOutputStream csv = new ByteArrayOutputStream();
+        testsService.exportTestResults(testId, "csv", csv);
+        String[] csvLines = csv.toString(StandardCharsets.UTF_8).split("\n");
+        assert csvLines.length == 4;
+        assert csvLines[0].startsWith("email,submission_nr,");
+        String email = studentsService.getStudentById(this.studentId).getEmail();
+        assert Arrays.stream(csvLines).filter(l -> l.startsWith(email + ",")).count() == 2;
+
+        ByteArrayOutputStream ndjson = new ByteArrayOutputStream();
+        testsService.exportTestResults(testId, "ndjson", ndjson);
+        String[] jsonLines = ndjson.toString(StandardCharsets.UTF_8).split("\n");
+        assert jsonLines.length == 3;
+        assert jsonLines[0].startsWith("{\"email\":");
+
+        try {
+            testsService.exportTestResults(testId, "xml", new ByteArrayOutputStream());
+            assert false;
+        } catch (BadInputException e) {
+            assert true;
+        }
+    }
+
     @Test
     public void updateAllOnTest(){
         // TODO
@@ -360,6 +654,11 @@ public class TestsServiceTest {
 
         ExerciseResolution er = exercisesService.getExerciseResolution(exeResId);
         assert er != null;
+        TestResolution tr = testsService.getTestResolutionById(testResId);
+        assert tr.getGroups().get(1).getResolutions().get(exe.getId()).getResolutionId().equals(exeResId);
+
+        // uploading again updates the same exercise resolution
+        assert testsService.uploadResolution(testResId, exe.getId(), er1).equals(exeResId);
 
         // trigger fail
         try {
@@ -406,6 +705,63 @@ public class TestsServiceTest {
         assert tr.getSubmissionNr() == 2;
     }
 
+    @Test
+    public void automaticCorrectionOfAllResolutions() throws NotFoundException, BadInputException, InterruptedException, ForbiddenException {
+        pt.uminho.di.chalktyk.models.tests.Test t1 = buildMCTest();
+
+        String testId = testsService.createTest(t1);
+        Thread.sleep(200); // wait some time before starting a test.
+        String tr1_id = testsService.startTest(testId, this.studentId);
+        String tr2_id = testsService.startTest(testId, this.student2Id);
+
+        pt.uminho.di.chalktyk.models.tests.Test test = testsService.getTestById(testId);
+        List<TestGroup> tg = test.getGroups();
+
+        ExerciseResolution er1 = new ExerciseResolution(null,null,null, createRightMCResolution(),
+                                ExerciseResolutionStatus.NOT_REVISED, null, null, null);
+        testsService.uploadResolution(tr1_id, tg.get(0).getExercises().get(0).getId(), er1);
+        testsService.uploadResolution(tr1_id, tg.get(1).getExercises().get(0).getId(), er1);
+        ExerciseResolution er2 = new ExerciseResolution(null,null,null, createRightMCResolution(),
+                                ExerciseResolutionStatus.NOT_REVISED, null, null, null);
+        testsService.uploadResolution(tr2_id, tg.get(1).getExercises().get(1).getId(), er2);
+
+        testsService.automaticCorrection(testId, "auto");
+
+        TestResolution tr1 = testsService.getTestResolutionById(tr1_id);
+        assert tr1.getTotalPoints() == 6.0F;
+        assert tr1.getStatus() == TestResolutionStatus.REVISED;
+        TestResolution tr2 = testsService.getTestResolutionById(tr2_id);
+        assert tr2.getTotalPoints() == 2.0F;
+        assert tr2.getStatus() == TestResolutionStatus.REVISED;
+    }
+
+    @Test
+    public void autosaveResolution() throws NotFoundException, BadInputException, InterruptedException, ForbiddenException {
+        pt.uminho.di.chalktyk.models.tests.Test t1 = buildMCTest();
+
+        String testId = testsService.createTest(t1);
+        Thread.sleep(200); // wait some time before starting a test.
+        String tr_id = testsService.startTest(testId, this.studentId);
+
+        pt.uminho.di.chalktyk.models.tests.Test test = testsService.getTestById(testId);
+        String exeId = test.getGroups().get(0).getExercises().get(0).getId();
+
+        // the first autosave creates the exercise resolution, the following are buffered
+        ExerciseResolution empty = new ExerciseResolution(null,null,null, new MultipleChoiceData(new HashMap<>()),
+                ExerciseResolutionStatus.NOT_REVISED, null, null, null);
+        String exeResId = testsService.autosaveResolution(tr_id, exeId, empty);
+        ExerciseResolution right = new ExerciseResolution(null,null,null, createRightMCResolution(),
+                ExerciseResolutionStatus.NOT_REVISED, null, null, null);
+        assert testsService.autosaveResolution(tr_id, exeId, right).equals(exeResId);
+        assert testsService.autosaveResolution(tr_id, exeId, right).equals(exeResId);
+
+        // submitting writes the buffered resolution before correcting it
+        testsService.submitTestResolution(tr_id);
+        TestResolution tr = testsService.getTestResolutionById(tr_id);
+        assert tr.getTotalPoints() == 3.0F;
+        assert tr.getStatus() == TestResolutionStatus.REVISED;
+    }
+
     /* 
     @Test
     public void automaticCorrection() throws NotFoundException, BadInputException {
@@ -441,6 +797,134 @@ public class TestsServiceTest {
     }
     */
 
+    @Test
+    public void gradeOnSubmit() throws NotFoundException, BadInputException, InterruptedException, ForbiddenException {
+        pt.uminho.di.chalktyk.models.tests.Test t1 = buildMCTest();
+
+        String testId = testsService.createTest(t1);
+        testsService.updateTestGradeOnSubmit(testId, true);
+        assert testsService.getTestById(testId).isGradeOnSubmit();
+        Thread.sleep(200); // wait some time before starting a test.
+        String tr_id = testsService.startTest(testId, this.studentId);
+
+        List<TestGroup> tg = testsService.getTestById(testId).getGroups();
+        ExerciseResolution er1 = new ExerciseResolution(null,null,null, createRightMCResolution(),
+                                ExerciseResolutionStatus.NOT_REVISED, null, null, null);
+        testsService.uploadResolution(tr_id, tg.get(0).getExercises().get(0).getId(), er1);
+
+        // the resolution is queued for correction, which only happens after the transaction commits
+        testsService.submitTestResolution(tr_id);
+        TestResolution tr = testsService.getTestResolutionById(tr_id);
+        assert tr.getStatus() == TestResolutionStatus.NOT_REVISED;
+        assert tr.getSubmissionDate() != null;
+        // the correction stays pending until it is done, so a lost correction is queued again
+        assert tr.isCorrectionPending();
+        assert !testsService.queuePendingCorrections(LocalDateTime.now().minusMinutes(1), 1000).contains(tr_id);
+        assert testsService.queuePendingCorrections(LocalDateTime.now().plusMinutes(1), 1000).contains(tr_id);
+        try {
+            testsService.submitTestResolution(tr_id);
+            assert false;
+        } catch (ForbiddenException e) {
+            assert true;
+        }
+    }
+
+    @Test
+    public void closeExpiredTestResolutions() throws NotFoundException, BadInputException, InterruptedException, ForbiddenException {
+        pt.uminho.di.chalktyk.models.tests.Test tmp = buildMCTest();
+        DeliverDateTest t1 = new DeliverDateTest(null, tmp.getTitle(), tmp.getGlobalInstructions(), null, tmp.getConclusion(), tmp.getCreationDate(),
+            tmp.getPublishDate(), tmp.getSpecialist(), tmp.getVisibility(), tmp.getCourse(), tmp.getInstitution(), tmp.getGroups(),
+            LocalDateTime.now().plusDays(1));
+
+        String testId = testsService.createTest(t1);
+        Thread.sleep(200); // wait some time before starting a test.
+        String tr_id = testsService.startTest(testId, this.studentId);
+        assert !testsService.closeExpiredTestResolutions(1000, false).contains(tr_id);
+
+        // the second autosave is buffered
+        String exeId = testsService.getTestById(testId).getGroups().get(0).getExercises().get(0).getId();
+        String exeResId = testsService.autosaveResolution(tr_id, exeId, new ExerciseResolution(null,null,null,
+                new MultipleChoiceData(new HashMap<>()), ExerciseResolutionStatus.NOT_REVISED, null, null, null));
+        testsService.autosaveResolution(tr_id, exeId, new ExerciseResolution(null,null,null,
+                createRightMCResolution(), ExerciseResolutionStatus.NOT_REVISED, null, null, null));
+
+        // the deadline of the ongoing resolutions follows the deadline of the test
+        testsService.updateTestDeliverDate(testId, LocalDateTime.now());
+        assert testsService.closeExpiredTestResolutions(1000, false).contains(tr_id);
+        TestResolution tr = testsService.getTestResolutionById(tr_id);
+        assert tr.getStatus() == TestResolutionStatus.NOT_REVISED;
+        assert tr.getSubmissionDate() != null;
+        // the buffered autosave is written before the resolution is closed
+        assert exercisesService.getExerciseResolution(exeResId).getData().equals(createRightMCResolution());
+        assert !testsService.closeExpiredTestResolutions(1000, false).contains(tr_id);
+    }
+
+    @Test
+    public void testStatistics() throws NotFoundException, BadInputException, InterruptedException, ForbiddenException {
+        pt.uminho.di.chalktyk.models.tests.Test t1 = buildMCTest();
+
+        String testId = testsService.createTest(t1);
+        Thread.sleep(200); // wait some time before starting a test.
+        List<TestGroup> tg = testsService.getTestById(testId).getGroups();
+        String exe1Id = tg.get(0).getExercises().get(0).getId();
+
+        // 6 points out of 8
+        String tr1_id = testsService.startTest(testId, this.studentId);
+        ExerciseResolution er1 = new ExerciseResolution(null,null,null, createRightMCResolution(),
+                                ExerciseResolutionStatus.NOT_REVISED, null, null, null);
+        String res1 = testsService.uploadResolution(tr1_id, exe1Id, er1);
+        testsService.uploadResolution(tr1_id, tg.get(1).getExercises().get(0).getId(), er1);
+        testsService.submitTestResolution(tr1_id);
+
+        // 2 points out of 8
+        String tr2_id = testsService.startTest(testId, this.student2Id);
+        ExerciseResolution er2 = new ExerciseResolution(null,null,null, createRightMCResolution(),
+                                ExerciseResolutionStatus.NOT_REVISED, null, null, null);
+        testsService.uploadResolution(tr2_id, tg.get(1).getExercises().get(1).getId(), er2);
+        testsService.submitTestResolution(tr2_id);
+
+        // the first resolution goes down to 4 points
+        testsService.manualCorrectionForExercise(res1, tr1_id, 1.0F, null);
+
+        TestStatisticsDTO stats = testsService.getTestStatistics(testId);
+        assert stats.getCount() == 2;
+        assert stats.getAverage() == 3.0;
+        assert stats.getStandardDeviation() == 1.0;
+        assert stats.getHistogram()[2] == 1 && stats.getHistogram()[5] == 1;
+
+        TestStatisticsDTO.ExerciseStatisticsDTO exe1Stats = stats.getExercises().stream()
+                .filter(e -> e.getExerciseId().equals(exe1Id)).findFirst().orElseThrow();
+        assert exe1Stats.getCount() == 1;
+        assert exe1Stats.getAverage() == 1.0;
+
+        // ongoing resolutions are not counted.
+        // The statistics are written in place, so the ones already loaded by this transaction are discarded
+        testsService.updateTestResolutionStatus(tr2_id, TestResolutionStatus.ONGOING);
+        entityManager.clear();
+        stats = testsService.getTestStatistics(testId);
+        assert stats.getCount() == 1 && stats.getAverage() == 4.0;
+        assert stats.getHistogram()[2] == 0 && stats.getHistogram()[5] == 1;
+
+        // only the corrected resolutions are counted, not the submitted ones that are waiting to be corrected
+        testsService.updateTestResolutionStatus(tr2_id, TestResolutionStatus.NOT_REVISED);
+        entityManager.clear();
+        assert testsService.getTestStatistics(testId).getCount() == 1;
+        testsService.updateTestResolutionStatus(tr2_id, TestResolutionStatus.REVISED);
+        entityManager.clear();
+        stats = testsService.getTestStatistics(testId);
+        assert stats.getCount() == 2 && stats.getAverage() == 3.0;
+
+        // changing the points of the test computes the statistics again, with the bins of the new points,
+        // so that removing a resolution afterwards leaves every bin consistent
+        testsService.updateTestExercisePoints(testId, 0, exe1Id, 16.0F);
+        testsService.updateTestResolutionStatus(tr1_id, TestResolutionStatus.ONGOING);
+        entityManager.clear();
+        stats = testsService.getTestStatistics(testId);
+        assert stats.getCount() == 1 && stats.getAverage() == 2.0;
+        assert Arrays.stream(stats.getHistogram()).allMatch(h -> h >= 0) && Arrays.stream(stats.getHistogram()).sum() == 1;
+        assert stats.getHistogram()[0] == 1;
+    }
+
     @Test
     public void manualCorrection() throws NotFoundException, BadInputException, InterruptedException, ForbiddenException {
         pt.uminho.di.chalktyk.models.tests.Test t1 = buildMCTest();
@@ -475,6 +959,78 @@ public class TestsServiceTest {
         }
     }
 
+    @Test
+    public void manualCorrectionCounters() throws NotFoundException, BadInputException, InterruptedException, ForbiddenException {
+        pt.uminho.di.chalktyk.models.tests.Test t1 = buildMCTest();
+
+        String testId = testsService.createTest(t1);
+        Thread.sleep(200); // wait some time before starting a test.
+        String tr_id = testsService.startTest(testId, this.studentId);
+        List<TestGroup> tg = testsService.getTestById(testId).getGroups();
+
+        ExerciseResolution er1 = new ExerciseResolution(null,null,null, createRightMCResolution(),
+                                ExerciseResolutionStatus.NOT_REVISED, null, null, null);
+        String res1 = testsService.uploadResolution(tr_id, tg.get(0).getExercises().get(0).getId(), er1);
+        String res2 = testsService.uploadResolution(tr_id, tg.get(1).getExercises().get(0).getId(), er1);
+        String res3 = testsService.uploadResolution(tr_id, tg.get(1).getExercises().get(1).getId(), er1);
+        // uploading again does not count the resolution twice
+        testsService.uploadResolution(tr_id, tg.get(1).getExercises().get(1).getId(), er1);
+
+        TestResolution tr = testsService.getTestResolutionById(tr_id);
+        assert tr.getRevisedCount() == 0 && tr.getNotRevisedCount() == 3;
+
+        // an ongoing resolution stays ongoing
+        testsService.manualCorrectionForExercise(res1, tr_id, 3.0F, null);
+        tr = testsService.getTestResolutionById(tr_id);
+        assert tr.getRevisedCount() == 1 && tr.getNotRevisedCount() == 2;
+        assert tr.getStatus() == TestResolutionStatus.ONGOING;
+        assert tr.getTotalPoints() == 3.0F;
+
+        // the submission corrects every exercise
+        testsService.submitTestResolution(tr_id);
+        tr = testsService.getTestResolutionById(tr_id);
+        assert tr.getRevisedCount() == 3 && tr.getNotRevisedCount() == 0;
+        assert tr.getStatus() == TestResolutionStatus.REVISED;
+        assert tr.getTotalPoints() == 8.0F;
+
+        // correcting an exercise again only changes its points
+        testsService.manualCorrectionForExercise(res2, tr_id, 1.0F, null);
+        testsService.manualCorrectionForExercise(res3, tr_id, 2.0F, null);
+        tr = testsService.getTestResolutionById(tr_id);
+        assert tr.getRevisedCount() == 3 && tr.getNotRevisedCount() == 0;
+        assert tr.getStatus() == TestResolutionStatus.REVISED;
+        assert tr.getTotalPoints() == 6.0F;
+        assert tr.getGroups().get(1).getGroupPoints() == 3.0F;
+    }
+
+    @Test
+    public void manualCorrectionCountersAfterUpload() throws NotFoundException, BadInputException, InterruptedException, ForbiddenException {
+        pt.uminho.di.chalktyk.models.tests.Test t1 = buildMCTest();
+
+        String testId = testsService.createTest(t1);
+        testsService.updateTestGradeOnSubmit(testId, true);
+        Thread.sleep(200); // wait some time before starting a test.
+        String tr_id = testsService.startTest(testId, this.studentId);
+        List<TestGroup> tg = testsService.getTestById(testId).getGroups();
+
+        ExerciseResolution er1 = new ExerciseResolution(null,null,null, createRightMCResolution(),
+                                ExerciseResolutionStatus.NOT_REVISED, null, null, null);
+        String res1 = testsService.uploadResolution(tr_id, tg.get(0).getExercises().get(0).getId(), er1);
+        String res2 = testsService.uploadResolution(tr_id, tg.get(1).getExercises().get(0).getId(), er1);
+        testsService.uploadResolution(tr_id, tg.get(1).getExercises().get(1).getId(), er1);
+
+        // uploading again resets the corrected exercise resolution to not revised
+        testsService.manualCorrectionForExercise(res1, tr_id, 3.0F, null);
+        testsService.uploadResolution(tr_id, tg.get(0).getExercises().get(0).getId(), er1);
+
+        // the correction after the submission does not count the first exercise as revised
+        testsService.submitTestResolution(tr_id);
+        testsService.manualCorrectionForExercise(res2, tr_id, 1.0F, null);
+        TestResolution tr = testsService.getTestResolutionById(tr_id);
+        assert tr.getRevisedCount() == 1 && tr.getNotRevisedCount() == 2;
+        assert tr.getStatus() == TestResolutionStatus.NOT_REVISED;
+    }
+
     @Test
     public void createTestExercise() throws NotFoundException, BadInputException {
         pt.uminho.di.chalktyk.models.tests.Test t1 = buildTest(true,100000);
@@ -500,6 +1056,12 @@ public class TestsServiceTest {
         assert group.getGroupPoints() == 4.0F;
         assert test.getGroups().size() == 4;
         assert group.getExercises().size() == 1;
+
+        // the copy of a public exercise of another specialist is owned by the owner of the test
+        String otherExeId = exercisesService.createExercise(createFTBExercise(this.specialist2Id, this.course2Id), createFTBSolution(), createFTBRubric(), null);
+        String exe3_id = testsService.createTestExercise(testId, new ReferenceExercise(otherExeId, 2.0F), 3, 1, null);
+        assert !exe3_id.equals(otherExeId);
+        assert exercisesService.getExerciseById(exe3_id).getSpecialistId().equals(test.getSpecialistId());
     }
 
     @Test
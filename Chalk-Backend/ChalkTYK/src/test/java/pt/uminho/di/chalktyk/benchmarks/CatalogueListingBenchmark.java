@@ -0,0 +1,155 @@
+package pt.uminho.di.chalktyk.benchmarks;
+
+import jakarta.persistence.EntityGraph;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.TypedQuery;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+import pt.uminho.di.chalktyk.models.exercises.Exercise;
+import pt.uminho.di.chalktyk.models.miscellaneous.Tag;
+import pt.uminho.di.chalktyk.models.miscellaneous.Visibility;
+import pt.uminho.di.chalktyk.services.IExercisesService;
+import pt.uminho.di.chalktyk.services.ISeedService;
+import pt.uminho.di.chalktyk.services.ITagsService;
+import pt.uminho.di.chalktyk.services.exceptions.ServiceException;
+
+import java.util.*;
+
+/**
+ * Compares the listing of exercises with the catch-all query, that used to serve every combination of filters
+ * with "(:param is null or ...)" predicates, against the listing built from the given filters only
+ * (see {@link pt.uminho.di.chalktyk.repositories.CatalogueSpecifications}).
+ * <p>
+ * Seeds a large catalogue, prints the plans of both queries, and the median latency of each listing.
+ * The data is rolled back at the end. Disabled by default, run with:
+ * <pre>mvn test -Dtest=CatalogueListingBenchmark -Dchalktyk.benchmarks=true [-Dchalktyk.benchmarks.exercises=200000]</pre>
+ */
+@SpringBootTest
+@Transactional
+@EnabledIfSystemProperty(named = "chalktyk.benchmarks", matches = "true")
+public class CatalogueListingBenchmark {
+    private static final int RUNS = 15;
+
+    // listing query used before the specifications, kept for the comparison.
+    // ':noTags' replaces ':tagIDS is null', which Hibernate can't bind to a list
+    private static final String CATCH_ALL_QUERY = "SELECT e FROM Exercise e WHERE " +
+            "(:noTags = true or e.id IN (SELECT e1.id FROM Exercise e1 JOIN e1.tags t WHERE t.id IN :tagIDS)) and " +
+            " ((:visibilityType is null and e.visibility != 'TEST') or e.visibility = :visibilityType) and" +
+            " (:institutionId is null or e.institution.name=:institutionId) and" +
+            " (:courseId is null or e.course.id=:courseId) and" +
+            " (:specialistID is null or e.specialist.id=:specialistID) and" +
+            " (:title is null or e.title LIKE :title) and" +
+            " (:exerciseType is null or e.exerciseType = :exerciseType)";
+
+    // sql of both listings filtered by course, for the plans
+    private static final String CATCH_ALL_SQL = "SELECT id FROM exercise WHERE (($1::text IS NULL AND visibility <> 'TEST') OR visibility = $1) " +
+            "AND ($2::text IS NULL OR courseid = $2) AND ($3::text IS NULL OR specialistid = $3) AND ($4::text IS NULL OR type = $4) LIMIT 20";
+    private static final String FILTERED_SQL = "SELECT id FROM exercise WHERE visibility <> 'TEST' AND courseid = ? LIMIT 20";
+
+    @Autowired
+    private IExercisesService exercisesService;
+    @Autowired
+    private ISeedService seedService;
+    @Autowired
+    private ITagsService tagsService;
+    @Autowired
+    private EntityManager entityManager;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private String specialistId, courseId;
+    private Tag tag;
+
+    @BeforeEach
+    public void seed() throws ServiceException {
+        int exercises = Integer.getInteger("chalktyk.benchmarks.exercises", 200000);
+        specialistId = seedService.addSpecialistChang();
+        courseId = seedService.addCourse(specialistId);
+        tag = tagsService.createTag("benchmark", "/");
+        entityManager.flush();
+
+        // 1 in 1000 exercises belongs to the course, 1 in 200 to the specialist, and 1 in 100 has the tag
+        jdbcTemplate.update("INSERT INTO exercise (id, title, visibility, type, statement, courseid, specialistid) " +
+                "SELECT 'benchmark-' || i, 'Exercise ' || i, CASE WHEN i % 10 = 0 THEN 'TEST' ELSE 'PUBLIC' END, " +
+                "CASE WHEN i % 2 = 0 THEN 'OA' ELSE 'MC' END, jsonb_build_object('text', 'Statement ' || i), " +
+                "CASE WHEN i % 1000 = 1 THEN ? END, CASE WHEN i % 200 = 1 THEN ? END FROM generate_series(1, ?) i",
+                courseId, specialistId, exercises);
+        jdbcTemplate.update("INSERT INTO exercise_tag (exerciseid, tagid) SELECT 'benchmark-' || i, ? FROM generate_series(1, ?, 100) i",
+                tag.getId(), exercises);
+        jdbcTemplate.execute("ANALYZE exercise");
+        jdbcTemplate.execute("ANALYZE exercise_tag");
+    }
+
+    @Test
+    public void listExercises() throws ServiceException {
+        printPlans();
+
+        Map<String, Object[]> cases = new LinkedHashMap<>();
+        // tags, visibility, course, specialist, type
+        cases.put("course", new Object[]{ null, null, courseId, null, null });
+        cases.put("specialist and type", new Object[]{ null, null, null, specialistId, "OA" });
+        cases.put("tag", new Object[]{ List.of(tag.getId()), null, null, null, null });
+        cases.put("public visibility", new Object[]{ null, Visibility.PUBLIC, null, null, null });
+
+        System.out.printf("%n%-22s %14s %14s%n", "filters", "catch-all (ms)", "filtered (ms)");
+        for (Map.Entry<String, Object[]> c : cases.entrySet()) {
+            Object[] f = c.getValue();
+            @SuppressWarnings("unchecked") List<String> tags = (List<String>) f[0];
+            double catchAll = median(() -> listWithCatchAllQuery(tags, (Visibility) f[1], (String) f[2], (String) f[3], (String) f[4]));
+            double filtered = median(() -> exercisesService.getExercises(0, 20, tags, false, (Visibility) f[1], (String) f[2], null, (String) f[3], null, (String) f[4], false));
+            System.out.printf("%-22s %14.2f %14.2f%n", c.getKey(), catchAll, filtered);
+        }
+    }
+
+    private void printPlans() {
+        // prepared statements switch to a generic plan, which can't tell which filters were given
+        jdbcTemplate.execute("PREPARE catch_all(text, text, text, text) AS " + CATCH_ALL_SQL);
+        jdbcTemplate.execute("SET LOCAL plan_cache_mode = force_generic_plan");
+        System.out.println("\nCatch-all listing by course (generic plan):");
+        jdbcTemplate.queryForList("EXPLAIN ANALYZE EXECUTE catch_all(NULL, '" + courseId + "', NULL, NULL)", String.class).forEach(System.out::println);
+        jdbcTemplate.execute("SET LOCAL plan_cache_mode = auto");
+        jdbcTemplate.execute("DEALLOCATE catch_all");
+
+        System.out.println("\nFiltered listing by course:");
+        jdbcTemplate.queryForList("EXPLAIN ANALYZE " + FILTERED_SQL, String.class, courseId).forEach(System.out::println);
+    }
+
+    private List<Exercise> listWithCatchAllQuery(List<String> tags, Visibility visibility, String courseId, String specialistId, String exerciseType) {
+        EntityGraph<?> tagsGraph = entityManager.createEntityGraph(Exercise.class);
+        tagsGraph.addAttributeNodes("tags");
+        TypedQuery<Exercise> query = entityManager.createQuery(CATCH_ALL_QUERY, Exercise.class)
+                .setHint("jakarta.persistence.loadgraph", tagsGraph)
+                .setParameter("noTags", tags == null)
+                .setParameter("tagIDS", tags != null ? tags : List.of(""))
+                .setParameter("visibilityType", visibility)
+                .setParameter("institutionId", null)
+                .setParameter("courseId", courseId)
+                .setParameter("specialistID", specialistId)
+                .setParameter("title", null)
+                .setParameter("exerciseType", exerciseType)
+                .setFirstResult(0)
+                .setMaxResults(20);
+        return query.getResultList();
+    }
+
+    private interface Listing {
+        Object list() throws ServiceException;
+    }
+
+    private double median(Listing listing) throws ServiceException {
+        double[] times = new double[RUNS];
+        for (int i = 0; i < RUNS; i++) {
+            entityManager.clear();
+            long start = System.nanoTime();
+            listing.list();
+            times[i] = (System.nanoTime() - start) / 1e6;
+        }
+        Arrays.sort(times);
+        return times[RUNS / 2];
+    }
+}
@@ -0,0 +1,111 @@
+package pt.uminho.di.chalktyk.benchmarks;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import pt.uminho.di.chalktyk.models.exercises.ExerciseResolution;
+import pt.uminho.di.chalktyk.models.exercises.ExerciseSolution;
+import pt.uminho.di.chalktyk.models.exercises.ResolutionGrader;
+import pt.uminho.di.chalktyk.models.exercises.items.Item;
+import pt.uminho.di.chalktyk.models.exercises.items.StringItem;
+import pt.uminho.di.chalktyk.models.exercises.multiple_choice.*;
+import pt.uminho.di.chalktyk.services.exceptions.ForbiddenException;
+
+import java.lang.management.ManagementFactory;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Compares the automatic evaluation of multiple choice resolutions against the evaluation
+ * with the solution and the rubric compiled once (see {@link MultipleChoiceExercise#compileAutomaticEvaluation}).
+ * <p>
+ * Checks that both give the same points, to the resolutions and to each of their items, and prints the median
+ * time and the bytes allocated to grade a resolution with each. Does not need the database.
+ * Disabled by default, run with:
+ * <pre>mvn test -Dtest=MultipleChoiceGraderBenchmark -Dchalktyk.benchmarks=true [-Dchalktyk.benchmarks.items=20]</pre>
+ */
+@EnabledIfSystemProperty(named = "chalktyk.benchmarks", matches = "true")
+public class MultipleChoiceGraderBenchmark {
+    private static final int RESOLUTIONS = 10000;
+    private static final int WARMUP = 20, RUNS = 15;
+
+    private final Random random = new Random(42);
+
+    @Test
+    public void gradeResolutions() throws ForbiddenException {
+        int nrItems = Integer.getInteger("chalktyk.benchmarks.items", 20);
+        Map<String, Item> items = new HashMap<>();
+        for (int i = 0; i < nrItems; i++)
+            items.put(String.valueOf(i), new StringItem("Option " + i));
+        MultipleChoiceExercise exercise = new MultipleChoiceExercise(Mctype.MULTIPLE_CHOICE_NO_JUSTIFICATION, items);
+        ExerciseSolution solution = new ExerciseSolution(null, randomData(nrItems, false));
+        MultipleChoiceRubric rubric = new MultipleChoiceRubric(0.5f, new HashMap<>());
+        ResolutionGrader grader = exercise.compileAutomaticEvaluation(solution, rubric);
+
+        // same points, with unanswered items and values missing from the solution
+        for (int i = 0; i < RESOLUTIONS; i++) {
+            MultipleChoiceData data = randomData(nrItems, true);
+            ExerciseResolution expected = resolution((MultipleChoiceData) data.clone()),
+                               actual = resolution(data);
+            exercise.automaticEvaluation(expected, solution, rubric);
+            grader.grade(actual);
+            assertEquals(expected.getPoints(), actual.getPoints());
+            Map<String, MultipleChoiceResolutionItem> expectedItems = ((MultipleChoiceData) expected.getData()).getItems();
+            assertEquals(expectedItems.keySet(), data.getItems().keySet());
+            for (String id : expectedItems.keySet())
+                assertEquals(expectedItems.get(id).getPoints(), data.getItemById(id).getPoints());
+        }
+
+        // every item is answered, so the resolutions can be graded repeatedly
+        List<ExerciseResolution> resolutions = new ArrayList<>(RESOLUTIONS);
+        for (int i = 0; i < RESOLUTIONS; i++)
+            resolutions.add(resolution(randomData(nrItems, false)));
+
+        double[] automatic = measure(resolutions, res -> exercise.automaticEvaluation(res, solution, rubric));
+        double[] compiled = measure(resolutions, grader);
+        System.out.printf("%n%d items per resolution%n%-22s %16s %22s%n", nrItems, "evaluation", "ns / resolution", "bytes / resolution");
+        System.out.printf("%-22s %16.1f %22.1f%n", "automatic evaluation", automatic[0], automatic[1]);
+        System.out.printf("%-22s %16.1f %22.1f%n", "compiled", compiled[0], compiled[1]);
+    }
+
+    /**
+     * @return median time, in nanoseconds, and mean allocated bytes, to grade a resolution
+     */
+    private double[] measure(List<ExerciseResolution> resolutions, ResolutionGrader grader) throws ForbiddenException {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        double[] times = new double[RUNS];
+        long allocated = 0;
+        for (int run = -WARMUP; run < RUNS; run++) {
+            long bytes = threads.getThreadAllocatedBytes(threadId);
+            long start = System.nanoTime();
+            for (ExerciseResolution res : resolutions)
+                grader.grade(res);
+            long time = System.nanoTime() - start;
+            if (run >= 0) {
+                times[run] = (double) time / resolutions.size();
+                allocated += threads.getThreadAllocatedBytes(threadId) - bytes;
+            }
+        }
+        Arrays.sort(times);
+        return new double[]{ times[RUNS / 2], (double) allocated / RUNS / resolutions.size() };
+    }
+
+    private MultipleChoiceData randomData(int nrItems, boolean unanswered) {
+        Map<String, MultipleChoiceResolutionItem> items = new HashMap<>();
+        for (int i = 0; i < nrItems; i++) {
+            int r = random.nextInt(unanswered ? 10 : 9);
+            if (r == 9)
+                continue;
+            Boolean value = r == 8 ? null : r % 2 == 0;
+            items.put(String.valueOf(i), new MultipleChoiceResolutionItem(0f, null, value));
+        }
+        return new MultipleChoiceData(items);
+    }
+
+    private static ExerciseResolution resolution(MultipleChoiceData data) {
+        ExerciseResolution res = new ExerciseResolution();
+        res.setData(data);
+        return res;
+    }
+}
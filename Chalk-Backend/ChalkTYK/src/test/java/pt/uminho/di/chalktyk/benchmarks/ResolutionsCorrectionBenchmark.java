@@ -0,0 +1,147 @@
+package pt.uminho.di.chalktyk.benchmarks;
+
+import io.hypersistence.utils.hibernate.type.util.ObjectMapperWrapper;
+import jakarta.persistence.EntityManager;
+import org.hibernate.Hibernate;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+import pt.uminho.di.chalktyk.models.courses.Course;
+import pt.uminho.di.chalktyk.models.exercises.*;
+import pt.uminho.di.chalktyk.models.exercises.items.Item;
+import pt.uminho.di.chalktyk.models.exercises.items.StringItem;
+import pt.uminho.di.chalktyk.models.exercises.multiple_choice.*;
+import pt.uminho.di.chalktyk.models.exercises.open_answer.OACriterion;
+import pt.uminho.di.chalktyk.models.exercises.open_answer.OAStandard;
+import pt.uminho.di.chalktyk.models.exercises.open_answer.OpenAnswerRubric;
+import pt.uminho.di.chalktyk.models.miscellaneous.Visibility;
+import pt.uminho.di.chalktyk.models.users.Specialist;
+import pt.uminho.di.chalktyk.repositories.ExerciseResolutionDAO;
+import pt.uminho.di.chalktyk.services.IExercisesService;
+import pt.uminho.di.chalktyk.services.ISeedService;
+import pt.uminho.di.chalktyk.services.exceptions.ServiceException;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compares the automatic correction of the resolutions of an exercise done with pages requested by offset,
+ * where each resolution is saved through the persistence context, against the correction that walks
+ * the resolutions by identifier and writes them in JDBC batches.
+ * <p>
+ * Seeds the resolutions of a multiple choice exercise, corrects them with both methods, and prints the
+ * time taken and the number of resolutions left not revised by each. The data is rolled back at the end.
+ * Disabled by default, run with:
+ * <pre>mvn test -Dtest=ResolutionsCorrectionBenchmark -Dchalktyk.benchmarks=true [-Dchalktyk.benchmarks.resolutions=10000]</pre>
+ */
+@SpringBootTest
+@Transactional
+@EnabledIfSystemProperty(named = "chalktyk.benchmarks", matches = "true")
+public class ResolutionsCorrectionBenchmark {
+    @Autowired
+    private IExercisesService exercisesService;
+    @Autowired
+    private ISeedService seedService;
+    @Autowired
+    private ExerciseResolutionDAO exerciseResolutionDAO;
+    @Autowired
+    private EntityManager entityManager;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private String exerciseId;
+
+    @BeforeEach
+    public void seed() throws ServiceException {
+        int resolutions = Integer.getInteger("chalktyk.benchmarks.resolutions", 10000);
+        String specialistId = seedService.addSpecialistChang();
+        String courseId = seedService.addCourse(specialistId);
+        String studentId = seedService.addStudentAnnie();
+
+        Map<String, Item> items = new HashMap<>();
+        items.put("1", new StringItem("Là"));
+        items.put("2", new StringItem("Ali"));
+        items.put("3", new StringItem("There"));
+        MultipleChoiceExercise exercise = new MultipleChoiceExercise(Mctype.MULTIPLE_CHOICE_NO_JUSTIFICATION, new HashMap<>(items));
+        exercise.setStatement(new ExerciseStatement("Donde está la biblioteca", "", ""));
+        exercise.setTitle("Benchmark MC");
+        exercise.setSpecialist(new Specialist(specialistId));
+        exercise.setCourse(new Course(courseId));
+        exercise.setVisibility(Visibility.PUBLIC);
+
+        OpenAnswerRubric itemRubric = new OpenAnswerRubric(List.of(new OACriterion("Criterion", 100f,
+                List.of(new OAStandard("Min", "", 0f), new OAStandard("Max", "", 100f)))));
+        Map<String, OpenAnswerRubric> rubrics = new HashMap<>();
+        items.keySet().forEach(id -> rubrics.put(id, itemRubric));
+        exerciseId = exercisesService.createExercise(exercise, new ExerciseSolution(null, mcData(false, true, false)),
+                new MultipleChoiceRubric(0.5f, new HashMap<>(rubrics)), List.of());
+        entityManager.flush();
+
+        // half of the resolutions are right, the other half are wrong
+        jdbcTemplate.update("INSERT INTO exercise_resolution (id, data, status, submission_nr, exerciseid, studentid) " +
+                "SELECT 'benchmark-' || i, CASE WHEN i % 2 = 0 THEN CAST(? AS jsonb) ELSE CAST(? AS jsonb) END, ?, i, ?, ? " +
+                "FROM generate_series(1, ?) i",
+                ObjectMapperWrapper.INSTANCE.toString(mcData(false, true, false)),
+                ObjectMapperWrapper.INSTANCE.toString(mcData(true, false, true)),
+                ExerciseResolutionStatus.NOT_REVISED.ordinal(), exerciseId, studentId, resolutions);
+        jdbcTemplate.execute("ANALYZE exercise_resolution");
+    }
+
+    @Test
+    public void correctResolutions() throws ServiceException {
+        entityManager.clear();
+        long start = System.nanoTime();
+        correctWithOffsetPages();
+        entityManager.flush();
+        double offsetMillis = (System.nanoTime() - start) / 1e6;
+        long offsetLeft = countNotRevised();
+
+        // resets the resolutions
+        entityManager.clear();
+        jdbcTemplate.update("UPDATE exercise_resolution SET status = ?, points = NULL WHERE exerciseid = ?",
+                ExerciseResolutionStatus.NOT_REVISED.ordinal(), exerciseId);
+        long total = countNotRevised();
+
+        start = System.nanoTime();
+        exercisesService.issueExerciseResolutionsCorrection(exerciseId, "auto");
+        double keysetMillis = (System.nanoTime() - start) / 1e6;
+        long keysetLeft = countNotRevised();
+
+        System.out.printf("%n%d resolutions%n%-24s %12s %14s%n", total, "correction", "time (ms)", "not revised");
+        System.out.printf("%-24s %12.2f %14d%n", "offset pages, save", offsetMillis, offsetLeft);
+        System.out.printf("%-24s %12.2f %14d%n", "keyset, jdbc batches", keysetMillis, keysetLeft);
+    }
+
+    // correction used before the keyset walk, kept for the comparison
+    private void correctWithOffsetPages() throws ServiceException {
+        Exercise exercise = exercisesService.getExerciseById(exerciseId);
+        ExerciseRubric rubric = (ExerciseRubric) Hibernate.unproxy(exercisesService.getExerciseRubric(exerciseId));
+        ExerciseSolution solution = exercisesService.getExerciseSolution(exerciseId);
+        long resolutionsCount = exerciseResolutionDAO.countByExerciseIdAndStatus(exerciseId, ExerciseResolutionStatus.NOT_REVISED);
+        for (int pageIndex = 0, i = 0; i < resolutionsCount; pageIndex++, i += 5) {
+            Page<ExerciseResolution> page = exerciseResolutionDAO.findAllByExercise_IdAndStatus(exerciseId,
+                    ExerciseResolutionStatus.NOT_REVISED, PageRequest.of(pageIndex, 5));
+            for (ExerciseResolution res : page)
+                exerciseResolutionDAO.save(exercise.automaticEvaluation(res, solution, rubric));
+        }
+    }
+
+    private long countNotRevised() {
+        return exerciseResolutionDAO.countByExerciseIdAndStatus(exerciseId, ExerciseResolutionStatus.NOT_REVISED);
+    }
+
+    private static MultipleChoiceData mcData(boolean v1, boolean v2, boolean v3) {
+        HashMap<String, MultipleChoiceResolutionItem> items = new HashMap<>();
+        items.put("1", new MultipleChoiceResolutionItem(0f, null, v1));
+        items.put("2", new MultipleChoiceResolutionItem(0f, null, v2));
+        items.put("3", new MultipleChoiceResolutionItem(0f, null, v3));
+        return new MultipleChoiceData(items);
+    }
+}